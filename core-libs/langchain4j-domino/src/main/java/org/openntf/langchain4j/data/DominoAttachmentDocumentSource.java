@@ -30,6 +30,8 @@ import org.openntf.utils.TypeUtils;
  * <p>
  * This is just to access single file attachment on a Domino document. The common use case is to use {@link DominoDocumentLoader}
  * which will use this class as needed.
+ * <p>
+ * In addition to the metadata definition, the attachment name is added to the metadata as {@code file_name}.
  */
 public class DominoAttachmentDocumentSource extends AbstractDominoDocumentSource {
 
@@ -61,6 +63,7 @@ public class DominoAttachmentDocumentSource extends AbstractDominoDocumentSource
         }
 
         this.attachmentName = attachmentName;
+        this.metadata.put(dev.langchain4j.data.document.Document.FILE_NAME, attachmentName);
     }
 
     public static Builder builder() {
@@ -30,6 +30,7 @@ import java.util.LinkedHashSet;
 import java.util.Optional;
 import java.util.Set;
 import org.jsoup.Jsoup;
+import org.openntf.utils.HtmlTextConverter;
 import org.openntf.utils.TypeUtils;
 
 /**
@@ -46,6 +47,12 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
 
     private final Set<String> fieldNames;
 
+    // Use Jsoup instead of the streaming converter for HTML content
+    private final boolean useJsoup;
+
+    // Walk the MIME part tree instead of materialising MimeData
+    private final boolean lazyMime;
+
     /**
      * Creates a new DominoDataDocumentSource from a Domino document and a single field.
      * Uses a default {@link MetadataDefinition} instance.
@@ -83,9 +90,34 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
      * @param fieldNames the collection of field names to extract text from.
      */
     public DominoDataDocumentSource(Document document, MetadataDefinition metadataDefinition, Set<String> fieldNames) {
+        this(document, metadataDefinition, fieldNames, false);
+    }
+
+    /**
+     * Creates a new DominoDataDocumentSource from a Domino document, Metadata definition and a collection of fields.
+     * @param document the Domino document to extract text from.
+     * @param metadataDefinition the Metadata definition to use.
+     * @param fieldNames the collection of field names to extract text from.
+     * @param useJsoup true to convert HTML content with Jsoup instead of the streaming {@link HtmlTextConverter}.
+     */
+    public DominoDataDocumentSource(Document document, MetadataDefinition metadataDefinition, Set<String> fieldNames, boolean useJsoup) {
+        this(document, metadataDefinition, fieldNames, useJsoup, false);
+    }
+
+    /**
+     * Creates a new DominoDataDocumentSource from a Domino document, Metadata definition and a collection of fields.
+     * @param document the Domino document to extract text from.
+     * @param metadataDefinition the Metadata definition to use.
+     * @param fieldNames the collection of field names to extract text from.
+     * @param useJsoup true to convert HTML content with Jsoup instead of the streaming {@link HtmlTextConverter}.
+     * @param lazyMime true to walk the MIME part tree for the first text part, without decoding binary parts.
+     */
+    public DominoDataDocumentSource(Document document, MetadataDefinition metadataDefinition, Set<String> fieldNames, boolean useJsoup, boolean lazyMime) {
         super(document, metadataDefinition);
 
         this.fieldNames = new LinkedHashSet<>(ensureNotNull(fieldNames, "Field Names"));
+        this.useJsoup = useJsoup;
+        this.lazyMime = lazyMime;
     }
 
     public static Builder builder() {
@@ -102,7 +134,7 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
         StringBuilder text = new StringBuilder();
 
         for (String fieldName : fieldNames) {
-            String fieldText = extractFieldText(dominoDocument, fieldName);
+            String fieldText = extractFieldText(dominoDocument, fieldName, useJsoup, lazyMime);
             if (TypeUtils.isNotEmpty(fieldText)) {
                 if (!text.isEmpty()) {
                     text.append("\n");
@@ -114,7 +146,7 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
         return text.toString();
     }
 
-    private static String extractFieldText(Document doc, String fieldName) {
+    private static String extractFieldText(Document doc, String fieldName, boolean useJsoup, boolean lazyMime) {
         Optional<Item> item = doc.getFirstItem(fieldName);
 
         if (item.isEmpty()) {
@@ -129,6 +161,10 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
                 return rtl.extractText();
 
             case TYPE_MIME_PART: // MIME
+                if (lazyMime) {
+                    return MimeTextExtractor.extractText(doc, fieldName, useJsoup);
+                }
+
                 MimeData mimeData = doc.get(fieldName, MimeData.class, null);
 
                 if (null != mimeData) {
@@ -137,9 +173,7 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
                         return textData;
                     }
 
-                    textData = Jsoup.parseBodyFragment(mimeData.getHtml())
-                                    .text();
-                    return textData;
+                    return htmlToText(mimeData.getHtml(), useJsoup);
                 }
                 return "";
 
@@ -149,9 +183,25 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
         }
     }
 
+    private static String htmlToText(String html, boolean useJsoup) {
+        if (TypeUtils.isEmpty(html)) {
+            return "";
+        }
+
+        if (useJsoup) {
+            // Builds a full DOM. Kept as a fallback for malformed content the streaming converter can't handle.
+            return Jsoup.parseBodyFragment(html)
+                        .text();
+        }
+
+        return HtmlTextConverter.toText(html);
+    }
+
     public static class Builder extends AbstractBuilder<Builder> {
 
         private final Set<String> fieldNames;
+        private boolean useJsoup;
+        private boolean lazyMime;
 
         public Builder() {
             super();
@@ -178,6 +228,29 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
             return this;
         }
 
+        /**
+         * Sets whether Jsoup should be used to convert HTML content to text.
+         * By default, a streaming converter is used which doesn't build a DOM.
+         * @param useJsoup true to use Jsoup.
+         * @return this builder instance, for method chaining.
+         */
+        public Builder useJsoup(boolean useJsoup) {
+            this.useJsoup = useJsoup;
+            return this;
+        }
+
+        /**
+         * Sets whether MIME items should be read by walking the MIME part tree.
+         * In this mode, the first text/plain part (or text/html as a fallback) is used and
+         * attachments or inline images are never decoded.
+         * @param lazyMime true to walk the MIME part tree.
+         * @return this builder instance, for method chaining.
+         */
+        public Builder lazyMime(boolean lazyMime) {
+            this.lazyMime = lazyMime;
+            return this;
+        }
+
         @Override
         public Builder self() {
             return this;
@@ -186,7 +259,7 @@ public class DominoDataDocumentSource extends AbstractDominoDocumentSource {
         @Override
         public DominoDataDocumentSource build() {
             Document document = findDominoDocument().orElseThrow(() -> new IllegalArgumentException("Insufficient arguments to create a DominoDataDocumentSource"));
-            return new DominoDataDocumentSource(document, metadataDefinition, fieldNames);
+            return new DominoDataDocumentSource(document, metadataDefinition, fieldNames, useJsoup, lazyMime);
         }
     }
 }
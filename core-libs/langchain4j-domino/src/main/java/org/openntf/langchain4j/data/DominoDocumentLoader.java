@@ -35,11 +35,16 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -56,6 +61,7 @@ import org.openntf.utils.TypeUtils;
  * - Provide a metadata definition
  * - Provide a document parser
  * - Provide a list of field names or set loadAttachments to true to load attachments (you might provide a file pattern to filter the attachments)
+ * - Optionally, provide form profiles to load different fields from notes of different forms in the same pass
  * - Either:
  *   - Provide a list of Domino documents
  *   - Provide a list of collection entries
@@ -67,6 +73,8 @@ public class DominoDocumentLoader {
 
     private static final Logger logger = Logger.getLogger(DominoDocumentLoader.class.getName());
 
+    static final String FORM_ITEM = "Form";
+
     // Must have all of these
     private final MetadataDefinition metadataDefinition;
 
@@ -76,12 +84,34 @@ public class DominoDocumentLoader {
     // Field names to be looked up
     private final Set<String> fieldNames;
 
+    // Loading options per form, keyed by lowercase form name. Notes of other forms use the fields above.
+    private final Map<String, FormProfile> formProfiles = new LinkedHashMap<>();
+
     // Attached files. if true, all attachments are loaded as separate documents.
     private boolean loadAttachments;
 
     // Filter attachments to the file pattern
     private String filePattern;
 
+    // Use Jsoup instead of the streaming converter for HTML content
+    private boolean useJsoup;
+
+    // Walk the MIME part tree for text instead of materialising MimeData
+    private boolean lazyMime;
+
+    // Open notes summary-only when the needed items allow it
+    private boolean partialLoading;
+
+    // Throttles note fetching, optional
+    private LoadGovernor governor;
+
+    // Records progress for resumable runs, optional
+    private LoadCheckpoint checkpoint;
+    private boolean retryFailed;
+
+    // Receives items failing to load, optional
+    private BiConsumer<String, RuntimeException> failureListener;
+
     // Order of preference:
 
     // Option 1: dominoDocuments
@@ -121,6 +151,7 @@ public class DominoDocumentLoader {
 
         this.documentParser = new TextDocumentParser(); // default parser
         this.loadAttachments = false; // default is false
+        this.partialLoading = true; // default is true
     }
 
     /**
@@ -158,6 +189,96 @@ public class DominoDocumentLoader {
         return this;
     }
 
+    /**
+     * Specifies whether Jsoup should be used to convert HTML (MIME) content to text.
+     * By default, a streaming converter is used which is much lighter on memory.
+     *
+     * @param useJsoup true to use Jsoup, false otherwise
+     * @return this loader for method chaining
+     */
+    public DominoDocumentLoader useJsoup(boolean useJsoup) {
+        this.useJsoup = useJsoup;
+        return this;
+    }
+
+    /**
+     * Specifies whether MIME items should be read by walking the MIME part tree lazily.
+     * The first text/plain part is used, text/html is the fallback. Attachments and inline images are never decoded,
+     * which is considerably cheaper for mail databases.
+     *
+     * @param lazyMime true to walk the MIME part tree, false to use MimeData
+     * @return this loader for method chaining
+     */
+    public DominoDocumentLoader lazyMime(boolean lazyMime) {
+        this.lazyMime = lazyMime;
+        return this;
+    }
+
+    /**
+     * Specifies whether notes fetched by UNID or note ID should be opened with only the data the loader needs.
+     * The loader works out the needed items (field names, items referenced by metadata formulas and $FILE for
+     * attachments) and opens notes summary-only where possible, falling back to the full note when an item is
+     * outside the summary buffer. Enabled by default.
+     *
+     * @param partialLoading true to open partial notes, false to always open full notes
+     * @return this loader for method chaining
+     */
+    public DominoDocumentLoader partialLoading(boolean partialLoading) {
+        this.partialLoading = partialLoading;
+        return this;
+    }
+
+    /**
+     * Sets a governor to throttle fetching notes by UNID, note ID or collection entry.
+     * The same governor can be shared by several loaders running in parallel against the same server.
+     *
+     * @param governor the governor, or null for no throttling
+     * @return this loader for method chaining
+     */
+    public DominoDocumentLoader governor(LoadGovernor governor) {
+        this.governor = governor;
+        return this;
+    }
+
+    /**
+     * Sets a checkpoint to make the run resumable. Applies to notes fetched by UNID, note ID or collection entry.
+     * Items already completed in the checkpoint are skipped, and each item is recorded as completed once its documents
+     * are passed to the consumer. A failing item is recorded with the reason and the run continues with the next one.
+     * The checkpoint is not closed by the loader.
+     *
+     * @param checkpoint the checkpoint, or null to disable
+     * @return this loader for method chaining
+     */
+    public DominoDocumentLoader checkpoint(LoadCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Specifies whether items recorded as failed in the checkpoint should be tried again.
+     * By default, failed items are skipped as well, so they can be retried selectively in a separate run.
+     *
+     * @param retryFailed true to retry failed items
+     * @return this loader for method chaining
+     */
+    public DominoDocumentLoader retryFailed(boolean retryFailed) {
+        this.retryFailed = retryFailed;
+        return this;
+    }
+
+    /**
+     * Sets a listener for notes fetched by UNID, note ID or collection entry that fail to load. The listener receives
+     * the checkpoint key of the item and the failure. With a listener, a failing item is skipped and the run continues
+     * with the next one, even without a checkpoint.
+     *
+     * @param failureListener the listener, or null to end the load on the first failure unless a checkpoint is set
+     * @return this loader for method chaining
+     */
+    public DominoDocumentLoader failureListener(BiConsumer<String, RuntimeException> failureListener) {
+        this.failureListener = failureListener;
+        return this;
+    }
+
     /**
      * Adds a field name to be loaded from each Domino document.
      *
@@ -180,6 +301,23 @@ public class DominoDocumentLoader {
         return this;
     }
 
+    /**
+     * Sets the fields, metadata definition and parser for notes of a form. The form of each note is read once and
+     * the matching profile is applied, so a database with several forms is loaded in a single pass. Notes of forms
+     * without a profile are loaded with the field names of the loader, or skipped if there are none.
+     *
+     * @param formName the form name, case-insensitive
+     * @param profile  the loading options for the form
+     * @return this loader for method chaining
+     */
+    public DominoDocumentLoader formProfile(String formName, FormProfile profile) {
+        if (TypeUtils.isEmpty(formName)) {
+            throw new IllegalArgumentException("Form name cannot be null or empty");
+        }
+        this.formProfiles.put(formName.toLowerCase(Locale.ENGLISH), ensureNotNull(profile, "Form Profile"));
+        return this;
+    }
+
     /**
      * Adds a Domino document to be loaded.
      *
@@ -325,54 +463,83 @@ public class DominoDocumentLoader {
      * @throws IllegalArgumentException if the configuration is incomplete or conflicting
      */
     public List<Document> loadDocuments() {
+        List<Document> documents = new ArrayList<>();
+        loadDocuments(documents::add);
+        return documents;
+    }
+
+    /**
+     * Loads documents from Domino using the provided configuration and passes them to the consumer one by one.
+     * Unlike {@link #loadDocuments()}, loaded documents are not kept in memory by the loader.
+     * At least one source (field names, attachments, document IDs, etc.) must be specified.
+     *
+     * @param consumer the consumer to receive each loaded document
+     * @throws IllegalArgumentException if the configuration is incomplete or conflicting
+     */
+    public void loadDocuments(Consumer<Document> consumer) {
+        ensureNotNull(consumer, "Consumer");
+
         if (loadAttachments) {
             if (!fieldNames.isEmpty()) {
                 throw new IllegalArgumentException("You cannot provide field names when loading attachments!");
             }
+            if (!formProfiles.isEmpty()) {
+                throw new IllegalArgumentException("You cannot provide form profiles when loading attachments!");
+            }
         } else {
-            if (fieldNames.isEmpty()) {
+            if (fieldNames.isEmpty() && formProfiles.isEmpty()) {
                 throw new IllegalArgumentException("Either load attachments, or provide at least one field name!");
             }
         }
 
         // If we have dominoDocuments, we can use them directly.
         if (dominoDocuments != null && !dominoDocuments.isEmpty()) {
-            return loadFromDocs(dominoDocuments);
+            dominoDocuments.forEach(dominoDocument -> loadFromDoc(dominoDocument, consumer));
+            return;
         }
 
         if (collectionEntries != null && !collectionEntries.isEmpty()) {
-            return loadByFetching(collectionEntries, CollectionEntry::openDocument);
+            loadByFetching(collectionEntries, entry -> LoadCheckpoint.noteIdKey(entry.getNoteID()), CollectionEntry::openDocument, consumer);
+            return;
         }
 
         boolean closeDatabase = false;
+        Database db = database;
 
-        if (database == null) {
+        if (db == null) {
             if (dominoClient == null || TypeUtils.isEmpty(databasePath)) {
                 throw new IllegalArgumentException("At minimum, dominoClient and databasePath must be provided to find the Database!");
             }
 
             if (TypeUtils.isEmpty(server)) {
                 // Hopefully, databasePath is enough
-                database = dominoClient.openDatabase(databasePath);
+                db = dominoClient.openDatabase(databasePath);
             } else {
-                database = dominoClient.openDatabase(server, databasePath);
+                db = dominoClient.openDatabase(server, databasePath);
             }
 
             // If we open the database, we need to close it when done.
             closeDatabase = true;
         }
 
+        PartialNoteFetcher fetcher = partialLoading
+            ? createFetcher()
+            : PartialNoteFetcher.full();
+        Database fetchDb = db;
+
         try {
             if (documentUniqueIds != null && !documentUniqueIds.isEmpty()) {
-                return loadByFetching(documentUniqueIds, database::getDocumentByUNID);
+                loadByFetching(documentUniqueIds, LoadCheckpoint::unidKey, unid -> fetcher.byUnid(fetchDb, unid), consumer);
+                return;
             }
 
             if (noteIds != null && !noteIds.isEmpty()) {
-                return loadByFetching(noteIds, database::getDocumentById);
+                loadByFetching(noteIds, LoadCheckpoint::noteIdKey, noteId -> fetcher.byNoteId(fetchDb, noteId), consumer);
+                return;
             }
         } finally {
             if (closeDatabase) {
-                database.close();
+                db.close();
             }
         }
 
@@ -380,9 +547,52 @@ public class DominoDocumentLoader {
         throw new IllegalArgumentException("Either noteIds or collectionEntries must be provided!");
     }
 
+    private PartialNoteFetcher createFetcher() {
+        if (formProfiles.isEmpty()) {
+            return PartialNoteFetcher.create(fieldNames, List.of(metadataDefinition), loadAttachments);
+        }
+
+        // Every profile may apply to a note, so all of their items are needed, and the form to choose one
+        Set<String> items = new LinkedHashSet<>(fieldNames);
+        items.add(FORM_ITEM);
+        List<MetadataDefinition> definitions = new ArrayList<>();
+        definitions.add(metadataDefinition);
+
+        for (FormProfile profile : formProfiles.values()) {
+            items.addAll(profile.getFieldNames());
+            profile.getMetadataDefinition().ifPresent(definitions::add);
+        }
+
+        return PartialNoteFetcher.create(items, definitions, false);
+    }
+
     private Optional<Document> loadFieldsFromDoc(com.hcl.domino.data.Document dominoDocument) {
+        if (formProfiles.isEmpty()) {
+            return loadFieldsFromDoc(dominoDocument, fieldNames, metadataDefinition, documentParser);
+        }
+
+        String form = dominoDocument.getAsText(FORM_ITEM, ';');
+        FormProfile profile = form == null ? null : formProfiles.get(form.toLowerCase(Locale.ENGLISH));
+
+        if (profile != null) {
+            return loadFieldsFromDoc(dominoDocument, profile.getFieldNames(),
+                                     profile.getMetadataDefinition().orElse(metadataDefinition),
+                                     profile.getDocumentParser().orElse(documentParser));
+        }
+        if (!fieldNames.isEmpty()) {
+            return loadFieldsFromDoc(dominoDocument, fieldNames, metadataDefinition, documentParser);
+        }
+
+        logger.log(Level.FINE, () -> "No form profile for form '" + form + "', skipping note " + dominoDocument.getUNID());
+        return Optional.empty();
+    }
+
+    private Optional<Document> loadFieldsFromDoc(com.hcl.domino.data.Document dominoDocument, Set<String> fieldNames,
+                                                 MetadataDefinition metadataDefinition, DocumentParser documentParser) {
         DocumentSource source = DominoDataDocumentSource.builder()
-                                                        .fieldNames(this.fieldNames)
+                                                        .fieldNames(fieldNames)
+                                                        .useJsoup(useJsoup)
+                                                        .lazyMime(lazyMime)
                                                         .metadataDefinition(metadataDefinition)
                                                         .dominoDocument(dominoDocument)
                                                         .build();
@@ -414,47 +624,119 @@ public class DominoDocumentLoader {
         return parseSource(source, documentParser);
     }
 
-    private List<Document> loadFromDocs(Collection<com.hcl.domino.data.Document> dominoDocuments) {
-
+    private void loadFromDoc(com.hcl.domino.data.Document dominoDocument, Consumer<Document> consumer) {
         if (loadAttachments) {
-            return dominoDocuments.stream()
-                                  .map(this::loadAttachmentsFromDoc)
-                                  .flatMap(List::stream)
-                                  .toList();
+            loadAttachmentsFromDoc(dominoDocument).forEach(consumer);
+        } else {
+            loadFieldsFromDoc(dominoDocument).ifPresent(consumer);
         }
-
-        return dominoDocuments.stream()
-                              .map(this::loadFieldsFromDoc)
-                              .flatMap(Optional::stream)
-                              .toList();
     }
 
     /**
-     * Fetches documents by IDs, attempts to load them, and returns all successfully loaded items.
+     * Fetches documents by IDs, attempts to load them, and passes all successfully loaded items to the consumer.
      *
-     * @param collection collection of parameters to send to the fetcher
-     * @param fetcher    a function that takes an parameter and returns an Optional<DominoDocument>
-     * @return a List of Documents
+     * @param collection  collection of parameters to send to the fetcher
+     * @param keyFunction a function that returns the checkpoint key for a parameter
+     * @param fetcher     a function that takes an parameter and returns an Optional<DominoDocument>
+     * @param consumer    the consumer to receive loaded documents
      */
-    private <I> List<Document> loadByFetching(Collection<I> collection, Function<? super I, Optional<com.hcl.domino.data.Document>> fetcher) {
+    private <I> void loadByFetching(Collection<I> collection, Function<? super I, String> keyFunction,
+                                    Function<? super I, Optional<com.hcl.domino.data.Document>> fetcher,
+                                    Consumer<Document> consumer) {
         if (collection == null || collection.isEmpty()) {
-            return List.of();
+            return;
         }
 
-        if (loadAttachments) {
-            return collection.stream()
-                             .flatMap(id -> fetcher.apply(id)
-                                                   .map(this::loadAttachmentsFromDoc)
-                                                   .stream()
-                                                   .flatMap(List::stream))
-                             .toList();
+        if (checkpoint == null && failureListener == null) {
+            for (I id : collection) {
+                fetchAndLoad(id, fetcher).forEach(consumer);
+            }
+            return;
+        }
+
+        int skipped = 0;
+        int failed = 0;
+
+        for (I id : collection) {
+            String key = keyFunction.apply(id);
+            if (checkpoint != null && (checkpoint.isCompleted(key) || (!retryFailed && checkpoint.isFailed(key)))) {
+                skipped++;
+                continue;
+            }
+
+            List<Document> loaded;
+            try {
+                loaded = fetchAndLoad(id, fetcher);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Unable to load " + key + ": " + e.getMessage(), e);
+                if (checkpoint != null) {
+                    checkpoint.markFailed(key, e.toString());
+                }
+                if (failureListener != null) {
+                    failureListener.accept(key, e);
+                }
+                failed++;
+                continue;
+            }
+
+            // Consumer failures are not the note's fault, they end the load and the note is retried next time
+            loaded.forEach(consumer);
+            if (checkpoint != null) {
+                checkpoint.markCompleted(key);
+            }
+        }
+
+        if (checkpoint != null) {
+            checkpoint.sync();
         }
 
-        return collection.stream()
-                         .flatMap(id -> fetcher.apply(id)
-                                               .flatMap(this::loadFieldsFromDoc)
-                                               .stream())
-                         .toList();
+        if (skipped > 0 || failed > 0) {
+            logger.log(Level.INFO, "Load: " + skipped + " items skipped, " + failed + " items failed");
+        }
+    }
+
+    /**
+     * Fetches a single note and loads it, under a permit if a governor is set.
+     * The consumer is not called here, so it doesn't hold the permit.
+     */
+    private <I> List<Document> fetchAndLoad(I id, Function<? super I, Optional<com.hcl.domino.data.Document>> fetcher) {
+        List<Document> loaded = new ArrayList<>();
+
+        if (governor == null) {
+            fetcher.apply(id)
+                   .ifPresent(dominoDocument -> loadFromDoc(dominoDocument, loaded::add));
+            return loaded;
+        }
+
+        LoadGovernor.Permit permit = acquirePermit();
+        long fetchNanos = 0;
+        long bytesRead = 0;
+
+        try {
+            long start = System.nanoTime();
+            Optional<com.hcl.domino.data.Document> dominoDocument = fetcher.apply(id);
+            fetchNanos = System.nanoTime() - start;
+
+            if (dominoDocument.isPresent()) {
+                bytesRead = dominoDocument.get().size();
+                loadFromDoc(dominoDocument.get(), loaded::add);
+            }
+        } finally {
+            governor.release(permit, fetchNanos, bytesRead);
+        }
+
+        return loaded;
+    }
+
+    private LoadGovernor.Permit acquirePermit() {
+        try {
+            return governor.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the load governor");
+        }
     }
 
     private static Optional<Document> parseSource(DocumentSource source, DocumentParser documentParser) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import dev.langchain4j.data.document.DocumentParser;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Loading options for the notes of one form, used by {@link DominoDocumentLoader#formProfile(String, FormProfile)}.
+ * <p>
+ * A profile names the fields holding the content of its form. The metadata definition and the document parser are
+ * optional, the loader's own are used if they are not set.
+ * <pre>
+ * FormProfile memos = FormProfile.builder()
+ *     .fieldNames(List.of("Subject", "Body"))
+ *     .build();
+ * </pre>
+ */
+public class FormProfile {
+
+    private final Set<String> fieldNames;
+    private final MetadataDefinition metadataDefinition;
+    private final DocumentParser documentParser;
+
+    private FormProfile(Builder builder) {
+        if (builder.fieldNames.isEmpty()) {
+            throw new IllegalArgumentException("A form profile needs at least one field name!");
+        }
+
+        this.fieldNames = Collections.unmodifiableSet(new LinkedHashSet<>(builder.fieldNames));
+        this.metadataDefinition = builder.metadataDefinition;
+        this.documentParser = builder.documentParser;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the fields loaded from notes of the form
+     */
+    public Set<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * @return the metadata definition of the form, empty to use the loader's
+     */
+    public Optional<MetadataDefinition> getMetadataDefinition() {
+        return Optional.ofNullable(metadataDefinition);
+    }
+
+    /**
+     * @return the document parser of the form, empty to use the loader's
+     */
+    public Optional<DocumentParser> getDocumentParser() {
+        return Optional.ofNullable(documentParser);
+    }
+
+    public static class Builder {
+
+        private final Set<String> fieldNames = new LinkedHashSet<>();
+        private MetadataDefinition metadataDefinition;
+        private DocumentParser documentParser;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a field to be loaded from notes of the form.
+         * @param fieldName the field name
+         * @return this builder instance, for method chaining.
+         */
+        public Builder fieldName(String fieldName) {
+            this.fieldNames.add(fieldName);
+            return this;
+        }
+
+        /**
+         * Adds fields to be loaded from notes of the form.
+         * @param fieldNames the field names
+         * @return this builder instance, for method chaining.
+         */
+        public Builder fieldNames(Collection<String> fieldNames) {
+            this.fieldNames.addAll(fieldNames);
+            return this;
+        }
+
+        /**
+         * Sets the metadata definition for notes of the form.
+         * @param metadataDefinition the metadata definition
+         * @return this builder instance, for method chaining.
+         */
+        public Builder metadataDefinition(MetadataDefinition metadataDefinition) {
+            this.metadataDefinition = metadataDefinition;
+            return this;
+        }
+
+        /**
+         * Sets the document parser for notes of the form.
+         * @param documentParser the document parser
+         * @return this builder instance, for method chaining.
+         */
+        public Builder documentParser(DocumentParser documentParser) {
+            this.documentParser = documentParser;
+            return this;
+        }
+
+        public FormProfile build() {
+            return new FormProfile(this);
+        }
+    }
+}
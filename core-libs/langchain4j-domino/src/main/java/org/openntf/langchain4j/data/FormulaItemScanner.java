@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds the item names a formula refers to, without compiling it.
+ * <p>
+ * This is a lightweight lexical scan: string literals are skipped, @functions are ignored, temporary variables
+ * assigned with {@code :=} are excluded. @functions reading attachments (e.g. {@code @AttachmentNames}) refer to the
+ * {@code $FILE} items. Formulas which access items indirectly (e.g. {@code @GetField}, {@code @Eval},
+ * {@code @Abstract}) can't be resolved and return an empty Optional.
+ */
+final class FormulaItemScanner {
+
+    // @functions that read items by computed names or evaluate other formulas
+    private static final Set<String> INDIRECT_FUNCTIONS = Set.of(
+        "getfield", "getdocfield", "eval", "docfields", "getitemvalue", "getitem", "abstract"
+    );
+
+    // @functions that read items implicitly, by the item they read
+    private static final Map<String, String> IMPLICIT_ITEM_FUNCTIONS = Map.of(
+        "attachments", "$FILE",
+        "attachmentnames", "$FILE",
+        "attachmentlengths", "$FILE",
+        "attachmentmodifiedtimes", "$FILE"
+    );
+
+    private FormulaItemScanner() {
+    }
+
+    /**
+     * Scans a formula for item references.
+     *
+     * @param formula the formula
+     * @return item names referenced, or an empty Optional if they can't be derived
+     */
+    static Optional<Set<String>> referencedItems(String formula) {
+        Set<String> items = new LinkedHashSet<>();
+        Set<String> variables = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+        int length = formula.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = formula.charAt(i);
+
+            if (c == '"') {
+                i = skipString(formula, i + 1, '"');
+            } else if (c == '{') {
+                i = skipString(formula, i + 1, '}');
+            } else if (c == '@') {
+                int end = identifierEnd(formula, i + 1);
+                String function = formula.substring(i + 1, end).toLowerCase(Locale.ENGLISH);
+                if (INDIRECT_FUNCTIONS.contains(function)) {
+                    return Optional.empty();
+                }
+                if (IMPLICIT_ITEM_FUNCTIONS.containsKey(function)) {
+                    items.add(IMPLICIT_ITEM_FUNCTIONS.get(function));
+                }
+                i = end;
+            } else if (isIdentifierStart(c)) {
+                int end = identifierEnd(formula, i);
+                String identifier = formula.substring(i, end);
+                i = end;
+
+                switch (identifier.toUpperCase(Locale.ENGLISH)) {
+                    case "REM":
+                    case "SELECT":
+                        // Keywords
+                        break;
+                    case "ENVIRONMENT":
+                        // Followed by an environment variable name
+                        i = identifierEnd(formula, skipWhitespace(formula, i));
+                        break;
+                    case "FIELD":
+                    case "DEFAULT":
+                        // Followed by an item name, even though it's an assignment
+                        int start = skipWhitespace(formula, i);
+                        i = identifierEnd(formula, start);
+                        if (i > start) {
+                            items.add(formula.substring(start, i));
+                        }
+                        break;
+                    default:
+                        if (isAssignment(formula, i)) {
+                            variables.add(identifier);
+                        } else {
+                            items.add(identifier);
+                        }
+                }
+            } else {
+                i++;
+            }
+        }
+
+        items.removeIf(variables::contains);
+        return Optional.of(Collections.unmodifiableSet(items));
+    }
+
+    private static int skipString(String formula, int from, char terminator) {
+        int i = from;
+        while (i < formula.length()) {
+            char c = formula.charAt(i);
+            if (c == '\\' && terminator == '"') {
+                i += 2;
+                continue;
+            }
+            if (c == terminator) {
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(String formula, int from) {
+        int i = from;
+        while (i < formula.length() && Character.isWhitespace(formula.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isAssignment(String formula, int from) {
+        int i = skipWhitespace(formula, from);
+        return formula.startsWith(":=", i);
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+
+    private static int identifierEnd(String formula, int from) {
+        int i = from;
+        while (i < formula.length()) {
+            char c = formula.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_' || c == '$')) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+}
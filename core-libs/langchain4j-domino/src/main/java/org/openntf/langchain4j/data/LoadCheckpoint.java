@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the progress of a load in a local file, so an interrupted run can be resumed.
+ * <p>
+ * The file is an append-only log with one line per item: {@code C <key>} for a completed item and
+ * {@code F <key> <reason>} for a failed one. Records are buffered and written with a single fsync once
+ * {@code syncEvery} records have accumulated or {@code syncInterval} has passed, so a crash loses at most one batch.
+ * A partially written last line is ignored when the file is read back.
+ * <p>
+ * Keys identify items within a single database, use one checkpoint file per database.
+ */
+public class LoadCheckpoint implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(LoadCheckpoint.class.getName());
+
+    private static final char COMPLETED = 'C';
+    private static final char FAILED = 'F';
+
+    private static final String NOTEID_PREFIX = "N:";
+    private static final String UNID_PREFIX = "U:";
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final long syncIntervalNanos;
+
+    private final Set<String> completed = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> failed = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingRecords;
+    private long lastSync = System.nanoTime();
+
+    private LoadCheckpoint(Path file, int syncEvery, long syncIntervalMillis) throws IOException {
+        if (syncEvery < 1) {
+            throw new IllegalArgumentException("syncEvery must be positive");
+        }
+
+        this.file = file;
+        this.syncEvery = syncEvery;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+
+        long validLength = Files.exists(file) ? read() : 0;
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.truncate(validLength);
+        this.channel.position(this.channel.size());
+    }
+
+    /**
+     * Opens a checkpoint file, creating it if it doesn't exist.
+     * Syncs every 100 records or every second, whichever comes first.
+     *
+     * @param file the checkpoint file
+     * @return the checkpoint
+     * @throws IOException if the file can't be read or opened
+     */
+    public static LoadCheckpoint open(Path file) throws IOException {
+        return open(file, 100, 1000);
+    }
+
+    /**
+     * Opens a checkpoint file, creating it if it doesn't exist.
+     *
+     * @param file               the checkpoint file
+     * @param syncEvery          number of records to write with a single fsync
+     * @param syncIntervalMillis maximum time to keep records unsynced
+     * @return the checkpoint
+     * @throws IOException if the file can't be read or opened
+     */
+    public static LoadCheckpoint open(Path file, int syncEvery, long syncIntervalMillis) throws IOException {
+        return new LoadCheckpoint(file, syncEvery, syncIntervalMillis);
+    }
+
+    /**
+     * @param noteId note ID
+     * @return checkpoint key for the note ID
+     */
+    public static String noteIdKey(int noteId) {
+        return NOTEID_PREFIX + Integer.toHexString(noteId);
+    }
+
+    /**
+     * @param unid universal ID
+     * @return checkpoint key for the UNID
+     */
+    public static String unidKey(String unid) {
+        return UNID_PREFIX + unid.toUpperCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Reads existing records.
+     *
+     * @return length of the file up to the last complete line
+     */
+    private long read() throws IOException {
+        byte[] content = Files.readAllBytes(file);
+
+        int end = content.length;
+        while (end > 0 && content[end - 1] != '\n') {
+            end--;
+        }
+        if (end < content.length) {
+            log.log(Level.WARNING, "Ignoring a partially written record at the end of " + file);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new StringReader(new String(content, 0, end, StandardCharsets.UTF_8)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() < 3 || line.charAt(1) != ' ') {
+                    continue;
+                }
+
+                String rest = line.substring(2);
+                int space = rest.indexOf(' ');
+                String key = space < 0 ? rest : rest.substring(0, space);
+
+                if (line.charAt(0) == COMPLETED) {
+                    completed.add(key);
+                    failed.remove(key);
+                } else if (line.charAt(0) == FAILED) {
+                    failed.put(key, space < 0 ? "" : rest.substring(space + 1));
+                }
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * @param key item key
+     * @return true if the item was loaded successfully
+     */
+    public boolean isCompleted(String key) {
+        return completed.contains(key);
+    }
+
+    /**
+     * @param key item key
+     * @return true if the item failed and hasn't been completed since
+     */
+    public boolean isFailed(String key) {
+        return failed.containsKey(key);
+    }
+
+    /**
+     * @return number of completed items
+     */
+    public int getCompletedCount() {
+        return completed.size();
+    }
+
+    /**
+     * @return failed item keys with the recorded failure reasons
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+    }
+
+    /**
+     * Records an item as completed.
+     *
+     * @param key item key
+     */
+    public void markCompleted(String key) {
+        if (completed.add(key)) {
+            failed.remove(key);
+            append(COMPLETED + " " + key);
+        }
+    }
+
+    /**
+     * Records an item as failed.
+     *
+     * @param key    item key
+     * @param reason failure reason, saved on a single line
+     */
+    public void markFailed(String key, String reason) {
+        String cleanReason = reason == null ? "" : reason.replaceAll("[\\r\\n]+", " ");
+        failed.put(key, cleanReason);
+        append(FAILED + " " + key + " " + cleanReason);
+    }
+
+    private synchronized void append(String record) {
+        pending.append(record).append('\n');
+        pendingRecords++;
+
+        if (pendingRecords >= syncEvery || System.nanoTime() - lastSync >= syncIntervalNanos) {
+            sync();
+        }
+    }
+
+    /**
+     * Writes pending records and forces them to disk.
+     */
+    public synchronized void sync() {
+        if (pendingRecords == 0) {
+            return;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write checkpoint " + file, e);
+        }
+
+        pending.setLength(0);
+        pendingRecords = 0;
+        lastSync = System.nanoTime();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+}
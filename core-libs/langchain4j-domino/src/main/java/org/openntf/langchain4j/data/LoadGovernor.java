@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps ingestion from hurting interactive users on a shared Domino server.
+ * <p>
+ * A governor is shared by every worker loading from the same server(s). Before opening a note, a worker acquires a
+ * permit; after the note has been read, it releases the permit with the observed fetch latency and the note size.
+ * The governor enforces:
+ * <ul>
+ *     <li>a note-open rate (notes per second),</li>
+ *     <li>an I/O budget (bytes per second), charged after each note is read,</li>
+ *     <li>an adaptive concurrency limit. Like TCP congestion control, the limit grows additively while fetch latency
+ *     stays under the threshold and is cut multiplicatively when it goes above it.</li>
+ * </ul>
+ * Limits that are not configured are not enforced.
+ */
+public class LoadGovernor {
+
+    private static final Logger log = Logger.getLogger(LoadGovernor.class.getName());
+
+    private final LongSupplier clock;
+
+    private final TokenBucket noteBucket;
+    private final TokenBucket byteBucket;
+
+    private final long latencyThresholdNanos;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final double decreaseFactor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    // Guarded by lock
+    private double concurrencyLimit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    // Statistics
+    private final AtomicLong notes = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+
+    private LoadGovernor(Builder builder, LongSupplier clock) {
+        this.clock = clock;
+        this.noteBucket = builder.maxNotesPerSecond > 0 ? new TokenBucket(builder.maxNotesPerSecond, clock) : null;
+        this.byteBucket = builder.maxBytesPerSecond > 0 ? new TokenBucket(builder.maxBytesPerSecond, clock) : null;
+        this.latencyThresholdNanos = builder.latencyThreshold == null ? 0 : builder.latencyThreshold.toNanos();
+        this.minConcurrency = builder.minConcurrency;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.decreaseFactor = builder.decreaseFactor;
+        this.concurrencyLimit = builder.initialConcurrency > 0 ? builder.initialConcurrency : builder.maxConcurrency;
+        this.lastDecreaseNanos = clock.getAsLong() - latencyThresholdNanos;
+
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= max");
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("Decrease factor must be between 0 and 1");
+        }
+        this.concurrencyLimit = Math.max(minConcurrency, Math.min(maxConcurrency, concurrencyLimit));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Waits until a note may be opened.
+     *
+     * @return a permit to be passed to {@link #release(Permit, long, long)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Permit acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) concurrencyLimit) {
+                permitReleased.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (noteBucket != null) {
+                noteBucket.take(1);
+            }
+            if (byteBucket != null) {
+                // Bytes are charged after reading, wait until we are out of debt
+                byteBucket.take(0);
+            }
+        } catch (InterruptedException e) {
+            releaseSlot();
+            throw e;
+        }
+
+        return new Permit(clock.getAsLong());
+    }
+
+    /**
+     * Releases a permit after a note has been read.
+     *
+     * @param permit       the permit from {@link #acquire()}
+     * @param fetchNanos   the observed fetch latency in nanoseconds
+     * @param bytesRead    the number of bytes read, e.g. the note size
+     */
+    public void release(Permit permit, long fetchNanos, long bytesRead) {
+        if (permit.released) {
+            throw new IllegalStateException("Permit already released");
+        }
+        permit.released = true;
+
+        notes.incrementAndGet();
+        bytes.addAndGet(bytesRead);
+        latencyNanos.addAndGet(fetchNanos);
+
+        if (byteBucket != null && bytesRead > 0) {
+            byteBucket.charge(bytesRead);
+        }
+
+        lock.lock();
+        try {
+            inFlight--;
+            adjust(fetchNanos);
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called under lock
+    private void adjust(long fetchNanos) {
+        if (latencyThresholdNanos <= 0) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+
+        if (fetchNanos > latencyThresholdNanos) {
+            // Decrease at most once per threshold period, a burst of slow fetches is a single congestion event
+            if (now - lastDecreaseNanos >= latencyThresholdNanos) {
+                double previous = concurrencyLimit;
+                concurrencyLimit = Math.max(minConcurrency, concurrencyLimit * decreaseFactor);
+                lastDecreaseNanos = now;
+
+                if ((int) previous != (int) concurrencyLimit) {
+                    log.log(Level.FINE, "Fetch latency " + TimeUnit.NANOSECONDS.toMillis(fetchNanos)
+                        + "ms above threshold, concurrency limit reduced to " + (int) concurrencyLimit);
+                }
+            }
+        } else {
+            // Roughly +1 per round of completions at the current limit
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+        }
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    public int getConcurrencyLimit() {
+        lock.lock();
+        try {
+            return (int) concurrencyLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of notes read under this governor
+     */
+    public long getNoteCount() {
+        return notes.get();
+    }
+
+    /**
+     * @return number of bytes read under this governor
+     */
+    public long getByteCount() {
+        return bytes.get();
+    }
+
+    /**
+     * @return average fetch latency observed, zero if nothing has been read
+     */
+    public Duration getAverageLatency() {
+        long count = notes.get();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(latencyNanos.get() / count);
+    }
+
+    /**
+     * A permit to open a single note.
+     */
+    public static final class Permit {
+        private final long acquiredNanos;
+        private volatile boolean released;
+
+        private Permit(long acquiredNanos) {
+            this.acquiredNanos = acquiredNanos;
+        }
+
+        /**
+         * @return the clock value when the permit was granted
+         */
+        public long getAcquiredNanos() {
+            return acquiredNanos;
+        }
+    }
+
+    /**
+     * A token bucket refilled continuously, holding at most one second of budget, and at least one token so that
+     * rates below one per second can still be taken from.
+     * Charges may take the bucket into debt; takers wait until it recovers.
+     */
+    static final class TokenBucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private final LongSupplier clock;
+
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double ratePerSecond, LongSupplier clock) {
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, ratePerSecond);
+            this.clock = clock;
+            this.tokens = capacity;
+            this.lastRefill = clock.getAsLong();
+        }
+
+        void take(double amount) throws InterruptedException {
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    refill();
+                    if (tokens >= amount) {
+                        tokens -= amount;
+                        return;
+                    }
+                    waitNanos = (long) Math.ceil((amount - tokens) / ratePerNano);
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1));
+            }
+        }
+
+        synchronized void charge(double amount) {
+            refill();
+            tokens -= amount;
+        }
+
+        synchronized double available() {
+            refill();
+            return tokens;
+        }
+
+        private void refill() {
+            long now = clock.getAsLong();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+        }
+    }
+
+    public static class Builder {
+
+        private double maxNotesPerSecond;
+        private double maxBytesPerSecond;
+        private Duration latencyThreshold;
+        private int minConcurrency = 1;
+        private int maxConcurrency = 4;
+        private int initialConcurrency;
+        private double decreaseFactor = 0.5;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the target note-open rate. Not limited by default.
+         * @param maxNotesPerSecond maximum notes opened per second
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxNotesPerSecond(double maxNotesPerSecond) {
+            this.maxNotesPerSecond = maxNotesPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the I/O budget. Not limited by default.
+         * @param maxBytesPerSecond maximum bytes read per second
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxBytesPerSecond(double maxBytesPerSecond) {
+            this.maxBytesPerSecond = maxBytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the fetch latency above which the concurrency limit is reduced.
+         * Without a threshold, concurrency stays at the initial limit.
+         * @param latencyThreshold the latency threshold
+         * @return this builder instance, for method chaining.
+         */
+        public Builder latencyThreshold(Duration latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the concurrency range for the adaptive limit. Defaults to 1..4.
+         * @param minConcurrency the lower bound
+         * @param maxConcurrency the upper bound
+         * @return this builder instance, for method chaining.
+         */
+        public Builder concurrency(int minConcurrency, int maxConcurrency) {
+            this.minConcurrency = minConcurrency;
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the initial concurrency limit. Defaults to the maximum.
+         * @param initialConcurrency the initial limit
+         * @return this builder instance, for method chaining.
+         */
+        public Builder initialConcurrency(int initialConcurrency) {
+            this.initialConcurrency = initialConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the factor the concurrency limit is multiplied by when latency is too high. Defaults to 0.5.
+         * @param decreaseFactor a value between 0 and 1
+         * @return this builder instance, for method chaining.
+         */
+        public Builder decreaseFactor(double decreaseFactor) {
+            this.decreaseFactor = decreaseFactor;
+            return this;
+        }
+
+        public LoadGovernor build() {
+            return new LoadGovernor(this, System::nanoTime);
+        }
+
+        LoadGovernor build(LongSupplier clock) {
+            return new LoadGovernor(this, clock);
+        }
+    }
+}
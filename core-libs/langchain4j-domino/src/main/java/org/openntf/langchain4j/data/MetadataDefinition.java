@@ -18,7 +18,10 @@ package org.openntf.langchain4j.data;
 import dev.langchain4j.internal.ValidationUtils;
 import java.time.temporal.Temporal;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Consumer;
 
 /**
@@ -91,6 +94,34 @@ public class MetadataDefinition {
         fields.values().forEach(consumer);
     }
 
+    /**
+     * Finds a field by name.
+     * @param fieldName the metadata field name
+     * @return the field, or an empty Optional if it's not defined
+     */
+    public Optional<MetaField> getField(String fieldName) {
+        return Optional.ofNullable(fields.get(fieldName));
+    }
+
+    /**
+     * Finds the document items referenced by the formulas in this definition.
+     * This is used to decide which items are needed from a document before opening it.
+     * @return item names, or an empty Optional if any formula accesses items indirectly (e.g. @GetField)
+     */
+    public Optional<Set<String>> getReferencedItemNames() {
+        Set<String> itemNames = new LinkedHashSet<>();
+
+        for (MetaField field : fields.values()) {
+            Optional<Set<String>> referenced = FormulaItemScanner.referencedItems(field.formula());
+            if (referenced.isEmpty()) {
+                return Optional.empty();
+            }
+            itemNames.addAll(referenced.get());
+        }
+
+        return Optional.of(itemNames);
+    }
+
     public static class Builder {
         private final MetadataDefinition instance;
 
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import com.hcl.domino.data.Document;
+import com.hcl.domino.mime.MimeReader;
+import com.hcl.domino.mime.MimeReader.ReadMimeDataType;
+import jakarta.mail.BodyPart;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import jakarta.mail.internet.MimeUtility;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jsoup.Jsoup;
+import org.openntf.utils.HtmlTextConverter;
+
+/**
+ * Extracts text from a MIME item by walking the MIME part tree.
+ * <p>
+ * The whole MIME item is still streamed from the note by {@link MimeReader}, but unlike
+ * {@code doc.get(itemName, MimeData.class, null)}, binary parts are never decoded. Only the structure of multiparts
+ * and the selected text parts are decoded: the first inline text/plain part wins, the first inline text/html part is
+ * used if there is no plain text or it is blank. Attachments, inline images and nested messages are skipped.
+ */
+final class MimeTextExtractor {
+
+    private static final Logger log = Logger.getLogger(MimeTextExtractor.class.getName());
+
+    // Deeply nested structures are almost certainly broken or malicious
+    private static final int MAX_DEPTH = 16;
+
+    private MimeTextExtractor() {
+    }
+
+    /**
+     * Extracts text of the MIME item.
+     *
+     * @param doc      the Domino document
+     * @param itemName the MIME item name
+     * @param useJsoup true to convert HTML with Jsoup instead of the streaming converter
+     * @return the text, or an empty string if no suitable part is found
+     */
+    static String extractText(Document doc, String itemName, boolean useJsoup) {
+        MimeReader mimeReader = doc.getParentDatabase()
+                                   .getParentDominoClient()
+                                   .getMimeReader();
+
+        try {
+            MimeMessage message = mimeReader.readMIME(doc, itemName, EnumSet.of(ReadMimeDataType.MIMEHEADERS));
+
+            Selection selection = new Selection();
+            select(message, selection, 0);
+
+            String text = selection.plain == null ? "" : readText(selection.plain);
+            if (text.isBlank() && selection.html != null) {
+                return readHtml(selection.html, useJsoup);
+            }
+            return text;
+        } catch (MessagingException | IOException e) {
+            log.log(Level.WARNING, "Unable to read MIME item " + itemName + ": " + e.getMessage(), e);
+        }
+
+        return "";
+    }
+
+    /**
+     * Walks the part tree depth-first until a text/plain and a text/html part are found.
+     *
+     * @return true if the walk can stop
+     */
+    private static boolean select(Part part, Selection selection, int depth) throws MessagingException, IOException {
+        if (depth > MAX_DEPTH || isAttachment(part)) {
+            return false;
+        }
+
+        if (part.isMimeType("multipart/*")) {
+            // Constructing the multipart ourselves avoids the content handler lookup, which is unreliable in OSGi.
+            // Body parts are parsed on demand and their content is not decoded at this point.
+            MimeMultipart multipart = new MimeMultipart(part.getDataHandler().getDataSource());
+
+            for (int i = 0; i < multipart.getCount(); i++) {
+                BodyPart bodyPart = multipart.getBodyPart(i);
+                if (select(bodyPart, selection, depth + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (part.isMimeType("text/plain") && selection.plain == null) {
+            selection.plain = part;
+        } else if (part.isMimeType("text/html") && selection.html == null) {
+            selection.html = part;
+        }
+
+        // Anything else (images, applications, message/rfc822...) is never decoded
+        return selection.plain != null && selection.html != null;
+    }
+
+    private static boolean isAttachment(Part part) throws MessagingException {
+        String disposition = part.getDisposition();
+        return disposition != null && Part.ATTACHMENT.equalsIgnoreCase(disposition);
+    }
+
+    private static String readText(Part part) throws MessagingException, IOException {
+        try (InputStream in = part.getInputStream()) {
+            return new String(in.readAllBytes(), charsetOf(part));
+        }
+    }
+
+    private static String readHtml(Part part, boolean useJsoup) throws MessagingException, IOException {
+        if (useJsoup) {
+            return Jsoup.parseBodyFragment(readText(part))
+                        .text();
+        }
+
+        StringBuilder text = new StringBuilder();
+        try (Reader reader = new InputStreamReader(part.getInputStream(), charsetOf(part))) {
+            HtmlTextConverter.toText(reader, text);
+        }
+        return text.toString();
+    }
+
+    private static Charset charsetOf(Part part) {
+        try {
+            String charset = new ContentType(part.getContentType()).getParameter("charset");
+            if (charset != null) {
+                return Charset.forName(MimeUtility.javaCharset(charset.toLowerCase(Locale.ENGLISH)));
+            }
+        } catch (Exception e) {
+            // Malformed content type or unknown charset, fall back to default
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    private static class Selection {
+        private Part plain;
+        private Part html;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.Database.OpenDocumentMode;
+import com.hcl.domino.data.Document;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opens notes with as little data as the loader needs.
+ * <p>
+ * The Domino API can't open a note with an arbitrary subset of items, but it can open the summary buffer only, which
+ * leaves out rich text, MIME and other large non-summary items. This fetcher computes the items a load needs and
+ * opens each note summary-only first. If any needed item is not in the summary, the note is reopened in full and the
+ * item is remembered, so later notes skip the summary attempt.
+ * <p>
+ * A summary-only note doesn't tell an item stored outside the summary from a missing item. Items seen in the summary of
+ * earlier notes are taken as missing without reopening the note. Items missing from a full note are remembered too:
+ * later notes are opened in full directly, until a note has the item and the summary attempt can find out where it is
+ * stored. So notes lacking an optional item are opened once, not twice.
+ * <p>
+ * If the needed items can't be derived (e.g. a metadata formula uses @GetField), notes are always opened in full.
+ */
+final class PartialNoteFetcher {
+
+    private static final Logger log = Logger.getLogger(PartialNoteFetcher.class.getName());
+
+    static final String ATTACHMENT_ITEM = "$FILE";
+
+    // null means we don't know which items are needed
+    private final Set<String> requiredItems;
+
+    // Items (lowercase) we have seen outside the summary buffer
+    private final Set<String> nonSummaryItems = ConcurrentHashMap.newKeySet();
+
+    // Items (lowercase) we have seen in the summary buffer
+    private final Set<String> summaryItems = ConcurrentHashMap.newKeySet();
+
+    // Items (lowercase) not seen yet and missing from the last full note
+    private final Set<String> absentItems = ConcurrentHashMap.newKeySet();
+
+    private PartialNoteFetcher(Set<String> requiredItems) {
+        this.requiredItems = requiredItems;
+    }
+
+    /**
+     * Creates a fetcher for the given loader configuration.
+     *
+     * @param fieldNames          field names to be extracted
+     * @param metadataDefinitions metadata definitions which may be evaluated
+     * @param loadAttachments     true if attachments will be extracted
+     * @return a new fetcher
+     */
+    static PartialNoteFetcher create(Collection<String> fieldNames, Collection<MetadataDefinition> metadataDefinitions,
+                                     boolean loadAttachments) {
+        Set<String> items = new LinkedHashSet<>(fieldNames);
+
+        for (MetadataDefinition metadataDefinition : metadataDefinitions) {
+            Optional<Set<String>> metadataItems = metadataDefinition.getReferencedItemNames();
+
+            if (metadataItems.isEmpty()) {
+                log.log(Level.FINE, "Metadata formulas access items indirectly, notes will be opened in full");
+                return full();
+            }
+            items.addAll(metadataItems.get());
+        }
+
+        if (loadAttachments) {
+            items.add(ATTACHMENT_ITEM);
+        }
+
+        return new PartialNoteFetcher(items);
+    }
+
+    /**
+     * Creates a fetcher that always opens full notes.
+     *
+     * @return a new fetcher
+     */
+    static PartialNoteFetcher full() {
+        return new PartialNoteFetcher(null);
+    }
+
+    /**
+     * @return items needed from each note, empty if unknown
+     */
+    Optional<Set<String>> getRequiredItems() {
+        return Optional.ofNullable(requiredItems);
+    }
+
+    Optional<Document> byNoteId(Database database, int noteId) {
+        return fetch(modes -> modes.isEmpty() ? database.getDocumentById(noteId) : database.getDocumentById(noteId, modes));
+    }
+
+    Optional<Document> byUnid(Database database, String unid) {
+        return fetch(modes -> modes.isEmpty() ? database.getDocumentByUNID(unid) : database.getDocumentByUNID(unid, modes));
+    }
+
+    private Optional<Document> fetch(Function<Set<OpenDocumentMode>, Optional<Document>> opener) {
+        Set<OpenDocumentMode> fullModes = EnumSet.noneOf(OpenDocumentMode.class);
+
+        if (requiredItems == null || requiresFullNote()) {
+            return opener.apply(fullModes);
+        }
+
+        if (!absentItems.isEmpty()) {
+            // A summary attempt would be reopened anyway, unless the note has the item
+            Optional<Document> full = opener.apply(fullModes);
+            full.ifPresent(doc -> absentItems.removeIf(doc::hasItem));
+            return full;
+        }
+
+        Optional<Document> summary = opener.apply(EnumSet.of(OpenDocumentMode.SUMMARY_ONLY));
+        if (summary.isEmpty()) {
+            return summary;
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String item : requiredItems) {
+            String key = item.toLowerCase(Locale.ENGLISH);
+            if (summary.get().hasItem(item)) {
+                summaryItems.add(key);
+            } else if (!summaryItems.contains(key)) {
+                missing.add(item);
+            }
+        }
+        if (missing.isEmpty()) {
+            return summary;
+        }
+
+        // Some items are not in the summary buffer, or the note doesn't have them at all.
+        Optional<Document> full = opener.apply(fullModes);
+        full.ifPresent(doc -> missing.forEach(item -> {
+            String key = item.toLowerCase(Locale.ENGLISH);
+            if (doc.hasItem(item)) {
+                nonSummaryItems.add(key);
+            } else {
+                absentItems.add(key);
+            }
+        }));
+        return full;
+    }
+
+    private boolean requiresFullNote() {
+        if (nonSummaryItems.isEmpty()) {
+            return false;
+        }
+
+        return requiredItems.stream()
+                            .anyMatch(item -> nonSummaryItems.contains(item.toLowerCase(Locale.ENGLISH)));
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import java.util.Optional;
+
+/**
+ * Outcome of loading a single database within a {@link DominoDatabaseOrchestrator} run.
+ *
+ * @param target        the database
+ * @param documentCount the number of documents loaded
+ * @param elapsedMillis time spent on the database
+ * @param error         the error stopping the database from loading, if any
+ */
+public record DatabaseLoadResult(DatabaseTarget target, long documentCount, long elapsedMillis, Throwable error) {
+
+    /**
+     * @return true if the database was loaded without errors
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    public Optional<Throwable> getError() {
+        return Optional.ofNullable(error);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import com.hcl.domino.data.Database;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import org.openntf.utils.TypeUtils;
+
+/**
+ * A database to be loaded, identified by its server and path.
+ *
+ * @param server       the server name, empty or null for local databases
+ * @param databasePath the database path relative to the data directory
+ */
+public record DatabaseTarget(String server, String databasePath) {
+
+    public DatabaseTarget {
+        if (TypeUtils.isEmpty(databasePath)) {
+            throw new IllegalArgumentException("Database path cannot be null or empty");
+        }
+        server = server == null ? "" : server;
+    }
+
+    public DatabaseTarget(String databasePath) {
+        this("", databasePath);
+    }
+
+    /**
+     * @return true if the database is accessed locally
+     */
+    public boolean isLocal() {
+        return server.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return isLocal() ? databasePath : server + "!!" + databasePath;
+    }
+
+    /**
+     * Returns a key for state kept about a database across runs, like checkpoints and modification times.
+     * Note IDs and modification times are per replica, so the key combines the replica ID with the server and path:
+     * replicas of a database on different servers, or a database replaced by a new replica, don't share state.
+     *
+     * @param database an open database
+     * @return a key safe to use in file names and property keys
+     */
+    static String stateKey(Database database) {
+        // Domino server names and paths are case-insensitive
+        String location = (TypeUtils.isEmpty(database.getServer()) ? "" : database.getServer().toLowerCase(Locale.ENGLISH))
+            + "!!" + database.getRelativeFilePath().replace('\\', '/').toLowerCase(Locale.ENGLISH);
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(location.getBytes(StandardCharsets.UTF_8));
+            return database.getReplicaID() + "-" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
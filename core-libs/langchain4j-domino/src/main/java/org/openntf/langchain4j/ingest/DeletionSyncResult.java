@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+/**
+ * Outcome of a {@link DeletionSynchronizer} run on a single database.
+ *
+ * @param deletionStubs     the number of deletion stubs found since the last run
+ * @param removedDocuments  the number of deleted documents which had embeddings
+ * @param removedEmbeddings the number of embeddings removed from the store
+ */
+public record DeletionSyncResult(int deletionStubs, int removedDocuments, int removedEmbeddings) {
+}
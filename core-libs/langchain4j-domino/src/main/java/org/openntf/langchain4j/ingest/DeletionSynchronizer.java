@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import com.hcl.domino.commons.json.JsonUtil;
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.Database.Action;
+import com.hcl.domino.data.Database.FormulaQueryCallback;
+import com.hcl.domino.data.Database.SearchMatch;
+import com.hcl.domino.data.DocumentClass;
+import com.hcl.domino.data.DominoDateTime;
+import com.hcl.domino.data.SearchFlag;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openntf.langchain4j.store.Bm25Index;
+
+/**
+ * Removes the embeddings of deleted Domino documents from an {@link EmbeddingStore}.
+ * <p>
+ * Each run reads the deletion stubs created in the database since the previous run, looks up the embedding IDs of
+ * the deleted documents in an {@link EmbeddingIdIndex} and removes them from the store in batches. The time of the
+ * last run is kept per replica ID, server and path in a local state file, so replicas on different servers are
+ * tracked separately. Documents are removed from the index once their embeddings are removed, so the index only holds
+ * live documents.
+ * <p>
+ * Deletion stubs are purged by Domino after the database's purge interval, so runs should be more frequent than that.
+ */
+public class DeletionSynchronizer {
+
+    private static final Logger log = Logger.getLogger(DeletionSynchronizer.class.getName());
+
+    private static final OffsetDateTime BEGINNING = OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private final EmbeddingStore<?> embeddingStore;
+    private final EmbeddingIdIndex embeddingIdIndex;
+    private final Bm25Index lexicalIndex;
+    private final Path stateFile;
+    private final int batchSize;
+
+    private DeletionSynchronizer(Builder builder) {
+        this.embeddingStore = ensureNotNull(builder.embeddingStore, "Embedding Store");
+        this.embeddingIdIndex = ensureNotNull(builder.embeddingIdIndex, "Embedding ID Index");
+        this.lexicalIndex = builder.lexicalIndex;
+        this.stateFile = ensureNotNull(builder.stateFile, "State File");
+        this.batchSize = builder.batchSize;
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Propagates deletions in the database since the last run.
+     *
+     * @param database the database
+     * @return counts of the run
+     */
+    public synchronized DeletionSyncResult synchronize(Database database) {
+        // Deletion stubs are per replica, replicas on other servers have their own times
+        String stateKey = DatabaseTarget.stateKey(database);
+        Properties state = readState();
+
+        String last = state.getProperty(stateKey);
+        OffsetDateTime since = last == null ? BEGINNING : OffsetDateTime.parse(last);
+
+        Set<String> deletedUnids = new LinkedHashSet<>();
+        DominoDateTime until = database.queryFormula("@All", since, EnumSet.of(SearchFlag.NOTIFYDELETIONS), EnumSet.of(DocumentClass.DATA),
+                                                     new FormulaQueryCallback() {
+                                                         @Override
+                                                         public Action deletionStubFound(SearchMatch searchMatch) {
+                                                             deletedUnids.add(searchMatch.getUNID());
+                                                             return Action.Continue;
+                                                         }
+                                                     });
+
+        int removedDocuments = 0;
+        int removedEmbeddings = 0;
+
+        List<String> unids = new ArrayList<>(deletedUnids);
+        for (int start = 0; start < unids.size(); start += batchSize) {
+            List<String> batch = unids.subList(start, Math.min(start + batchSize, unids.size()));
+
+            List<String> embeddingIds = new ArrayList<>();
+            for (String unid : batch) {
+                List<String> ids = embeddingIdIndex.get(unid);
+                if (!ids.isEmpty()) {
+                    embeddingIds.addAll(ids);
+                    removedDocuments++;
+                }
+            }
+
+            if (!embeddingIds.isEmpty()) {
+                // Remove from the store first, the index must not forget embeddings still in the store
+                embeddingStore.removeAll(embeddingIds);
+                if (lexicalIndex != null) {
+                    lexicalIndex.removeAll(embeddingIds);
+                }
+                removedEmbeddings += embeddingIds.size();
+            }
+            embeddingIdIndex.removeAll(batch);
+        }
+
+        if (lexicalIndex != null && removedEmbeddings > 0) {
+            lexicalIndex.commit();
+        }
+
+        state.setProperty(stateKey, JsonUtil.toIsoString(until));
+        writeState(state);
+
+        log.log(Level.FINE, "Found " + deletedUnids.size() + " deletion stubs in " + database.getRelativeFilePath()
+            + ", removed " + removedEmbeddings + " embeddings");
+
+        return new DeletionSyncResult(deletedUnids.size(), removedDocuments, removedEmbeddings);
+    }
+
+    private Properties readState() {
+        Properties state = new Properties();
+
+        if (Files.exists(stateFile)) {
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                state.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read synchronization state " + stateFile, e);
+            }
+        }
+
+        return state;
+    }
+
+    private void writeState(Properties state) {
+        Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                state.store(writer, "Last deletion synchronization per database replica");
+            }
+            Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write synchronization state " + stateFile, e);
+        }
+    }
+
+    public static class Builder {
+
+        private EmbeddingStore<?> embeddingStore;
+        private EmbeddingIdIndex embeddingIdIndex;
+        private Bm25Index lexicalIndex;
+        private Path stateFile;
+        private int batchSize = 500;
+
+        private Builder() {
+        }
+
+        public Builder embeddingStore(EmbeddingStore<?> embeddingStore) {
+            this.embeddingStore = embeddingStore;
+            return this;
+        }
+
+        /**
+         * Sets the index populated during ingestion, e.g. by {@link DominoIngestionPipeline}.
+         * @param embeddingIdIndex the index
+         * @return this builder instance, for method chaining.
+         */
+        public Builder embeddingIdIndex(EmbeddingIdIndex embeddingIdIndex) {
+            this.embeddingIdIndex = embeddingIdIndex;
+            return this;
+        }
+
+        /**
+         * Sets a lexical index filled by the same ingestion, to remove deleted documents from as well.
+         * @param lexicalIndex the index
+         * @return this builder instance, for method chaining.
+         */
+        public Builder lexicalIndex(Bm25Index lexicalIndex) {
+            this.lexicalIndex = lexicalIndex;
+            return this;
+        }
+
+        /**
+         * Sets the file keeping the time of the last run for each database.
+         * @param stateFile the state file
+         * @return this builder instance, for method chaining.
+         */
+        public Builder stateFile(Path stateFile) {
+            this.stateFile = stateFile;
+            return this;
+        }
+
+        /**
+         * Sets the number of deleted documents handled in one removeAll call. Defaults to 500.
+         * @param batchSize the batch size
+         * @return this builder instance, for method chaining.
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public DeletionSynchronizer build() {
+            return new DeletionSynchronizer(this);
+        }
+    }
+}
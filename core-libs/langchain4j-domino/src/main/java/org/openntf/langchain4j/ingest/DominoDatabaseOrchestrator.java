@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import com.hcl.domino.DominoClient;
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.IDTable;
+import com.hcl.domino.dbdirectory.DirEntry;
+import com.hcl.domino.dbdirectory.FileType;
+import com.hcl.domino.dql.DQL;
+import dev.langchain4j.data.document.Document;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openntf.langchain4j.data.DominoDocumentLoader;
+import org.openntf.langchain4j.data.LoadCheckpoint;
+import org.openntf.langchain4j.data.LoadGovernor;
+import org.openntf.utils.TypeUtils;
+
+/**
+ * Loads documents from many Domino databases concurrently.
+ * <p>
+ * Each database is loaded by a fresh {@link DominoDocumentLoader} created from a template, on a worker thread with its
+ * own {@link DominoClient}. Databases run in parallel up to a global limit and a per-server limit, so a single server is
+ * never hit by more than a configured number of loaders. Documents from all databases are merged into a single
+ * consumer and tagged with the source database in their metadata.
+ * <p>
+ * Usage:
+ * <pre>
+ * DominoDatabaseOrchestrator.builder()
+ *     .clientFactory(() -&gt; DominoClientBuilder.newDominoClient().asIDUser().build())
+ *     .databasePattern("Server/ACME", "mail/*.nsf")
+ *     .loaderTemplate(() -&gt; DominoDocumentLoader.create(MetadataDefinition.DEFAULT).fieldName("Body"))
+ *     .maxConcurrency(8)
+ *     .maxConcurrencyPerServer(2)
+ *     .build()
+ *     .load(document -&gt; ...);
+ * </pre>
+ */
+public class DominoDatabaseOrchestrator {
+
+    private static final Logger log = Logger.getLogger(DominoDatabaseOrchestrator.class.getName());
+
+    /**
+     * Metadata key for the server of the source database. Empty for local databases.
+     */
+    public static final String METADATA_SERVER = "server";
+
+    /**
+     * Metadata key for the path of the source database.
+     */
+    public static final String METADATA_DATABASE_PATH = "databasepath";
+
+    /**
+     * Metadata key for the replica ID of the source database.
+     */
+    public static final String METADATA_REPLICA_ID = "replicaid";
+
+    private final Supplier<DominoClient> clientFactory;
+    private final Set<DatabaseTarget> databases;
+    private final Map<String, List<String>> databasePatterns;
+    private final Supplier<DominoDocumentLoader> loaderTemplate;
+    private final Function<Database, Collection<Integer>> noteSelector;
+    private final int maxConcurrency;
+    private final int maxConcurrencyPerServer;
+    private final ExecutorService executor;
+    private final LoadGovernor governor;
+    private final Path checkpointDirectory;
+
+    private DominoDatabaseOrchestrator(Builder builder) {
+        this.clientFactory = ensureNotNull(builder.clientFactory, "Client Factory");
+        this.loaderTemplate = ensureNotNull(builder.loaderTemplate, "Loader Template");
+        this.noteSelector = builder.noteSelector == null ? DominoDatabaseOrchestrator::allDocuments : builder.noteSelector;
+        this.databases = new LinkedHashSet<>(builder.databases);
+        this.databasePatterns = new HashMap<>(builder.databasePatterns);
+        this.maxConcurrency = builder.maxConcurrency;
+        this.maxConcurrencyPerServer = builder.maxConcurrencyPerServer;
+        this.executor = builder.executor;
+        this.governor = builder.governor;
+        this.checkpointDirectory = builder.checkpointDirectory;
+
+        if (databases.isEmpty() && databasePatterns.isEmpty()) {
+            throw new IllegalArgumentException("At least one database or database pattern must be provided!");
+        }
+        if (maxConcurrency < 1 || maxConcurrencyPerServer < 1) {
+            throw new IllegalArgumentException("Concurrency limits must be greater than zero!");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Loads all databases and passes every document to the consumer.
+     * The consumer is never called concurrently, so it doesn't need to be thread-safe.
+     * A failure in one database is logged and reported in the results, other databases continue.
+     *
+     * @param consumer the consumer to receive documents from all databases
+     * @return per-database results, in the order databases were resolved
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<DatabaseLoadResult> load(Consumer<Document> consumer) throws InterruptedException {
+        ensureNotNull(consumer, "Consumer");
+
+        boolean ownExecutor = executor == null;
+        ExecutorService workers = ownExecutor
+            ? Executors.newFixedThreadPool(maxConcurrency, new DominoThreadFactory("langchain4j-domino-loader"))
+            : executor;
+
+        try {
+            List<DatabaseTarget> targets = resolveTargets(workers);
+            return runAll(targets, workers, consumer);
+        } finally {
+            if (ownExecutor) {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Loads all databases into a list. Only suitable for small corpora.
+     *
+     * @return all documents loaded
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<Document> loadDocuments() throws InterruptedException {
+        List<Document> documents = new ArrayList<>();
+        load(documents::add);
+        return documents;
+    }
+
+    private List<DatabaseTarget> resolveTargets(ExecutorService workers) throws InterruptedException {
+        Set<DatabaseTarget> targets = new LinkedHashSet<>(databases);
+
+        if (!databasePatterns.isEmpty()) {
+            // Directory listing needs a Domino thread too
+            Future<List<DatabaseTarget>> listing = workers.submit(() -> listDatabases(databasePatterns));
+            try {
+                targets.addAll(listing.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unable to list databases", e.getCause());
+            }
+        }
+
+        return new ArrayList<>(targets);
+    }
+
+    private List<DatabaseTarget> listDatabases(Map<String, List<String>> patterns) {
+        List<DatabaseTarget> targets = new ArrayList<>();
+
+        try (DominoClient client = clientFactory.get()) {
+            patterns.forEach((server, globs) -> {
+                List<PathMatcher> matchers = globs.stream()
+                                                  .map(glob -> FileSystems.getDefault()
+                                                                          .getPathMatcher("glob:" + normalizePath(glob)))
+                                                  .toList();
+
+                client.openDbDirectory()
+                      .query()
+                      .withServer(server)
+                      .withDirectory("")
+                      .withFileTypes(EnumSet.of(FileType.DBANY, FileType.RECURSE))
+                      .stream()
+                      .map(DominoDatabaseOrchestrator::pathOf)
+                      .filter(TypeUtils::isNotEmpty)
+                      .filter(path -> matchers.stream().anyMatch(m -> m.matches(Paths.get(normalizePath(path)))))
+                      .map(path -> new DatabaseTarget(server, path))
+                      .forEach(targets::add);
+            });
+        }
+
+        log.log(Level.INFO, "Resolved " + targets.size() + " databases from patterns");
+        return targets;
+    }
+
+    private static String pathOf(DirEntry entry) {
+        return entry.get("$Path", String.class, "");
+    }
+
+    private static String normalizePath(String path) {
+        return path.replace('\\', '/').toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Submits databases to workers, respecting the global and per-server limits.
+     */
+    private List<DatabaseLoadResult> runAll(List<DatabaseTarget> targets, ExecutorService workers, Consumer<Document> consumer)
+        throws InterruptedException {
+        Object sinkLock = new Object();
+        Consumer<Document> sink = document -> {
+            synchronized (sinkLock) {
+                consumer.accept(document);
+            }
+        };
+
+        Deque<DatabaseTarget> pending = new ArrayDeque<>(targets);
+        Map<String, Integer> runningPerServer = new HashMap<>();
+        List<Future<DatabaseLoadResult>> futures = new ArrayList<>();
+        Object lock = new Object();
+        int[] running = {0};
+
+        synchronized (lock) {
+            while (!pending.isEmpty()) {
+                Iterator<DatabaseTarget> it = pending.iterator();
+
+                while (it.hasNext() && running[0] < maxConcurrency) {
+                    DatabaseTarget target = it.next();
+                    String serverKey = serverKey(target);
+
+                    if (runningPerServer.getOrDefault(serverKey, 0) >= maxConcurrencyPerServer) {
+                        continue;
+                    }
+
+                    it.remove();
+                    running[0]++;
+                    runningPerServer.merge(serverKey, 1, Integer::sum);
+
+                    futures.add(workers.submit(() -> {
+                        try {
+                            return loadDatabase(target, sink);
+                        } finally {
+                            synchronized (lock) {
+                                running[0]--;
+                                runningPerServer.merge(serverKey, -1, Integer::sum);
+                                lock.notifyAll();
+                            }
+                        }
+                    }));
+                }
+
+                if (!pending.isEmpty()) {
+                    lock.wait();
+                }
+            }
+        }
+
+        List<DatabaseLoadResult> results = new ArrayList<>();
+        for (Future<DatabaseLoadResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                // loadDatabase doesn't throw, this would be a bug
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        return results;
+    }
+
+    private static String serverKey(DatabaseTarget target) {
+        // Domino server names are case-insensitive
+        return target.server().toLowerCase(Locale.ENGLISH);
+    }
+
+    private DatabaseLoadResult loadDatabase(DatabaseTarget target, Consumer<Document> sink) {
+        long start = System.currentTimeMillis();
+        AtomicLong count = new AtomicLong();
+
+        try (DominoClient client = clientFactory.get()) {
+            Database database = target.isLocal()
+                ? client.openDatabase(target.databasePath())
+                : client.openDatabase(target.server(), target.databasePath());
+
+            try {
+                Collection<Integer> noteIds = noteSelector.apply(database);
+                if (TypeUtils.isNotEmpty(noteIds)) {
+                    String replicaId = database.getReplicaID();
+
+                    DominoDocumentLoader loader = loaderTemplate.get();
+                    if (governor != null) {
+                        loader.governor(governor);
+                    }
+
+                    try (LoadCheckpoint checkpoint = openCheckpoint(database)) {
+                        loader.checkpoint(checkpoint)
+                              .database(database)
+                              .noteIds(noteIds)
+                              .loadDocuments(document -> {
+                                  document.metadata()
+                                          .put(METADATA_SERVER, target.server())
+                                          .put(METADATA_DATABASE_PATH, target.databasePath())
+                                          .put(METADATA_REPLICA_ID, replicaId);
+                                  sink.accept(document);
+                                  count.incrementAndGet();
+                              });
+                    }
+                }
+            } finally {
+                database.close();
+            }
+
+            long elapsed = System.currentTimeMillis() - start;
+            log.log(Level.FINE, "Loaded " + count.get() + " documents from " + target + " in " + elapsed + "ms");
+            return new DatabaseLoadResult(target, count.get(), elapsed, null);
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Unable to load database " + target + ": " + e.getMessage(), e);
+            return new DatabaseLoadResult(target, count.get(), System.currentTimeMillis() - start, e);
+        }
+    }
+
+    private LoadCheckpoint openCheckpoint(Database database) throws IOException {
+        if (checkpointDirectory == null) {
+            return null;
+        }
+
+        Files.createDirectories(checkpointDirectory);
+        return LoadCheckpoint.open(checkpointDirectory.resolve(DatabaseTarget.stateKey(database) + ".checkpoint"));
+    }
+
+    private static Collection<Integer> allDocuments(Database database) {
+        return database.queryDQL(DQL.all())
+                       .getNoteIds()
+                       .map(idTable -> (Collection<Integer>) new ArrayList<Integer>(idTable))
+                       .orElse(List.of());
+    }
+
+    public static class Builder {
+
+        private Supplier<DominoClient> clientFactory;
+        private final Set<DatabaseTarget> databases = new LinkedHashSet<>();
+        private final Map<String, List<String>> databasePatterns = new HashMap<>();
+        private Supplier<DominoDocumentLoader> loaderTemplate;
+        private Function<Database, Collection<Integer>> noteSelector;
+        private int maxConcurrency = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int maxConcurrencyPerServer = 2;
+        private ExecutorService executor;
+        private LoadGovernor governor;
+        private Path checkpointDirectory;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the factory to create a DominoClient for each database. Clients are created and closed on worker threads.
+         * @param clientFactory the client factory
+         * @return this builder instance, for method chaining.
+         */
+        public Builder clientFactory(Supplier<DominoClient> clientFactory) {
+            this.clientFactory = clientFactory;
+            return this;
+        }
+
+        /**
+         * Adds a database to be loaded.
+         * @param server the server name, null or empty for local
+         * @param databasePath the database path
+         * @return this builder instance, for method chaining.
+         */
+        public Builder database(String server, String databasePath) {
+            this.databases.add(new DatabaseTarget(server, databasePath));
+            return this;
+        }
+
+        /**
+         * Adds multiple databases to be loaded.
+         * @param databases the databases
+         * @return this builder instance, for method chaining.
+         */
+        public Builder databases(Collection<DatabaseTarget> databases) {
+            this.databases.addAll(databases);
+            return this;
+        }
+
+        /**
+         * Adds all databases on a server matching a glob pattern, e.g. "mail/*.nsf" or "archive/**".
+         * Matching is case-insensitive.
+         * @param server the server name, null or empty for local
+         * @param pattern glob pattern for database paths
+         * @return this builder instance, for method chaining.
+         */
+        public Builder databasePattern(String server, String pattern) {
+            this.databasePatterns.computeIfAbsent(server == null ? "" : server, k -> new ArrayList<>())
+                                 .add(pattern);
+            return this;
+        }
+
+        /**
+         * Sets the template for per-database loaders. The supplier is called once per database and should return a
+         * new loader configured with fields, metadata and parser. The database and note IDs are set by the orchestrator.
+         * @param loaderTemplate the loader template
+         * @return this builder instance, for method chaining.
+         */
+        public Builder loaderTemplate(Supplier<DominoDocumentLoader> loaderTemplate) {
+            this.loaderTemplate = loaderTemplate;
+            return this;
+        }
+
+        /**
+         * Sets the function selecting note IDs to be loaded from each database. By default, all documents are loaded.
+         * @param noteSelector the note selector
+         * @return this builder instance, for method chaining.
+         */
+        public Builder noteSelector(Function<Database, Collection<Integer>> noteSelector) {
+            this.noteSelector = noteSelector;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of databases loaded at the same time.
+         * @param maxConcurrency the limit
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of databases loaded at the same time from a single server.
+         * @param maxConcurrencyPerServer the limit
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxConcurrencyPerServer(int maxConcurrencyPerServer) {
+            this.maxConcurrencyPerServer = maxConcurrencyPerServer;
+            return this;
+        }
+
+        /**
+         * Sets an executor to run loaders on. Its threads must be initialised for the Domino API
+         * (e.g. using {@link DominoThreadFactory}) and it should have at least maxConcurrency threads.
+         * The executor is not shut down by the orchestrator. By default, a new pool is created for each run.
+         * @param executor the executor
+         * @return this builder instance, for method chaining.
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets a governor shared by all loaders, throttling note fetches across databases.
+         * Use one orchestrator per server (or cluster) if servers should be governed separately.
+         * @param governor the governor
+         * @return this builder instance, for method chaining.
+         */
+        public Builder governor(LoadGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        /**
+         * Sets a directory for checkpoint files to make runs resumable. Each database gets its own file named after
+         * its replica ID, server and path, so replicas on different servers keep separate checkpoints. Notes completed
+         * in an earlier run are skipped, failed notes are not retried unless the loader template enables
+         * {@link DominoDocumentLoader#retryFailed(boolean)}.
+         * @param checkpointDirectory the directory, created if missing
+         * @return this builder instance, for method chaining.
+         */
+        public Builder checkpointDirectory(Path checkpointDirectory) {
+            this.checkpointDirectory = checkpointDirectory;
+            return this;
+        }
+
+        public DominoDatabaseOrchestrator build() {
+            return new DominoDatabaseOrchestrator(this);
+        }
+    }
+}
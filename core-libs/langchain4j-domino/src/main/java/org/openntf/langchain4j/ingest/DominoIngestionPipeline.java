@@ -0,0 +1,816 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openntf.langchain4j.data.DominoDocumentLoader;
+import org.openntf.langchain4j.store.Bm25Index;
+
+/**
+ * Loads Domino documents, splits them, embeds the segments and stores them, as separate overlapping stages.
+ * <p>
+ * Stages are connected with bounded queues:
+ * <ol>
+ *     <li>the source (e.g. a {@link DominoDocumentLoader}) runs on the calling thread, so Domino objects are only
+ *     used on the thread that created them,</li>
+ *     <li>a splitter thread splits documents and packs segments into batches with a {@link TokenBudgetBatcher},</li>
+ *     <li>up to {@code maxConcurrentRequests} threads call the embedding model,</li>
+ *     <li>a single writer thread adds embeddings to the store, and the segments to a {@link Bm25Index} if set.</li>
+ * </ol>
+ * Loading never waits for the embedding model unless the queues are full. Embedding model calls run in parallel.
+ * If any stage fails, the run is cancelled and the failure is thrown from {@link #run()}. A segment the model rejects
+ * for its size, even on its own, is split again and gets the average embedding of its parts. If it can't be split any
+ * further, it's skipped and reported to the {@link Builder#failureListener(BiConsumer) failure listener} instead.
+ * <p>
+ * Each segment has its own copy of the document's {@link Metadata} by default. For large runs, the segments of a document
+ * can share a single instance, and repeated values (form names, authors etc.) can be shared across documents, see
+ * {@link Builder#shareMetadata(boolean)}.
+ * <pre>
+ * IngestionResult result = DominoIngestionPipeline.builder()
+ *     .loader(DominoDocumentLoader.create(MetadataDefinition.DEFAULT).fieldName("Body").database(db).noteIds(ids))
+ *     .documentSplitter(DocumentSplitters.recursive(1000, 100))
+ *     .embeddingModel(embeddingModel)
+ *     .embeddingStore(embeddingStore)
+ *     .build()
+ *     .run();
+ * </pre>
+ */
+public class DominoIngestionPipeline {
+
+    private static final Logger log = Logger.getLogger(DominoIngestionPipeline.class.getName());
+
+    // Marks the end of a queue
+    private static final Object END = new Object();
+
+    // A batch is sent even if not full, when no segments arrive for this long
+    private static final long LINGER_MILLIS = 200;
+
+    private static final long POLL_MILLIS = 100;
+
+    // Metadata key holding the UNID, as in MetadataDefinition.DEFAULT
+    static final String UNID_METADATA = "unid";
+
+    // Metadata key holding the segment index, as set by LangChain4j splitters
+    static final String INDEX_METADATA = "index";
+
+    // Piece numbers of segments without a key in the embedding ID index
+    private static final int NO_NUMBER = -1;
+
+    // Fragments of the errors models report for requests over their token limit
+    private static final List<String> OVER_LIMIT_HINTS = List.of("token limit", "too many tokens", "maximum context",
+                                                                 "context length", "input length", "too long", "too large");
+    private static final List<String> THROTTLING_HINTS = List.of("rate limit", "quota");
+
+    // Distinct metadata values shared across the documents of a run
+    private static final int MAX_INTERNED_VALUES = 10000;
+
+    private final Consumer<Consumer<Document>> source;
+    private final DocumentSplitter documentSplitter;
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final ToIntFunction<String> tokenCountEstimator;
+    private final int maxBatchTokens;
+    private final double safetyFactor;
+    private final int maxBatchSize;
+    private final int maxConcurrentRequests;
+    private final int queueCapacity;
+    private final EmbeddingIdIndex embeddingIdIndex;
+    private final Bm25Index lexicalIndex;
+    private final boolean shareMetadata;
+    private final BiConsumer<TextSegment, RuntimeException> failureListener;
+
+    private DominoIngestionPipeline(Builder builder) {
+        this.source = ensureNotNull(builder.source, "Source");
+        this.embeddingModel = ensureNotNull(builder.embeddingModel, "Embedding Model");
+        this.embeddingStore = ensureNotNull(builder.embeddingStore, "Embedding Store");
+        this.documentSplitter = builder.documentSplitter;
+        this.tokenCountEstimator = builder.tokenCountEstimator;
+        this.safetyFactor = builder.safetyFactor;
+        this.maxBatchTokens = builder.maxBatchTokens;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxConcurrentRequests = builder.maxConcurrentRequests;
+        this.queueCapacity = builder.queueCapacity;
+        this.embeddingIdIndex = builder.embeddingIdIndex;
+        this.lexicalIndex = builder.lexicalIndex;
+        this.shareMetadata = builder.shareMetadata;
+        this.failureListener = builder.failureListener;
+
+        if (maxBatchTokens < 1 || maxBatchSize < 1 || maxConcurrentRequests < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Batch limits, concurrency and queue capacity must be positive");
+        }
+        if (safetyFactor <= 0 || safetyFactor > 1) {
+            throw new IllegalArgumentException("Safety factor must be between 0 and 1");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs the pipeline until the source is exhausted and all segments are stored.
+     *
+     * @return counts and timing of the run
+     * @throws CancellationException if the calling thread is interrupted
+     * @throws RuntimeException      the first failure in any stage
+     */
+    public IngestionResult run() {
+        Run run = new Run();
+        return run.execute();
+    }
+
+    /**
+     * Number of segments a document source was split into, to drop index entries of the previous version.
+     */
+    private record SourceTail(String unid, String source, int count) {
+    }
+
+    // Piece numbers travel beside the segments, so the segments of a document can share their metadata
+    private record Batch(List<TextSegment> segments, int[] numbers, List<SourceTail> tails) {
+    }
+
+    private record EmbeddedBatch(List<TextSegment> segments, int[] numbers, List<Embedding> embeddings, List<SourceTail> tails) {
+    }
+
+    /**
+     * State of a single run.
+     */
+    private class Run {
+
+        private final BlockingQueue<Object> documents = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<Object> batches = new ArrayBlockingQueue<>(Math.max(1, queueCapacity / maxBatchSize));
+        private final BlockingQueue<Object> embedded = new ArrayBlockingQueue<>(maxConcurrentRequests * 2);
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private final AtomicLong documentCount = new AtomicLong();
+        private final AtomicLong segmentCount = new AtomicLong();
+        private final AtomicLong batchCount = new AtomicLong();
+        private final AtomicLong staleCount = new AtomicLong();
+        private final AtomicLong failedCount = new AtomicLong();
+
+        private final MetadataInterner interner = shareMetadata ? new MetadataInterner(MAX_INTERNED_VALUES) : null;
+
+        // Numbers of the pieces waiting in the batcher, only used by the splitter thread
+        private final Map<TextSegment, Integer> pieceNumbers = new IdentityHashMap<>();
+
+        private final TokenBudgetBatcher batcher = new TokenBudgetBatcher(maxBatchTokens, maxBatchSize, safetyFactor,
+                                                                          tokenCountEstimator);
+
+        private IngestionResult execute() {
+            long start = System.currentTimeMillis();
+
+            AtomicInteger threadCounter = new AtomicInteger();
+            ExecutorService workers = Executors.newFixedThreadPool(maxConcurrentRequests + 2, runnable -> {
+                Thread thread = new Thread(runnable, "domino-ingestion-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            CountDownLatch done = new CountDownLatch(1);
+            AtomicInteger activeEmbedders = new AtomicInteger(maxConcurrentRequests);
+
+            try {
+                workers.execute(guarded(this::split));
+                for (int i = 0; i < maxConcurrentRequests; i++) {
+                    workers.execute(guarded(() -> {
+                        embed();
+                        if (activeEmbedders.decrementAndGet() == 0) {
+                            put(embedded, END);
+                        }
+                    }));
+                }
+                workers.execute(guarded(() -> {
+                    try {
+                        store();
+                    } finally {
+                        done.countDown();
+                    }
+                }));
+
+                try {
+                    source.accept(document -> {
+                        put(documents, document);
+                        documentCount.incrementAndGet();
+                    });
+                    put(documents, END);
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+
+                while (!done.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (failure.get() != null) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(new CancellationException("Ingestion interrupted"));
+            } finally {
+                workers.shutdownNow();
+            }
+
+            Throwable t = failure.get();
+            if (t instanceof RuntimeException e) {
+                throw e;
+            } else if (t instanceof Error e) {
+                throw e;
+            } else if (t != null) {
+                throw new IllegalStateException("Ingestion failed", t);
+            }
+
+            if (lexicalIndex != null) {
+                lexicalIndex.commit();
+            }
+
+            IngestionResult result = new IngestionResult(documentCount.get(), segmentCount.get(), batchCount.get(), staleCount.get(),
+                                                         failedCount.get(), System.currentTimeMillis() - start);
+            log.log(Level.FINE, "Ingestion completed: " + result);
+            return result;
+        }
+
+        private Runnable guarded(Runnable stage) {
+            return () -> {
+                try {
+                    stage.run();
+                } catch (CancellationException e) {
+                    // Another stage failed
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            };
+        }
+
+        private void fail(Throwable t) {
+            if (failure.compareAndSet(null, t)) {
+                log.log(Level.WARNING, "Ingestion failed: " + t.getMessage(), t);
+            }
+        }
+
+        /**
+         * Puts an item in a queue, giving up if the run has failed in the meantime.
+         */
+        private void put(BlockingQueue<Object> queue, Object item) {
+            checkFailure();
+            try {
+                while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    checkFailure();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Ingestion interrupted");
+            }
+        }
+
+        private Object take(BlockingQueue<Object> queue) {
+            checkFailure();
+            try {
+                Object item;
+                while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    checkFailure();
+                }
+                return item;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Ingestion interrupted");
+            }
+        }
+
+        private void checkFailure() {
+            if (failure.get() != null) {
+                throw new CancellationException("Ingestion cancelled");
+            }
+        }
+
+        private void split() {
+            long lastSegment = System.currentTimeMillis();
+            List<SourceTail> tails = new ArrayList<>();
+
+            while (true) {
+                Object item;
+                try {
+                    item = documents.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Ingestion interrupted");
+                }
+
+                checkFailure();
+
+                if (item == null) {
+                    // Don't keep a partial batch waiting on a slow source
+                    if (System.currentTimeMillis() - lastSegment >= LINGER_MILLIS) {
+                        batcher.flush().ifPresent(batch -> emit(batch, tails));
+                    }
+                    continue;
+                }
+
+                if (item == END) {
+                    break;
+                }
+
+                Document document = (Document) item;
+                if (interner != null) {
+                    // Values repeated across documents, like form names, are kept once
+                    interner.intern(document.metadata());
+                }
+
+                List<TextSegment> segments = documentSplitter == null
+                    ? List.of(document.toTextSegment())
+                    : documentSplitter.split(document);
+
+                List<TextSegment> pieces = new ArrayList<>();
+                segments.forEach(segment -> pieces.addAll(batcher.split(segment)));
+
+                if (shareMetadata) {
+                    shareMetadata(document, pieces);
+                }
+
+                String unid = document.metadata().getString(UNID_METADATA);
+                if (embeddingIdIndex != null && unid != null) {
+                    // Number pieces after splitting, so each has its own key in the index
+                    for (int i = 0; i < pieces.size(); i++) {
+                        pieceNumbers.put(pieces.get(i), i);
+                        if (!shareMetadata) {
+                            pieces.get(i).metadata().put(INDEX_METADATA, MetadataInterner.indexString(i));
+                        }
+                    }
+                    tails.add(new SourceTail(unid, sourceOf(document.metadata()), pieces.size()));
+                }
+
+                // Pieces are already numbered, they must not be split again
+                for (TextSegment piece : pieces) {
+                    batcher.addPiece(piece).forEach(batch -> emit(batch, tails));
+                }
+                lastSegment = System.currentTimeMillis();
+            }
+
+            batcher.flush().ifPresent(batch -> emit(batch, tails));
+            if (!tails.isEmpty()) {
+                emit(List.of(), tails);
+            }
+
+            // One end marker per embedding thread
+            for (int i = 0; i < maxConcurrentRequests; i++) {
+                put(batches, END);
+            }
+        }
+
+        /**
+         * Sends a batch to the embedding stage with the tails collected so far.
+         * A tail may travel ahead of its document's segments, as truncation never touches the new sequence numbers.
+         */
+        private void emit(List<TextSegment> segments, List<SourceTail> tails) {
+            int[] numbers = new int[segments.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                Integer number = pieceNumbers.remove(segments.get(i));
+                numbers[i] = number == null ? NO_NUMBER : number;
+            }
+
+            put(batches, new Batch(segments, numbers, List.copyOf(tails)));
+            tails.clear();
+        }
+
+        /**
+         * Replaces the pieces of a document with pieces sharing one metadata instance. Splitters copy the metadata for
+         * each segment and add the segment index, which is dropped. Pieces with other metadata of their own, e.g. added
+         * by a custom splitter, keep it.
+         */
+        private void shareMetadata(Document document, List<TextSegment> pieces) {
+            Metadata shared = document.metadata();
+            shared.remove(INDEX_METADATA);
+            Map<String, Object> sharedValues = shared.toMap();
+
+            for (int i = 0; i < pieces.size(); i++) {
+                TextSegment piece = pieces.get(i);
+                Metadata metadata = piece.metadata();
+                if (metadata == shared) {
+                    continue;
+                }
+
+                metadata.remove(INDEX_METADATA);
+                if (metadata.toMap().equals(sharedValues)) {
+                    pieces.set(i, TextSegment.from(piece.text(), shared));
+                }
+            }
+        }
+
+        private void embed() {
+            Object item;
+            while ((item = take(batches)) != END) {
+                Batch batch = (Batch) item;
+                List<TextSegment> segments = batch.segments();
+                if (segments.isEmpty()) {
+                    put(embedded, new EmbeddedBatch(segments, batch.numbers(), List.of(), batch.tails()));
+                    continue;
+                }
+
+                List<Embedding> embeddings = embedAll(segments);
+                if (!embeddings.contains(null)) {
+                    put(embedded, new EmbeddedBatch(segments, batch.numbers(), embeddings, batch.tails()));
+                    continue;
+                }
+
+                // Failed segments are left out, the previous version of their piece stays in the index
+                List<TextSegment> embeddedSegments = new ArrayList<>();
+                List<Embedding> segmentEmbeddings = new ArrayList<>();
+                int[] numbers = new int[segments.size()];
+                for (int i = 0; i < segments.size(); i++) {
+                    if (embeddings.get(i) != null) {
+                        numbers[embeddedSegments.size()] = batch.numbers()[i];
+                        embeddedSegments.add(segments.get(i));
+                        segmentEmbeddings.add(embeddings.get(i));
+                    }
+                }
+                put(embedded, new EmbeddedBatch(embeddedSegments, Arrays.copyOf(numbers, embeddedSegments.size()),
+                                                segmentEmbeddings, batch.tails()));
+            }
+        }
+
+        /**
+         * Embeds segments, halving the request while the model rejects it for exceeding its token limit.
+         *
+         * @return the embeddings, null for segments which failed
+         */
+        private List<Embedding> embedAll(List<TextSegment> segments) {
+            Response<List<Embedding>> response;
+            try {
+                response = embeddingModel.embedAll(segments);
+            } catch (RuntimeException e) {
+                if (!isOverLimit(e)) {
+                    throw e;
+                }
+
+                batcher.rejected(segments);
+                if (segments.size() == 1) {
+                    return Collections.singletonList(embedSplit(segments.get(0), e));
+                }
+
+                log.log(Level.FINE, "Embedding request of " + segments.size() + " segments exceeds the token limit, splitting it");
+
+                int half = segments.size() / 2;
+                List<Embedding> embeddings = new ArrayList<>(embedAll(segments.subList(0, half)));
+                embeddings.addAll(embedAll(segments.subList(half, segments.size())));
+                return embeddings;
+            }
+
+            List<Embedding> embeddings = response.content();
+            if (embeddings == null || embeddings.size() != segments.size()) {
+                throw new IllegalStateException("Embedding model returned " + (embeddings == null ? 0 : embeddings.size())
+                                                    + " embeddings for " + segments.size() + " segments");
+            }
+
+            batcher.learn(segments, response.tokenUsage());
+            batchCount.incrementAndGet();
+            return embeddings;
+        }
+
+        /**
+         * Embeds a segment rejected on its own, by splitting it again with the lowered ratio. The segment gets the
+         * average of the embeddings of its parts, weighted by length, so it keeps its place and number.
+         *
+         * @return the embedding, or null if the segment can't be split any further or one of its parts failed
+         */
+        private Embedding embedSplit(TextSegment segment, RuntimeException cause) {
+            List<TextSegment> parts = batcher.split(segment);
+            if (parts.size() < 2) {
+                failed(segment, cause);
+                return null;
+            }
+
+            log.log(Level.FINE, "Segment of " + segment.text().length() + " characters exceeds the token limit, embedding it in "
+                + parts.size() + " parts");
+
+            List<Embedding> embeddings = embedAll(parts);
+            if (embeddings.contains(null)) {
+                return null;
+            }
+
+            float[] average = new float[embeddings.get(0).dimension()];
+            for (int i = 0; i < parts.size(); i++) {
+                float[] vector = embeddings.get(i).vector();
+                float weight = parts.get(i).text().length();
+                for (int j = 0; j < average.length; j++) {
+                    average[j] += weight * vector[j];
+                }
+            }
+
+            Embedding embedding = Embedding.from(average);
+            embedding.normalize();
+            return embedding;
+        }
+
+        private void failed(TextSegment segment, RuntimeException cause) {
+            failedCount.incrementAndGet();
+            log.log(Level.WARNING, "Skipping segment of " + segment.text().length() + " characters of "
+                + segment.metadata().getString(UNID_METADATA) + ": " + cause.getMessage());
+            if (failureListener != null) {
+                failureListener.accept(segment, cause);
+            }
+        }
+
+        private void store() {
+            Object item;
+            while ((item = take(embedded)) != END) {
+                EmbeddedBatch batch = (EmbeddedBatch) item;
+                List<String> ids = batch.segments().isEmpty()
+                    ? List.of()
+                    : embeddingStore.addAll(batch.embeddings(), batch.segments());
+                segmentCount.addAndGet(batch.segments().size());
+                if (lexicalIndex != null && !ids.isEmpty()) {
+                    lexicalIndex.addAll(ids, batch.segments());
+                }
+
+                if (embeddingIdIndex != null) {
+                    List<String> stale = index(batch, ids);
+                    if (!stale.isEmpty()) {
+                        embeddingStore.removeAll(stale);
+                        if (lexicalIndex != null) {
+                            lexicalIndex.removeAll(stale);
+                        }
+                        staleCount.addAndGet(stale.size());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the new embedding IDs and drops the entries they replace.
+     *
+     * @return embedding IDs which are now stale
+     */
+    private List<String> index(EmbeddedBatch batch, List<String> ids) {
+        List<EmbeddingIdIndex.Entry> entries = new ArrayList<>();
+
+        for (int i = 0; i < batch.segments().size(); i++) {
+            Metadata metadata = batch.segments().get(i).metadata();
+            String unid = metadata.getString(UNID_METADATA);
+            int number = batch.numbers()[i];
+
+            if (unid != null && number != NO_NUMBER) {
+                entries.add(new EmbeddingIdIndex.Entry(unid, sourceOf(metadata), number, ids.get(i)));
+            }
+        }
+
+        List<String> stale = new ArrayList<>(embeddingIdIndex.putAll(entries));
+        for (SourceTail tail : batch.tails()) {
+            stale.addAll(embeddingIdIndex.truncate(tail.unid(), tail.source(), tail.count()));
+        }
+        return stale;
+    }
+
+    /**
+     * Guesses whether a model error is about the request size. Models don't share an exception type for this,
+     * so the messages are checked.
+     */
+    static boolean isOverLimit(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message == null) {
+                continue;
+            }
+
+            String lower = message.toLowerCase(Locale.ROOT);
+            if (THROTTLING_HINTS.stream().anyMatch(lower::contains)) {
+                return false;
+            }
+            if (OVER_LIMIT_HINTS.stream().anyMatch(lower::contains)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String sourceOf(Metadata metadata) {
+        String fileName = metadata.getString(Document.FILE_NAME);
+        return fileName == null ? EmbeddingIdIndex.FIELDS_SOURCE : fileName;
+    }
+
+    public static class Builder {
+
+        private Consumer<Consumer<Document>> source;
+        private DocumentSplitter documentSplitter;
+        private EmbeddingModel embeddingModel;
+        private EmbeddingStore<TextSegment> embeddingStore;
+        private ToIntFunction<String> tokenCountEstimator;
+        private int maxBatchTokens = 8000;
+        private double safetyFactor = 0.9;
+        private int maxBatchSize = 64;
+        private int maxConcurrentRequests = 4;
+        private int queueCapacity = 256;
+        private EmbeddingIdIndex embeddingIdIndex;
+        private Bm25Index lexicalIndex;
+        private boolean shareMetadata;
+        private BiConsumer<TextSegment, RuntimeException> failureListener;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the loader to read documents from. The loader runs on the thread calling {@link #run()}.
+         * @param loader a fully configured loader
+         * @return this builder instance, for method chaining.
+         */
+        public Builder loader(DominoDocumentLoader loader) {
+            ensureNotNull(loader, "Loader");
+            this.source = loader::loadDocuments;
+            return this;
+        }
+
+        /**
+         * Sets a generic document source, e.g. {@code orchestrator::load}. The source is called on the thread calling
+         * {@link #run()} and should pass each document to the given consumer.
+         * @param source the source
+         * @return this builder instance, for method chaining.
+         */
+        public Builder source(Consumer<Consumer<Document>> source) {
+            this.source = source;
+            return this;
+        }
+
+        /**
+         * Sets the splitter. Without a splitter, each document is embedded as a single segment.
+         * @param documentSplitter the splitter
+         * @return this builder instance, for method chaining.
+         */
+        public Builder documentSplitter(DocumentSplitter documentSplitter) {
+            this.documentSplitter = documentSplitter;
+            return this;
+        }
+
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        public Builder embeddingStore(EmbeddingStore<TextSegment> embeddingStore) {
+            this.embeddingStore = embeddingStore;
+            return this;
+        }
+
+        /**
+         * Sets the function estimating tokens in a segment, e.g. the model's tokenizer. By default, tokens are estimated
+         * from the text length with a characters-per-token ratio learned from the model's reported token usage.
+         * @param tokenCountEstimator the estimator
+         * @return this builder instance, for method chaining.
+         */
+        public Builder tokenCountEstimator(ToIntFunction<String> tokenCountEstimator) {
+            this.tokenCountEstimator = tokenCountEstimator;
+            return this;
+        }
+
+        /**
+         * Sets the maximum tokens in a single embedding model call. Defaults to 8000.
+         * A segment larger than the limit is split.
+         * @param maxBatchTokens the limit
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxBatchTokens(int maxBatchTokens) {
+            this.maxBatchTokens = maxBatchTokens;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of the token limit batches are packed to, leaving room for estimation errors.
+         * Defaults to 0.9.
+         * @param safetyFactor a value between 0 and 1
+         * @return this builder instance, for method chaining.
+         */
+        public Builder safetyFactor(double safetyFactor) {
+            this.safetyFactor = safetyFactor;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of segments in a single embedding model call. Defaults to 64.
+         * @param maxBatchSize the limit
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of embedding model calls running at the same time. Defaults to 4.
+         * @param maxConcurrentRequests the limit
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Sets the number of loaded documents buffered ahead of the splitter. Defaults to 256.
+         * @param queueCapacity the capacity
+         * @return this builder instance, for method chaining.
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets an index to record embedding IDs by UNID, source and segment index, e.g. for {@link DeletionSynchronizer}.
+         * Documents need the {@code unid} metadata, as in {@link org.openntf.langchain4j.data.MetadataDefinition#DEFAULT}.
+         * When a document is ingested again, embeddings of the previous version which were replaced, or are beyond the
+         * new segment count, are removed from the store.
+         * @param embeddingIdIndex the index
+         * @return this builder instance, for method chaining.
+         */
+        public Builder embeddingIdIndex(EmbeddingIdIndex embeddingIdIndex) {
+            this.embeddingIdIndex = embeddingIdIndex;
+            return this;
+        }
+
+        /**
+         * Sets a lexical index to receive the stored segments under their embedding IDs, for keyword search. Stale
+         * embeddings are removed from it as well, and it's committed at the end of a successful run.
+         * @param lexicalIndex the index
+         * @return this builder instance, for method chaining.
+         */
+        public Builder lexicalIndex(Bm25Index lexicalIndex) {
+            this.lexicalIndex = lexicalIndex;
+            return this;
+        }
+
+        /**
+         * Specifies whether metadata is shared instead of copied. Disabled by default, so each segment has its own copy of
+         * the metadata, with its {@code index} if an embedding ID index is set.
+         * <p>
+         * When enabled, the segments of a document share the document's {@link Metadata} instance, saving memory in
+         * stores keeping segments in memory. Nothing checks that the shared instance isn't modified afterwards, so only
+         * enable this if neither the store nor the application changes the metadata of stored segments, as a change
+         * would show on every segment of the document. The {@code index} key that LangChain4j splitters add for each
+         * segment is dropped, so segments can't be told apart by their metadata. Repeated string values, like form
+         * names, are also kept once across documents.
+         * @param shareMetadata true to share metadata
+         * @return this builder instance, for method chaining.
+         */
+        public Builder shareMetadata(boolean shareMetadata) {
+            this.shareMetadata = shareMetadata;
+            return this;
+        }
+
+        /**
+         * Sets a listener for segments skipped because the model rejects them for their size and they can't be split
+         * any further. The run continues without them. The listener is called on an embedding thread.
+         * @param failureListener the listener, receiving the segment and the model's error
+         * @return this builder instance, for method chaining.
+         */
+        public Builder failureListener(BiConsumer<TextSegment, RuntimeException> failureListener) {
+            this.failureListener = failureListener;
+            return this;
+        }
+
+        public DominoIngestionPipeline build() {
+            return new DominoIngestionPipeline(this);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import com.hcl.domino.DominoProcess;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link ThreadFactory} creating threads initialised for the Domino API.
+ * Each thread calls {@code DominoProcess.initializeThread()} before running and {@code terminateThread()} when done.
+ * <p>
+ * The Domino process itself must already be initialised.
+ */
+public class DominoThreadFactory implements ThreadFactory {
+
+    private static final Logger log = Logger.getLogger(DominoThreadFactory.class.getName());
+
+    private final String namePrefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Creates a new thread factory.
+     *
+     * @param namePrefix prefix for thread names, followed by a sequence number
+     */
+    public DominoThreadFactory(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(() -> {
+            DominoProcess.get().initializeThread();
+            try {
+                runnable.run();
+            } finally {
+                try {
+                    DominoProcess.get().terminateThread();
+                } catch (Exception e) {
+                    log.log(Level.WARNING, "Unable to terminate Domino thread", e);
+                }
+            }
+        }, namePrefix + "-" + counter.incrementAndGet());
+
+        thread.setDaemon(true);
+        return thread;
+    }
+}
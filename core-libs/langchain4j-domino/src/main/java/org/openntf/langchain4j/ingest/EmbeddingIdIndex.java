@@ -0,0 +1,553 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A local, persistent mapping of Domino documents to the embedding IDs created from them.
+ * <p>
+ * Each embedding is keyed by the document UNID, its source within the document ({@link #FIELDS_SOURCE} for field
+ * content, or an attachment name) and a sequence number (the segment index). Knowing exactly which embedding came
+ * from which segment allows an updated document to replace only the stale embeddings.
+ * <p>
+ * Mappings are kept in an in-memory hash index by UNID and persisted to a memory-mapped, append-only log. Each
+ * record carries a CRC, so a torn write at the end of the log is detected and dropped when the log is read back.
+ * Batch updates are forced to disk once per batch. When dead records outnumber live mappings, the live mappings are
+ * written to a new log generation and the old one is deleted, so the files stay proportional to live data. Using new
+ * files rather than replacing the log in place avoids problems with mapped files on Windows.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class EmbeddingIdIndex implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(EmbeddingIdIndex.class.getName());
+
+    /**
+     * Source name for embeddings created from document fields.
+     */
+    public static final String FIELDS_SOURCE = "fields";
+
+    private static final int MAGIC = 0x454D4249;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE_DOCUMENT = 2;
+    private static final byte TRUNCATE = 3;
+
+    private static final String FILE_PREFIX = "embedding-ids-";
+    private static final String FILE_SUFFIX = ".log";
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    // Don't bother compacting small logs
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+
+    /**
+     * A single mapping.
+     *
+     * @param unid        the document UNID
+     * @param source      {@link #FIELDS_SOURCE} or an attachment name
+     * @param sequence    the segment index within the source
+     * @param embeddingId the embedding ID in the store
+     */
+    public record Entry(String unid, String source, int sequence, String embeddingId) {
+    }
+
+    // UNIDs are 16 bytes, kept as two longs to save memory
+    private record Unid(long high, long low) {
+
+        static Unid parse(String unid) {
+            if (unid == null || unid.length() != 32) {
+                throw new IllegalArgumentException("Invalid UNID: " + unid);
+            }
+            try {
+                return new Unid(Long.parseUnsignedLong(unid.substring(0, 16), 16), Long.parseUnsignedLong(unid.substring(16), 16));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid UNID: " + unid, e);
+            }
+        }
+    }
+
+    private final Path directory;
+
+    // Mappings by UNID, then source, then sequence
+    private final Map<Unid, Map<String, TreeMap<Integer, String>>> index = new HashMap<>();
+
+    private long generation;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private long liveRecords;
+    private long totalRecords;
+
+    private EmbeddingIdIndex(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        TreeSet<Long> generations = listGenerations();
+        this.generation = generations.isEmpty() ? 1 : generations.last();
+
+        openLog(logFile(generation));
+        read();
+        deleteOldGenerations();
+    }
+
+    /**
+     * Opens the index in a directory, creating it if it doesn't exist.
+     *
+     * @param directory a directory dedicated to the index
+     * @return the index
+     * @throws IOException if the index can't be read or opened
+     */
+    public static EmbeddingIdIndex open(Path directory) throws IOException {
+        return new EmbeddingIdIndex(directory);
+    }
+
+    private Path logFile(long generation) {
+        return directory.resolve(FILE_PREFIX + generation + FILE_SUFFIX);
+    }
+
+    private TreeSet<Long> listGenerations() throws IOException {
+        TreeSet<Long> generations = new TreeSet<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not ours
+                }
+            }
+        }
+
+        return generations;
+    }
+
+    private void deleteOldGenerations() throws IOException {
+        for (long old : listGenerations().headSet(generation)) {
+            try {
+                Files.deleteIfExists(logFile(old));
+            } catch (IOException e) {
+                // Probably still mapped, we'll try again next time
+                log.log(Level.FINE, "Unable to delete old index generation " + logFile(old), e);
+            }
+        }
+    }
+
+    private void openLog(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, channel.size()));
+
+        if (buffer.getInt(0) == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an embedding ID index: " + file);
+        }
+
+        buffer.position(HEADER_SIZE);
+    }
+
+    private void read() {
+        while (true) {
+            int start = buffer.position();
+            ByteBuffer record = nextRecord();
+            if (record == null) {
+                // Clear anything after the last valid record, e.g. a torn write
+                buffer.position(start);
+                for (int i = start; i < Math.min(buffer.capacity(), start + 8); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                return;
+            }
+            apply(record);
+            totalRecords++;
+        }
+    }
+
+    // Returns the payload of the record at the current position, or null at the end of the log
+    private ByteBuffer nextRecord() {
+        int start = buffer.position();
+        if (start + 4 > buffer.capacity()) {
+            return null;
+        }
+
+        int length = buffer.getInt(start);
+        if (length <= 0 || start + 4 + length + 4 > buffer.capacity()) {
+            return null;
+        }
+
+        ByteBuffer payload = buffer.slice(start + 4, length);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(start + 4 + length)) {
+            log.log(Level.WARNING, "Ignoring a corrupt record at the end of " + logFile(generation));
+            return null;
+        }
+
+        buffer.position(start + 4 + length + 4);
+        return payload;
+    }
+
+    private void apply(ByteBuffer record) {
+        try {
+            byte type = record.get();
+            Unid unid = new Unid(record.getLong(), record.getLong());
+
+            switch (type) {
+                case PUT -> {
+                    String source = readString(record);
+                    int sequence = record.getInt();
+                    putMapping(unid, source, sequence, readString(record));
+                }
+                case REMOVE_DOCUMENT -> removeMappings(unid);
+                case TRUNCATE -> {
+                    String source = readString(record);
+                    truncateMappings(unid, source, record.getInt());
+                }
+                default -> log.log(Level.WARNING, "Unknown record type " + type + " in " + logFile(generation));
+            }
+        } catch (BufferUnderflowException e) {
+            log.log(Level.WARNING, "Ignoring a malformed record in " + logFile(generation));
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[Short.toUnsignedInt(record.getShort())];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String putMapping(Unid unid, String source, int sequence, String embeddingId) {
+        String previous = index.computeIfAbsent(unid, k -> new TreeMap<>())
+                               .computeIfAbsent(source, k -> new TreeMap<>())
+                               .put(sequence, embeddingId);
+        if (previous == null) {
+            liveRecords++;
+        }
+        return previous;
+    }
+
+    private List<String> removeMappings(Unid unid) {
+        Map<String, TreeMap<Integer, String>> sources = index.remove(unid);
+        if (sources == null) {
+            return List.of();
+        }
+
+        List<String> removed = new ArrayList<>();
+        sources.values().forEach(sequences -> removed.addAll(sequences.values()));
+        liveRecords -= removed.size();
+        return removed;
+    }
+
+    private List<String> truncateMappings(Unid unid, String source, int count) {
+        Map<String, TreeMap<Integer, String>> sources = index.get(unid);
+        TreeMap<Integer, String> sequences = sources == null ? null : sources.get(source);
+        if (sequences == null) {
+            return List.of();
+        }
+
+        Map<Integer, String> tail = sequences.tailMap(count, true);
+        List<String> removed = new ArrayList<>(tail.values());
+        tail.clear();
+        liveRecords -= removed.size();
+
+        if (sequences.isEmpty()) {
+            sources.remove(source);
+            if (sources.isEmpty()) {
+                index.remove(unid);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Records embedding IDs, replacing existing mappings with the same keys.
+     *
+     * @param entries the mappings
+     * @return embedding IDs replaced by the new mappings, which are now stale
+     */
+    public synchronized List<String> putAll(Collection<Entry> entries) {
+        List<String> stale = new ArrayList<>();
+
+        for (Entry entry : entries) {
+            Unid unid = Unid.parse(entry.unid());
+            append(PUT, unid, entry.source(), entry.sequence(), entry.embeddingId());
+
+            String previous = putMapping(unid, entry.source(), entry.sequence(), entry.embeddingId());
+            if (previous != null && !previous.equals(entry.embeddingId())) {
+                stale.add(previous);
+            }
+        }
+
+        commit();
+        return stale;
+    }
+
+    /**
+     * Removes the mappings of a source from a sequence number on, e.g. when an updated document has fewer segments.
+     *
+     * @param unid  the document UNID
+     * @param source the source
+     * @param count the number of segments to keep
+     * @return embedding IDs removed, which are now stale
+     */
+    public synchronized List<String> truncate(String unid, String source, int count) {
+        Unid key = Unid.parse(unid);
+        List<String> removed = truncateMappings(key, source, count);
+
+        if (!removed.isEmpty()) {
+            append(TRUNCATE, key, source, count, null);
+            commit();
+        }
+        return removed;
+    }
+
+    /**
+     * Removes documents from the index.
+     *
+     * @param unids universal IDs
+     * @return embedding IDs which were recorded for the documents
+     */
+    public synchronized List<String> removeAll(Collection<String> unids) {
+        List<String> removed = new ArrayList<>();
+
+        for (String unid : unids) {
+            Unid key = Unid.parse(unid);
+            List<String> ids = removeMappings(key);
+            if (!ids.isEmpty()) {
+                append(REMOVE_DOCUMENT, key, null, 0, null);
+                removed.addAll(ids);
+            }
+        }
+
+        commit();
+        return removed;
+    }
+
+    /**
+     * @param unid     the document UNID
+     * @param source   the source
+     * @param sequence the segment index
+     * @return the embedding ID, if recorded
+     */
+    public synchronized Optional<String> get(String unid, String source, int sequence) {
+        Map<String, TreeMap<Integer, String>> sources = index.get(Unid.parse(unid));
+        TreeMap<Integer, String> sequences = sources == null ? null : sources.get(source);
+        return Optional.ofNullable(sequences == null ? null : sequences.get(sequence));
+    }
+
+    /**
+     * @param unid   the document UNID
+     * @param source the source
+     * @return embedding IDs of the source in sequence order, empty if none
+     */
+    public synchronized List<String> get(String unid, String source) {
+        Map<String, TreeMap<Integer, String>> sources = index.get(Unid.parse(unid));
+        TreeMap<Integer, String> sequences = sources == null ? null : sources.get(source);
+        return sequences == null ? List.of() : List.copyOf(sequences.values());
+    }
+
+    /**
+     * @param unid the document UNID
+     * @return all embedding IDs recorded for the document, empty if none
+     */
+    public synchronized List<String> get(String unid) {
+        Map<String, TreeMap<Integer, String>> sources = index.get(Unid.parse(unid));
+        if (sources == null) {
+            return List.of();
+        }
+
+        List<String> ids = new ArrayList<>();
+        sources.values().forEach(sequences -> ids.addAll(sequences.values()));
+        return ids;
+    }
+
+    /**
+     * @return number of documents in the index
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    private void append(byte type, Unid unid, String source, int sequence, String embeddingId) {
+        byte[] sourceBytes = source == null ? null : source.getBytes(StandardCharsets.UTF_8);
+        byte[] idBytes = embeddingId == null ? null : embeddingId.getBytes(StandardCharsets.UTF_8);
+
+        if ((sourceBytes != null && sourceBytes.length > 0xFFFF) || (idBytes != null && idBytes.length > 0xFFFF)) {
+            throw new IllegalArgumentException("Source and embedding ID must be shorter than 64KB");
+        }
+
+        int length = 1 + 16;
+        if (sourceBytes != null) {
+            length += 2 + sourceBytes.length + 4;
+        }
+        if (idBytes != null) {
+            length += 2 + idBytes.length;
+        }
+
+        // Room for the record, its CRC, and the zero length marking the end
+        ensureCapacity(4 + length + 4 + 4);
+
+        int start = buffer.position();
+        buffer.putInt(length);
+        buffer.put(type);
+        buffer.putLong(unid.high());
+        buffer.putLong(unid.low());
+        if (sourceBytes != null) {
+            buffer.putShort((short) sourceBytes.length);
+            buffer.put(sourceBytes);
+            buffer.putInt(sequence);
+        }
+        if (idBytes != null) {
+            buffer.putShort((short) idBytes.length);
+            buffer.put(idBytes);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(start + 4, length));
+        buffer.putInt((int) crc.getValue());
+        buffer.putInt(buffer.position(), 0);
+
+        totalRecords++;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.position() + bytes <= buffer.capacity()) {
+            return;
+        }
+
+        long capacity = buffer.capacity();
+        while (buffer.position() + bytes > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Embedding ID index is too large: " + logFile(generation));
+        }
+
+        try {
+            int position = buffer.position();
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.position(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to grow embedding ID index " + logFile(generation), e);
+        }
+    }
+
+    private void commit() {
+        buffer.force();
+
+        if (totalRecords > MIN_COMPACTION_RECORDS && totalRecords > 2 * liveRecords) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes live mappings to a new log generation and deletes the old one.
+     * The new generation is written to a temporary file and moved into place once complete, so a crash during
+     * compaction leaves the old generation in use.
+     */
+    public synchronized void compact() {
+        long oldGeneration = generation;
+        FileChannel oldChannel = channel;
+        MappedByteBuffer oldBuffer = buffer;
+        long oldTotalRecords = totalRecords;
+
+        Path target = logFile(oldGeneration + 1);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        try {
+            Files.deleteIfExists(temp);
+            generation = oldGeneration + 1;
+            openLog(temp);
+
+            totalRecords = 0;
+            index.forEach((unid, sources) -> sources.forEach(
+                (source, sequences) -> sequences.forEach((sequence, id) -> append(PUT, unid, source, sequence, id))));
+            buffer.force();
+
+            int end = buffer.position();
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            openLog(target);
+            buffer.position(end);
+        } catch (IOException | RuntimeException e) {
+            // Keep appending to the old generation
+            if (channel != oldChannel) {
+                closeQuietly(channel);
+            }
+            generation = oldGeneration;
+            channel = oldChannel;
+            buffer = oldBuffer;
+            totalRecords = oldTotalRecords;
+
+            if (e instanceof IOException ioe) {
+                throw new UncheckedIOException("Unable to compact embedding ID index " + logFile(oldGeneration), ioe);
+            }
+            throw (RuntimeException) e;
+        }
+
+        try {
+            oldChannel.close();
+            deleteOldGenerations();
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to release old index generation " + logFile(oldGeneration), e);
+        }
+
+        log.log(Level.FINE, "Compacted embedding ID index to generation " + generation + " with " + liveRecords + " mappings");
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already failing
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
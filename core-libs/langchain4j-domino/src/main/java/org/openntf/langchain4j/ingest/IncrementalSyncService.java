@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import com.hcl.domino.DominoClient;
+import com.hcl.domino.commons.json.JsonUtil;
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.Database.Action;
+import com.hcl.domino.data.Database.FormulaQueryCallback;
+import com.hcl.domino.data.Database.SearchMatch;
+import com.hcl.domino.data.DocumentClass;
+import com.hcl.domino.data.DominoDateTime;
+import com.hcl.domino.data.SearchFlag;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openntf.langchain4j.data.DominoDocumentLoader;
+
+/**
+ * Keeps embedding stores up to date with Domino databases by polling them for changes.
+ * <p>
+ * On every poll, each database is searched for notes modified since the last successful synchronization. Modified
+ * notes are loaded with a loader created from the template and ingested with a pipeline created from the template,
+ * which should use an {@link EmbeddingIdIndex} so that the previous embeddings of updated notes are replaced. If a
+ * {@link DeletionSynchronizer} is set, deletions are propagated afterwards. The time of the last synchronization is
+ * kept per replica ID, server and path in a local state file, so a restarted service continues where it stopped and
+ * replicas on different servers are tracked separately. A database without a recorded time is ingested completely on
+ * its first synchronization.
+ * <p>
+ * Bursts of changes are coalesced: while notes keep changing between polls, the synchronization is postponed until a
+ * poll finds no new changes, or until the changes have been pending for the maximum coalescing delay. A database is
+ * never synchronized twice at the same time, a poll is skipped while the previous one is still running.
+ * <p>
+ * The service can run standalone or inside the XSP plugin, with the executors of the host:
+ * <pre>
+ * IncrementalSyncService service = IncrementalSyncService.builder()
+ *     .clientFactory(() -&gt; DominoClientBuilder.newDominoClient().asIDUser().build())
+ *     .database(new DatabaseTarget("Server/ACME", "kb.nsf"))
+ *     .loaderTemplate(() -&gt; DominoDocumentLoader.create(MetadataDefinition.DEFAULT).fieldName("Body"))
+ *     .pipelineTemplate(() -&gt; DominoIngestionPipeline.builder()
+ *                                                   .embeddingModel(embeddingModel)
+ *                                                   .embeddingStore(embeddingStore)
+ *                                                   .embeddingIdIndex(index))
+ *     .deletionSynchronizer(deletionSynchronizer)
+ *     .stateFile(Path.of("sync-state.properties"))
+ *     .pollInterval(Duration.ofSeconds(30))
+ *     .build();
+ * service.start();
+ * </pre>
+ * Notes that stop matching the selection formula are not removed from the store.
+ */
+public class IncrementalSyncService implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(IncrementalSyncService.class.getName());
+
+    private static final OffsetDateTime BEGINNING = OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private final Supplier<DominoClient> clientFactory;
+    private final Set<DatabaseTarget> databases;
+    private final String selectionFormula;
+    private final Supplier<DominoDocumentLoader> loaderTemplate;
+    private final Supplier<DominoIngestionPipeline.Builder> pipelineTemplate;
+    private final DeletionSynchronizer deletionSynchronizer;
+    private final Path stateFile;
+    private final Duration pollInterval;
+    private final long maxCoalesceNanos;
+    private final Consumer<SyncResult> listener;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+    private final boolean ownsExecutors;
+
+    private final Map<DatabaseTarget, TargetState> states = new LinkedHashMap<>();
+    private final Object stateFileLock = new Object();
+
+    private volatile ScheduledFuture<?> pollTask;
+    private volatile boolean closed;
+
+    private IncrementalSyncService(Builder builder) {
+        this.clientFactory = ensureNotNull(builder.clientFactory, "Client Factory");
+        this.loaderTemplate = ensureNotNull(builder.loaderTemplate, "Loader Template");
+        this.pipelineTemplate = ensureNotNull(builder.pipelineTemplate, "Pipeline Template");
+        this.stateFile = ensureNotNull(builder.stateFile, "State File");
+        this.databases = new LinkedHashSet<>(builder.databases);
+        this.selectionFormula = builder.selectionFormula;
+        this.deletionSynchronizer = builder.deletionSynchronizer;
+        this.pollInterval = builder.pollInterval;
+        this.listener = builder.listener;
+
+        if (databases.isEmpty()) {
+            throw new IllegalArgumentException("At least one database must be provided!");
+        }
+        if (pollInterval == null || pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("Poll interval must be positive");
+        }
+        if (builder.maxCoalesceDelay == null || builder.maxCoalesceDelay.isNegative()) {
+            throw new IllegalArgumentException("Maximum coalescing delay must not be negative");
+        }
+        if (builder.maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be greater than zero!");
+        }
+        if ((builder.scheduler == null) != (builder.executor == null)) {
+            throw new IllegalArgumentException("Scheduler and executor must be provided together!");
+        }
+
+        this.maxCoalesceNanos = builder.maxCoalesceDelay.toNanos();
+
+        this.ownsExecutors = builder.scheduler == null;
+        if (ownsExecutors) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "domino-sync-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = Executors.newFixedThreadPool(Math.min(databases.size(), builder.maxConcurrency),
+                                                         new DominoThreadFactory("domino-sync"));
+        } else {
+            this.scheduler = builder.scheduler;
+            this.executor = builder.executor;
+        }
+
+        for (DatabaseTarget target : databases) {
+            states.put(target, new TargetState());
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts polling. The first poll runs immediately.
+     */
+    public synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException("Service is closed");
+        }
+        if (pollTask == null) {
+            pollTask = scheduler.scheduleWithFixedDelay(this::pollAll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Synchronizes a database on the calling thread, without coalescing. The thread must be initialised for the
+     * Domino API.
+     *
+     * @param target one of the configured databases
+     * @return the result, or an empty Optional if the database is being synchronized by another thread
+     */
+    public Optional<SyncResult> syncNow(DatabaseTarget target) {
+        TargetState state = states.get(target);
+        if (state == null) {
+            throw new IllegalArgumentException("Unknown database " + target);
+        }
+        if (!state.running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(poll(target, state, false));
+        } finally {
+            state.running.set(false);
+        }
+    }
+
+    /**
+     * Stops polling and waits for running synchronizations to finish. Executors provided by the host are not shut
+     * down.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (pollTask != null) {
+            pollTask.cancel(false);
+            pollTask = null;
+        }
+
+        if (ownsExecutors) {
+            scheduler.shutdown();
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void pollAll() {
+        for (Map.Entry<DatabaseTarget, TargetState> entry : states.entrySet()) {
+            DatabaseTarget target = entry.getKey();
+            TargetState state = entry.getValue();
+
+            if (closed || !state.running.compareAndSet(false, true)) {
+                // Still running since the previous poll
+                continue;
+            }
+
+            try {
+                executor.execute(() -> {
+                    try {
+                        SyncResult result = poll(target, state, true);
+                        if (result != null && listener != null) {
+                            listener.accept(result);
+                        }
+                    } catch (RuntimeException e) {
+                        log.log(Level.WARNING, "Listener failed for " + target, e);
+                    } finally {
+                        state.running.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                state.running.set(false);
+                log.log(Level.WARNING, "Unable to schedule synchronization of " + target + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Polls a database and synchronizes it unless postponed for coalescing.
+     *
+     * @return the result, or null if the synchronization was postponed
+     */
+    private SyncResult poll(DatabaseTarget target, TargetState state, boolean coalesce) {
+        long start = System.currentTimeMillis();
+        int modifiedNotes = 0;
+
+        try (DominoClient client = clientFactory.get()) {
+            Database database = target.isLocal()
+                ? client.openDatabase(target.databasePath())
+                : client.openDatabase(target.server(), target.databasePath());
+
+            try {
+                // Modification times are per replica, replicas on other servers have their own
+                String stateKey = DatabaseTarget.stateKey(database);
+                TemporalAccessor checkpoint = readCheckpoint(stateKey);
+
+                if (coalesce && maxCoalesceNanos > 0 && isBurstOngoing(database, state, checkpoint)) {
+                    log.log(Level.FINE, () -> "Changes in " + target + " are still arriving, postponing synchronization");
+                    return null;
+                }
+
+                List<Integer> noteIds = new ArrayList<>();
+                DominoDateTime until = database.queryFormula(selectionFormula, checkpoint, EnumSet.noneOf(SearchFlag.class),
+                                                             EnumSet.of(DocumentClass.DATA), new FormulaQueryCallback() {
+                        @Override
+                        public Action matchFound(SearchMatch searchMatch) {
+                            noteIds.add(searchMatch.getNoteID());
+                            return Action.Continue;
+                        }
+                    });
+                modifiedNotes = noteIds.size();
+
+                IngestionResult ingestion = null;
+                if (!noteIds.isEmpty()) {
+                    DominoDocumentLoader loader = loaderTemplate.get()
+                                                                .database(database)
+                                                                .noteIds(noteIds);
+                    ingestion = pipelineTemplate.get()
+                                                .loader(loader)
+                                                .build()
+                                                .run();
+                }
+
+                // Only recorded after a successful ingestion, a failed run is retried from the same time
+                writeCheckpoint(stateKey, until);
+                state.pendingSinceNanos = 0;
+                state.pollWatermark = until;
+
+                DeletionSyncResult deletions = deletionSynchronizer == null ? null : deletionSynchronizer.synchronize(database);
+
+                long elapsed = System.currentTimeMillis() - start;
+                if (modifiedNotes > 0) {
+                    log.log(Level.INFO, "Synchronized " + modifiedNotes + " modified notes of " + target + " in " + elapsed + "ms");
+                }
+                return new SyncResult(target, modifiedNotes, ingestion, deletions, elapsed, null);
+            } finally {
+                database.close();
+            }
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Unable to synchronize " + target + ": " + e.getMessage(), e);
+            return new SyncResult(target, modifiedNotes, null, null, System.currentTimeMillis() - start, e);
+        }
+    }
+
+    /**
+     * Checks for changes since the previous poll. Changes start a burst, which lasts until a poll finds no new
+     * changes or the maximum coalescing delay has passed.
+     */
+    private boolean isBurstOngoing(Database database, TargetState state, TemporalAccessor checkpoint) {
+        TemporalAccessor since = state.pollWatermark == null ? checkpoint : state.pollWatermark;
+
+        int[] changes = {0};
+        DominoDateTime until = database.queryFormula(selectionFormula, since, EnumSet.noneOf(SearchFlag.class), EnumSet.of(DocumentClass.DATA),
+                                                     new FormulaQueryCallback() {
+                                                         @Override
+                                                         public Action matchFound(SearchMatch searchMatch) {
+                                                             changes[0]++;
+                                                             return Action.Stop;
+                                                         }
+                                                     });
+        state.pollWatermark = until;
+
+        long now = System.nanoTime();
+        if (changes[0] == 0) {
+            return false;
+        }
+        if (state.pendingSinceNanos == 0) {
+            state.pendingSinceNanos = now;
+        }
+        return now - state.pendingSinceNanos < maxCoalesceNanos;
+    }
+
+    private TemporalAccessor readCheckpoint(String stateKey) {
+        synchronized (stateFileLock) {
+            String last = readState().getProperty(stateKey);
+            return last == null ? BEGINNING : OffsetDateTime.parse(last);
+        }
+    }
+
+    private void writeCheckpoint(String stateKey, DominoDateTime until) {
+        synchronized (stateFileLock) {
+            Properties state = readState();
+            state.setProperty(stateKey, JsonUtil.toIsoString(until));
+            writeState(state);
+        }
+    }
+
+    private Properties readState() {
+        Properties state = new Properties();
+
+        if (Files.exists(stateFile)) {
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                state.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read synchronization state " + stateFile, e);
+            }
+        }
+
+        return state;
+    }
+
+    private void writeState(Properties state) {
+        Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                state.store(writer, "Last incremental synchronization per database replica");
+            }
+            Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write synchronization state " + stateFile, e);
+        }
+    }
+
+    /**
+     * Polling state of a database. Fields other than running are only accessed by the thread holding running.
+     */
+    private static class TargetState {
+
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile TemporalAccessor pollWatermark;
+        private volatile long pendingSinceNanos;
+    }
+
+    public static class Builder {
+
+        private Supplier<DominoClient> clientFactory;
+        private final Set<DatabaseTarget> databases = new LinkedHashSet<>();
+        private String selectionFormula = "@All";
+        private Supplier<DominoDocumentLoader> loaderTemplate;
+        private Supplier<DominoIngestionPipeline.Builder> pipelineTemplate;
+        private DeletionSynchronizer deletionSynchronizer;
+        private Path stateFile;
+        private Duration pollInterval = Duration.ofMinutes(1);
+        private Duration maxCoalesceDelay = Duration.ofMinutes(5);
+        private int maxConcurrency = 2;
+        private ScheduledExecutorService scheduler;
+        private ExecutorService executor;
+        private Consumer<SyncResult> listener;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the factory creating a client for each poll. The client is closed after the poll.
+         * @param clientFactory the client factory
+         * @return this builder instance, for method chaining.
+         */
+        public Builder clientFactory(Supplier<DominoClient> clientFactory) {
+            this.clientFactory = clientFactory;
+            return this;
+        }
+
+        /**
+         * Adds a database to synchronize.
+         * @param target the database
+         * @return this builder instance, for method chaining.
+         */
+        public Builder database(DatabaseTarget target) {
+            this.databases.add(ensureNotNull(target, "Database Target"));
+            return this;
+        }
+
+        /**
+         * Sets the formula selecting the notes to synchronize. Defaults to {@code @All}.
+         * @param selectionFormula the selection formula
+         * @return this builder instance, for method chaining.
+         */
+        public Builder selectionFormula(String selectionFormula) {
+            this.selectionFormula = selectionFormula;
+            return this;
+        }
+
+        /**
+         * Sets a supplier of loaders configured with fields and metadata. The database and note IDs are set for
+         * each synchronization.
+         * @param loaderTemplate the loader supplier
+         * @return this builder instance, for method chaining.
+         */
+        public Builder loaderTemplate(Supplier<DominoDocumentLoader> loaderTemplate) {
+            this.loaderTemplate = loaderTemplate;
+            return this;
+        }
+
+        /**
+         * Sets a supplier of pipeline builders configured with the embedding model and store. The loader is set for
+         * each synchronization.
+         * @param pipelineTemplate the pipeline builder supplier
+         * @return this builder instance, for method chaining.
+         */
+        public Builder pipelineTemplate(Supplier<DominoIngestionPipeline.Builder> pipelineTemplate) {
+            this.pipelineTemplate = pipelineTemplate;
+            return this;
+        }
+
+        /**
+         * Sets a synchronizer propagating deletions after each synchronization.
+         * @param deletionSynchronizer the deletion synchronizer
+         * @return this builder instance, for method chaining.
+         */
+        public Builder deletionSynchronizer(DeletionSynchronizer deletionSynchronizer) {
+            this.deletionSynchronizer = deletionSynchronizer;
+            return this;
+        }
+
+        /**
+         * Sets the file keeping the time of the last synchronization for each database. It must not be the state
+         * file of the deletion synchronizer.
+         * @param stateFile the state file
+         * @return this builder instance, for method chaining.
+         */
+        public Builder stateFile(Path stateFile) {
+            this.stateFile = stateFile;
+            return this;
+        }
+
+        /**
+         * Sets the time between the end of a poll and the start of the next one. Defaults to 1 minute.
+         * @param pollInterval the interval
+         * @return this builder instance, for method chaining.
+         */
+        public Builder pollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+            return this;
+        }
+
+        /**
+         * Sets how long a synchronization may be postponed while changes keep arriving. Defaults to 5 minutes,
+         * zero synchronizes on every poll finding changes.
+         * @param maxCoalesceDelay the maximum delay
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxCoalesceDelay(Duration maxCoalesceDelay) {
+            this.maxCoalesceDelay = maxCoalesceDelay;
+            return this;
+        }
+
+        /**
+         * Sets the number of databases synchronized at the same time by the service's own executor. Defaults to 2.
+         * @param maxConcurrency the limit
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets executors of the host, e.g. the XSP plugin runtime, instead of creating new ones. The executor's
+         * threads must be initialised for the Domino API. Host executors are not shut down by the service.
+         * @param scheduler the scheduler triggering polls
+         * @param executor the executor running polls
+         * @return this builder instance, for method chaining.
+         */
+        public Builder executors(ScheduledExecutorService scheduler, ExecutorService executor) {
+            this.scheduler = scheduler;
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets a listener called with the result of each scheduled synchronization.
+         * @param listener the listener
+         * @return this builder instance, for method chaining.
+         */
+        public Builder listener(Consumer<SyncResult> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public IncrementalSyncService build() {
+            return new IncrementalSyncService(this);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+/**
+ * Outcome of a {@link DominoIngestionPipeline} run.
+ *
+ * @param documentCount  the number of documents loaded
+ * @param segmentCount   the number of segments embedded and stored
+ * @param batchCount     the number of embedding model calls
+ * @param staleCount     the number of stale embeddings of updated documents removed from the store
+ * @param failedCount    the number of segments skipped because the model rejected them for their size
+ * @param elapsedMillis  total run time
+ */
+public record IngestionResult(long documentCount, long segmentCount, long batchCount, long staleCount, long failedCount,
+                              long elapsedMillis) {
+
+    /**
+     * @return average number of segments per embedding model call
+     */
+    public double averageBatchSize() {
+        return batchCount == 0 ? 0 : (double) segmentCount / batchCount;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import dev.langchain4j.data.document.Metadata;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replaces repeated metadata values with a single shared instance.
+ * <p>
+ * Metadata of Domino documents is evaluated per note, so values repeated across notes (form names, authors, server
+ * and database names, dates) arrive as separate strings. Interning keeps one instance of each value for all notes,
+ * which matters when the segments are kept in memory, e.g. by an in-memory embedding store.
+ * <p>
+ * Only short strings are interned, and the pool stops growing at its maximum size, so unique values like UNIDs can't
+ * fill the heap. Unlike {@link String#intern()}, the pool is dropped with the interner.
+ */
+final class MetadataInterner {
+
+    static final int MAX_VALUE_LENGTH = 128;
+
+    // Segment numbers are set on every segment when metadata is copied, the common ones are shared
+    private static final String[] INDEX_STRINGS = new String[1024];
+
+    static {
+        for (int i = 0; i < INDEX_STRINGS.length; i++) {
+            INDEX_STRINGS[i] = String.valueOf(i).intern();
+        }
+    }
+
+    private final int maxEntries;
+    private final Map<String, String> pool = new ConcurrentHashMap<>();
+
+    MetadataInterner(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param index a segment number
+     * @return the shared string for the number
+     */
+    static String indexString(int index) {
+        return index >= 0 && index < INDEX_STRINGS.length ? INDEX_STRINGS[index] : String.valueOf(index);
+    }
+
+    /**
+     * Replaces the string values of the metadata with shared instances, in place.
+     *
+     * @param metadata the metadata
+     * @return the same metadata
+     */
+    Metadata intern(Metadata metadata) {
+        for (Map.Entry<String, Object> entry : metadata.toMap().entrySet()) {
+            if (entry.getValue() instanceof String value) {
+                String shared = intern(value);
+                if (shared != value) {
+                    metadata.put(entry.getKey(), shared);
+                }
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * @param value a string
+     * @return the shared instance of an equal string, or the string itself if it's not interned
+     */
+    String intern(String value) {
+        if (value.length() > MAX_VALUE_LENGTH) {
+            return value;
+        }
+
+        String shared = pool.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (pool.size() >= maxEntries) {
+            return value;
+        }
+
+        shared = pool.putIfAbsent(value, value);
+        return shared == null ? value : shared;
+    }
+
+    int size() {
+        return pool.size();
+    }
+}
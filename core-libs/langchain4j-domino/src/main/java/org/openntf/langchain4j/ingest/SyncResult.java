@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import java.util.Optional;
+
+/**
+ * Outcome of synchronizing a single database within an {@link IncrementalSyncService}.
+ *
+ * @param target        the database
+ * @param modifiedNotes the number of notes modified since the last synchronization
+ * @param ingestion     the ingestion of the modified notes, null if none were modified or the run failed
+ * @param deletions     the propagated deletions, null without a deletion synchronizer or if the run failed
+ * @param elapsedMillis time spent on the database
+ * @param error         the error stopping the synchronization, if any
+ */
+public record SyncResult(DatabaseTarget target, int modifiedNotes, IngestionResult ingestion, DeletionSyncResult deletions,
+                         long elapsedMillis, Throwable error) {
+
+    /**
+     * @return true if the database was synchronized without errors
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    public Optional<Throwable> getError() {
+        return Optional.ofNullable(error);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.output.TokenUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+
+/**
+ * Packs text segments into embedding requests, keeping each request under an item limit and a token limit.
+ * <p>
+ * Token counts are estimated from the text length using a characters-per-token ratio. The ratio starts at four and
+ * is learned from the token usage reported by the embedding model, so estimates adapt to the actual content
+ * (languages, code, markup etc.). Batches are packed up to a safety fraction of the token limit, to absorb estimation
+ * errors. A segment larger than the budget is split into pieces at whitespace. A request rejected by the model for
+ * being too large lowers the ratio through {@link #rejected(List)}.
+ * <p>
+ * {@link #add(TextSegment)} and {@link #flush()} are meant to be called from a single thread,
+ * {@link #learn(List, TokenUsage)} and {@link #rejected(List)} may be called from any thread.
+ */
+public class TokenBudgetBatcher {
+
+    static final double DEFAULT_CHARS_PER_TOKEN = 4.0;
+
+    private static final double MIN_CHARS_PER_TOKEN = 1.0;
+    private static final double MAX_CHARS_PER_TOKEN = 16.0;
+
+    // Weight of a new observation in the moving average
+    private static final double LEARNING_RATE = 0.2;
+
+    // Margin below the bound implied by a rejected request
+    private static final double REJECTION_FACTOR = 0.9;
+
+    private final int maxBatchTokens;
+    private final int maxBatchSize;
+    private final int tokenBudget;
+    private final ToIntFunction<String> tokenCountEstimator;
+
+    private volatile double charsPerToken = DEFAULT_CHARS_PER_TOKEN;
+
+    private List<TextSegment> batch = new ArrayList<>();
+    private int batchTokens;
+
+    /**
+     * Creates a batcher estimating tokens with the learned characters-per-token ratio.
+     *
+     * @param maxBatchTokens maximum tokens in a single request
+     * @param maxBatchSize   maximum segments in a single request
+     * @param safetyFactor   fraction of the token limit to fill, e.g. 0.9
+     */
+    public TokenBudgetBatcher(int maxBatchTokens, int maxBatchSize, double safetyFactor) {
+        this(maxBatchTokens, maxBatchSize, safetyFactor, null);
+    }
+
+    /**
+     * Creates a batcher.
+     *
+     * @param maxBatchTokens      maximum tokens in a single request
+     * @param maxBatchSize        maximum segments in a single request
+     * @param safetyFactor        fraction of the token limit to fill, e.g. 0.9
+     * @param tokenCountEstimator an exact estimator (e.g. a tokenizer) or null to use the learned ratio
+     */
+    public TokenBudgetBatcher(int maxBatchTokens, int maxBatchSize, double safetyFactor, ToIntFunction<String> tokenCountEstimator) {
+        if (maxBatchTokens < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch limits must be positive");
+        }
+        if (safetyFactor <= 0 || safetyFactor > 1) {
+            throw new IllegalArgumentException("Safety factor must be between 0 and 1");
+        }
+
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxBatchSize = maxBatchSize;
+        this.tokenBudget = Math.max(1, (int) (maxBatchTokens * safetyFactor));
+        this.tokenCountEstimator = tokenCountEstimator;
+    }
+
+    /**
+     * @param text a text
+     * @return the estimated number of tokens
+     */
+    public int estimateTokens(String text) {
+        if (tokenCountEstimator != null) {
+            return tokenCountEstimator.applyAsInt(text);
+        }
+        return (int) Math.ceil(text.length() / charsPerToken);
+    }
+
+    /**
+     * @return the current characters-per-token ratio
+     */
+    public double getCharsPerToken() {
+        return charsPerToken;
+    }
+
+    /**
+     * Adds a segment, splitting it if it doesn't fit in a single request.
+     *
+     * @param segment the segment
+     * @return batches completed by this segment, possibly empty
+     */
+    public List<List<TextSegment>> add(TextSegment segment) {
+        List<List<TextSegment>> completed = new ArrayList<>();
+        for (TextSegment piece : split(segment)) {
+            addPiece(piece, completed);
+        }
+        return completed;
+    }
+
+    /**
+     * Adds a piece returned by {@link #split(TextSegment)} as it is. It's not split again, even if the ratio has been
+     * lowered in the meantime, so the pieces known in advance are exactly the pieces sent.
+     *
+     * @param piece the piece
+     * @return batches completed by this piece, possibly empty
+     */
+    public List<List<TextSegment>> addPiece(TextSegment piece) {
+        List<List<TextSegment>> completed = new ArrayList<>();
+        addPiece(piece, completed);
+        return completed;
+    }
+
+    private void addPiece(TextSegment piece, List<List<TextSegment>> completed) {
+        int tokens = estimateTokens(piece.text());
+
+        if (!batch.isEmpty() && (batch.size() >= maxBatchSize || batchTokens + tokens > tokenBudget)) {
+            completed.add(batch);
+            batch = new ArrayList<>();
+            batchTokens = 0;
+        }
+
+        batch.add(piece);
+        batchTokens += tokens;
+    }
+
+    /**
+     * Completes the current batch.
+     *
+     * @return the batch, or empty if there are no pending segments
+     */
+    public Optional<List<TextSegment>> flush() {
+        if (batch.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<TextSegment> completed = batch;
+        batch = new ArrayList<>();
+        batchTokens = 0;
+        return Optional.of(completed);
+    }
+
+    /**
+     * Updates the characters-per-token ratio from the token usage reported for a request.
+     * Ignored if the model doesn't report input tokens.
+     *
+     * @param segments   the segments sent
+     * @param tokenUsage the reported usage, may be null
+     */
+    public void learn(List<TextSegment> segments, TokenUsage tokenUsage) {
+        if (tokenUsage == null || tokenUsage.inputTokenCount() == null || tokenUsage.inputTokenCount() <= 0) {
+            return;
+        }
+
+        long chars = segments.stream().mapToLong(segment -> segment.text().length()).sum();
+        if (chars == 0) {
+            return;
+        }
+
+        double observed = (double) chars / tokenUsage.inputTokenCount();
+
+        synchronized (this) {
+            // Lower ratios are adopted at once so requests stay under the limit, higher ones are averaged in slowly
+            double updated = observed < charsPerToken
+                ? observed
+                : charsPerToken + LEARNING_RATE * (observed - charsPerToken);
+            charsPerToken = Math.max(MIN_CHARS_PER_TOKEN, Math.min(MAX_CHARS_PER_TOKEN, updated));
+        }
+    }
+
+    /**
+     * Lowers the characters-per-token ratio after the model rejected a request for exceeding the token limit.
+     * The request had more tokens than the limit, so the ratio is set below its characters per limit.
+     *
+     * @param segments the segments sent
+     */
+    public void rejected(List<TextSegment> segments) {
+        long chars = segments.stream().mapToLong(segment -> segment.text().length()).sum();
+
+        synchronized (this) {
+            double bound = (double) chars / maxBatchTokens;
+            double updated = Math.min(charsPerToken, bound) * REJECTION_FACTOR;
+            charsPerToken = Math.max(MIN_CHARS_PER_TOKEN, updated);
+        }
+    }
+
+    /**
+     * Splits a segment into pieces fitting in a single request. Pieces keep a copy of the segment's metadata.
+     * Segments passed to {@link #add(TextSegment)} are split as needed, this is useful to know the pieces in advance.
+     * Pass the pieces to {@link #addPiece(TextSegment)} then, as the ratio may change between the two calls.
+     *
+     * @param segment the segment
+     * @return the segment itself if it fits, its pieces otherwise
+     */
+    public List<TextSegment> split(TextSegment segment) {
+        String text = segment.text();
+        if (estimateTokens(text) <= tokenBudget) {
+            return List.of(segment);
+        }
+
+        List<TextSegment> pieces = new ArrayList<>();
+        int start = 0;
+
+        while (start < text.length()) {
+            int end = pieceEnd(text, start);
+            pieces.add(TextSegment.from(text.substring(start, end), segment.metadata().copy()));
+            start = end;
+        }
+
+        return pieces;
+    }
+
+    // Finds the longest prefix of text from start that fits in the budget, ending at whitespace if possible
+    private int pieceEnd(String text, int start) {
+        int low = start + 1;
+        int high = text.length();
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (estimateTokens(text.substring(start, mid)) <= tokenBudget) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (low == text.length()) {
+            return low;
+        }
+
+        for (int i = low; i > start + (low - start) / 2; i--) {
+            if (Character.isWhitespace(text.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openntf.langchain4j.store.Bm25Index;
+
+/**
+ * A {@link ContentRetriever} searching a local {@link Bm25Index}.
+ * <p>
+ * If an {@link EmbeddingStore} and an {@link EmbeddingModel} are provided, the query is also searched in the store and
+ * both rankings are combined with reciprocal rank fusion, by segment ID. This works when the index and the store were
+ * filled with the same IDs, as the {@link org.openntf.langchain4j.ingest.DominoIngestionPipeline} does.
+ * <pre>
+ * ContentRetriever retriever = Bm25ContentRetriever.builder()
+ *     .index(bm25Index)
+ *     .embeddingStore(embeddingStore)
+ *     .embeddingModel(embeddingModel)
+ *     .maxResults(5)
+ *     .build();
+ * </pre>
+ */
+public class Bm25ContentRetriever implements ContentRetriever {
+
+    private final Bm25Index index;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingModel embeddingModel;
+    private final Filter filter;
+    private final int candidates;
+    private final int rankConstant;
+    private final int maxResults;
+
+    private Bm25ContentRetriever(Builder builder) {
+        this.index = ensureNotNull(builder.index, "Index");
+
+        if (builder.maxResults < 1 || builder.candidates < 1) {
+            throw new IllegalArgumentException("Result and candidate counts must be positive");
+        }
+        if ((builder.embeddingStore == null) != (builder.embeddingModel == null)) {
+            throw new IllegalArgumentException("Embedding store and embedding model must be provided together!");
+        }
+        if (builder.rankConstant < 1) {
+            throw new IllegalArgumentException("Rank constant must be positive");
+        }
+
+        this.embeddingStore = builder.embeddingStore;
+        this.embeddingModel = builder.embeddingModel;
+        this.filter = builder.filter;
+        this.candidates = builder.candidates;
+        this.rankConstant = builder.rankConstant;
+        this.maxResults = builder.maxResults;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Retrieves the best segments for a query.
+     *
+     * @param query the query
+     * @return contents, best first, with the BM25 score (or the fused score, if an embedding store is set) as
+     * {@link ContentMetadata#SCORE} and the segment ID as {@link ContentMetadata#EMBEDDING_ID}
+     */
+    @Override
+    public List<Content> retrieve(Query query) {
+        ensureNotNull(query, "Query");
+        String text = query.text();
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        if (embeddingStore == null) {
+            return index.search(text, maxResults, filter)
+                        .stream()
+                        .map(match -> content(match.segment(), match.score(), match.id()))
+                        .toList();
+        }
+
+        Map<String, TextSegment> segments = new HashMap<>();
+
+        List<String> lexicalRanking = new ArrayList<>();
+        for (Bm25Index.Match match : index.search(text, candidates, filter)) {
+            lexicalRanking.add(match.id());
+            segments.put(match.id(), match.segment());
+        }
+
+        Embedding embedding = embeddingModel.embed(text).content();
+        List<String> embeddingRanking = new ArrayList<>();
+        for (EmbeddingMatch<TextSegment> match : embeddingStore.search(EmbeddingSearchRequest.builder()
+                                                                                             .queryEmbedding(embedding)
+                                                                                             .maxResults(candidates)
+                                                                                             .filter(filter)
+                                                                                             .build())
+                                                               .matches()) {
+            if (match.embedded() != null) {
+                embeddingRanking.add(match.embeddingId());
+                segments.putIfAbsent(match.embeddingId(), match.embedded());
+            }
+        }
+
+        return ReciprocalRankFusion.fuse(List.of(lexicalRanking, embeddingRanking), rankConstant, false)
+                                   .entrySet()
+                                   .stream()
+                                   .limit(maxResults)
+                                   .map(entry -> content(segments.get(entry.getKey()), entry.getValue(), entry.getKey()))
+                                   .toList();
+    }
+
+    private static Content content(TextSegment segment, double score, String id) {
+        return Content.from(segment, Map.of(ContentMetadata.SCORE, score, ContentMetadata.EMBEDDING_ID, id));
+    }
+
+    public static class Builder {
+
+        private Bm25Index index;
+        private EmbeddingStore<TextSegment> embeddingStore;
+        private EmbeddingModel embeddingModel;
+        private Filter filter;
+        private int candidates = 50;
+        private int rankConstant = ReciprocalRankFusion.DEFAULT_K;
+        private int maxResults = 5;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the index to search.
+         * @param index the BM25 index
+         * @return this builder instance, for method chaining.
+         */
+        public Builder index(Bm25Index index) {
+            this.index = index;
+            return this;
+        }
+
+        /**
+         * Sets an embedding store to search as well. Requires an embedding model.
+         * @param embeddingStore the embedding store
+         * @return this builder instance, for method chaining.
+         */
+        public Builder embeddingStore(EmbeddingStore<TextSegment> embeddingStore) {
+            this.embeddingStore = embeddingStore;
+            return this;
+        }
+
+        /**
+         * Sets the model to embed queries with. It must be the model the embedding store was filled with.
+         * @param embeddingModel the embedding model
+         * @return this builder instance, for method chaining.
+         */
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /**
+         * Sets a metadata filter for both searches.
+         * @param filter the metadata filter
+         * @return this builder instance, for method chaining.
+         */
+        public Builder filter(Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Sets how many matches are taken from each search for fusion. Defaults to 50.
+         * @param candidates the number of candidates per search
+         * @return this builder instance, for method chaining.
+         */
+        public Builder candidates(int candidates) {
+            this.candidates = candidates;
+            return this;
+        }
+
+        /**
+         * Sets the reciprocal rank fusion constant. Lower values favour the top ranks of each search. Defaults to 60.
+         * @param rankConstant the rank constant
+         * @return this builder instance, for method chaining.
+         */
+        public Builder rankConstant(int rankConstant) {
+            this.rankConstant = rankConstant;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of contents to return. Defaults to 5.
+         * @param maxResults the maximum number of results
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxResults(int maxResults) {
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        public Bm25ContentRetriever build() {
+            return new Bm25ContentRetriever(this);
+        }
+    }
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.Database.Action;
+import com.hcl.domino.data.Database.FormulaQueryCallback;
+import com.hcl.domino.data.Database.SearchMatch;
+import com.hcl.domino.data.DocumentClass;
+import com.hcl.domino.data.SearchFlag;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.openntf.langchain4j.store.VectorSimilarity;
+
+/**
+ * A {@link ContentRetriever} caching the results of another retriever.
+ * <p>
+ * A query is answered from the cache when its normalized text (trimmed, lower case, single spaces) was seen before.
+ * If an {@link EmbeddingModel} is provided, a query is also answered by a cached query whose embedding is at least as
+ * similar as the similarity threshold. This still costs an embedding call, but saves the search and the note loads.
+ * Entries expire after a time-to-live and the least recently used entries are evicted above the maximum size.
+ * <p>
+ * Cached answers are invalidated when a note behind them changes. The notes are identified by the {@code unid}
+ * metadata of the returned segments, which the {@link org.openntf.langchain4j.data.MetadataDefinition#DEFAULT default metadata definition}
+ * provides. The cache keeps a modified-time watermark for its database: {@link #refresh(Database)} searches the notes
+ * modified or deleted since the watermark, evicts the entries referring to them and moves the watermark forward. When
+ * a change source is configured, this happens automatically on the calling thread, at most once per validation
+ * interval, so a cached answer is at most that old. Answers without {@code unid} metadata are only invalidated by
+ * their time-to-live.
+ * <p>
+ * One cache should front the retriever of one database. If users have different read access to the documents, set a
+ * {@link Builder#scope(Supplier) scope} (e.g. the user name) so that answers are not shared between them.
+ * <pre>
+ * CachingContentRetriever retriever = CachingContentRetriever.builder()
+ *     .delegate(hybridRetriever)
+ *     .embeddingModel(embeddingModel)
+ *     .changeSource(() -&gt; database)
+ *     .build();
+ * </pre>
+ */
+public class CachingContentRetriever implements ContentRetriever {
+
+    private static final Logger log = Logger.getLogger(CachingContentRetriever.class.getName());
+
+    static final String UNID_METADATA = "unid";
+
+    // The watermark starts in the past to cover the clock difference between this machine and the server
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ContentRetriever delegate;
+    private final EmbeddingModel embeddingModel;
+    private final double similarityThreshold;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Supplier<String> scope;
+    private final Supplier<Database> changeSource;
+    private final long validationIntervalNanos;
+    private final LongSupplier clock;
+
+    // Guarded by itself, in access order for LRU eviction
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // Guarded by refreshLock
+    private TemporalAccessor watermark;
+    private volatile long lastRefreshNanos;
+
+    // Incremented on every invalidation, answers retrieved across an invalidation are not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private CachingContentRetriever(Builder builder, LongSupplier clock) {
+        this.delegate = ensureNotNull(builder.delegate, "Delegate");
+
+        if (builder.maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum entries must be positive");
+        }
+        if (builder.similarityThreshold <= 0 || builder.similarityThreshold > 1) {
+            throw new IllegalArgumentException("Similarity threshold must be between 0 and 1");
+        }
+        if (builder.ttl == null || builder.ttl.isNegative() || builder.ttl.isZero()) {
+            throw new IllegalArgumentException("Time-to-live must be positive");
+        }
+        if (builder.validationInterval == null || builder.validationInterval.isNegative()) {
+            throw new IllegalArgumentException("Validation interval must not be negative");
+        }
+
+        this.embeddingModel = builder.embeddingModel;
+        this.similarityThreshold = builder.similarityThreshold;
+        this.maxEntries = builder.maxEntries;
+        this.ttlNanos = builder.ttl.toNanos();
+        this.scope = builder.scope;
+        this.changeSource = builder.changeSource;
+        this.validationIntervalNanos = builder.validationInterval.toNanos();
+        this.clock = clock;
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CachingContentRetriever.this.maxEntries;
+            }
+        };
+
+        this.watermark = OffsetDateTime.now(ZoneOffset.UTC).minus(CLOCK_SKEW);
+        this.lastRefreshNanos = clock.getAsLong();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        String text = query.text();
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        refreshIfDue();
+
+        String scopeName = scope == null ? "" : String.valueOf(scope.get());
+        String key = scopeName + '\u0000' + normalize(text);
+
+        Entry entry = lookup(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry.contents;
+        }
+
+        float[] embedding = null;
+        if (embeddingModel != null) {
+            embedding = normalizedVector(embeddingModel.embed(text).content().vector());
+
+            entry = lookupSimilar(scopeName, embedding);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.contents;
+            }
+        }
+
+        misses.incrementAndGet();
+
+        long invalidationsBefore = invalidations.get();
+        List<Content> contents = List.copyOf(delegate.retrieve(query));
+
+        Set<String> unids = new HashSet<>();
+        for (Content content : contents) {
+            String unid = content.textSegment().metadata().getString(UNID_METADATA);
+            if (unid != null) {
+                unids.add(unid.toUpperCase(Locale.ROOT));
+            }
+        }
+
+        synchronized (entries) {
+            // A note may have changed after it was loaded for this answer, the next refresh would not see it again
+            if (invalidations.get() == invalidationsBefore) {
+                entries.put(key, new Entry(scopeName, embedding, contents, unids, clock.getAsLong() + ttlNanos));
+            }
+        }
+
+        return contents;
+    }
+
+    private Entry lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(clock.getAsLong())) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private Entry lookupSimilar(String scopeName, float[] embedding) {
+        long now = clock.getAsLong();
+        List<String> keys = new ArrayList<>();
+        List<float[]> candidates = new ArrayList<>();
+
+        synchronized (entries) {
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Entry> mapEntry = it.next();
+                Entry entry = mapEntry.getValue();
+
+                if (entry.isExpired(now)) {
+                    it.remove();
+                    continue;
+                }
+                if (entry.embedding == null || entry.embedding.length != embedding.length || !entry.scope.equals(scopeName)) {
+                    continue;
+                }
+
+                keys.add(mapEntry.getKey());
+                candidates.add(entry.embedding);
+            }
+        }
+
+        // Scored outside the lock, so other threads don't wait for the scan. Cached embeddings are never modified.
+        int best = -1;
+        double bestSimilarity = similarityThreshold;
+        for (int i = 0; i < candidates.size(); i++) {
+            double similarity = VectorSimilarity.dot(candidates.get(i), embedding);
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                best = i;
+            }
+        }
+
+        if (best < 0) {
+            return null;
+        }
+
+        synchronized (entries) {
+            // get() rather than the scanned entry, to move it to the end of the access order
+            Entry entry = entries.get(keys.get(best));
+            // Evicted or replaced in the meantime
+            return entry != null && entry.embedding == candidates.get(best) ? entry : null;
+        }
+    }
+
+    private void refreshIfDue() {
+        if (changeSource == null || clock.getAsLong() - lastRefreshNanos < validationIntervalNanos) {
+            return;
+        }
+
+        // Only one thread refreshes, the others answer from the cache in the meantime
+        if (refreshLock.tryLock()) {
+            try {
+                if (clock.getAsLong() - lastRefreshNanos >= validationIntervalNanos) {
+                    refresh(changeSource.get());
+                }
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Invalidates the cached answers referring to notes modified or deleted in the database since the last refresh.
+     * <p>
+     * If the database can't be searched, the whole cache is invalidated, since its answers can't be verified.
+     *
+     * @param database the database behind the cached answers
+     * @return the number of modified or deleted notes found
+     */
+    public int refresh(Database database) {
+        ensureNotNull(database, "Database");
+
+        refreshLock.lock();
+        try {
+            Set<String> changedUnids = new HashSet<>();
+            TemporalAccessor until;
+
+            try {
+                until = database.queryFormula("@All", watermark, EnumSet.of(SearchFlag.NOTIFYDELETIONS), EnumSet.of(DocumentClass.DATA),
+                                              new FormulaQueryCallback() {
+                                                  @Override
+                                                  public Action matchFound(SearchMatch searchMatch) {
+                                                      changedUnids.add(searchMatch.getUNID());
+                                                      return Action.Continue;
+                                                  }
+
+                                                  @Override
+                                                  public Action deletionStubFound(SearchMatch searchMatch) {
+                                                      changedUnids.add(searchMatch.getUNID());
+                                                      return Action.Continue;
+                                                  }
+                                              });
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Unable to search modified notes, invalidating the cache", e);
+                invalidateAll();
+                lastRefreshNanos = clock.getAsLong();
+                return 0;
+            }
+
+            invalidate(changedUnids);
+
+            if (until != null) {
+                watermark = until;
+            }
+            lastRefreshNanos = clock.getAsLong();
+
+            log.log(Level.FINE, () -> "Found " + changedUnids.size() + " modified notes since the last refresh");
+            return changedUnids.size();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Invalidates the cached answers referring to any of the given notes.
+     *
+     * @param unids universal IDs of the modified or deleted notes
+     * @return the number of invalidated answers
+     */
+    public int invalidate(Collection<String> unids) {
+        if (unids.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> normalized = new HashSet<>();
+        for (String unid : unids) {
+            normalized.add(unid.toUpperCase(Locale.ROOT));
+        }
+
+        int removed = 0;
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                for (String unid : entry.unids) {
+                    if (normalized.contains(unid)) {
+                        it.remove();
+                        removed++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes all cached answers.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached answers, including expired ones not evicted yet
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the number of queries answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of queries passed to the delegate retriever
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    static String normalize(String text) {
+        return WHITESPACE.matcher(text.strip().toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    private static float[] normalizedVector(float[] vector) {
+        double norm = Math.sqrt(VectorSimilarity.dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                normalized[i] = (float) (vector[i] / norm);
+            }
+        }
+        return normalized;
+    }
+
+    private record Entry(String scope, float[] embedding, List<Content> contents, Set<String> unids, long expiresAtNanos) {
+
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    public static class Builder {
+
+        private ContentRetriever delegate;
+        private EmbeddingModel embeddingModel;
+        private double similarityThreshold = 0.95;
+        private int maxEntries = 1000;
+        private Duration ttl = Duration.ofMinutes(10);
+        private Supplier<String> scope;
+        private Supplier<Database> changeSource;
+        private Duration validationInterval = Duration.ofSeconds(1);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the retriever answering the queries not found in the cache.
+         * @param delegate the retriever
+         * @return this builder instance, for method chaining.
+         */
+        public Builder delegate(ContentRetriever delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Sets an embedding model to match queries by similarity. Without it, only queries with the same normalized
+         * text are matched.
+         * @param embeddingModel the embedding model
+         * @return this builder instance, for method chaining.
+         */
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /**
+         * Sets the minimum cosine similarity for a query to be answered by a cached query. Defaults to 0.95.
+         * @param similarityThreshold the threshold, between 0 (exclusive) and 1
+         * @return this builder instance, for method chaining.
+         */
+        public Builder similarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the number of cached answers kept before the least recently used ones are evicted. Defaults to 1000.
+         * @param maxEntries the maximum number of answers
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets how long an answer is cached. Defaults to 10 minutes.
+         * @param ttl the time-to-live
+         * @return this builder instance, for method chaining.
+         */
+        public Builder ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * Sets a supplier partitioning the cache, e.g. by the current user name. Answers are only shared within a scope.
+         * @param scope the scope supplier, called on the retrieving thread
+         * @return this builder instance, for method chaining.
+         */
+        public Builder scope(Supplier<String> scope) {
+            this.scope = scope;
+            return this;
+        }
+
+        /**
+         * Sets the database searched for modified notes during retrieval. The supplier is called on the retrieving
+         * thread, at most once per validation interval. Without it, {@link #refresh(Database)} has to be called by
+         * the application.
+         * @param changeSource the database supplier
+         * @return this builder instance, for method chaining.
+         */
+        public Builder changeSource(Supplier<Database> changeSource) {
+            this.changeSource = changeSource;
+            return this;
+        }
+
+        /**
+         * Sets the minimum time between two searches for modified notes from the change source. Defaults to 1 second.
+         * @param validationInterval the interval
+         * @return this builder instance, for method chaining.
+         */
+        public Builder validationInterval(Duration validationInterval) {
+            this.validationInterval = validationInterval;
+            return this;
+        }
+
+        public CachingContentRetriever build() {
+            return build(System::nanoTime);
+        }
+
+        CachingContentRetriever build(LongSupplier clock) {
+            return new CachingContentRetriever(this, clock);
+        }
+    }
+}
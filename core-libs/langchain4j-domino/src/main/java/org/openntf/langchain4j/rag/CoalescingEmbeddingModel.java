@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An {@link EmbeddingModel} combining concurrent single-text embedding requests into batches.
+ * <p>
+ * Retrievers embed one query at a time. When many requests do so at the same moment, this model collects the texts
+ * arriving within a short window and embeds them with one {@link EmbeddingModel#embedAll(List)} call on the delegate.
+ * Identical texts waiting for the same call are embedded once. If a batch call fails, its texts are embedded one by
+ * one, so a text the model rejects only fails its own requests.
+ * <p>
+ * No background thread is used. The first request of a batch waits for the window, or until the batch is full, and
+ * then calls the delegate for everyone in the batch. A request arriving while no other batch is running is not
+ * delayed, so an idle model answers as fast as the delegate.
+ * <p>
+ * Batch calls ({@link #embedAll(List)}), as made by ingestion, are passed to the delegate unchanged.
+ * <pre>
+ * EmbeddingModel queryModel = CoalescingEmbeddingModel.builder()
+ *     .delegate(embeddingModel)
+ *     .window(Duration.ofMillis(5))
+ *     .build();
+ * </pre>
+ */
+public class CoalescingEmbeddingModel implements EmbeddingModel {
+
+    private static final Logger log = Logger.getLogger(CoalescingEmbeddingModel.class.getName());
+
+    private final EmbeddingModel delegate;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchClosed = lock.newCondition();
+
+    // Guarded by lock
+    private Batch open;
+    private int running;
+    private final Map<String, CompletableFuture<Embedding>> inFlight = new HashMap<>();
+
+    // Statistics
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong modelCalls = new AtomicLong();
+
+    private CoalescingEmbeddingModel(Builder builder) {
+        this.delegate = ensureNotNull(builder.delegate, "Delegate");
+
+        if (builder.window == null || builder.window.isNegative()) {
+            throw new IllegalArgumentException("Window must not be negative");
+        }
+        if (builder.maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be positive");
+        }
+
+        this.windowNanos = builder.window.toNanos();
+        this.maxBatchSize = builder.maxBatchSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return Response.from(await(submit(ensureNotNull(text, "Text"))));
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        return embed(ensureNotNull(textSegment, "Text Segment").text());
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        modelCalls.incrementAndGet();
+        return delegate.embedAll(textSegments);
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    /**
+     * @return the number of single-text requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests answered by an identical request in flight
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    /**
+     * @return the number of calls made to the delegate
+     */
+    public long getModelCallCount() {
+        return modelCalls.get();
+    }
+
+    private CompletableFuture<Embedding> submit(String text) {
+        requests.incrementAndGet();
+
+        CompletableFuture<Embedding> future;
+        Batch batch;
+        boolean leader = false;
+
+        lock.lock();
+        try {
+            future = inFlight.get(text);
+            if (future != null) {
+                deduplicated.incrementAndGet();
+                return future;
+            }
+
+            future = new CompletableFuture<>();
+            inFlight.put(text, future);
+
+            if (open == null) {
+                open = new Batch();
+                leader = true;
+            }
+            batch = open;
+            batch.add(text, future);
+
+            if (batch.size() >= maxBatchSize) {
+                open = null;
+                batchClosed.signalAll();
+            }
+
+            if (leader) {
+                // Waiting only pays off when others are embedding at the same time
+                long remaining = running > 0 ? windowNanos : 0;
+                try {
+                    while (open == batch && remaining > 0) {
+                        remaining = batchClosed.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    // The batch is run anyway, other requests are waiting for it
+                    Thread.currentThread().interrupt();
+                }
+                if (open == batch) {
+                    open = null;
+                }
+                running++;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (leader) {
+            run(batch);
+        }
+
+        return future;
+    }
+
+    private void run(Batch batch) {
+        try {
+            try {
+                List<Embedding> embeddings = embedTexts(batch.texts);
+                for (int i = 0; i < embeddings.size(); i++) {
+                    batch.futures.get(i).complete(embeddings.get(i));
+                }
+                log.log(Level.FINEST, () -> "Embedded a batch of " + batch.size() + " texts");
+            } catch (RuntimeException e) {
+                if (batch.size() == 1) {
+                    batch.futures.get(0).completeExceptionally(e);
+                } else {
+                    // One bad text shouldn't fail everyone else's request
+                    log.log(Level.FINE, "Embedding a batch of " + batch.size() + " texts failed, embedding them one by one", e);
+                    for (int i = 0; i < batch.size(); i++) {
+                        try {
+                            batch.futures.get(i).complete(embedTexts(List.of(batch.texts.get(i))).get(0));
+                        } catch (RuntimeException textFailure) {
+                            batch.futures.get(i).completeExceptionally(textFailure);
+                        }
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            // Errors too, nobody waiting for the batch may be left blocked
+            for (CompletableFuture<Embedding> future : batch.futures) {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            lock.lock();
+            try {
+                running--;
+                for (String text : batch.texts) {
+                    inFlight.remove(text);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private List<Embedding> embedTexts(List<String> texts) {
+        List<TextSegment> segments = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            segments.add(TextSegment.from(text));
+        }
+
+        modelCalls.incrementAndGet();
+        List<Embedding> embeddings = delegate.embedAll(segments).content();
+        if (embeddings == null || embeddings.size() != segments.size()) {
+            throw new IllegalStateException("Embedding model returned " + (embeddings == null ? 0 : embeddings.size())
+                                                 + " embeddings for " + segments.size() + " texts");
+        }
+        return embeddings;
+    }
+
+    private static Embedding await(CompletableFuture<Embedding> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Embedding interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Embedding failed", e.getCause());
+        }
+    }
+
+    private static class Batch {
+
+        private final List<String> texts = new ArrayList<>();
+        private final List<CompletableFuture<Embedding>> futures = new ArrayList<>();
+
+        void add(String text, CompletableFuture<Embedding> future) {
+            texts.add(text);
+            futures.add(future);
+        }
+
+        int size() {
+            return texts.size();
+        }
+    }
+
+    public static class Builder {
+
+        private EmbeddingModel delegate;
+        private Duration window = Duration.ofMillis(5);
+        private int maxBatchSize = 32;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the embedding model making the calls.
+         * @param delegate the embedding model
+         * @return this builder instance, for method chaining.
+         */
+        public Builder delegate(EmbeddingModel delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Sets how long the first request of a batch waits for others while the model is busy. Defaults to 5 ms.
+         * @param window the window
+         * @return this builder instance, for method chaining.
+         */
+        public Builder window(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Sets the number of texts closing a batch before its window ends. Defaults to 32.
+         * @param maxBatchSize the maximum batch size
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public CoalescingEmbeddingModel build() {
+            return new CoalescingEmbeddingModel(this);
+        }
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.FTQuery;
+import com.hcl.domino.data.NoteIdWithScore;
+import dev.langchain4j.data.document.BlankDocumentException;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentLoader;
+import dev.langchain4j.data.document.DocumentParser;
+import dev.langchain4j.data.document.DocumentSource;
+import dev.langchain4j.data.document.parser.TextDocumentParser;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openntf.langchain4j.data.DominoDataDocumentSource;
+import org.openntf.langchain4j.data.MetadataDefinition;
+import org.openntf.utils.TypeUtils;
+
+/**
+ * A {@link ContentRetriever} that uses the full-text index of a Domino database to find candidate notes.
+ * <p>
+ * The query is run against the full-text index first. If an {@link EmbeddingStore} and an {@link EmbeddingModel}
+ * are provided, the query is also embedded and searched in the store, and the two rankings are combined with
+ * reciprocal rank fusion (see {@link Fusion}). Only the best notes are opened, and their text is extracted with
+ * {@link DominoDataDocumentSource}, so a note becomes one {@link Content}.
+ * <p>
+ * Embedding matches are tied to notes by the {@code unid} metadata of their segments, as in
+ * {@link MetadataDefinition#DEFAULT}. Matches for notes that are not in the database are ignored.
+ * <p>
+ * A metadata {@link Filter} applies to the embedding search and to the metadata of the loaded notes. With a
+ * {@link DqlFilterTranslator}, the filter is also run as a DQL query first. The full-text search is then restricted to
+ * the selected notes, and if there are few enough of them, the embedding search is restricted to their UNIDs, which
+ * makes selective filters cheap.
+ * <p>
+ * The database handle is used for every query, so use a retriever from the thread that owns the database.
+ * <pre>
+ * ContentRetriever retriever = DominoHybridContentRetriever.builder()
+ *     .database(database)
+ *     .fieldNames(List.of("Subject", "Body"))
+ *     .embeddingStore(embeddingStore)
+ *     .embeddingModel(embeddingModel)
+ *     .maxResults(5)
+ *     .build();
+ * </pre>
+ */
+public class DominoHybridContentRetriever implements ContentRetriever {
+
+    private static final Logger log = Logger.getLogger(DominoHybridContentRetriever.class.getName());
+
+    // Metadata key holding the UNID, as in MetadataDefinition.DEFAULT
+    static final String UNID_METADATA = "unid";
+
+    /**
+     * How full-text and embedding rankings are combined.
+     */
+    public enum Fusion {
+        /**
+         * Notes found by either search are ranked by their reciprocal rank fusion score.
+         */
+        RECIPROCAL_RANK,
+
+        /**
+         * Only notes found by both searches are returned, ranked by their reciprocal rank fusion score.
+         */
+        INTERSECTION
+    }
+
+    private final Database database;
+    private final Set<String> fieldNames;
+    private final MetadataDefinition metadataDefinition;
+    private final DocumentParser documentParser;
+    private final boolean useJsoup;
+    private final boolean lazyMime;
+    private final Set<FTQuery> fullTextOptions;
+    private final int fullTextCandidates;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingModel embeddingModel;
+    private final Filter filter;
+    private final int embeddingCandidates;
+    private final DqlFilterTranslator filterTranslator;
+    private final int pushdownLimit;
+    private final Fusion fusion;
+    private final int rankConstant;
+    private final int maxResults;
+
+    private DominoHybridContentRetriever(Builder builder) {
+        this.database = ensureNotNull(builder.database, "Database");
+        this.metadataDefinition = ensureNotNull(builder.metadataDefinition, "Metadata Definition");
+        this.documentParser = ensureNotNull(builder.documentParser, "Document Parser");
+        this.fusion = ensureNotNull(builder.fusion, "Fusion");
+
+        if (builder.fieldNames.isEmpty()) {
+            throw new IllegalArgumentException("At least one field name must be provided!");
+        }
+        if (builder.maxResults < 1 || builder.fullTextCandidates < 1 || builder.embeddingCandidates < 1) {
+            throw new IllegalArgumentException("Result and candidate counts must be positive");
+        }
+        if ((builder.embeddingStore == null) != (builder.embeddingModel == null)) {
+            throw new IllegalArgumentException("Embedding store and embedding model must be provided together!");
+        }
+        if (builder.pushdownLimit < 0) {
+            throw new IllegalArgumentException("Pushdown limit must not be negative");
+        }
+        if (builder.rankConstant < 1) {
+            throw new IllegalArgumentException("Rank constant must be positive");
+        }
+
+        this.fieldNames = Set.copyOf(builder.fieldNames);
+        this.useJsoup = builder.useJsoup;
+        this.lazyMime = builder.lazyMime;
+        this.fullTextOptions = EnumSet.copyOf(builder.fullTextOptions);
+        this.fullTextOptions.add(FTQuery.SCORES);
+        this.fullTextCandidates = builder.fullTextCandidates;
+        this.embeddingStore = builder.embeddingStore;
+        this.embeddingModel = builder.embeddingModel;
+        this.filter = builder.filter;
+        this.embeddingCandidates = builder.embeddingCandidates;
+        this.filterTranslator = builder.filterTranslator;
+        this.pushdownLimit = builder.pushdownLimit;
+        this.rankConstant = builder.rankConstant;
+        this.maxResults = builder.maxResults;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Retrieves the best notes for a query.
+     * <p>
+     * If the full-text search fails (e.g. the database is not indexed) and an embedding store is set, the embedding
+     * ranking is used alone.
+     *
+     * @param query the query
+     * @return contents of the best notes, best first, with their fused score as {@link ContentMetadata#SCORE}
+     */
+    @Override
+    public List<Content> retrieve(Query query) {
+        ensureNotNull(query, "Query");
+        String text = query.text();
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        // Notes selected by the filter in Domino, null if not pushed down
+        Set<Integer> candidates = null;
+        Filter embeddingFilter = filter;
+
+        if (filter != null && filterTranslator != null) {
+            Optional<String> dql = filterTranslator.toDql(filter);
+            if (dql.isPresent()) {
+                candidates = selectNotes(dql.get());
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+                if (embeddingStore != null && candidates.size() <= pushdownLimit) {
+                    embeddingFilter = filter.and(new IsIn(UNID_METADATA, unids(candidates)));
+                }
+            }
+        }
+
+        List<List<Integer>> rankings = new ArrayList<>();
+        boolean intersect = fusion == Fusion.INTERSECTION;
+
+        try {
+            rankings.add(fullTextRanking(text, candidates));
+        } catch (RuntimeException e) {
+            if (embeddingStore == null) {
+                throw e;
+            }
+            log.log(Level.WARNING, "Full-text search failed, using the embedding store only: " + e.getMessage(), e);
+            intersect = false;
+        }
+
+        if (embeddingStore != null) {
+            rankings.add(embeddingRanking(text, embeddingFilter));
+        }
+
+        Map<Integer, Double> fused = ReciprocalRankFusion.fuse(rankings, rankConstant, intersect);
+
+        List<Content> contents = new ArrayList<>(Math.min(maxResults, fused.size()));
+        for (Map.Entry<Integer, Double> entry : fused.entrySet()) {
+            if (contents.size() == maxResults) {
+                break;
+            }
+            load(entry.getKey()).ifPresent(segment -> contents.add(Content.from(segment, Map.of(ContentMetadata.SCORE, entry.getValue()))));
+        }
+
+        return contents;
+    }
+
+    private Set<Integer> selectNotes(String dql) {
+        long start = System.nanoTime();
+        Set<Integer> noteIds = database.queryDQL(dql)
+                                       .getNoteIds()
+                                       .map(idTable -> (Set<Integer>) new HashSet<Integer>(idTable))
+                                       .orElse(Set.of());
+
+        if (log.isLoggable(Level.FINE)) {
+            log.log(Level.FINE, "DQL selected " + noteIds.size() + " notes in " + (System.nanoTime() - start) / 1_000_000 + "ms: " + dql);
+        }
+        return noteIds;
+    }
+
+    private Set<String> unids(Set<Integer> noteIds) {
+        Set<String> unids = new HashSet<>(noteIds.size() * 2);
+        for (int noteId : noteIds) {
+            unids.add(database.toUNID(noteId));
+        }
+        return unids;
+    }
+
+    /**
+     * @return note IDs from the full-text index, best first
+     */
+    List<Integer> fullTextRanking(String text, Set<Integer> candidates) {
+        List<NoteIdWithScore> matches = new ArrayList<>(database.queryFTIndex(text, fullTextCandidates, fullTextOptions, candidates, 0, fullTextCandidates)
+                                                                .getMatchesWithScore());
+        matches.sort(Comparator.comparingInt(NoteIdWithScore::getScore).reversed());
+
+        return matches.stream()
+                      .map(NoteIdWithScore::getNoteId)
+                      .toList();
+    }
+
+    /**
+     * @return note IDs of the closest embeddings, best first. A note is repeated for each of its matching segments.
+     */
+    List<Integer> embeddingRanking(String text, Filter embeddingFilter) {
+        Embedding embedding = embeddingModel.embed(text).content();
+        List<EmbeddingMatch<TextSegment>> matches = embeddingStore.search(EmbeddingSearchRequest.builder()
+                                                                                                .queryEmbedding(embedding)
+                                                                                                .maxResults(embeddingCandidates)
+                                                                                                .filter(embeddingFilter)
+                                                                                                .build())
+                                                                  .matches();
+
+        List<Integer> noteIds = new ArrayList<>(matches.size());
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            String unid = match.embedded() == null ? null : match.embedded().metadata().getString(UNID_METADATA);
+            if (TypeUtils.isEmpty(unid)) {
+                continue;
+            }
+
+            int noteId = database.toNoteId(unid);
+            if (noteId != 0) {
+                noteIds.add(noteId);
+            }
+        }
+        return noteIds;
+    }
+
+    private Optional<TextSegment> load(int noteId) {
+        Optional<com.hcl.domino.data.Document> dominoDocument = database.getDocumentById(noteId);
+        if (dominoDocument.isEmpty()) {
+            return Optional.empty();
+        }
+
+        DocumentSource source = DominoDataDocumentSource.builder()
+                                                        .fieldNames(fieldNames)
+                                                        .useJsoup(useJsoup)
+                                                        .lazyMime(lazyMime)
+                                                        .metadataDefinition(metadataDefinition)
+                                                        .dominoDocument(dominoDocument.get())
+                                                        .build();
+
+        try {
+            Document document = DocumentLoader.load(source, documentParser);
+            if (filter != null && !filter.test(document.metadata())) {
+                return Optional.empty();
+            }
+            return Optional.of(TextSegment.from(document.text(), document.metadata()));
+        } catch (BlankDocumentException e) {
+            log.log(Level.FINE, "Blank document found for note " + Integer.toHexString(noteId) + ", skipping...");
+            return Optional.empty();
+        }
+    }
+
+    public static class Builder {
+
+        private Database database;
+        private final Set<String> fieldNames = new LinkedHashSet<>();
+        private MetadataDefinition metadataDefinition = MetadataDefinition.DEFAULT;
+        private DocumentParser documentParser = new TextDocumentParser();
+        private boolean useJsoup;
+        private boolean lazyMime;
+        private Set<FTQuery> fullTextOptions = EnumSet.of(FTQuery.STEM_WORDS);
+        private int fullTextCandidates = 50;
+        private EmbeddingStore<TextSegment> embeddingStore;
+        private EmbeddingModel embeddingModel;
+        private Filter filter;
+        private int embeddingCandidates = 50;
+        private DqlFilterTranslator filterTranslator;
+        private int pushdownLimit = 1000;
+        private Fusion fusion = Fusion.RECIPROCAL_RANK;
+        private int rankConstant = ReciprocalRankFusion.DEFAULT_K;
+        private int maxResults = 5;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the database to search and load notes from. It should be full-text indexed.
+         * @param database the database
+         * @return this builder instance, for method chaining.
+         */
+        public Builder database(Database database) {
+            this.database = database;
+            return this;
+        }
+
+        /**
+         * Adds a field to extract text from.
+         * @param fieldName the field name
+         * @return this builder instance, for method chaining.
+         */
+        public Builder fieldName(String fieldName) {
+            this.fieldNames.add(fieldName);
+            return this;
+        }
+
+        /**
+         * Adds fields to extract text from.
+         * @param fieldNames the field names
+         * @return this builder instance, for method chaining.
+         */
+        public Builder fieldNames(Collection<String> fieldNames) {
+            this.fieldNames.addAll(fieldNames);
+            return this;
+        }
+
+        /**
+         * Sets the metadata definition for the retrieved contents. Defaults to {@link MetadataDefinition#DEFAULT}.
+         * @param metadataDefinition the metadata definition
+         * @return this builder instance, for method chaining.
+         */
+        public Builder metadataDefinition(MetadataDefinition metadataDefinition) {
+            this.metadataDefinition = metadataDefinition;
+            return this;
+        }
+
+        /**
+         * Sets the parser for the extracted text. Defaults to {@link TextDocumentParser}.
+         * @param documentParser the document parser
+         * @return this builder instance, for method chaining.
+         */
+        public Builder documentParser(DocumentParser documentParser) {
+            this.documentParser = documentParser;
+            return this;
+        }
+
+        /**
+         * Uses Jsoup instead of the streaming converter for HTML content.
+         * @param useJsoup true to use Jsoup
+         * @return this builder instance, for method chaining.
+         */
+        public Builder useJsoup(boolean useJsoup) {
+            this.useJsoup = useJsoup;
+            return this;
+        }
+
+        /**
+         * Walks the MIME part tree for text instead of materialising MimeData.
+         * @param lazyMime true to walk MIME parts
+         * @return this builder instance, for method chaining.
+         */
+        public Builder lazyMime(boolean lazyMime) {
+            this.lazyMime = lazyMime;
+            return this;
+        }
+
+        /**
+         * Sets full-text query options. Defaults to {@link FTQuery#STEM_WORDS}. Scores are always requested.
+         * @param fullTextOptions the query options
+         * @return this builder instance, for method chaining.
+         */
+        public Builder fullTextOptions(Set<FTQuery> fullTextOptions) {
+            this.fullTextOptions = EnumSet.noneOf(FTQuery.class);
+            this.fullTextOptions.addAll(fullTextOptions);
+            return this;
+        }
+
+        /**
+         * Sets how many notes are taken from the full-text index for fusion. Defaults to 50.
+         * @param fullTextCandidates the number of full-text candidates
+         * @return this builder instance, for method chaining.
+         */
+        public Builder fullTextCandidates(int fullTextCandidates) {
+            this.fullTextCandidates = fullTextCandidates;
+            return this;
+        }
+
+        /**
+         * Sets the embedding store to search in addition to the full-text index. Requires an embedding model.
+         * @param embeddingStore the embedding store
+         * @return this builder instance, for method chaining.
+         */
+        public Builder embeddingStore(EmbeddingStore<TextSegment> embeddingStore) {
+            this.embeddingStore = embeddingStore;
+            return this;
+        }
+
+        /**
+         * Sets the model to embed queries with. It must be the model the embedding store was filled with.
+         * @param embeddingModel the embedding model
+         * @return this builder instance, for method chaining.
+         */
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /**
+         * Sets a metadata filter for the embedding store search and the loaded notes, e.g. to select segments of this
+         * database. Loaded notes are checked with the keys of the retriever's metadata definition.
+         * @param filter the metadata filter
+         * @return this builder instance, for method chaining.
+         */
+        public Builder filter(Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Runs the filter as a DQL query before searching. Use a translator with the metadata definition the
+         * segments were ingested with.
+         * @param filterTranslator the translator, or null to filter after the search only
+         * @return this builder instance, for method chaining.
+         */
+        public Builder filterPushdown(DqlFilterTranslator filterTranslator) {
+            this.filterTranslator = filterTranslator;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of notes selected by DQL for which the embedding search is restricted to their
+         * UNIDs. Larger selections restrict the full-text search only. Defaults to 1000.
+         * @param pushdownLimit the maximum number of notes
+         * @return this builder instance, for method chaining.
+         */
+        public Builder pushdownLimit(int pushdownLimit) {
+            this.pushdownLimit = pushdownLimit;
+            return this;
+        }
+
+        /**
+         * Sets how many segments are taken from the embedding store for fusion. Defaults to 50.
+         * @param embeddingCandidates the number of embedding candidates
+         * @return this builder instance, for method chaining.
+         */
+        public Builder embeddingCandidates(int embeddingCandidates) {
+            this.embeddingCandidates = embeddingCandidates;
+            return this;
+        }
+
+        /**
+         * Sets how full-text and embedding rankings are combined. Defaults to {@link Fusion#RECIPROCAL_RANK}.
+         * @param fusion the fusion mode
+         * @return this builder instance, for method chaining.
+         */
+        public Builder fusion(Fusion fusion) {
+            this.fusion = fusion;
+            return this;
+        }
+
+        /**
+         * Sets the reciprocal rank fusion constant. Lower values favour the top ranks of each search. Defaults to 60.
+         * @param rankConstant the rank constant
+         * @return this builder instance, for method chaining.
+         */
+        public Builder rankConstant(int rankConstant) {
+            this.rankConstant = rankConstant;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of notes to load and return. Defaults to 5.
+         * @param maxResults the maximum number of results
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxResults(int maxResults) {
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        public DominoHybridContentRetriever build() {
+            return new DominoHybridContentRetriever(this);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.openntf.langchain4j.data.MetaField;
+import org.openntf.langchain4j.data.MetadataDefinition;
+
+/**
+ * Translates a LangChain4j metadata {@link Filter} into a DQL query, so Domino can select the candidate notes with
+ * its own indexes before an embedding search.
+ * <p>
+ * Metadata keys are mapped to DQL through the formulas of a {@link MetadataDefinition}:
+ * <ul>
+ *     <li>a formula naming a single item (e.g. {@code form}) becomes an item term, {@code form = 'Policy'}</li>
+ *     <li>{@code @Created}, {@code @AddedToThisFile}, {@code @ModifiedInThisFile}, {@code @DocLength} and
+ *     {@code @DocumentUniqueID} become DQL special values</li>
+ *     <li>other formulas become {@code @formula} terms if enabled with {@link #formulaTerms(boolean)}. Formula terms
+ *     are evaluated note by note, so they are off by default. Temporal fields are never compared in formulas.</li>
+ * </ul>
+ * Temporal values are expected as ISO strings, as the metadata stores them.
+ * <p>
+ * The query selects <em>at least</em> the notes matching the filter: a condition that can't be translated is left
+ * out of its conjunction, and DQL matches an item if any of its values match, comparing text case-insensitively.
+ * So item and formula terms select a superset as well, and they are never negated: {@code not}, {@code !=} and
+ * {@code not in} are only translated for special values. Text items and formulas are only compared for equality, as
+ * a case-insensitive range would leave out notes the filter matches. Matches must still be checked with the filter.
+ */
+public class DqlFilterTranslator {
+
+    private static final Pattern ITEM_NAME = Pattern.compile("[A-Za-z$_][A-Za-z0-9$_]*");
+
+    private static final Map<String, String> SPECIAL_VALUES = Map.of(
+        "@created", "@Created",
+        "@addedtothisfile", "@AddedToThisFile",
+        "@modifiedinthisfile", "@ModifiedInThisFile",
+        "@doclength", "@DocLength",
+        "@documentuniqueid", "@DocumentUniqueID",
+        "@text(@documentuniqueid)", "@DocumentUniqueID"
+    );
+
+    private final MetadataDefinition metadataDefinition;
+    private boolean formulaTerms;
+
+    // A translated condition. Incomplete if conditions were left out, i.e. it selects a superset.
+    private record Term(String dql, boolean complete) {
+    }
+
+    private enum Kind {ITEM, SPECIAL, FORMULA}
+
+    private record Operand(Kind kind, String name, Class<?> fieldType) {
+    }
+
+    /**
+     * Creates a translator for metadata built with the given definition.
+     * @param metadataDefinition the metadata definition used when the segments were ingested
+     * @return a new translator
+     */
+    public static DqlFilterTranslator create(MetadataDefinition metadataDefinition) {
+        return new DqlFilterTranslator(metadataDefinition);
+    }
+
+    public DqlFilterTranslator(MetadataDefinition metadataDefinition) {
+        this.metadataDefinition = ensureNotNull(metadataDefinition, "Metadata Definition");
+    }
+
+    /**
+     * Translates fields with arbitrary formulas into DQL {@code @formula} terms. Defaults to false.
+     * @param formulaTerms true to use formula terms
+     * @return this translator instance, for method chaining.
+     */
+    public DqlFilterTranslator formulaTerms(boolean formulaTerms) {
+        this.formulaTerms = formulaTerms;
+        return this;
+    }
+
+    /**
+     * Translates a filter.
+     * @param filter the metadata filter
+     * @return a DQL query selecting at least the notes matching the filter, or an empty Optional if no part of the
+     * filter can be expressed in DQL
+     */
+    public Optional<String> toDql(Filter filter) {
+        ensureNotNull(filter, "Filter");
+        return Optional.ofNullable(translate(filter)).map(Term::dql);
+    }
+
+    private Term translate(Filter filter) {
+        if (filter instanceof And and) {
+            Term left = translate(and.left());
+            Term right = translate(and.right());
+            if (left == null || right == null) {
+                Term term = left == null ? right : left;
+                return term == null ? null : new Term(term.dql(), false);
+            }
+            return new Term("(" + left.dql() + " and " + right.dql() + ")", left.complete() && right.complete());
+        }
+        if (filter instanceof Or or) {
+            Term left = translate(or.left());
+            Term right = translate(or.right());
+            if (left == null || right == null) {
+                return null;
+            }
+            return new Term("(" + left.dql() + " or " + right.dql() + ")", left.complete() && right.complete());
+        }
+        if (filter instanceof Not not) {
+            return negate(translate(not.expression()));
+        }
+        if (filter instanceof IsEqualTo isEqualTo) {
+            return compare(isEqualTo.key(), "=", isEqualTo.comparisonValue());
+        }
+        if (filter instanceof IsNotEqualTo isNotEqualTo) {
+            return negate(compare(isNotEqualTo.key(), "=", isNotEqualTo.comparisonValue()));
+        }
+        if (filter instanceof IsIn isIn) {
+            return in(isIn.key(), isIn.comparisonValues());
+        }
+        if (filter instanceof IsNotIn isNotIn) {
+            return negate(in(isNotIn.key(), isNotIn.comparisonValues()));
+        }
+        if (filter instanceof IsGreaterThan isGreaterThan) {
+            return compare(isGreaterThan.key(), ">", isGreaterThan.comparisonValue());
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo isGreaterThanOrEqualTo) {
+            return compare(isGreaterThanOrEqualTo.key(), ">=", isGreaterThanOrEqualTo.comparisonValue());
+        }
+        if (filter instanceof IsLessThan isLessThan) {
+            return compare(isLessThan.key(), "<", isLessThan.comparisonValue());
+        }
+        if (filter instanceof IsLessThanOrEqualTo isLessThanOrEqualTo) {
+            return compare(isLessThanOrEqualTo.key(), "<=", isLessThanOrEqualTo.comparisonValue());
+        }
+
+        // Custom filters can't be translated
+        return null;
+    }
+
+    // A superset can't be negated
+    private static Term negate(Term term) {
+        if (term == null || !term.complete()) {
+            return null;
+        }
+        return new Term("not " + term.dql(), true);
+    }
+
+    private Term compare(String key, String operator, Object value) {
+        Operand operand = operand(key);
+        if (operand == null) {
+            return null;
+        }
+
+        // Text is ordered case-insensitively in Domino but not by the filter, e.g. 'a' > 'B' only in Java, so a text
+        // range would drop matching notes
+        if (!"=".equals(operator) && operand.kind() != Kind.SPECIAL && operand.fieldType().equals(String.class)) {
+            return null;
+        }
+
+        if (operand.kind() == Kind.FORMULA) {
+            String literal = formulaLiteral(operand.fieldType(), value);
+            return literal == null ? null : formulaTerm(operand.name() + " " + operator + " " + literal);
+        }
+
+        // DQL compares UNIDs for equality only
+        if ("@DocumentUniqueID".equals(operand.name()) && !"=".equals(operator)) {
+            return null;
+        }
+
+        String literal = dqlLiteral(operand.fieldType(), value);
+        return literal == null ? null : new Term("(" + operand.name() + " " + operator + " " + literal + ")", isExact(operand));
+    }
+
+    private Term in(String key, Collection<?> values) {
+        Operand operand = operand(key);
+        if (operand == null || values.isEmpty()) {
+            return null;
+        }
+
+        List<String> literals = new ArrayList<>(values.size());
+        for (Object value : values) {
+            String literal = operand.kind() == Kind.FORMULA
+                ? formulaLiteral(operand.fieldType(), value)
+                : dqlLiteral(operand.fieldType(), value);
+            if (literal == null) {
+                return null;
+            }
+            literals.add(literal);
+        }
+
+        return switch (operand.kind()) {
+            case ITEM -> new Term("(" + operand.name() + " in (" + String.join(", ", literals) + "))", false);
+            // Formula equality matches if any list element matches
+            case FORMULA -> formulaTerm(operand.name() + " = " + String.join(" : ", literals));
+            case SPECIAL -> new Term(literals.stream()
+                                             .map(literal -> operand.name() + " = " + literal)
+                                             .collect(Collectors.joining(" or ", "(", ")")), isExact(operand));
+        };
+    }
+
+    private static Term formulaTerm(String formula) {
+        // The formula goes into a quoted DQL string
+        if (formula.indexOf('\'') >= 0) {
+            return null;
+        }
+        // Formula comparisons match if any element of a list matches
+        return new Term("@formula('" + formula + "')", false);
+    }
+
+    /**
+     * Items may hold several values and DQL matches any of them, case-insensitively. Only special values, which are
+     * single-valued, are compared exactly. UNIDs are text, compared case-insensitively as well.
+     */
+    private static boolean isExact(Operand operand) {
+        return operand.kind() == Kind.SPECIAL && !"@DocumentUniqueID".equals(operand.name());
+    }
+
+    private Operand operand(String key) {
+        Optional<MetaField> field = metadataDefinition.getField(key);
+        if (field.isEmpty()) {
+            return null;
+        }
+
+        String formula = field.get().formula().trim();
+        Class<?> fieldType = field.get().fieldType();
+
+        if (ITEM_NAME.matcher(formula).matches()) {
+            return new Operand(Kind.ITEM, formula, fieldType);
+        }
+
+        String special = SPECIAL_VALUES.get(formula.replaceAll("\\s+", "").toLowerCase(Locale.ENGLISH));
+        if (special != null) {
+            return new Operand(Kind.SPECIAL, special, fieldType);
+        }
+
+        if (formulaTerms && !fieldType.equals(Temporal.class)) {
+            return new Operand(Kind.FORMULA, "(" + formula + ")", fieldType);
+        }
+
+        return null;
+    }
+
+    private static String dqlLiteral(Class<?> fieldType, Object value) {
+        if (fieldType.equals(Temporal.class)) {
+            return value instanceof String text ? dateTimeLiteral(text) : null;
+        }
+        if (fieldType.equals(String.class)) {
+            // We don't rely on DQL escaping
+            return value instanceof String text && text.indexOf('\'') < 0 ? "'" + text + "'" : null;
+        }
+        return numberLiteral(value);
+    }
+
+    private static String formulaLiteral(Class<?> fieldType, Object value) {
+        if (fieldType.equals(String.class)) {
+            return value instanceof String text
+                ? "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\""
+                : null;
+        }
+        return numberLiteral(value);
+    }
+
+    private static String numberLiteral(Object value) {
+        if (!(value instanceof Number number)) {
+            return null;
+        }
+        if (number instanceof Double || number instanceof Float) {
+            double d = number.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return null;
+            }
+        }
+        return new BigDecimal(number.toString()).toPlainString();
+    }
+
+    private static String dateTimeLiteral(String text) {
+        try {
+            return "@dt('" + OffsetDateTime.parse(text).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) + "')";
+        } catch (DateTimeParseException e) {
+            // Try a date
+        }
+        try {
+            return "@dt('" + LocalDate.parse(text) + "')";
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
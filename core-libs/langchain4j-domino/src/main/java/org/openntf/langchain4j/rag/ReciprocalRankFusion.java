@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reciprocal rank fusion: a key scores {@code 1 / (k + rank)} in every ranking it appears in, and the scores are
+ * summed. Only ranks are used, so rankings with incomparable scores (e.g. full-text and cosine) can be fused.
+ */
+final class ReciprocalRankFusion {
+
+    static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * Fuses rankings into one.
+     *
+     * @param rankings  rankings, each ordered best first. A key repeated in a ranking counts at its first position.
+     * @param k         the rank constant, damping the weight of the top ranks
+     * @param intersect true to keep only keys found in every ranking
+     * @param <K>       the key type
+     * @return fused scores, best first. Ties keep the order keys were first seen in.
+     */
+    static <K> Map<K, Double> fuse(List<? extends List<K>> rankings, int k, boolean intersect) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Rank constant must be positive");
+        }
+
+        Map<K, Double> scores = new LinkedHashMap<>();
+        Map<K, Integer> hits = new HashMap<>();
+
+        for (List<K> ranking : rankings) {
+            Set<K> seen = new HashSet<>();
+            int rank = 0;
+            for (K key : ranking) {
+                if (!seen.add(key)) {
+                    continue;
+                }
+                rank++;
+                scores.merge(key, 1.0 / (k + rank), Double::sum);
+                hits.merge(key, 1, Integer::sum);
+            }
+        }
+
+        List<Map.Entry<K, Double>> entries = new ArrayList<>(scores.entrySet());
+        if (intersect) {
+            entries.removeIf(entry -> hits.get(entry.getKey()) < rankings.size());
+        }
+        // Stable, so ties keep their insertion order
+        entries.sort(Map.Entry.<K, Double>comparingByValue().reversed());
+
+        Map<K, Double> fused = new LinkedHashMap<>();
+        entries.forEach(entry -> fused.put(entry.getKey(), entry.getValue()));
+        return fused;
+    }
+}
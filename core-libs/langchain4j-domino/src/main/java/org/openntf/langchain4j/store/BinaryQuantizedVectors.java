@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Binary quantization to the sign of each component.
+ * <p>
+ * Similarity between stored vectors is {@code 1 - 2 * hamming / dimension}, which estimates the cosine of the
+ * angle between the sign vectors. Queries stay in full precision and are compared to the signs, which ranks much
+ * better than quantizing the query too.
+ */
+final class BinaryQuantizedVectors implements QuantizedVectors {
+
+    private static final int VECTORS_PER_CHUNK = 1024;
+
+    private final int dimension;
+    private final int words;
+    private long[][] chunks = new long[16][];
+    private int size;
+
+    BinaryQuantizedVectors(int dimension) {
+        this.dimension = dimension;
+        this.words = (dimension + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private long[] chunkFor(int node) {
+        int chunk = node / VECTORS_PER_CHUNK;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new long[VECTORS_PER_CHUNK * words];
+        }
+        return chunks[chunk];
+    }
+
+    private long[] encode(float[] vector) {
+        long[] code = new long[words];
+        for (int i = 0; i < dimension; i++) {
+            if (vector[i] > 0) {
+                code[i / Long.SIZE] |= 1L << (i % Long.SIZE);
+            }
+        }
+        return code;
+    }
+
+    @Override
+    public void add(float[] vector) {
+        System.arraycopy(encode(vector), 0, chunkFor(size), (size % VECTORS_PER_CHUNK) * words, words);
+        size++;
+    }
+
+    @Override
+    public void read(DataInput input) throws IOException {
+        long[] chunk = chunkFor(size);
+        int offset = (size % VECTORS_PER_CHUNK) * words;
+        for (int i = 0; i < words; i++) {
+            chunk[offset + i] = input.readLong();
+        }
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private double similarity(long[] code1, int offset1, long[] code2, int offset2) {
+        int hamming = 0;
+        for (int i = 0; i < words; i++) {
+            hamming += Long.bitCount(code1[offset1 + i] ^ code2[offset2 + i]);
+        }
+        return 1 - 2.0 * hamming / dimension;
+    }
+
+    @Override
+    public double similarity(int node1, int node2) {
+        return similarity(chunks[node1 / VECTORS_PER_CHUNK], (node1 % VECTORS_PER_CHUNK) * words,
+                          chunks[node2 / VECTORS_PER_CHUNK], (node2 % VECTORS_PER_CHUNK) * words);
+    }
+
+    @Override
+    public HnswGraph.Scorer scorer(float[] query) {
+        double sum = 0;
+        float total = 0;
+        for (float value : query) {
+            sum += value * value;
+            total += value;
+        }
+        double scale = sum == 0 ? 0 : 1 / Math.sqrt(sum * dimension);
+        float negated = total;
+
+        // The query is compared in full precision to the signs: sum(query[i] * sign[i]) = 2 * sum(query[i] where
+        // positive) - sum(query[i])
+        return node -> {
+            long[] chunk = chunks[node / VECTORS_PER_CHUNK];
+            int offset = (node % VECTORS_PER_CHUNK) * words;
+            float positive = 0;
+            for (int word = 0; word < words; word++) {
+                long bits = chunk[offset + word];
+                int base = word * Long.SIZE;
+                while (bits != 0) {
+                    positive += query[base + Long.numberOfTrailingZeros(bits)];
+                    bits &= bits - 1;
+                }
+            }
+            return (2 * positive - negated) * scale;
+        };
+    }
+
+    @Override
+    public void writeTo(DataOutput output) throws IOException {
+        for (int node = 0; node < size; node++) {
+            long[] chunk = chunks[node / VECTORS_PER_CHUNK];
+            int offset = (node % VECTORS_PER_CHUNK) * words;
+            for (int i = 0; i < words; i++) {
+                output.writeLong(chunk[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public long bytes() {
+        return (long) size * words * Long.BYTES;
+    }
+}
@@ -0,0 +1,679 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A local inverted index of text segments, searched with BM25 scoring. It provides keyword search for databases
+ * without a Domino full-text index, without touching the NSF.
+ * <p>
+ * Segments are added under an ID, usually the embedding ID, so keyword and embedding matches can be combined (see
+ * {@link org.openntf.langchain4j.rag.Bm25ContentRetriever}). Adding an existing ID replaces the segment. The
+ * {@link org.openntf.langchain4j.ingest.DominoIngestionPipeline} can fill an index with the text it embeds.
+ * <p>
+ * New segments are buffered in memory and searchable immediately. {@link #commit()} writes them to an immutable
+ * segment file, with postings compressed as variable-length deltas. Segment files are memory-mapped, so only the
+ * IDs are kept on the heap. When {@code mergeFactor} files of a similar size exist, they are merged into one and
+ * removed segments are dropped, so the number of files grows logarithmically. A manifest lists the files and removed
+ * segments of each commit, and is replaced atomically.
+ * <p>
+ * Searches run concurrently. Additions, removals and commits are serialised and lock out searches. A commit also
+ * happens when the buffer reaches {@code maxBufferedDocuments}, and on {@link #close()}.
+ * <pre>
+ * Bm25Index index = Bm25Index.builder()
+ *     .directory(indexDirectory)
+ *     .build();
+ *
+ * index.search("travel expense policy", 10);
+ * </pre>
+ */
+public class Bm25Index implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(Bm25Index.class.getName());
+
+    private static final int MAGIC = 0x424D3249;
+    private static final int VERSION = 1;
+    private static final String MANIFEST_PREFIX = "manifest-";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Segment files must stay mappable as a single buffer
+    private static final long MAX_MERGE_BYTES = 512L << 20;
+
+    /**
+     * A search result.
+     *
+     * @param id      the segment ID
+     * @param score   the BM25 score, not normalised
+     * @param segment the text segment
+     */
+    public record Match(String id, double score, TextSegment segment) {
+    }
+
+    private record DocRef(LexicalSegment segment, int doc) {
+    }
+
+    // A scored document. The text segment is only read if a filter needs its metadata, or it's a final match.
+    private record Candidate(float score, LexicalSegment segment, int doc, TextSegment textSegment) {
+
+        Match toMatch() {
+            return new Match(segment.id(doc), score, textSegment == null ? segment.segment(doc) : textSegment);
+        }
+    }
+
+    private final Path directory;
+    private final double k1;
+    private final double b;
+    private final int maxBufferedDocuments;
+    private final int mergeFactor;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<MappedLexicalSegment> segments = new ArrayList<>();
+    private BufferedLexicalSegment buffer = new BufferedLexicalSegment();
+    // Live documents by ID
+    private final Map<String, DocRef> docs = new HashMap<>();
+
+    private long manifestGeneration;
+    private long nextSegmentGeneration = 1;
+    // Uncommitted additions or removals
+    private boolean changed;
+
+    private Bm25Index(Builder builder) {
+        this.directory = ensureNotNull(builder.directory, "Directory");
+        this.k1 = builder.k1;
+        this.b = builder.b;
+        this.maxBufferedDocuments = builder.maxBufferedDocuments;
+        this.mergeFactor = builder.mergeFactor;
+
+        if (k1 < 0 || b < 0 || b > 1) {
+            throw new IllegalArgumentException("k1 must not be negative, b must be between 0 and 1");
+        }
+        if (maxBufferedDocuments < 1 || mergeFactor < 2) {
+            throw new IllegalArgumentException("Buffer size must be positive, merge factor must be at least 2");
+        }
+
+        try {
+            Files.createDirectories(directory);
+            OptionalLong generation = latestGeneration(MANIFEST_PREFIX);
+            if (generation.isPresent()) {
+                readManifest(generation.getAsLong());
+            }
+            deleteUnreferencedFiles();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open lexical index in " + directory, e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Adds a segment, replacing any segment with the same ID.
+     *
+     * @param id      the segment ID
+     * @param segment the text segment
+     */
+    public void add(String id, TextSegment segment) {
+        addAll(List.of(id), List.of(segment));
+    }
+
+    /**
+     * Adds segments, replacing any segments with the same IDs.
+     *
+     * @param ids      the segment IDs
+     * @param segments the text segments, in the order of their IDs
+     */
+    public void addAll(List<String> ids, List<TextSegment> segments) {
+        ensureNotNull(ids, "IDs");
+        ensureNotNull(segments, "Segments");
+        if (ids.size() != segments.size()) {
+            throw new IllegalArgumentException("IDs and segments must have the same size");
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ensureNotNull(ids.get(i), "ID");
+                TextSegment segment = ensureNotNull(segments.get(i), "Segment");
+
+                remove(id);
+                docs.put(id, new DocRef(buffer, buffer.add(id, segment)));
+                changed = true;
+
+                if (buffer.docCount() >= maxBufferedDocuments) {
+                    commitLocked();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write lexical index in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes segments by ID. Unknown IDs are ignored.
+     *
+     * @param ids the segment IDs
+     */
+    public void removeAll(Collection<String> ids) {
+        ensureNotNull(ids, "IDs");
+
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all segments and commits.
+     */
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            segments.clear();
+            buffer = new BufferedLexicalSegment();
+            docs.clear();
+            changed = true;
+            commitLocked();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write lexical index in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String id) {
+        DocRef ref = docs.remove(id);
+        if (ref != null) {
+            ref.segment().deleted().set(ref.doc());
+            changed = true;
+        }
+    }
+
+    /**
+     * @return the number of segments in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query      the query text
+     * @param maxResults the maximum number of matches
+     * @return matches, best first
+     */
+    public List<Match> search(String query, int maxResults) {
+        return search(query, maxResults, null);
+    }
+
+    /**
+     * Searches the index for segments matching a metadata filter.
+     *
+     * @param query      the query text
+     * @param maxResults the maximum number of matches
+     * @param filter     a metadata filter, or null
+     * @return matches, best first
+     */
+    public List<Match> search(String query, int maxResults, Filter filter) {
+        ensureNotNull(query, "Query");
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("Max results must be positive");
+        }
+
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(LexicalTokenizer.tokenize(query)));
+
+        lock.readLock().lock();
+        try {
+            List<LexicalSegment> searched = new ArrayList<>(segments);
+            searched.add(buffer);
+
+            long docCount = 0;
+            long totalLength = 0;
+            for (LexicalSegment segment : searched) {
+                docCount += segment.docCount();
+                totalLength += segment.totalLength();
+            }
+            if (terms.isEmpty() || docCount == 0) {
+                return List.of();
+            }
+
+            double averageLength = Math.max(1.0, (double) totalLength / docCount);
+            double[] idf = new double[terms.size()];
+            for (int t = 0; t < terms.size(); t++) {
+                long docFreq = 0;
+                for (LexicalSegment segment : searched) {
+                    docFreq += segment.docFreq(terms.get(t));
+                }
+                idf[t] = docFreq == 0 ? 0 : Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+            }
+
+            PriorityQueue<Candidate> top = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(Candidate::score));
+            for (LexicalSegment segment : searched) {
+                collect(segment, terms, idf, averageLength, maxResults, filter, top);
+            }
+
+            return top.stream()
+                      .sorted(Comparator.comparingDouble(Candidate::score).reversed())
+                      .map(Candidate::toMatch)
+                      .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void collect(LexicalSegment segment, List<String> terms, double[] idf, double averageLength, int maxResults,
+                         Filter filter, PriorityQueue<Candidate> top) {
+        if (segment.liveDocCount() == 0) {
+            return;
+        }
+
+        Accumulator accumulator = new Accumulator(segment, averageLength);
+        for (int t = 0; t < terms.size(); t++) {
+            if (idf[t] > 0) {
+                accumulator.idf = idf[t];
+                segment.postings(terms.get(t), accumulator);
+            }
+        }
+
+        float[] scores = accumulator.scores;
+        int[] touched = accumulator.touched;
+        int touchedCount = accumulator.touchedCount;
+
+        BitSet deleted = segment.deleted();
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            float score = scores[doc];
+            if (deleted.get(doc) || (top.size() == maxResults && score <= top.peek().score())) {
+                continue;
+            }
+
+            TextSegment textSegment = null;
+            if (filter != null) {
+                textSegment = segment.segment(doc);
+                if (!filter.test(textSegment.metadata())) {
+                    continue;
+                }
+            }
+
+            top.add(new Candidate(score, segment, doc, textSegment));
+            if (top.size() > maxResults) {
+                top.poll();
+            }
+        }
+    }
+
+    // Sums the BM25 scores of a segment's documents, term by term
+    private final class Accumulator implements LexicalSegment.PostingConsumer {
+
+        private final LexicalSegment segment;
+        private final double averageLength;
+        private final float[] scores;
+        private int[] touched = new int[16];
+        private int touchedCount;
+        private double idf;
+
+        Accumulator(LexicalSegment segment, double averageLength) {
+            this.segment = segment;
+            this.averageLength = averageLength;
+            this.scores = new float[segment.docCount()];
+        }
+
+        @Override
+        public void accept(int doc, int frequency) {
+            if (scores[doc] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = doc;
+            }
+            double norm = k1 * (1 - b + b * segment.length(doc) / averageLength);
+            scores[doc] += (float) (idf * frequency * (k1 + 1) / (frequency + norm));
+        }
+    }
+
+    /**
+     * Writes buffered segments and removals to disk, and merges segment files if needed.
+     */
+    public void commit() {
+        lock.writeLock().lock();
+        try {
+            commitLocked();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to commit lexical index in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void commitLocked() throws IOException {
+        if (buffer.docCount() > 0) {
+            segments.add(flush(buffer));
+            buffer = new BufferedLexicalSegment();
+        }
+        if (!changed) {
+            return;
+        }
+
+        merge();
+        writeManifest();
+        changed = false;
+        deleteUnreferencedFiles();
+    }
+
+    /**
+     * Writes a buffered segment to a new file and points live documents to it.
+     */
+    private MappedLexicalSegment flush(BufferedLexicalSegment source) throws IOException {
+        long generation = nextSegmentGeneration++;
+        Path file = file(SEGMENT_PREFIX, generation);
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+
+        Files.deleteIfExists(tempFile);
+        MappedLexicalSegment.write(tempFile, source);
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+
+        MappedLexicalSegment segment = MappedLexicalSegment.open(file, generation);
+        segment.deleted().or(source.deleted());
+        for (int doc = segment.deleted().nextClearBit(0); doc < segment.docCount(); doc = segment.deleted().nextClearBit(doc + 1)) {
+            docs.put(segment.id(doc), new DocRef(segment, doc));
+        }
+        return segment;
+    }
+
+    /**
+     * Merges {@code mergeFactor} segments of the same size level until no level has that many.
+     */
+    private void merge() throws IOException {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+
+            Map<Integer, List<MappedLexicalSegment>> levels = new TreeMap<>();
+            for (MappedLexicalSegment segment : segments) {
+                levels.computeIfAbsent(level(segment), level -> new ArrayList<>()).add(segment);
+            }
+
+            for (List<MappedLexicalSegment> level : levels.values()) {
+                if (level.size() < mergeFactor) {
+                    continue;
+                }
+                List<MappedLexicalSegment> sources = level.subList(0, mergeFactor);
+                if (sources.stream().mapToLong(MappedLexicalSegment::fileSize).sum() > MAX_MERGE_BYTES) {
+                    continue;
+                }
+
+                mergeSegments(List.copyOf(sources));
+                merged = true;
+                break;
+            }
+        }
+    }
+
+    private int level(LexicalSegment segment) {
+        double ratio = (double) segment.liveDocCount() / maxBufferedDocuments;
+        return ratio <= 1 ? 0 : (int) (Math.log(ratio) / Math.log(mergeFactor));
+    }
+
+    private void mergeSegments(List<MappedLexicalSegment> sources) throws IOException {
+        long start = System.nanoTime();
+
+        // Segments are tokenized again, postings are rebuilt without removed documents
+        BufferedLexicalSegment target = new BufferedLexicalSegment();
+        for (MappedLexicalSegment source : sources) {
+            BitSet deleted = source.deleted();
+            for (int doc = deleted.nextClearBit(0); doc < source.docCount(); doc = deleted.nextClearBit(doc + 1)) {
+                target.add(source.id(doc), source.segment(doc));
+            }
+        }
+
+        int position = segments.indexOf(sources.get(0));
+        segments.removeAll(sources);
+        if (target.docCount() > 0) {
+            segments.add(position, flush(target));
+        }
+
+        log.log(Level.FINE, "Merged " + sources.size() + " lexical segments with " + target.docCount() + " documents in "
+            + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+
+    private void writeManifest() throws IOException {
+        long generation = manifestGeneration + 1;
+        Path file = file(MANIFEST_PREFIX, generation);
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(nextSegmentGeneration);
+            output.writeInt(segments.size());
+            for (MappedLexicalSegment segment : segments) {
+                byte[] deleted = segment.deleted().toByteArray();
+                output.writeLong(segment.generation());
+                output.writeInt(deleted.length);
+                output.write(deleted);
+            }
+            output.flush();
+            channel.force(true);
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+        manifestGeneration = generation;
+    }
+
+    private void readManifest(long generation) throws IOException {
+        Path file = file(MANIFEST_PREFIX, generation);
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a lexical index manifest: " + file);
+            }
+            nextSegmentGeneration = input.readLong();
+
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                long segmentGeneration = input.readLong();
+                byte[] deleted = new byte[input.readInt()];
+                input.readFully(deleted);
+
+                MappedLexicalSegment segment = MappedLexicalSegment.open(file(SEGMENT_PREFIX, segmentGeneration), segmentGeneration);
+                segment.deleted().or(BitSet.valueOf(deleted));
+                for (int doc = segment.deleted().nextClearBit(0); doc < segment.docCount(); doc = segment.deleted().nextClearBit(doc + 1)) {
+                    docs.put(segment.id(doc), new DocRef(segment, doc));
+                }
+                segments.add(segment);
+            }
+        }
+
+        manifestGeneration = generation;
+    }
+
+    /**
+     * Deletes old manifests and segment files the current manifest doesn't list. Files still mapped can't be deleted
+     * on Windows, they are retried on the next commit.
+     */
+    private void deleteUnreferencedFiles() {
+        Set<Path> referenced = new HashSet<>();
+        referenced.add(file(MANIFEST_PREFIX, manifestGeneration));
+        segments.forEach(segment -> referenced.add(file(SEGMENT_PREFIX, segment.generation())));
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean ours = name.startsWith(MANIFEST_PREFIX) || name.startsWith(SEGMENT_PREFIX);
+                if (!ours || referenced.contains(file)) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.log(Level.FINE, "Unable to delete " + file + ", will retry later", e);
+                }
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to clean up lexical index in " + directory, e);
+        }
+    }
+
+    private OptionalLong latestGeneration(String prefix) throws IOException {
+        OptionalLong latest = OptionalLong.empty();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    long generation = Long.parseLong(name.substring(prefix.length(), name.length() - FILE_SUFFIX.length()));
+                    if (latest.isEmpty() || generation > latest.getAsLong()) {
+                        latest = OptionalLong.of(generation);
+                    }
+                } catch (NumberFormatException e) {
+                    // Not ours
+                }
+            }
+        }
+        return latest;
+    }
+
+    private Path file(String prefix, long generation) {
+        return directory.resolve(prefix + generation + FILE_SUFFIX);
+    }
+
+    /**
+     * Commits pending changes.
+     */
+    @Override
+    public void close() {
+        commit();
+    }
+
+    public static class Builder {
+
+        private Path directory;
+        private double k1 = 1.2;
+        private double b = 0.75;
+        private int maxBufferedDocuments = 10000;
+        private int mergeFactor = 10;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the directory of the index. It's created if it doesn't exist, and an existing index is opened.
+         * @param directory a directory dedicated to the index
+         * @return this builder instance, for method chaining.
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Sets the BM25 term frequency saturation. Defaults to 1.2.
+         * @param k1 the saturation parameter
+         * @return this builder instance, for method chaining.
+         */
+        public Builder k1(double k1) {
+            this.k1 = k1;
+            return this;
+        }
+
+        /**
+         * Sets the BM25 length normalisation, from 0 (none) to 1 (full). Defaults to 0.75.
+         * @param b the length normalisation
+         * @return this builder instance, for method chaining.
+         */
+        public Builder b(double b) {
+            this.b = b;
+            return this;
+        }
+
+        /**
+         * Sets the number of segments buffered in memory before they are committed to a file. Defaults to 10000.
+         * @param maxBufferedDocuments the buffer size
+         * @return this builder instance, for method chaining.
+         */
+        public Builder maxBufferedDocuments(int maxBufferedDocuments) {
+            this.maxBufferedDocuments = maxBufferedDocuments;
+            return this;
+        }
+
+        /**
+         * Sets how many segment files of a similar size are merged into one. Lower values mean fewer files to search
+         * and more merging. Defaults to 10.
+         * @param mergeFactor the number of files per merge
+         * @return this builder instance, for method chaining.
+         */
+        public Builder mergeFactor(int mergeFactor) {
+            this.mergeFactor = mergeFactor;
+            return this;
+        }
+
+        /**
+         * Opens the index.
+         * @return the index
+         * @throws UncheckedIOException if an existing index can't be read
+         */
+        public Bm25Index build() {
+            return new Bm25Index(this);
+        }
+    }
+}
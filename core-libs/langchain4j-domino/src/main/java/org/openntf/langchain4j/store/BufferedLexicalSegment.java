@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import dev.langchain4j.data.segment.TextSegment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A segment being filled in memory, until the index writes it to a file.
+ */
+final class BufferedLexicalSegment extends LexicalSegment {
+
+    // Document and frequency pairs
+    private static final class Postings {
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int doc, int frequency) {
+            if (size + 2 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = doc;
+            values[size++] = frequency;
+        }
+    }
+
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private int[] lengths = new int[64];
+    private long totalLength;
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /**
+     * Adds a document.
+     *
+     * @return the document number
+     */
+    int add(String id, TextSegment segment) {
+        int doc = ids.size();
+
+        List<String> terms = LexicalTokenizer.tokenize(segment.text());
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new Postings()).add(doc, frequency));
+
+        if (doc == lengths.length) {
+            lengths = Arrays.copyOf(lengths, doc * 2);
+        }
+        lengths[doc] = terms.size();
+        totalLength += terms.size();
+
+        ids.add(id);
+        segments.add(segment);
+        return doc;
+    }
+
+    /**
+     * @return all terms of the segment
+     */
+    Iterable<String> terms() {
+        return postings.keySet();
+    }
+
+    @Override
+    int docCount() {
+        return ids.size();
+    }
+
+    @Override
+    long totalLength() {
+        return totalLength;
+    }
+
+    @Override
+    int length(int doc) {
+        return lengths[doc];
+    }
+
+    @Override
+    String id(int doc) {
+        return ids.get(doc);
+    }
+
+    @Override
+    TextSegment segment(int doc) {
+        return segments.get(doc);
+    }
+
+    @Override
+    int docFreq(String term) {
+        Postings termPostings = postings.get(term);
+        return termPostings == null ? 0 : termPostings.size / 2;
+    }
+
+    @Override
+    void postings(String term, PostingConsumer consumer) {
+        Postings termPostings = postings.get(term);
+        if (termPostings == null) {
+            return;
+        }
+        for (int i = 0; i < termPostings.size; i += 2) {
+            consumer.accept(termPostings.values[i], termPostings.values[i + 1]);
+        }
+    }
+}
@@ -0,0 +1,921 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * In-process {@link EmbeddingStore} for a single Domino server, searched with an HNSW graph instead of comparing the
+ * query to every embedding.
+ * <p>
+ * Segment metadata (e.g. form, dates and fields from a {@link org.openntf.langchain4j.data.MetadataDefinition}) is
+ * indexed per key, so a search filter selects the allowed segments before the graph is searched. If the filter is
+ * so selective that the graph search would visit more segments than the filter allows, the allowed segments are
+ * compared exactly instead.
+ * <p>
+ * Searches run concurrently. Additions and removals are serialised and lock out searches only while a single
+ * embedding is linked into the graph. Removed and replaced embeddings keep routing searches until they make up a
+ * quarter of the graph (see {@link Builder#compactionThreshold(double)}). The removing call then rebuilds the graph
+ * from the remaining embeddings while searches continue, and swaps it in unless the store changed meanwhile.
+ * <p>
+ * Similarity is cosine, reported as a LangChain4j relevance score.
+ * <p>
+ * With {@link Quantization}, the graph is built and searched on compact codes, and the best candidates are re-scored
+ * with the full-precision vectors.
+ * <p>
+ * Full-precision vectors are written to a memory-mapped temporary file as they're added, so they take no heap or direct
+ * memory, see {@link Builder#vectorDirectory(Path)}. {@link #snapshot(Path)} saves the store to a directory, and a
+ * store built with {@link Builder#restoreFrom(Path)} maps the saved vectors instead of reading them, so it can search
+ * right after an HTTP restart. Graph links, IDs and segments are read into memory on restore.
+ * <pre>
+ * DominoEmbeddingStore store = DominoEmbeddingStore.builder()
+ *     .m(16)
+ *     .efSearch(100)
+ *     .restoreFrom(snapshotDirectory)
+ *     .build();
+ *
+ * store.search(EmbeddingSearchRequest.builder()
+ *     .queryEmbedding(embeddingModel.embed(question).content())
+ *     .filter(metadataKey("form").isEqualTo("Memo"))
+ *     .maxResults(5)
+ *     .build());
+ * </pre>
+ */
+public class DominoEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private static final Logger log = Logger.getLogger(DominoEmbeddingStore.class.getName());
+
+    private static final long SEED = 42;
+
+    private static final int MAGIC = 0x44455353;
+    private static final int VERSION = 1;
+    // Vector records start on a cache line
+    private static final int VECTORS_HEADER_BYTES = 64;
+    private static final String VECTORS_PREFIX = "vectors-";
+    private static final String GRAPH_PREFIX = "graph-";
+    private static final String SEGMENTS_PREFIX = "segments-";
+    private static final String CODES_PREFIX = "codes-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    private static final byte LIVE = 1;
+    private static final byte HAS_SEGMENT = 2;
+
+    private final int efSearch;
+    private final int oversampling;
+    private final double compactionThreshold;
+    private final Path vectorDirectory;
+    private Quantization quantization;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private HnswGraph graph;
+    private MetadataIndex metadataIndex = new MetadataIndex();
+    private Map<String, Integer> nodesById = new HashMap<>();
+
+    private String[] ids = new String[1024];
+    private TextSegment[] segments = new TextSegment[1024];
+    private BitSet live = new BitSet();
+    // Created with the first embedding, when the dimension is known
+    private VectorStorage vectors;
+    private QuantizedVectors quantized;
+
+    // Compactions are built under the read lock, and dropped if a change was made before they're swapped in
+    private long changes;
+    private long compactions;
+
+    /**
+     * The store rebuilt without removed nodes.
+     */
+    private record Compaction(long changes, HnswGraph graph, VectorStorage vectors, QuantizedVectors quantized,
+                              String[] ids, TextSegment[] segments, BitSet live, MetadataIndex metadataIndex,
+                              Map<String, Integer> nodesById) {
+    }
+
+    private DominoEmbeddingStore(Builder builder) {
+        if (builder.m < 2 || builder.efConstruction < 1 || builder.efSearch < 1) {
+            throw new IllegalArgumentException("M must be at least 2, ef values must be positive");
+        }
+        if (builder.oversampling < 0) {
+            throw new IllegalArgumentException("Oversampling must be positive");
+        }
+        if (!(builder.compactionThreshold > 0 && builder.compactionThreshold <= 1)) {
+            throw new IllegalArgumentException("Compaction threshold must be above 0 and at most 1");
+        }
+
+        this.efSearch = builder.efSearch;
+        this.oversampling = builder.oversampling;
+        this.compactionThreshold = builder.compactionThreshold;
+        this.vectorDirectory = builder.vectorDirectory == null
+            ? Path.of(System.getProperty("java.io.tmpdir"))
+            : builder.vectorDirectory;
+        this.quantization = ensureNotNull(builder.quantization, "Quantization");
+
+        OptionalLong generation = builder.restoreDirectory == null
+            ? OptionalLong.empty()
+            : latestGeneration(builder.restoreDirectory);
+        if (generation.isPresent()) {
+            try {
+                this.graph = restore(builder.restoreDirectory, generation.getAsLong());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to restore the embedding store from " + builder.restoreDirectory, e);
+            }
+        } else {
+            this.graph = new HnswGraph(builder.m, builder.efConstruction, this::similarity, SEED);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private double similarity(int node1, int node2) {
+        return similarity(vectors, quantized, node1, node2);
+    }
+
+    private static double similarity(VectorStorage vectors, QuantizedVectors quantized, int node1, int node2) {
+        return quantized == null ? vectors.cosine(node1, node2) : quantized.similarity(node1, node2);
+    }
+
+    private int oversampling() {
+        return oversampling > 0 ? oversampling : quantization.getDefaultOversampling();
+    }
+
+    private static float norm(float[] vector) {
+        return (float) Math.sqrt(SimilarityKernels.get().dot(vector, vector));
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding, null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        add(id, embedding, null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding, textSegment);
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, null);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> generated = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            generated.add(UUID.randomUUID().toString());
+        }
+        addAll(generated, embeddings, textSegments);
+        return generated;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || (textSegments != null && textSegments.size() != embeddings.size())) {
+            throw new IllegalArgumentException("IDs, embeddings and segments must have the same size");
+        }
+
+        // Lock per embedding, so searches aren't held up by a large batch
+        for (int i = 0; i < ids.size(); i++) {
+            add(ids.get(i), embeddings.get(i), textSegments == null ? null : textSegments.get(i));
+        }
+    }
+
+    /**
+     * Adds or replaces an embedding.
+     */
+    private void add(String id, Embedding embedding, TextSegment textSegment) {
+        ensureNotNull(id, "ID");
+        float[] vector = ensureNotNull(embedding, "Embedding").vector();
+
+        boolean replaced;
+        lock.writeLock().lock();
+        try {
+            if (vectors == null) {
+                vectors = VectorStorage.create(vector.length, vectorDirectory);
+                if (quantization != Quantization.NONE) {
+                    quantized = QuantizedVectors.create(quantization, vector.length);
+                }
+            } else if (vector.length != vectors.dimension()) {
+                throw new IllegalArgumentException("Expected an embedding with " + vectors.dimension() + " dimensions but got " + vector.length);
+            }
+
+            replaced = removeEntry(id);
+
+            int node = vectors.add(vector);
+            if (quantized != null) {
+                quantized.add(vector);
+            }
+            ensureCapacity(node + 1);
+            ids[node] = id;
+            segments[node] = textSegment;
+
+            graph.add(node);
+            nodesById.put(id, node);
+            live.set(node);
+            if (textSegment != null) {
+                metadataIndex.add(node, textSegment.metadata());
+            }
+            changes++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (replaced) {
+            compactIfNeeded();
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > ids.length) {
+            int capacity = Math.max(size, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            segments = Arrays.copyOf(segments, capacity);
+        }
+    }
+
+    // Caller holds the write lock. Returns true if the ID was found.
+    private boolean removeEntry(String id) {
+        Integer node = nodesById.remove(id);
+        if (node == null) {
+            return false;
+        }
+
+        live.clear(node);
+        if (segments[node] != null) {
+            metadataIndex.remove(node, segments[node].metadata());
+            segments[node] = null;
+        }
+        changes++;
+        return true;
+    }
+
+    // Rebuilds the store without removed nodes once they pass the threshold. Caller holds no lock.
+    private void compactIfNeeded() {
+        Compaction compaction;
+        lock.readLock().lock();
+        try {
+            int removed = graph.size() - nodesById.size();
+            if (removed == 0 || removed < compactionThreshold * graph.size()) {
+                return;
+            }
+            compaction = compact();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (compaction.changes() != changes) {
+                // Picked up by the next removal
+                log.fine("Dropped a compaction of the embedding store, it changed while compacting");
+                release(compaction.vectors());
+                return;
+            }
+
+            graph = compaction.graph();
+            graph.setSimilarity(this::similarity);
+            release(vectors);
+            vectors = compaction.vectors();
+            quantized = compaction.quantized();
+            ids = compaction.ids();
+            segments = compaction.segments();
+            live = compaction.live();
+            metadataIndex = compaction.metadataIndex();
+            nodesById = compaction.nodesById();
+            changes++;
+            compactions++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.fine(() -> "Compacted the embedding store to " + compaction.nodesById().size() + " embeddings");
+    }
+
+    // Copies live nodes into a new graph and storage. Caller holds a lock.
+    private Compaction compact() {
+        int size = nodesById.size();
+        VectorStorage compactedVectors = VectorStorage.create(vectors.dimension(), vectorDirectory);
+        QuantizedVectors compactedCodes = quantized == null ? null : QuantizedVectors.create(quantization, vectors.dimension());
+        HnswGraph compactedGraph = graph.emptyCopy((node1, node2) -> similarity(compactedVectors, compactedCodes, node1, node2), SEED);
+        String[] compactedIds = new String[Math.max(1024, size)];
+        TextSegment[] compactedSegments = new TextSegment[compactedIds.length];
+        MetadataIndex compactedMetadata = new MetadataIndex();
+        Map<String, Integer> compactedNodes = new HashMap<>();
+
+        for (int node = live.nextSetBit(0); node >= 0; node = live.nextSetBit(node + 1)) {
+            float[] vector = vectors.get(node);
+            int compactedNode = compactedVectors.add(vector);
+            if (compactedCodes != null) {
+                compactedCodes.add(vector);
+            }
+            compactedIds[compactedNode] = ids[node];
+            compactedSegments[compactedNode] = segments[node];
+            compactedGraph.add(compactedNode);
+            compactedNodes.put(ids[node], compactedNode);
+            if (segments[node] != null) {
+                compactedMetadata.add(compactedNode, segments[node].metadata());
+            }
+        }
+
+        BitSet compactedLive = new BitSet(size);
+        compactedLive.set(0, size);
+        return new Compaction(changes, compactedGraph, compactedVectors, compactedCodes, compactedIds, compactedSegments,
+                              compactedLive, compactedMetadata, compactedNodes);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::removeEntry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        ensureNotNull(filter, "Filter");
+
+        lock.writeLock().lock();
+        try {
+            BitSet matching = select(filter);
+            for (int node = matching.nextSetBit(0); node >= 0; node = matching.nextSetBit(node + 1)) {
+                removeEntry(ids[node]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            graph.clear();
+            metadataIndex.clear();
+            nodesById.clear();
+            live.clear();
+            Arrays.fill(ids, null);
+            Arrays.fill(segments, null);
+            release(vectors);
+            vectors = null;
+            quantized = null;
+            changes++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Live nodes matching the filter. Caller holds a lock.
+    private BitSet select(Filter filter) {
+        int size = graph.size();
+        BitSet matching = metadataIndex.select(filter, size, node -> {
+            TextSegment segment = segments[node];
+            return segment == null ? (live.get(node) ? new Metadata() : null) : segment.metadata();
+        });
+        matching.and(live);
+        return matching;
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = request.queryEmbedding().vector();
+        float queryNorm = norm(query);
+        int maxResults = request.maxResults();
+
+        lock.readLock().lock();
+        try {
+            if (graph.size() == 0) {
+                return new EmbeddingSearchResult<>(Collections.emptyList());
+            }
+            if (query.length != vectors.dimension()) {
+                throw new IllegalArgumentException("Expected a query with " + vectors.dimension() + " dimensions but got " + query.length);
+            }
+
+            HnswGraph.Scorer exact = node -> vectors.cosine(query, queryNorm, node);
+            HnswGraph.Scorer scorer = quantized == null ? exact : quantized.scorer(query);
+            int candidates = quantized == null ? maxResults : maxResults * oversampling();
+
+            BitSet accept;
+            int visitLimit;
+            if (request.filter() != null) {
+                accept = select(request.filter());
+                visitLimit = accept.cardinality();
+            } else if (nodesById.size() < graph.size()) {
+                accept = live;
+                visitLimit = Integer.MAX_VALUE;
+            } else {
+                accept = null;
+                visitLimit = Integer.MAX_VALUE;
+            }
+
+            NodeQueue results = graph.search(scorer, Math.max(efSearch, candidates), accept, visitLimit);
+            if (results == null) {
+                // Filter is more selective than the graph, compare the allowed nodes exactly
+                results = NodeQueue.worstFirst(candidates + 1);
+                for (int node = accept.nextSetBit(0); node >= 0; node = accept.nextSetBit(node + 1)) {
+                    results.push(node, scorer.score(node));
+                    if (results.size() > candidates) {
+                        results.pop();
+                    }
+                }
+            }
+            if (quantized != null) {
+                results = rescore(results, exact, candidates);
+            }
+
+            int[] nodes = results.nodesByScore();
+            double[] scores = results.scoresByScore();
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(Math.min(maxResults, nodes.length));
+            for (int i = 0; i < nodes.length && matches.size() < maxResults; i++) {
+                double score = RelevanceScore.fromCosineSimilarity(scores[i]);
+                if (score < request.minScore()) {
+                    break;
+                }
+                int node = nodes[i];
+                matches.add(new EmbeddingMatch<>(score, ids[node], Embedding.from(vectors.get(node)), segments[node]));
+            }
+
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Re-scores the best candidates found on quantized codes with full-precision vectors
+    private static NodeQueue rescore(NodeQueue results, HnswGraph.Scorer exact, int candidates) {
+        int[] nodes = results.nodesByScore();
+        NodeQueue rescored = NodeQueue.worstFirst(candidates);
+        for (int i = 0; i < nodes.length && i < candidates; i++) {
+            rescored.push(nodes[i], exact.score(nodes[i]));
+        }
+        return rescored;
+    }
+
+    /**
+     * @return memory used by quantized codes in bytes, 0 without quantization
+     */
+    long quantizedBytes() {
+        lock.readLock().lock();
+        try {
+            return quantized == null ? 0 : quantized.bytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the store to a directory, for {@link Builder#restoreFrom(Path)}.
+     * <p>
+     * Each snapshot is a new generation of files. Older generations are deleted once the new one is complete, unless
+     * they are still mapped by a store on Windows, in which case a later snapshot deletes them. Searches continue
+     * while the snapshot is written, changes wait.
+     * <p>
+     * Afterwards the store maps its vectors from the snapshot, and its temporary vector file only holds the vectors added
+     * since.
+     *
+     * @param directory the snapshot directory, created if needed
+     * @throws IOException if the snapshot can't be written
+     */
+    public void snapshot(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        lock.readLock().lock();
+        long generation;
+        long compacted;
+        try {
+            generation = latestGeneration(directory).orElse(0) + 1;
+            compacted = compactions;
+            int size = graph.size();
+
+            Path vectorsFile = write(directory, VECTORS_PREFIX, generation, channel -> {
+                ByteBuffer header = ByteBuffer.allocate(VECTORS_HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putLong(generation)
+                      .putInt(vectors == null ? 0 : vectors.dimension()).putInt(size);
+                channel.write(header.clear());
+                if (vectors != null) {
+                    vectors.writeTo(channel);
+                }
+            });
+            Path graphFile = write(directory, GRAPH_PREFIX, generation, channel -> {
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(generation);
+                graph.writeTo(output);
+                output.flush();
+            });
+            if (quantization != Quantization.NONE) {
+                write(directory, CODES_PREFIX, generation, channel -> {
+                    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                    output.writeInt(MAGIC);
+                    output.writeInt(VERSION);
+                    output.writeLong(generation);
+                    output.writeUTF(quantization.name());
+                    output.writeInt(size);
+                    if (quantized != null) {
+                        quantized.writeTo(output);
+                    }
+                    output.flush();
+                });
+            }
+            // Written last, marks the generation complete
+            Path segmentsFile = write(directory, SEGMENTS_PREFIX, generation, channel -> {
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(generation);
+                output.writeInt(size);
+                for (int node = 0; node < size; node++) {
+                    TextSegment segment = segments[node];
+                    output.writeByte((live.get(node) ? LIVE : 0) | (segment == null ? 0 : HAS_SEGMENT));
+                    output.writeUTF(ids[node]);
+                    if (segment != null) {
+                        SegmentCodec.write(output, segment);
+                    }
+                }
+                output.flush();
+            });
+
+            log.fine(() -> "Saved " + size + " embeddings to " + vectorsFile + ", " + graphFile + " and " + segmentsFile);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Compacted vectors are numbered differently, they're mapped by the next snapshot
+            if (compacted == compactions) {
+                mapVectors(directory, generation);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        deleteGenerationsBefore(directory, generation);
+    }
+
+    // Replaces the temporary vector file with the vectors just saved. Caller holds the write lock.
+    private void mapVectors(Path directory, long generation) throws IOException {
+        if (vectors == null) {
+            return;
+        }
+
+        Path vectorsFile = file(directory, VECTORS_PREFIX, generation);
+        try (FileChannel channel = FileChannel.open(vectorsFile, StandardOpenOption.READ)) {
+            int count = readVectorsHeader(channel, generation, vectorsFile).getInt(20);
+            VectorStorage mapped = VectorStorage.map(channel, VECTORS_HEADER_BYTES, vectors.dimension(), count, vectorDirectory);
+            // Added since the snapshot
+            for (int node = count; node < vectors.size(); node++) {
+                mapped.add(vectors.get(node));
+            }
+            release(vectors);
+            vectors = mapped;
+        }
+    }
+
+    // Deletes the temporary file of vectors no longer used. Caller holds the write lock, or owns the storage.
+    private static void release(VectorStorage storage) {
+        if (storage == null) {
+            return;
+        }
+
+        try {
+            storage.release();
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to delete a temporary vector file", e);
+        }
+    }
+
+    private static ByteBuffer readVectorsHeader(FileChannel channel, long generation, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(VECTORS_HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Read the whole header
+        }
+        checkHeader(header.getInt(0), header.getInt(4), header.getLong(8), generation, file);
+        return header;
+    }
+
+    @FunctionalInterface
+    private interface ChannelWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    private static Path file(Path directory, String prefix, long generation) {
+        return directory.resolve(prefix + generation + FILE_SUFFIX);
+    }
+
+    // Writes to a temporary file, then moves it into place
+    private static Path write(Path directory, String prefix, long generation, ChannelWriter writer) throws IOException {
+        Path target = file(directory, prefix, generation);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer.write(channel);
+            channel.force(true);
+        }
+
+        return Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static OptionalLong latestGeneration(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return OptionalLong.empty();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.startsWith(SEGMENTS_PREFIX) && name.endsWith(FILE_SUFFIX))
+                        .map(name -> name.substring(SEGMENTS_PREFIX.length(), name.length() - FILE_SUFFIX.length()))
+                        .filter(generation -> generation.chars().allMatch(Character::isDigit))
+                        .mapToLong(Long::parseLong)
+                        .max();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to list snapshots in " + directory, e);
+        }
+    }
+
+    private static void deleteGenerationsBefore(Path directory, long generation) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                for (String prefix : List.of(VECTORS_PREFIX, GRAPH_PREFIX, CODES_PREFIX, SEGMENTS_PREFIX)) {
+                    String number = name.startsWith(prefix) && name.endsWith(FILE_SUFFIX)
+                        ? name.substring(prefix.length(), name.length() - FILE_SUFFIX.length())
+                        : "";
+                    if (!number.isEmpty() && number.chars().allMatch(Character::isDigit) && Long.parseLong(number) < generation) {
+                        try {
+                            Files.delete(file);
+                        } catch (IOException e) {
+                            // Still mapped on Windows
+                            log.log(Level.FINE, "Unable to delete old snapshot file " + file, e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkHeader(int magic, int version, long generation, long expectedGeneration, Path file) throws IOException {
+        if (magic != MAGIC || version != VERSION || generation != expectedGeneration) {
+            throw new IOException("Not a snapshot file of generation " + expectedGeneration + ": " + file);
+        }
+    }
+
+    // Called from the constructor, returns the restored graph
+    private HnswGraph restore(Path directory, long generation) throws IOException {
+        Path vectorsFile = file(directory, VECTORS_PREFIX, generation);
+        int size;
+        try (FileChannel channel = FileChannel.open(vectorsFile, StandardOpenOption.READ)) {
+            ByteBuffer header = readVectorsHeader(channel, generation, vectorsFile);
+            int dimension = header.getInt(16);
+            size = header.getInt(20);
+            if (dimension > 0) {
+                // Mappings stay valid after the channel is closed
+                vectors = VectorStorage.map(channel, VECTORS_HEADER_BYTES, dimension, size, vectorDirectory);
+            }
+        }
+
+        Path graphFile = file(directory, GRAPH_PREFIX, generation);
+        HnswGraph restored;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile), 1 << 16))) {
+            checkHeader(input.readInt(), input.readInt(), input.readLong(), generation, graphFile);
+            restored = HnswGraph.read(input, this::similarity, SEED + generation);
+        }
+        if (restored.size() != size) {
+            throw new IOException("Graph size doesn't match the vectors in " + graphFile);
+        }
+
+        Path codesFile = file(directory, CODES_PREFIX, generation);
+        quantization = Quantization.NONE;
+        if (Files.exists(codesFile)) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(codesFile), 1 << 16))) {
+                checkHeader(input.readInt(), input.readInt(), input.readLong(), generation, codesFile);
+                quantization = Quantization.valueOf(input.readUTF());
+                if (input.readInt() != size) {
+                    throw new IOException("Code count doesn't match the vectors in " + codesFile);
+                }
+                if (vectors != null) {
+                    quantized = QuantizedVectors.read(input, quantization, vectors.dimension(), size);
+                }
+            }
+        }
+
+        Path segmentsFile = file(directory, SEGMENTS_PREFIX, generation);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentsFile), 1 << 16))) {
+            checkHeader(input.readInt(), input.readInt(), input.readLong(), generation, segmentsFile);
+            if (input.readInt() != size) {
+                throw new IOException("Segment count doesn't match the vectors in " + segmentsFile);
+            }
+
+            ensureCapacity(size);
+            for (int node = 0; node < size; node++) {
+                byte flags = input.readByte();
+                ids[node] = input.readUTF();
+                TextSegment segment = (flags & HAS_SEGMENT) != 0 ? SegmentCodec.read(input) : null;
+                if ((flags & LIVE) != 0) {
+                    nodesById.put(ids[node], node);
+                    live.set(node);
+                    segments[node] = segment;
+                    if (segment != null) {
+                        metadataIndex.add(node, segment.metadata());
+                    }
+                }
+            }
+        }
+
+        log.fine(() -> "Restored " + nodesById.size() + " embeddings from " + directory);
+        return restored;
+    }
+
+    /**
+     * @return number of nodes in the graph, including removed ones not reclaimed yet
+     */
+    int graphSize() {
+        lock.readLock().lock();
+        try {
+            return graph.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of embeddings in the store
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static class Builder {
+
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 100;
+        private Path restoreDirectory;
+        private Path vectorDirectory;
+        private Quantization quantization = Quantization.NONE;
+        private int oversampling;
+        private double compactionThreshold = 0.25;
+
+        private Builder() {
+        }
+
+        /**
+         * Restores the store from the latest snapshot in a directory, if there is one. Graph settings and
+         * quantization are restored from the snapshot.
+         * @param restoreDirectory a directory passed to {@link DominoEmbeddingStore#snapshot(Path)}
+         * @return this builder instance, for method chaining.
+         */
+        public Builder restoreFrom(Path restoreDirectory) {
+            this.restoreDirectory = restoreDirectory;
+            return this;
+        }
+
+        /**
+         * Sets the directory for the temporary file holding full-precision vectors added since the store was created or
+         * last saved. The file is mapped into memory, and deleted when the store no longer needs it. Defaults to the
+         * system temporary directory.
+         * @param vectorDirectory an existing directory on a local disk
+         * @return this builder instance, for method chaining.
+         */
+        public Builder vectorDirectory(Path vectorDirectory) {
+            this.vectorDirectory = vectorDirectory;
+            return this;
+        }
+
+        /**
+         * Sets how vectors are kept for graph search. Defaults to {@link Quantization#NONE}.
+         * @param quantization the quantization
+         * @return this builder instance, for method chaining.
+         */
+        public Builder quantization(Quantization quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        /**
+         * Sets how many times the requested results are re-scored at full precision when quantized. Higher values
+         * trade latency for recall. Defaults to {@link Quantization#getDefaultOversampling()}.
+         * @param oversampling the candidate multiplier
+         * @return this builder instance, for method chaining.
+         */
+        public Builder oversampling(int oversampling) {
+            this.oversampling = oversampling;
+            return this;
+        }
+
+        /**
+         * Sets the number of links per node in the graph. Higher values improve recall for high-dimensional
+         * embeddings, at the cost of memory and indexing time. Defaults to 16.
+         * @param m the number of links per node, doubled on the bottom layer
+         * @return this builder instance, for method chaining.
+         */
+        public Builder m(int m) {
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * Sets the number of candidates considered when linking a new embedding. Defaults to 200.
+         * @param efConstruction the candidate list size while indexing
+         * @return this builder instance, for method chaining.
+         */
+        public Builder efConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * Sets the number of candidates considered when searching, raised to the requested maximum results if lower.
+         * Higher values improve recall at the cost of latency. Defaults to 100.
+         * @param efSearch the candidate list size while searching
+         * @return this builder instance, for method chaining.
+         */
+        public Builder efSearch(int efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of removed and replaced embeddings in the graph at which it's rebuilt without them.
+         * Until then they still take memory and route searches. Defaults to 0.25.
+         * @param compactionThreshold a fraction above 0 and up to 1
+         * @return this builder instance, for method chaining.
+         */
+        public Builder compactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        public DominoEmbeddingStore build() {
+            return new DominoEmbeddingStore(this);
+        }
+    }
+}
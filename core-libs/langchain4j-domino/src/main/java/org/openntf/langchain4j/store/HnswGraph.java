@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * Hierarchical navigable small world graph over integer node IDs.
+ * <p>
+ * The graph only holds the links. Vectors are owned by the caller and reached through {@link NodeSimilarity} and
+ * {@link Scorer}, higher scores being closer. Nodes can't be removed: callers exclude deleted nodes from results
+ * with the acceptance filter, and they keep routing searches until the caller rebuilds the graph without them.
+ * <p>
+ * Not thread-safe. Searches may run concurrently with each other, but not with {@link #add(int)}.
+ */
+final class HnswGraph {
+
+    /**
+     * Similarity between two nodes in the graph.
+     */
+    @FunctionalInterface
+    interface NodeSimilarity {
+        double between(int node1, int node2);
+    }
+
+    /**
+     * Similarity of a node to a fixed target, e.g. a query.
+     */
+    @FunctionalInterface
+    interface Scorer {
+        double score(int node);
+    }
+
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private NodeSimilarity similarity;
+    private final SplittableRandom random;
+
+    // [node][level] -> link count followed by linked nodes
+    private int[][][] links = new int[1024][][];
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int size;
+
+    HnswGraph(int m, int efConstruction, NodeSimilarity similarity, long seed) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.similarity = similarity;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * @param similarity similarity between the nodes
+     * @param seed       seed for node levels
+     * @return an empty graph with the settings of this one
+     */
+    HnswGraph emptyCopy(NodeSimilarity similarity, long seed) {
+        return new HnswGraph(m, efConstruction, similarity, seed);
+    }
+
+    /**
+     * Replaces the similarity used by {@link #add(int)}, e.g. when the vectors it reads are moved.
+     */
+    void setSimilarity(NodeSimilarity similarity) {
+        this.similarity = similarity;
+    }
+
+    /**
+     * @return number of nodes added, i.e. the next node ID
+     */
+    int size() {
+        return size;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    /**
+     * Links a node into the graph. Nodes must be added in ID order, starting at 0.
+     *
+     * @param node the node, equal to {@link #size()}
+     */
+    void add(int node) {
+        if (node != size) {
+            throw new IllegalArgumentException("Nodes must be added in order, expected " + size + " but was " + node);
+        }
+
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        if (node == links.length) {
+            links = Arrays.copyOf(links, links.length * 2);
+        }
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        Scorer scorer = other -> similarity.between(node, other);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedy(scorer, current, l);
+        }
+
+        NodeQueue entryPoints = NodeQueue.worstFirst(1);
+        entryPoints.push(current, scorer.score(current));
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeQueue candidates = searchLayer(scorer, entryPoints, efConstruction, l, null, Integer.MAX_VALUE);
+            int[] selected = selectNeighbors(node, candidates, m);
+            int[] nodeLinks = links[node][l];
+            for (int neighbor : selected) {
+                nodeLinks[++nodeLinks[0]] = neighbor;
+                link(neighbor, node, l);
+            }
+            entryPoints = candidates;
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    private void link(int node, int neighbor, int level) {
+        int[] nodeLinks = links[node][level];
+        if (nodeLinks[0] < nodeLinks.length - 1) {
+            nodeLinks[++nodeLinks[0]] = neighbor;
+            return;
+        }
+
+        // Full, keep the most diverse links
+        NodeQueue candidates = NodeQueue.worstFirst(nodeLinks.length);
+        candidates.push(neighbor, similarity.between(node, neighbor));
+        for (int i = 1; i <= nodeLinks[0]; i++) {
+            candidates.push(nodeLinks[i], similarity.between(node, nodeLinks[i]));
+        }
+        int[] selected = selectNeighbors(node, candidates, maxLinks(level));
+        nodeLinks[0] = selected.length;
+        System.arraycopy(selected, 0, nodeLinks, 1, selected.length);
+    }
+
+    /**
+     * Neighbor selection heuristic from the HNSW paper: a candidate is kept only if it's closer to the node than to
+     * any neighbor already kept, so links spread in different directions.
+     */
+    private int[] selectNeighbors(int node, NodeQueue candidates, int max) {
+        int[] nodes = candidates.nodesByScore();
+        double[] scores = candidates.scoresByScore();
+        int[] selected = new int[Math.min(max, nodes.length)];
+        int count = 0;
+
+        for (int i = 0; i < nodes.length && count < selected.length; i++) {
+            if (nodes[i] == node) {
+                continue;
+            }
+            boolean diverse = true;
+            for (int j = 0; j < count && diverse; j++) {
+                diverse = similarity.between(nodes[i], selected[j]) < scores[i];
+            }
+            if (diverse) {
+                selected[count++] = nodes[i];
+            }
+        }
+
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private int greedy(Scorer scorer, int start, int level) {
+        int current = start;
+        double currentScore = scorer.score(current);
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+            int[] nodeLinks = links[current][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                double score = scorer.score(nodeLinks[i]);
+                if (score > currentScore) {
+                    current = nodeLinks[i];
+                    currentScore = score;
+                    changed = true;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Finds the nearest accepted nodes.
+     *
+     * @param scorer     similarity to the query
+     * @param ef         size of the dynamic candidate list, at least the number of results needed
+     * @param accept     nodes which may be returned, or null to accept all
+     * @param visitLimit maximum number of nodes to score
+     * @return up to {@code ef} accepted nodes, or null if the visit limit was reached
+     */
+    NodeQueue search(Scorer scorer, int ef, BitSet accept, int visitLimit) {
+        if (entryPoint < 0) {
+            return NodeQueue.worstFirst(1);
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(scorer, current, l);
+        }
+
+        NodeQueue entryPoints = NodeQueue.worstFirst(1);
+        entryPoints.push(current, scorer.score(current));
+        return searchLayer(scorer, entryPoints, ef, 0, accept, visitLimit);
+    }
+
+    private NodeQueue searchLayer(Scorer scorer, NodeQueue entryPoints, int ef, int level, BitSet accept, int visitLimit) {
+        NodeQueue candidates = NodeQueue.bestFirst(ef * 2);
+        NodeQueue results = NodeQueue.worstFirst(ef + 1);
+        BitSet visited = new BitSet(size);
+        int visits = 0;
+
+        for (int i = 0; i < entryPoints.size(); i++) {
+            int node = entryPoints.node(i);
+            double score = entryPoints.score(i);
+            visited.set(node);
+            candidates.push(node, score);
+            if (accept == null || accept.get(node)) {
+                results.push(node, score);
+            }
+        }
+
+        while (candidates.size() > 0) {
+            if (results.size() >= ef && candidates.topScore() < results.topScore()) {
+                break;
+            }
+            int[] nodeLinks = links[candidates.pop()][level];
+
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int neighbor = nodeLinks[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                if (++visits > visitLimit) {
+                    return null;
+                }
+
+                double score = scorer.score(neighbor);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbor, score);
+                    if (accept == null || accept.get(neighbor)) {
+                        results.push(neighbor, score);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Writes the graph, in the format read by {@link #read(DataInput, NodeSimilarity, long)}.
+     *
+     * @param output the output
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput output) throws IOException {
+        output.writeInt(m);
+        output.writeInt(efConstruction);
+        output.writeInt(size);
+        output.writeInt(entryPoint);
+        output.writeInt(maxLevel);
+
+        for (int node = 0; node < size; node++) {
+            output.writeInt(links[node].length);
+            for (int[] levelLinks : links[node]) {
+                output.writeInt(levelLinks[0]);
+                for (int i = 1; i <= levelLinks[0]; i++) {
+                    output.writeInt(levelLinks[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a graph written by {@link #writeTo(DataOutput)}.
+     *
+     * @param input      the graph data
+     * @param similarity similarity between the nodes
+     * @param seed       seed for levels of nodes added later
+     * @return the graph
+     * @throws IOException if reading fails
+     */
+    static HnswGraph read(DataInput input, NodeSimilarity similarity, long seed) throws IOException {
+        HnswGraph graph = new HnswGraph(input.readInt(), input.readInt(), similarity, seed);
+        int size = input.readInt();
+        graph.entryPoint = input.readInt();
+        graph.maxLevel = input.readInt();
+        graph.links = new int[Math.max(1024, size)][][];
+
+        for (int node = 0; node < size; node++) {
+            int[][] nodeLinks = new int[input.readInt()][];
+            for (int l = 0; l < nodeLinks.length; l++) {
+                nodeLinks[l] = new int[graph.maxLinks(l) + 1];
+                nodeLinks[l][0] = input.readInt();
+                for (int i = 1; i <= nodeLinks[l][0]; i++) {
+                    nodeLinks[l][i] = input.readInt();
+                }
+            }
+            graph.links[node] = nodeLinks;
+        }
+        graph.size = size;
+
+        return graph;
+    }
+
+    /**
+     * Drops all nodes.
+     */
+    void clear() {
+        links = new int[1024][][];
+        entryPoint = -1;
+        maxLevel = -1;
+        size = 0;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Scalar quantization to one signed byte per dimension.
+ * <p>
+ * Vectors are normalised, then scaled so their largest component maps to 127. Similarity is the dot product of the
+ * codes times both scales. Queries stay in full precision and are compared to the codes directly.
+ */
+final class Int8QuantizedVectors implements QuantizedVectors {
+
+    private static final int VECTORS_PER_CHUNK = 1024;
+
+    private static final SimilarityKernels KERNELS = SimilarityKernels.get();
+
+    private final int dimension;
+    private byte[][] chunks = new byte[16][];
+    private float[] scales = new float[1024];
+    private int size;
+
+    Int8QuantizedVectors(int dimension) {
+        this.dimension = dimension;
+    }
+
+    private byte[] chunkFor(int node) {
+        int chunk = node / VECTORS_PER_CHUNK;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new byte[VECTORS_PER_CHUNK * dimension];
+        }
+        if (node == scales.length) {
+            scales = Arrays.copyOf(scales, scales.length * 2);
+        }
+        return chunks[chunk];
+    }
+
+    @Override
+    public void add(float[] vector) {
+        double sum = 0;
+        float max = 0;
+        for (float value : vector) {
+            sum += value * value;
+            max = Math.max(max, Math.abs(value));
+        }
+
+        byte[] chunk = chunkFor(size);
+        int offset = (size % VECTORS_PER_CHUNK) * dimension;
+        if (max > 0) {
+            float scale = max / 127;
+            for (int i = 0; i < dimension; i++) {
+                chunk[offset + i] = (byte) Math.round(vector[i] / scale);
+            }
+            scales[size] = (float) (scale / Math.sqrt(sum));
+        }
+        size++;
+    }
+
+    @Override
+    public void read(DataInput input) throws IOException {
+        byte[] chunk = chunkFor(size);
+        scales[size] = input.readFloat();
+        input.readFully(chunk, (size % VECTORS_PER_CHUNK) * dimension, dimension);
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double similarity(int node1, int node2) {
+        byte[] chunk1 = chunks[node1 / VECTORS_PER_CHUNK];
+        byte[] chunk2 = chunks[node2 / VECTORS_PER_CHUNK];
+        int offset1 = (node1 % VECTORS_PER_CHUNK) * dimension;
+        int offset2 = (node2 % VECTORS_PER_CHUNK) * dimension;
+
+        return KERNELS.dot(chunk1, offset1, chunk2, offset2, dimension) * (double) scales[node1] * scales[node2];
+    }
+
+    @Override
+    public HnswGraph.Scorer scorer(float[] query) {
+        double sum = KERNELS.dot(query, query);
+        float[] normalized = new float[dimension];
+        if (sum > 0) {
+            float norm = (float) Math.sqrt(sum);
+            for (int i = 0; i < dimension; i++) {
+                normalized[i] = query[i] / norm;
+            }
+        }
+
+        return node -> KERNELS.dot(normalized, chunks[node / VECTORS_PER_CHUNK], (node % VECTORS_PER_CHUNK) * dimension)
+                       * (double) scales[node];
+    }
+
+    @Override
+    public void writeTo(DataOutput output) throws IOException {
+        for (int node = 0; node < size; node++) {
+            output.writeFloat(scales[node]);
+            output.write(chunks[node / VECTORS_PER_CHUNK], (node % VECTORS_PER_CHUNK) * dimension, dimension);
+        }
+    }
+
+    @Override
+    public long bytes() {
+        return (long) size * (dimension + Float.BYTES);
+    }
+}
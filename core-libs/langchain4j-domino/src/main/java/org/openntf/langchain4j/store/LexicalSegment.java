@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import dev.langchain4j.data.segment.TextSegment;
+import java.util.BitSet;
+
+/**
+ * A set of documents in a {@link Bm25Index} with its own inverted index. Documents are numbered from zero in the
+ * order they were added. Removed documents are marked in {@link #deleted()} until the segment is merged away.
+ * <p>
+ * Not thread-safe for writes, the index guards segments with its lock.
+ */
+abstract class LexicalSegment {
+
+    /**
+     * Receives the documents containing a term.
+     */
+    interface PostingConsumer {
+
+        void accept(int doc, int frequency);
+    }
+
+    private final BitSet deleted = new BitSet();
+
+    abstract int docCount();
+
+    abstract long totalLength();
+
+    abstract int length(int doc);
+
+    abstract String id(int doc);
+
+    abstract TextSegment segment(int doc);
+
+    /**
+     * @return the number of documents containing the term, including removed ones
+     */
+    abstract int docFreq(String term);
+
+    /**
+     * Visits documents containing the term, in document order.
+     */
+    abstract void postings(String term, PostingConsumer consumer);
+
+    BitSet deleted() {
+        return deleted;
+    }
+
+    int liveDocCount() {
+        return docCount() - deleted.cardinality();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into lowercase terms for the {@link Bm25Index}. A term is a run of letters and digits. There is no
+ * stemming or stop word removal, rare terms are weighted by BM25 anyway.
+ */
+final class LexicalTokenizer {
+
+    // Longer runs are usually encoded data, not words
+    static final int MAX_TERM_LENGTH = 64;
+
+    private LexicalTokenizer() {
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; ) {
+            int codePoint = i < length ? text.codePointAt(i) : ' ';
+            boolean termChar = Character.isLetterOrDigit(codePoint);
+
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+            i += i < length ? Character.charCount(codePoint) : 1;
+        }
+        return terms;
+    }
+}
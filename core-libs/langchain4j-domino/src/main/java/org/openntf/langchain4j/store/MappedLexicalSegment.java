@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import dev.langchain4j.data.segment.TextSegment;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable segment file, memory-mapped for search.
+ * <p>
+ * After a fixed header, the file holds:
+ * <ol>
+ *     <li>postings of each term as variable-length document number deltas and frequencies,</li>
+ *     <li>the UTF-8 bytes of all terms, in unsigned byte order,</li>
+ *     <li>a fixed-width term table (term bytes position and length, document frequency, postings position), which is
+ *     binary searched,</li>
+ *     <li>document lengths in terms,</li>
+ *     <li>document IDs,</li>
+ *     <li>text segments, and a table of their positions.</li>
+ * </ol>
+ * Only the IDs are read into memory.
+ */
+final class MappedLexicalSegment extends LexicalSegment {
+
+    private static final int MAGIC = 0x424D3235;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 80;
+    private static final int TERM_ENTRY_BYTES = 20;
+
+    private final long generation;
+    private final ByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int termBytesOffset;
+    private final int termIndexOffset;
+    private final int postingsOffset;
+    private final int lengthsOffset;
+    private final int storedIndexOffset;
+    private final int storedOffset;
+    private final String[] ids;
+
+    private MappedLexicalSegment(long generation, ByteBuffer buffer) throws IOException {
+        this.generation = generation;
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a lexical segment file");
+        }
+        this.docCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.totalLength = buffer.getLong(16);
+        this.postingsOffset = (int) buffer.getLong(24);
+        this.termBytesOffset = (int) buffer.getLong(32);
+        this.termIndexOffset = (int) buffer.getLong(40);
+        this.lengthsOffset = (int) buffer.getLong(48);
+        int idsOffset = (int) buffer.getLong(56);
+        this.storedIndexOffset = (int) buffer.getLong(64);
+        this.storedOffset = (int) buffer.getLong(72);
+
+        this.ids = new String[docCount];
+        DataInputStream input = new DataInputStream(new BufferInput(buffer.duplicate().position(idsOffset)));
+        for (int i = 0; i < docCount; i++) {
+            ids[i] = input.readUTF();
+        }
+    }
+
+    /**
+     * Maps a segment file.
+     */
+    static MappedLexicalSegment open(Path file, long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segment file is too large: " + file);
+            }
+            return new MappedLexicalSegment(generation, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes all documents of a buffered segment, including removed ones, to a new file.
+     */
+    static void write(Path file, BufferedLexicalSegment source) throws IOException {
+        List<byte[]> terms = new ArrayList<>();
+        for (String term : source.terms()) {
+            terms.add(term.getBytes(StandardCharsets.UTF_8));
+        }
+        terms.sort(Arrays::compareUnsigned);
+
+        int docCount = source.docCount();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_BYTES);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+
+            long postingsOffset = offset(output);
+            long[] postingsStarts = new long[terms.size()];
+            int[] docFreqs = new int[terms.size()];
+            for (int i = 0; i < terms.size(); i++) {
+                postingsStarts[i] = offset(output) - postingsOffset;
+                int[] previous = {0};
+                int[] count = {0};
+                source.postings(new String(terms.get(i), StandardCharsets.UTF_8), (doc, frequency) -> {
+                    try {
+                        writeVarInt(output, doc - previous[0]);
+                        writeVarInt(output, frequency);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    previous[0] = doc;
+                    count[0]++;
+                });
+                docFreqs[i] = count[0];
+            }
+
+            long termBytesOffset = offset(output);
+            for (byte[] term : terms) {
+                output.write(term);
+            }
+
+            long termIndexOffset = offset(output);
+            int termStart = 0;
+            for (int i = 0; i < terms.size(); i++) {
+                output.writeInt(termStart);
+                output.writeInt(terms.get(i).length);
+                output.writeInt(docFreqs[i]);
+                output.writeLong(postingsStarts[i]);
+                termStart += terms.get(i).length;
+            }
+
+            long lengthsOffset = offset(output);
+            for (int doc = 0; doc < docCount; doc++) {
+                output.writeInt(source.length(doc));
+            }
+
+            long idsOffset = offset(output);
+            for (int doc = 0; doc < docCount; doc++) {
+                output.writeUTF(source.id(doc));
+            }
+
+            long storedOffset = offset(output);
+            long[] storedStarts = new long[docCount];
+            for (int doc = 0; doc < docCount; doc++) {
+                storedStarts[doc] = offset(output) - storedOffset;
+                SegmentCodec.write(output, source.segment(doc));
+            }
+
+            long storedIndexOffset = offset(output);
+            for (long start : storedStarts) {
+                output.writeLong(start);
+            }
+
+            offset(output);
+            output.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC)
+                  .putInt(VERSION)
+                  .putInt(docCount)
+                  .putInt(terms.size())
+                  .putLong(source.totalLength())
+                  .putLong(postingsOffset)
+                  .putLong(termBytesOffset)
+                  .putLong(termIndexOffset)
+                  .putLong(lengthsOffset)
+                  .putLong(idsOffset)
+                  .putLong(storedIndexOffset)
+                  .putLong(storedOffset)
+                  .flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+    }
+
+    private static long offset(DataOutputStream output) throws IOException {
+        // DataOutputStream counts up to Integer.MAX_VALUE
+        if (output.size() >= Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new IOException("Segment is too large to be mapped");
+        }
+        return HEADER_BYTES + (long) output.size();
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer input) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = input.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    long fileSize() {
+        return buffer.capacity();
+    }
+
+    @Override
+    int docCount() {
+        return docCount;
+    }
+
+    @Override
+    long totalLength() {
+        return totalLength;
+    }
+
+    @Override
+    int length(int doc) {
+        return buffer.getInt(lengthsOffset + doc * 4);
+    }
+
+    @Override
+    String id(int doc) {
+        return ids[doc];
+    }
+
+    @Override
+    TextSegment segment(int doc) {
+        int position = storedOffset + (int) buffer.getLong(storedIndexOffset + doc * 8);
+        try {
+            return SegmentCodec.read(new DataInputStream(new BufferInput(buffer.duplicate().position(position))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt lexical segment " + generation, e);
+        }
+    }
+
+    @Override
+    int docFreq(String term) {
+        int entry = find(term);
+        return entry < 0 ? 0 : buffer.getInt(termIndexOffset + entry * TERM_ENTRY_BYTES + 8);
+    }
+
+    @Override
+    void postings(String term, PostingConsumer consumer) {
+        int entry = find(term);
+        if (entry < 0) {
+            return;
+        }
+
+        int position = termIndexOffset + entry * TERM_ENTRY_BYTES;
+        int docFreq = buffer.getInt(position + 8);
+        ByteBuffer input = buffer.duplicate().position(postingsOffset + (int) buffer.getLong(position + 12));
+
+        int doc = 0;
+        for (int i = 0; i < docFreq; i++) {
+            doc += readVarInt(input);
+            consumer.accept(doc, readVarInt(input));
+        }
+    }
+
+    /**
+     * @return the term table entry of a term, or -1
+     */
+    private int find(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = termIndexOffset + middle * TERM_ENTRY_BYTES;
+            int comparison = compare(termBytesOffset + buffer.getInt(position), buffer.getInt(position + 4), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int position, int length, byte[] key) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Integer.compare(buffer.get(position + i) & 0xFF, key[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    // Reads from a private duplicate of the mapped buffer
+    private static final class BufferInput extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
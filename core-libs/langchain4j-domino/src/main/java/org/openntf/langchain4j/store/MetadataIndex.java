@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Inverted indexes over segment metadata, one per metadata key, to turn a LangChain4j {@link Filter} into the set of
+ * matching nodes before searching.
+ * <p>
+ * Values are kept sorted, so range filters work on numbers and on strings. Dates produced by
+ * {@link org.openntf.langchain4j.data.MetadataDefinition} are ISO strings and compare correctly as long as they use
+ * the same format. Filters which can't be answered from the indexes are tested against each node's metadata.
+ * <p>
+ * Not thread-safe.
+ */
+final class MetadataIndex {
+
+    private final Map<String, FieldIndex> fields = new HashMap<>();
+
+    /**
+     * Postings of a single metadata key, split by value type as LangChain4j doesn't compare strings with numbers.
+     */
+    private static final class FieldIndex {
+        private final NavigableMap<String, Postings> strings = new TreeMap<>();
+        private final NavigableMap<BigDecimal, Postings> numbers = new TreeMap<>();
+    }
+
+    /**
+     * Growable sorted array of node IDs. Nodes are added in ascending order.
+     */
+    private static final class Postings {
+        private int[] nodes = new int[4];
+        private int size;
+
+        void add(int node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            nodes[size++] = node;
+        }
+
+        void remove(int node) {
+            int index = Arrays.binarySearch(nodes, 0, size, node);
+            if (index >= 0) {
+                System.arraycopy(nodes, index + 1, nodes, index, --size - index);
+            }
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(nodes[i]);
+            }
+        }
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString());
+        }
+        if (value instanceof UUID) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    void add(int node, Metadata metadata) {
+        metadata.toMap().forEach((key, value) -> {
+            FieldIndex field = fields.computeIfAbsent(key, k -> new FieldIndex());
+            Object normalized = normalize(value);
+            if (normalized instanceof BigDecimal number) {
+                field.numbers.computeIfAbsent(number, k -> new Postings()).add(node);
+            } else {
+                field.strings.computeIfAbsent(String.valueOf(normalized), k -> new Postings()).add(node);
+            }
+        });
+    }
+
+    void remove(int node, Metadata metadata) {
+        metadata.toMap().forEach((key, value) -> {
+            FieldIndex field = fields.get(key);
+            if (field == null) {
+                return;
+            }
+            Object normalized = normalize(value);
+            NavigableMap<?, Postings> values = normalized instanceof BigDecimal ? field.numbers : field.strings;
+            Object valueKey = normalized instanceof BigDecimal ? normalized : String.valueOf(normalized);
+            Postings postings = values.get(valueKey);
+            if (postings != null) {
+                postings.remove(node);
+                if (postings.size == 0) {
+                    values.remove(valueKey);
+                }
+            }
+        });
+    }
+
+    void clear() {
+        fields.clear();
+    }
+
+    /**
+     * @param filter     the filter
+     * @param size       number of nodes
+     * @param metadataOf metadata of a node, null for deleted nodes
+     * @return nodes matching the filter. May include deleted nodes.
+     */
+    BitSet select(Filter filter, int size, IntFunction<Metadata> metadataOf) {
+        if (filter instanceof And and) {
+            BitSet bits = select(and.left(), size, metadataOf);
+            bits.and(select(and.right(), size, metadataOf));
+            return bits;
+        }
+        if (filter instanceof Or or) {
+            BitSet bits = select(or.left(), size, metadataOf);
+            bits.or(select(or.right(), size, metadataOf));
+            return bits;
+        }
+        if (filter instanceof Not not) {
+            return complement(select(not.expression(), size, metadataOf), size);
+        }
+        if (filter instanceof IsEqualTo isEqualTo) {
+            return equalTo(isEqualTo.key(), isEqualTo.comparisonValue());
+        }
+        if (filter instanceof IsNotEqualTo isNotEqualTo) {
+            // Nodes without the key match, as in LangChain4j
+            return complement(equalTo(isNotEqualTo.key(), isNotEqualTo.comparisonValue()), size);
+        }
+        if (filter instanceof IsIn isIn) {
+            return in(isIn.key(), isIn.comparisonValues());
+        }
+        if (filter instanceof IsNotIn isNotIn) {
+            return complement(in(isNotIn.key(), isNotIn.comparisonValues()), size);
+        }
+        if (filter instanceof IsGreaterThan isGreaterThan) {
+            return range(isGreaterThan.key(), isGreaterThan.comparisonValue(), false, null, false);
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo isGreaterThanOrEqualTo) {
+            return range(isGreaterThanOrEqualTo.key(), isGreaterThanOrEqualTo.comparisonValue(), true, null, false);
+        }
+        if (filter instanceof IsLessThan isLessThan) {
+            return range(isLessThan.key(), null, false, isLessThan.comparisonValue(), false);
+        }
+        if (filter instanceof IsLessThanOrEqualTo isLessThanOrEqualTo) {
+            return range(isLessThanOrEqualTo.key(), null, false, isLessThanOrEqualTo.comparisonValue(), true);
+        }
+
+        // Unknown filter, test each node
+        BitSet bits = new BitSet(size);
+        for (int node = 0; node < size; node++) {
+            Metadata metadata = metadataOf.apply(node);
+            if (metadata != null && filter.test(metadata)) {
+                bits.set(node);
+            }
+        }
+        return bits;
+    }
+
+    private static BitSet complement(BitSet bits, int size) {
+        bits.flip(0, size);
+        return bits;
+    }
+
+    private BitSet equalTo(String key, Object value) {
+        BitSet bits = new BitSet();
+        FieldIndex field = fields.get(key);
+        if (field != null) {
+            Object normalized = normalize(value);
+            Postings postings = normalized instanceof BigDecimal number
+                ? field.numbers.get(number)
+                : field.strings.get(String.valueOf(normalized));
+            if (postings != null) {
+                postings.addTo(bits);
+            }
+        }
+        return bits;
+    }
+
+    private BitSet in(String key, Collection<?> values) {
+        BitSet bits = new BitSet();
+        for (Object value : values) {
+            bits.or(equalTo(key, value));
+        }
+        return bits;
+    }
+
+    private BitSet range(String key, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        BitSet bits = new BitSet();
+        FieldIndex field = fields.get(key);
+        if (field == null) {
+            return bits;
+        }
+
+        Object bound = normalize(from != null ? from : to);
+        if (bound instanceof BigDecimal) {
+            subMap(field.numbers, (BigDecimal) normalize(from), fromInclusive, (BigDecimal) normalize(to), toInclusive)
+                .values().forEach(postings -> postings.addTo(bits));
+        } else {
+            subMap(field.strings, from == null ? null : String.valueOf(normalize(from)), fromInclusive,
+                   to == null ? null : String.valueOf(normalize(to)), toInclusive)
+                .values().forEach(postings -> postings.addTo(bits));
+        }
+        return bits;
+    }
+
+    private static <K> NavigableMap<K, Postings> subMap(NavigableMap<K, Postings> map, K from, boolean fromInclusive,
+                                                        K to, boolean toInclusive) {
+        if (from == null) {
+            return map.headMap(to, toInclusive);
+        }
+        return to == null ? map.tailMap(from, fromInclusive) : map.subMap(from, fromInclusive, to, toInclusive);
+    }
+}
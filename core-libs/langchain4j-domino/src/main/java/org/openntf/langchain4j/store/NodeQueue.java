@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of nodes and their scores, without boxing.
+ * <p>
+ * The top of the heap is either the worst scoring node, to keep the best N, or the best scoring node, to expand
+ * candidates in order.
+ */
+final class NodeQueue {
+
+    private final boolean bestFirst;
+    private int[] nodes;
+    private double[] scores;
+    private int size;
+
+    private NodeQueue(int capacity, boolean bestFirst) {
+        this.bestFirst = bestFirst;
+        this.nodes = new int[Math.max(capacity, 1)];
+        this.scores = new double[nodes.length];
+    }
+
+    /**
+     * @param capacity initial capacity, the queue grows as needed
+     * @return a queue with the lowest score on top
+     */
+    static NodeQueue worstFirst(int capacity) {
+        return new NodeQueue(capacity, false);
+    }
+
+    /**
+     * @param capacity initial capacity, the queue grows as needed
+     * @return a queue with the highest score on top
+     */
+    static NodeQueue bestFirst(int capacity) {
+        return new NodeQueue(capacity, true);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void push(int node, double score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!above(score, scores[parent])) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    double topScore() {
+        return scores[0];
+    }
+
+    /**
+     * @return the node on top, after removing it
+     */
+    int pop() {
+        int top = nodes[0];
+        int node = nodes[--size];
+        double score = scores[size];
+
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && above(scores[child + 1], scores[child])) {
+                child++;
+            }
+            if (!above(scores[child], score)) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+
+        return top;
+    }
+
+    private boolean above(double score, double other) {
+        return bestFirst ? score > other : score < other;
+    }
+
+    /**
+     * @param index position in heap order, from 0 to {@link #size()}
+     */
+    int node(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * @param index position in heap order, from 0 to {@link #size()}
+     */
+    double score(int index) {
+        return scores[index];
+    }
+
+    /**
+     * @return nodes sorted by descending score
+     */
+    int[] nodesByScore() {
+        Integer[] order = order();
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = nodes[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * @return scores in the same order as {@link #nodesByScore()}
+     */
+    double[] scoresByScore() {
+        Integer[] order = order();
+        double[] sorted = new double[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = scores[order[i]];
+        }
+        return sorted;
+    }
+
+    private Integer[] order() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        return order;
+    }
+}
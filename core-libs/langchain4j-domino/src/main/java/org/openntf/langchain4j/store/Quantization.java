@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+/**
+ * How {@link DominoEmbeddingStore} keeps the vectors it searches the graph with.
+ * <p>
+ * With quantization, the graph is built and searched on compact codes held in memory. The best candidates are then
+ * re-scored with the full-precision vectors, which are only read for those candidates. When the store is restored
+ * from a snapshot, full-precision vectors are mapped and stay on disk until needed.
+ */
+public enum Quantization {
+
+    /**
+     * Full-precision float vectors.
+     */
+    NONE(1),
+
+    /**
+     * One signed byte per dimension, scaled per vector. About 4 times smaller than floats.
+     */
+    INT8(2),
+
+    /**
+     * One bit per dimension, the sign of each component, compared by Hamming distance. 32 times smaller than floats,
+     * needs more candidates re-scored for the same recall.
+     */
+    BINARY(8);
+
+    private final int defaultOversampling;
+
+    Quantization(int defaultOversampling) {
+        this.defaultOversampling = defaultOversampling;
+    }
+
+    /**
+     * @return how many times the requested results are re-scored at full precision, unless configured
+     */
+    public int getDefaultOversampling() {
+        return defaultOversampling;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact in-memory codes of the stored vectors, approximating cosine similarity.
+ * <p>
+ * Not thread-safe for additions. Reads may run concurrently with each other.
+ */
+interface QuantizedVectors {
+
+    /**
+     * @param quantization the quantization, other than {@link Quantization#NONE}
+     * @param dimension    the vector dimension
+     * @return empty codes
+     */
+    static QuantizedVectors create(Quantization quantization, int dimension) {
+        return switch (quantization) {
+            case INT8 -> new Int8QuantizedVectors(dimension);
+            case BINARY -> new BinaryQuantizedVectors(dimension);
+            case NONE -> throw new IllegalArgumentException("Nothing to quantize");
+        };
+    }
+
+    /**
+     * Reads codes written by {@link #writeTo(DataOutput)}.
+     */
+    static QuantizedVectors read(DataInput input, Quantization quantization, int dimension, int count) throws IOException {
+        QuantizedVectors vectors = create(quantization, dimension);
+        for (int i = 0; i < count; i++) {
+            vectors.read(input);
+        }
+        return vectors;
+    }
+
+    /**
+     * Appends the code of a vector.
+     *
+     * @param vector the full-precision vector
+     */
+    void add(float[] vector);
+
+    /**
+     * Appends a code from the input, as written by {@link #writeTo(DataOutput)}.
+     */
+    void read(DataInput input) throws IOException;
+
+    int size();
+
+    /**
+     * @return approximate cosine similarity between two stored vectors
+     */
+    double similarity(int node1, int node2);
+
+    /**
+     * @param query the full-precision query
+     * @return approximate cosine similarity of stored vectors to the query
+     */
+    HnswGraph.Scorer scorer(float[] query);
+
+    /**
+     * Writes all codes.
+     */
+    void writeTo(DataOutput output) throws IOException;
+
+    /**
+     * @return memory used by the codes, in bytes
+     */
+    long bytes();
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Plain loops, for JVMs without the Vector API.
+ */
+final class ScalarKernels extends SimilarityKernels {
+
+    @Override
+    float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    float dot(float[] a, ByteBuffer b, int offsetB) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b.getFloat(offsetB + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    @Override
+    float dot(ByteBuffer a, int offsetA, ByteBuffer b, int offsetB, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a.getFloat(offsetA + i * Float.BYTES) * b.getFloat(offsetB + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    @Override
+    float dot(float[] a, byte[] b, int offsetB) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[offsetB + i];
+        }
+        return sum;
+    }
+
+    @Override
+    int dot(byte[] a, int offsetA, byte[] b, int offsetB, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[offsetA + i] * b[offsetB + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary form of text segments for store snapshots and lexical segment files.
+ */
+final class SegmentCodec {
+
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte UUID_VALUE = 6;
+
+    private SegmentCodec() {
+    }
+
+    static void write(DataOutput output, TextSegment segment) throws IOException {
+        writeString(output, segment.text());
+
+        Map<String, Object> metadata = segment.metadata().toMap();
+        output.writeInt(metadata.size());
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            output.writeUTF(entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Integer i) {
+                output.writeByte(INTEGER);
+                output.writeInt(i);
+            } else if (value instanceof Long l) {
+                output.writeByte(LONG);
+                output.writeLong(l);
+            } else if (value instanceof Float f) {
+                output.writeByte(FLOAT);
+                output.writeFloat(f);
+            } else if (value instanceof Double d) {
+                output.writeByte(DOUBLE);
+                output.writeDouble(d);
+            } else if (value instanceof UUID uuid) {
+                output.writeByte(UUID_VALUE);
+                output.writeLong(uuid.getMostSignificantBits());
+                output.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                output.writeByte(STRING);
+                writeString(output, String.valueOf(value));
+            }
+        }
+    }
+
+    static TextSegment read(DataInput input) throws IOException {
+        String text = readString(input);
+
+        int count = input.readInt();
+        Map<String, Object> metadata = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String key = input.readUTF();
+            byte type = input.readByte();
+            metadata.put(key, switch (type) {
+                case INTEGER -> input.readInt();
+                case LONG -> input.readLong();
+                case FLOAT -> input.readFloat();
+                case DOUBLE -> input.readDouble();
+                case UUID_VALUE -> new UUID(input.readLong(), input.readLong());
+                case STRING -> readString(input);
+                default -> throw new IOException("Unknown metadata type " + type);
+            });
+        }
+
+        return TextSegment.from(text, new Metadata(metadata));
+    }
+
+    // Unlike writeUTF, not limited to 64 KB
+    private static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dot product kernels for similarity scoring.
+ * <p>
+ * {@link #get()} returns kernels using the incubating Vector API ({@code jdk.incubator.vector}) when the JVM was
+ * started with {@code --add-modules jdk.incubator.vector}, and scalar loops otherwise. Set the system property
+ * {@value #SCALAR_PROPERTY} to {@code true} to force the scalar kernels.
+ * <p>
+ * Buffers hold little-endian floats. Offsets into buffers are in bytes, offsets into arrays are in elements.
+ */
+abstract class SimilarityKernels {
+
+    static final String SCALAR_PROPERTY = "org.openntf.langchain4j.store.scalarKernels";
+
+    private static final Logger log = Logger.getLogger(SimilarityKernels.class.getName());
+
+    private static final SimilarityKernels INSTANCE = load();
+
+    private static SimilarityKernels load() {
+        if (Boolean.getBoolean(SCALAR_PROPERTY)) {
+            return new ScalarKernels();
+        }
+
+        try {
+            // Loaded by name, so the scalar path never touches the Vector API
+            SimilarityKernels kernels = (SimilarityKernels) Class.forName(SimilarityKernels.class.getPackageName() + ".VectorApiKernels")
+                                                                 .getDeclaredConstructor()
+                                                                 .newInstance();
+            log.fine(() -> "Using Vector API similarity kernels: " + kernels);
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.log(Level.FINE, "Vector API not available, using scalar similarity kernels", e);
+            return new ScalarKernels();
+        }
+    }
+
+    /**
+     * @return the fastest kernels available
+     */
+    static SimilarityKernels get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return dot product of two arrays of the same length
+     */
+    abstract float dot(float[] a, float[] b);
+
+    /**
+     * @return dot product of an array and {@code a.length} floats of a buffer
+     */
+    abstract float dot(float[] a, ByteBuffer b, int offsetB);
+
+    /**
+     * @return dot product of {@code length} floats of two buffers
+     */
+    abstract float dot(ByteBuffer a, int offsetA, ByteBuffer b, int offsetB, int length);
+
+    /**
+     * @return dot product of an array and {@code a.length} bytes, as signed integers
+     */
+    abstract float dot(float[] a, byte[] b, int offsetB);
+
+    /**
+     * @return dot product of {@code length} bytes of two arrays, as signed integers
+     */
+    abstract int dot(byte[] a, int offsetA, byte[] b, int offsetB, int length);
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels using the incubating Vector API of Java 17. Only loaded through {@link SimilarityKernels#get()}.
+ * <p>
+ * All species follow the preferred vector size of the platform. Byte kernels widen bytes to float or int lanes of the
+ * preferred size, which needs a byte vector of at least 64 bits, so they need a preferred size of 256 bits or more.
+ * Below that (e.g. 128-bit NEON on aarch64) the wider species would be emulated, slower than scalar loops, so the
+ * byte kernels are scalar.
+ */
+final class VectorApiKernels extends SimilarityKernels {
+
+    private static final VectorSpecies<Float> FLOAT = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+
+    // Bytes are widened into one float or int vector, null if the preferred vectors are too narrow
+    private static final VectorSpecies<Byte> BYTE = FLOAT.vectorBitSize() >= 256
+        ? VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOAT.length() * Byte.SIZE))
+        : null;
+
+    private static final ScalarKernels SCALAR = new ScalarKernels();
+
+    VectorApiKernels() {
+        // Link every kernel now, so an incompatible Vector API fails here and scalar kernels are used instead
+        int length = FLOAT.length() * 2 + 1;
+        float[] floats = new float[length];
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.allocate(length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        dot(floats, floats);
+        dot(floats, buffer, 0);
+        dot(buffer, 0, buffer, 0, length);
+        dot(floats, bytes, 0);
+        dot(bytes, 0, bytes, 0, length);
+    }
+
+    @Override
+    float dot(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(FLOAT);
+        int bound = FLOAT.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += FLOAT.length()) {
+            sum = FloatVector.fromArray(FLOAT, a, i).fma(FloatVector.fromArray(FLOAT, b, i), sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    float dot(float[] a, ByteBuffer b, int offsetB) {
+        FloatVector sum = FloatVector.zero(FLOAT);
+        int bound = FLOAT.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += FLOAT.length()) {
+            FloatVector vb = FloatVector.fromByteBuffer(FLOAT, b, offsetB + i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            sum = FloatVector.fromArray(FLOAT, a, i).fma(vb, sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b.getFloat(offsetB + i * Float.BYTES);
+        }
+        return result;
+    }
+
+    @Override
+    float dot(ByteBuffer a, int offsetA, ByteBuffer b, int offsetB, int length) {
+        FloatVector sum = FloatVector.zero(FLOAT);
+        int bound = FLOAT.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOAT.length()) {
+            FloatVector va = FloatVector.fromByteBuffer(FLOAT, a, offsetA + i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            FloatVector vb = FloatVector.fromByteBuffer(FLOAT, b, offsetB + i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            sum = va.fma(vb, sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a.getFloat(offsetA + i * Float.BYTES) * b.getFloat(offsetB + i * Float.BYTES);
+        }
+        return result;
+    }
+
+    @Override
+    float dot(float[] a, byte[] b, int offsetB) {
+        if (BYTE == null) {
+            return SCALAR.dot(a, b, offsetB);
+        }
+
+        FloatVector sum = FloatVector.zero(FLOAT);
+        int bound = BYTE.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += BYTE.length()) {
+            FloatVector vb = (FloatVector) ByteVector.fromArray(BYTE, b, offsetB + i).convertShape(VectorOperators.B2F, FLOAT, 0);
+            sum = FloatVector.fromArray(FLOAT, a, i).fma(vb, sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[offsetB + i];
+        }
+        return result;
+    }
+
+    @Override
+    int dot(byte[] a, int offsetA, byte[] b, int offsetB, int length) {
+        if (BYTE == null) {
+            return SCALAR.dot(a, offsetA, b, offsetB, length);
+        }
+
+        IntVector sum = IntVector.zero(INT);
+        int bound = BYTE.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += BYTE.length()) {
+            IntVector va = (IntVector) ByteVector.fromArray(BYTE, a, offsetA + i).convertShape(VectorOperators.B2I, INT, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(BYTE, b, offsetB + i).convertShape(VectorOperators.B2I, INT, 0);
+            sum = va.mul(vb).add(sum);
+        }
+
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[offsetA + i] * b[offsetB + i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Vector API, " + FLOAT.length() + " float lanes" + (BYTE == null ? ", scalar byte kernels" : "");
+    }
+}
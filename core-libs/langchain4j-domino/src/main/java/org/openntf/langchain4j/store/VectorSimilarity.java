@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+/**
+ * Similarity scoring for float vectors held outside a store, with the kernels {@link DominoEmbeddingStore} uses: the
+ * Vector API when the JVM was started with {@code --add-modules jdk.incubator.vector}, scalar loops otherwise.
+ */
+public final class VectorSimilarity {
+
+    private static final SimilarityKernels KERNELS = SimilarityKernels.get();
+
+    private VectorSimilarity() {
+    }
+
+    /**
+     * @param a a vector
+     * @param b a vector of the same length
+     * @return the dot product, which is the cosine similarity of normalized vectors
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vectors have different lengths: " + a.length + " and " + b.length);
+        }
+        return KERNELS.dot(a, b);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Off-heap vector storage in fixed size chunks, each either a read-only mapping of a snapshot file or a read-write
+ * mapping of a temporary vector file.
+ * <p>
+ * Vectors are written to the mapped temporary file as they're added, so they take page cache the OS can reclaim
+ * rather than direct memory. The file is created on the first addition and deleted by {@link #release()}.
+ * <p>
+ * Each record holds the vector components followed by the vector norm, as little-endian floats. Chunks are laid out
+ * exactly as in the snapshot file, so writing a snapshot is a bulk copy and opening one maps the file without
+ * reading it.
+ * <p>
+ * Not thread-safe for additions. Reads may run concurrently with each other.
+ */
+final class VectorStorage {
+
+    static final int VECTORS_PER_CHUNK = 16384;
+
+    private static final SimilarityKernels KERNELS = SimilarityKernels.get();
+
+    private final int dimension;
+    private final int recordBytes;
+    private final Path directory;
+    private ByteBuffer[] chunks = new ByteBuffer[16];
+    private int size;
+
+    // The temporary file holds chunks from the first one added after a snapshot was mapped
+    private FileChannel file;
+    private int firstFileChunk;
+
+    private VectorStorage(int dimension, Path directory) {
+        this.dimension = dimension;
+        this.recordBytes = (dimension + 1) * Float.BYTES;
+        this.directory = directory;
+    }
+
+    /**
+     * @param dimension the vector dimension
+     * @param directory the directory for the temporary vector file
+     * @return empty storage
+     */
+    static VectorStorage create(int dimension, Path directory) {
+        return new VectorStorage(dimension, directory);
+    }
+
+    /**
+     * Maps vectors written by {@link #writeTo(FileChannel)}. Complete chunks are mapped read-only, the last partial
+     * chunk is copied to the temporary vector file, so new vectors can be appended.
+     *
+     * @param channel   the snapshot file
+     * @param position  position of the first record
+     * @param dimension the vector dimension
+     * @param count     number of records
+     * @param directory the directory for the temporary vector file
+     * @return storage backed by the file
+     * @throws IOException if the file can't be mapped
+     */
+    static VectorStorage map(FileChannel channel, long position, int dimension, int count, Path directory) throws IOException {
+        VectorStorage storage = new VectorStorage(dimension, directory);
+        long chunkBytes = (long) VECTORS_PER_CHUNK * storage.recordBytes;
+
+        if (channel.size() < position + (long) count * storage.recordBytes) {
+            throw new IOException("Vector file is truncated");
+        }
+
+        int fullChunks = count / VECTORS_PER_CHUNK;
+        storage.ensureChunks(fullChunks + 1);
+        for (int i = 0; i < fullChunks; i++) {
+            storage.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + i * chunkBytes, chunkBytes)
+                                       .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int remaining = count - fullChunks * VECTORS_PER_CHUNK;
+        if (remaining > 0) {
+            ByteBuffer last = storage.allocateChunk(fullChunks, remaining);
+            long from = position + fullChunks * chunkBytes;
+            while (last.hasRemaining()) {
+                if (channel.read(last, from + last.position()) < 0) {
+                    throw new IOException("Vector file is truncated");
+                }
+            }
+            storage.chunks[fullChunks] = last.clear();
+        }
+
+        storage.size = count;
+        return storage;
+    }
+
+    // Maps room for the records of a chunk in the temporary file, keeping what the chunk already holds there
+    private ByteBuffer allocateChunk(int chunk, int records) throws IOException {
+        if (file == null) {
+            Path path = Files.createTempFile(directory, "vectors-", ".tmp");
+            file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            firstFileChunk = chunk;
+        }
+
+        long chunkBytes = (long) VECTORS_PER_CHUNK * recordBytes;
+        return file.map(FileChannel.MapMode.READ_WRITE, (chunk - firstFileChunk) * chunkBytes, (long) records * recordBytes)
+                   .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Deletes the temporary vector file. Mapped chunks stay readable, but no vectors can be added afterwards.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    void release() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    private void ensureChunks(int count) {
+        if (count > chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(count, chunks.length * 2));
+        }
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param vector the vector, with {@link #dimension()} components
+     * @return the node ID of the vector
+     * @throws UncheckedIOException if the temporary vector file can't be extended
+     */
+    int add(float[] vector) {
+        int chunk = size / VECTORS_PER_CHUNK;
+        int index = size % VECTORS_PER_CHUNK;
+        ensureChunks(chunk + 1);
+
+        // The last chunk grows up to the full chunk size, so small stores stay small. It's remapped over the same
+        // region of the file, so the records already added are kept without copying.
+        ByteBuffer current = chunks[chunk];
+        if (current == null || current.capacity() < (index + 1) * recordBytes) {
+            int records = current == null ? 64 : Math.min(VECTORS_PER_CHUNK, current.capacity() / recordBytes * 2);
+            try {
+                chunks[chunk] = current = allocateChunk(chunk, records);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to extend the vector file in " + directory, e);
+            }
+        }
+
+        int offset = index * recordBytes;
+        for (int i = 0; i < dimension; i++) {
+            current.putFloat(offset + i * Float.BYTES, vector[i]);
+        }
+        current.putFloat(offset + dimension * Float.BYTES, (float) Math.sqrt(KERNELS.dot(vector, vector)));
+        return size++;
+    }
+
+    /**
+     * @param node the node
+     * @return a copy of the vector
+     */
+    float[] get(int node) {
+        ByteBuffer chunk = chunks[node / VECTORS_PER_CHUNK];
+        int offset = (node % VECTORS_PER_CHUNK) * recordBytes;
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = chunk.getFloat(offset + i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    /**
+     * @return cosine similarity between a query and a stored vector
+     */
+    double cosine(float[] query, float queryNorm, int node) {
+        ByteBuffer chunk = chunks[node / VECTORS_PER_CHUNK];
+        int offset = (node % VECTORS_PER_CHUNK) * recordBytes;
+        float norm = chunk.getFloat(offset + dimension * Float.BYTES);
+        if (queryNorm == 0 || norm == 0) {
+            return 0;
+        }
+        return KERNELS.dot(query, chunk, offset) / ((double) queryNorm * norm);
+    }
+
+    /**
+     * @return cosine similarity between two stored vectors
+     */
+    double cosine(int node1, int node2) {
+        ByteBuffer chunk1 = chunks[node1 / VECTORS_PER_CHUNK];
+        ByteBuffer chunk2 = chunks[node2 / VECTORS_PER_CHUNK];
+        int offset1 = (node1 % VECTORS_PER_CHUNK) * recordBytes;
+        int offset2 = (node2 % VECTORS_PER_CHUNK) * recordBytes;
+        float norm1 = chunk1.getFloat(offset1 + dimension * Float.BYTES);
+        float norm2 = chunk2.getFloat(offset2 + dimension * Float.BYTES);
+        if (norm1 == 0 || norm2 == 0) {
+            return 0;
+        }
+        return KERNELS.dot(chunk1, offset1, chunk2, offset2, dimension) / ((double) norm1 * norm2);
+    }
+
+    /**
+     * Appends all records to a file, in the format read by {@link #map(FileChannel, long, int, int)}.
+     *
+     * @param channel the file, positioned where records should start
+     * @throws IOException if writing fails
+     */
+    void writeTo(FileChannel channel) throws IOException {
+        int remaining = size;
+        for (int chunk = 0; remaining > 0; chunk++) {
+            int records = Math.min(remaining, VECTORS_PER_CHUNK);
+            ByteBuffer bytes = chunks[chunk].duplicate().position(0).limit(records * recordBytes);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            remaining -= records;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.utils;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A streaming HTML to plain text converter.
+ * <p>
+ * This is a single-pass tokenizer that drops tags, comments, scripts and styles, decodes character entities and
+ * normalises whitespace without building a DOM. It is not a validating parser: the aim is to produce the same text as
+ * {@code Jsoup.parseBodyFragment(html).text()} for typical e-mail and rich text bodies, at a fraction of the
+ * allocation cost.
+ */
+public class HtmlTextConverter {
+
+    // Maximum length of a tag name or entity we are interested in. Anything longer is treated as text.
+    private static final int MAX_LOOKAHEAD = 32;
+
+    // Content of these elements is never part of the text
+    private static final Set<String> SKIP_CONTENT_TAGS = Set.of("script", "style", "head", "template", "noscript");
+
+    // These elements separate words even when there is no whitespace around them
+    private static final Set<String> BLOCK_TAGS = Set.of(
+        "address", "article", "aside", "blockquote", "br", "caption", "dd", "div", "dl", "dt", "fieldset",
+        "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li",
+        "main", "nav", "ol", "option", "p", "pre", "section", "table", "tbody", "td", "tfoot", "th", "thead",
+        "tr", "ul"
+    );
+
+    // The most common named entities. Unknown entities are emitted as they are.
+    private static final Map<String, String> NAMED_ENTITIES = Map.ofEntries(
+        Map.entry("amp", "&"), Map.entry("lt", "<"), Map.entry("gt", ">"), Map.entry("quot", "\""),
+        Map.entry("apos", "'"), Map.entry("nbsp", " "), Map.entry("ensp", " "), Map.entry("emsp", " "),
+        Map.entry("thinsp", " "), Map.entry("shy", ""), Map.entry("copy", "\u00a9"), Map.entry("reg", "\u00ae"),
+        Map.entry("trade", "\u2122"), Map.entry("hellip", "\u2026"), Map.entry("ndash", "\u2013"),
+        Map.entry("mdash", "\u2014"), Map.entry("lsquo", "\u2018"), Map.entry("rsquo", "\u2019"),
+        Map.entry("sbquo", "\u201a"), Map.entry("ldquo", "\u201c"), Map.entry("rdquo", "\u201d"),
+        Map.entry("bdquo", "\u201e"), Map.entry("laquo", "\u00ab"), Map.entry("raquo", "\u00bb"),
+        Map.entry("bull", "\u2022"), Map.entry("middot", "\u00b7"), Map.entry("deg", "\u00b0"),
+        Map.entry("plusmn", "\u00b1"), Map.entry("times", "\u00d7"), Map.entry("divide", "\u00f7"),
+        Map.entry("euro", "\u20ac"), Map.entry("pound", "\u00a3"), Map.entry("yen", "\u00a5"), Map.entry("cent", "\u00a2"),
+        Map.entry("sect", "\u00a7"), Map.entry("para", "\u00b6"), Map.entry("iexcl", "\u00a1"), Map.entry("iquest", "\u00bf"),
+        Map.entry("Agrave", "\u00c0"), Map.entry("Aacute", "\u00c1"), Map.entry("Acirc", "\u00c2"), Map.entry("Auml", "\u00c4"),
+        Map.entry("Aring", "\u00c5"), Map.entry("Ccedil", "\u00c7"), Map.entry("Egrave", "\u00c8"), Map.entry("Eacute", "\u00c9"),
+        Map.entry("Ecirc", "\u00ca"), Map.entry("Iacute", "\u00cd"), Map.entry("Ntilde", "\u00d1"), Map.entry("Oacute", "\u00d3"),
+        Map.entry("Ouml", "\u00d6"), Map.entry("Oslash", "\u00d8"), Map.entry("Uacute", "\u00da"), Map.entry("Uuml", "\u00dc"),
+        Map.entry("szlig", "\u00df"), Map.entry("agrave", "\u00e0"), Map.entry("aacute", "\u00e1"), Map.entry("acirc", "\u00e2"),
+        Map.entry("auml", "\u00e4"), Map.entry("aring", "\u00e5"), Map.entry("ccedil", "\u00e7"), Map.entry("egrave", "\u00e8"),
+        Map.entry("eacute", "\u00e9"), Map.entry("ecirc", "\u00ea"), Map.entry("euml", "\u00eb"), Map.entry("iacute", "\u00ed"),
+        Map.entry("icirc", "\u00ee"), Map.entry("iuml", "\u00ef"), Map.entry("ntilde", "\u00f1"), Map.entry("oacute", "\u00f3"),
+        Map.entry("ocirc", "\u00f4"), Map.entry("ouml", "\u00f6"), Map.entry("oslash", "\u00f8"), Map.entry("uacute", "\u00fa"),
+        Map.entry("ucirc", "\u00fb"), Map.entry("uuml", "\u00fc"), Map.entry("yacute", "\u00fd"), Map.entry("yuml", "\u00ff")
+    );
+
+    // Legacy HTML allows these in uppercase, e.g. "&AMP;"
+    private static final Set<String> CASE_INSENSITIVE_ENTITIES = Set.of("amp", "lt", "gt", "quot", "nbsp");
+
+    private HtmlTextConverter() {
+    }
+
+    /**
+     * Converts an HTML string into normalised plain text.
+     *
+     * @param html the HTML content, may be null
+     * @return the text content, never null
+     */
+    public static String toText(String html) {
+        if (TypeUtils.isEmpty(html)) {
+            return "";
+        }
+
+        StringBuilder out = new StringBuilder(Math.min(html.length(), 1 << 16));
+        try {
+            toText(new StringReader(html), out);
+        } catch (IOException e) {
+            // StringReader and StringBuilder won't throw
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Streams HTML content from a reader and appends its text content to the target.
+     * The reader is consumed but not closed.
+     *
+     * @param html   the reader for the HTML content
+     * @param target the target to append text into
+     * @throws IOException if reading or appending fails
+     */
+    public static void toText(Reader html, Appendable target) throws IOException {
+        new Tokenizer(html, target).run();
+    }
+
+    private static final class Tokenizer {
+
+        private final PushbackReader in;
+        private final Appendable out;
+
+        // Whitespace normalisation state
+        private boolean pendingSpace;
+        private boolean empty = true;
+
+        private Tokenizer(Reader reader, Appendable out) {
+            this.in = new PushbackReader(reader, MAX_LOOKAHEAD + 2);
+            this.out = out;
+        }
+
+        private void run() throws IOException {
+            int c;
+            while ((c = in.read()) != -1) {
+                if (c == '<') {
+                    readMarkup();
+                } else if (c == '&') {
+                    readEntity();
+                } else {
+                    emit((char) c);
+                }
+            }
+        }
+
+        private void emit(char c) throws IOException {
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = true;
+                return;
+            }
+
+            if (pendingSpace && !empty) {
+                out.append(' ');
+            }
+            pendingSpace = false;
+            empty = false;
+            out.append(c);
+        }
+
+        private void readMarkup() throws IOException {
+            int next = in.read();
+
+            if (next == '!') {
+                readDeclaration();
+            } else if (next == '?') {
+                skipUntil('>');
+            } else if (next == '/' || isAsciiLetter(next)) {
+                readTag(next == '/', next == '/' ? -1 : next);
+            } else {
+                // Not a tag, e.g. "a < b"
+                if (next != -1) {
+                    in.unread(next);
+                }
+                emit('<');
+            }
+        }
+
+        private void readDeclaration() throws IOException {
+            if (consume("--")) {
+                skipUntil("-->");
+            } else if (consume("[CDATA[")) {
+                int c;
+                while ((c = in.read()) != -1) {
+                    if (c == ']' && consume("]>")) {
+                        return;
+                    }
+                    emit((char) c);
+                }
+            } else {
+                // DOCTYPE and friends
+                skipUntil('>');
+            }
+        }
+
+        private void readTag(boolean closing, int firstChar) throws IOException {
+            StringBuilder name = new StringBuilder();
+            if (firstChar != -1) {
+                name.append((char) firstChar);
+            }
+
+            int c;
+            while ((c = in.read()) != -1 && (isAsciiLetter(c) || Character.isDigit(c)) && name.length() <= MAX_LOOKAHEAD) {
+                name.append((char) c);
+            }
+
+            boolean selfClosing = false;
+            int prev = -1;
+            // Skip attributes, honouring quotes
+            while (c != -1 && c != '>') {
+                if (c == '"' || c == '\'') {
+                    skipUntil((char) c);
+                }
+                prev = c;
+                c = in.read();
+            }
+            if (prev == '/') {
+                selfClosing = true;
+            }
+
+            String tagName = name.toString().toLowerCase(Locale.ENGLISH);
+
+            if (BLOCK_TAGS.contains(tagName)) {
+                pendingSpace = true;
+            }
+
+            if (!closing && !selfClosing && SKIP_CONTENT_TAGS.contains(tagName)) {
+                skipElementContent(tagName);
+            }
+        }
+
+        private void skipElementContent(String tagName) throws IOException {
+            int c;
+            while ((c = in.read()) != -1) {
+                if (c == '<') {
+                    int next = in.read();
+                    if (next == '/' && consumeIgnoreCase(tagName)) {
+                        int after = in.read();
+                        if (after == -1 || after == '>' || !isAsciiLetter(after) && !Character.isDigit(after)) {
+                            if (after != -1 && after != '>') {
+                                skipUntil('>');
+                            }
+                            return;
+                        }
+                        in.unread(after);
+                    } else if (next != -1) {
+                        in.unread(next);
+                    }
+                }
+            }
+        }
+
+        private void readEntity() throws IOException {
+            char[] buffer = new char[MAX_LOOKAHEAD];
+            int length = 0;
+            int c;
+
+            while (length < MAX_LOOKAHEAD && (c = in.read()) != -1) {
+                if (c == ';') {
+                    String decoded = decodeEntity(new String(buffer, 0, length));
+                    if (decoded != null) {
+                        for (int i = 0; i < decoded.length(); i++) {
+                            emit(decoded.charAt(i));
+                        }
+                        return;
+                    }
+                    in.unread(c);
+                    break;
+                }
+                if (!(isAsciiLetter(c) || Character.isDigit(c) || (length == 0 && c == '#') || (length == 1 && buffer[0] == '#' && (c == 'x' || c == 'X')))) {
+                    in.unread(c);
+                    break;
+                }
+                buffer[length++] = (char) c;
+            }
+
+            // Not a (known) entity. Emit as is.
+            emit('&');
+            in.unread(buffer, 0, length);
+        }
+
+        private boolean consume(String expected) throws IOException {
+            return consume(expected, false);
+        }
+
+        private boolean consumeIgnoreCase(String expected) throws IOException {
+            return consume(expected, true);
+        }
+
+        private boolean consume(String expected, boolean ignoreCase) throws IOException {
+            char[] read = new char[expected.length()];
+            int length = 0;
+            boolean matches = true;
+
+            while (matches && length < expected.length()) {
+                int c = in.read();
+                if (c == -1) {
+                    matches = false;
+                    break;
+                }
+                char e = expected.charAt(length);
+                read[length++] = (char) c;
+                matches = ignoreCase ? Character.toLowerCase((char) c) == Character.toLowerCase(e) : c == e;
+            }
+
+            if (!matches) {
+                in.unread(read, 0, length);
+            }
+            return matches;
+        }
+
+        private void skipUntil(char terminator) throws IOException {
+            int c;
+            while ((c = in.read()) != -1 && c != terminator) {
+                // skip
+            }
+        }
+
+        private void skipUntil(String terminator) throws IOException {
+            int c;
+            char first = terminator.charAt(0);
+            String rest = terminator.substring(1);
+            while ((c = in.read()) != -1) {
+                if (c == first && consume(rest)) {
+                    return;
+                }
+            }
+        }
+
+        private static boolean isAsciiLetter(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static String decodeEntity(String entity) {
+            if (entity.isEmpty()) {
+                return null;
+            }
+
+            if (entity.charAt(0) == '#') {
+                try {
+                    int codePoint;
+                    if (entity.length() > 1 && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X')) {
+                        codePoint = Integer.parseInt(entity.substring(2), 16);
+                    } else {
+                        codePoint = Integer.parseInt(entity.substring(1));
+                    }
+                    if (codePoint == 0xA0) {
+                        return " ";
+                    }
+                    return Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : null;
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+
+            String decoded = NAMED_ENTITIES.get(entity);
+            if (decoded == null && CASE_INSENSITIVE_ENTITIES.contains(entity.toLowerCase(Locale.ENGLISH))) {
+                // Entities are case-sensitive but uppercase variants of the basic ones are common
+                decoded = NAMED_ENTITIES.get(entity.toLowerCase(Locale.ENGLISH));
+            }
+
+            return decoded;
+        }
+    }
+}
@@ -22,19 +22,23 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import com.hcl.domino.data.Attachment.Compression;
 import com.hcl.domino.data.Database;
 import com.hcl.domino.data.Document.IAttachmentProducer;
+import com.hcl.domino.richtext.RichTextWriter;
 import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentParser;
 import dev.langchain4j.data.document.parser.TextDocumentParser;
 import dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -206,6 +210,246 @@ class DominoDocumentLoaderTest extends AbstractNotesRuntimeTest {
         }
     }
 
+    @Test
+    void testPartialLoadingByNoteIds() {
+        Database db = getTempDb();
+
+        List<com.hcl.domino.data.Document> dominoDocs = createTestDocuments(db);
+
+        // Add a rich text item, which is not part of the summary buffer
+        var rtDoc = dominoDocs.get(0);
+        try (RichTextWriter w = rtDoc.createRichTextItem("Body")) {
+            w.addText("Rich text content");
+        }
+        rtDoc.save();
+
+        List<Integer> noteIds = dominoDocs.stream()
+                                          .map(com.hcl.domino.data.Document::getNoteID)
+                                          .toList();
+
+        for (boolean partialLoading : List.of(true, false)) {
+            List<Document> docs = DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                                      .fieldNames(List.of("Title", "Body"))
+                                                      .partialLoading(partialLoading)
+                                                      .database(db)
+                                                      .noteIds(noteIds)
+                                                      .loadDocuments();
+
+            assertEquals(TEST_TITLES.size(), docs.size(), "Expected number of documents to be loaded");
+            assertEquals(TEST_TITLES.get(0) + "\nRich text content", docs.get(0).text(), "Rich text should be loaded from the full note");
+            assertEquals(TEST_TITLES.get(1), docs.get(1).text(), "Summary items should be loaded");
+            assertEquals(String.valueOf(noteIds.get(1)), String.valueOf(Integer.parseInt(docs.get(1).metadata().getString("noteid"), 16)),
+                         "Metadata should be evaluated on summary notes");
+        }
+    }
+
+    @Test
+    void testFormProfiles() {
+        Database db = getTempDb();
+
+        var memo = db.createDocument()
+                     .replaceItemValue("Form", "Memo")
+                     .replaceItemValue("Subject", "Quarterly report")
+                     .replaceItemValue("Body", TEST_CONTENTS.get(0));
+        memo.save();
+
+        var person = db.createDocument()
+                       .replaceItemValue("Form", "Person")
+                       .replaceItemValue("FirstName", "Jane")
+                       .replaceItemValue("LastName", "Doe");
+        person.save();
+
+        var other = createTestDocument(db, 1);
+        other.replaceItemValue("Form", "Other");
+        other.save();
+
+        MetadataDefinition personMetadata = MetadataDefinition.builder()
+                                                              .addString("form")
+                                                              .addString("fullname", "FirstName + \" \" + LastName")
+                                                              .build();
+
+        List<Integer> noteIds = List.of(memo.getNoteID(), person.getNoteID(), other.getNoteID());
+
+        DominoDocumentLoader loader = DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                                          .formProfile("memo", FormProfile.builder()
+                                                                                          .fieldNames(List.of("Subject", "Body"))
+                                                                                          .build())
+                                                          .formProfile("Person", FormProfile.builder()
+                                                                                            .fieldNames(List.of("FirstName", "LastName"))
+                                                                                            .metadataDefinition(personMetadata)
+                                                                                            .build())
+                                                          .database(db)
+                                                          .noteIds(noteIds);
+
+        List<Document> docs = loader.loadDocuments();
+        assertEquals(2, docs.size(), "Notes of forms without a profile should be skipped");
+        assertEquals("Quarterly report\n" + TEST_CONTENTS.get(0), docs.get(0).text(), "Memo fields should be loaded");
+        assertEquals("Memo", docs.get(0).metadata().getString("form"));
+        assertEquals("Jane\nDoe", docs.get(1).text(), "Person fields should be loaded");
+        assertEquals("Jane Doe", docs.get(1).metadata().getString("fullname"), "Profile metadata definition should be used");
+
+        docs = loader.fieldName("Title").loadDocuments();
+        assertEquals(3, docs.size(), "Notes of other forms should be loaded with the loader's fields");
+        assertEquals(TEST_TITLES.get(1), docs.get(2).text());
+
+        assertThrows(IllegalArgumentException.class, () -> DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                                                               .loadAttachments(true)
+                                                                               .formProfile("Memo", FormProfile.builder()
+                                                                                                               .fieldName("Body")
+                                                                                                               .build())
+                                                                               .dominoDocument(memo)
+                                                                               .loadDocuments());
+    }
+
+    @Test
+    void testCheckpointedLoad() throws IOException {
+        Database db = getTempDb();
+
+        List<Integer> noteIds = createTestDocuments(db).stream()
+                                                       .map(com.hcl.domino.data.Document::getNoteID)
+                                                       .toList();
+
+        Path checkpointFile = Files.createTempFile("checkpoint", ".log");
+
+        try {
+            List<String> loaded = new ArrayList<>();
+
+            // First run, the second document fails to parse
+            DocumentParser failingParser = inputStream -> {
+                Document doc = new TextDocumentParser().parse(inputStream);
+                if (TEST_TITLES.get(1).equals(doc.text())) {
+                    throw new IllegalStateException("Simulated failure");
+                }
+                return doc;
+            };
+
+            try (LoadCheckpoint checkpoint = LoadCheckpoint.open(checkpointFile)) {
+                DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                    .fieldName("Title")
+                                    .documentParser(failingParser)
+                                    .database(db)
+                                    .noteIds(noteIds)
+                                    .checkpoint(checkpoint)
+                                    .loadDocuments(doc -> loaded.add(doc.text()));
+            }
+
+            assertEquals(List.of(TEST_TITLES.get(0), TEST_TITLES.get(2)), loaded, "Failure should not stop the run");
+
+            // Resumed run, nothing left to do
+            loaded.clear();
+            try (LoadCheckpoint checkpoint = LoadCheckpoint.open(checkpointFile)) {
+                assertEquals(Set.of(LoadCheckpoint.noteIdKey(noteIds.get(1))), checkpoint.getFailures().keySet());
+
+                DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                    .fieldName("Title")
+                                    .database(db)
+                                    .noteIds(noteIds)
+                                    .checkpoint(checkpoint)
+                                    .loadDocuments(doc -> loaded.add(doc.text()));
+            }
+
+            assertTrue(loaded.isEmpty(), "Completed and failed items should be skipped");
+
+            // Retry failed items
+            try (LoadCheckpoint checkpoint = LoadCheckpoint.open(checkpointFile)) {
+                DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                    .fieldName("Title")
+                                    .database(db)
+                                    .noteIds(noteIds)
+                                    .checkpoint(checkpoint)
+                                    .retryFailed(true)
+                                    .loadDocuments(doc -> loaded.add(doc.text()));
+
+                assertTrue(checkpoint.getFailures().isEmpty(), "Retried item should be completed");
+            }
+
+            assertEquals(List.of(TEST_TITLES.get(1)), loaded, "Only the failed item should be retried");
+        } finally {
+            Files.deleteIfExists(checkpointFile);
+        }
+    }
+
+    @Test
+    void testFailureListener() {
+        Database db = getTempDb();
+
+        List<Integer> noteIds = createTestDocuments(db).stream()
+                                                       .map(com.hcl.domino.data.Document::getNoteID)
+                                                       .toList();
+
+        DocumentParser failingParser = inputStream -> {
+            Document doc = new TextDocumentParser().parse(inputStream);
+            if (TEST_TITLES.get(1).equals(doc.text())) {
+                throw new IllegalStateException("Simulated failure");
+            }
+            return doc;
+        };
+
+        List<String> loaded = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+
+        DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                            .fieldName("Title")
+                            .documentParser(failingParser)
+                            .database(db)
+                            .noteIds(noteIds)
+                            .failureListener((key, e) -> failures.add(key + ": " + e.getMessage()))
+                            .loadDocuments(doc -> loaded.add(doc.text()));
+
+        assertEquals(List.of(TEST_TITLES.get(0), TEST_TITLES.get(2)), loaded, "Failure should not stop the run");
+        assertEquals(List.of(LoadCheckpoint.noteIdKey(noteIds.get(1)) + ": Simulated failure"), failures);
+    }
+
+    @Test
+    void testCheckpointedLoadConsumerFailure() throws IOException {
+        Database db = getTempDb();
+
+        List<Integer> noteIds = createTestDocuments(db).stream()
+                                                       .map(com.hcl.domino.data.Document::getNoteID)
+                                                       .toList();
+
+        Path checkpointFile = Files.createTempFile("checkpoint", ".log");
+
+        try {
+            List<String> loaded = new ArrayList<>();
+
+            // A failing consumer ends the load, the note isn't blamed for it
+            try (LoadCheckpoint checkpoint = LoadCheckpoint.open(checkpointFile)) {
+                DominoDocumentLoader loader = DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                                                  .fieldName("Title")
+                                                                  .database(db)
+                                                                  .noteIds(noteIds)
+                                                                  .checkpoint(checkpoint);
+
+                assertThrows(IllegalStateException.class, () -> loader.loadDocuments(doc -> {
+                    if (TEST_TITLES.get(1).equals(doc.text())) {
+                        throw new IllegalStateException("Pipeline closed");
+                    }
+                    loaded.add(doc.text());
+                }));
+
+                assertTrue(checkpoint.getFailures().isEmpty(), "Consumer failures should not be recorded as note failures");
+            }
+
+            assertEquals(List.of(TEST_TITLES.get(0)), loaded, "Load should stop at the consumer failure");
+
+            // Resumed run continues with the note the consumer rejected
+            loaded.clear();
+            try (LoadCheckpoint checkpoint = LoadCheckpoint.open(checkpointFile)) {
+                DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                    .fieldName("Title")
+                                    .database(db)
+                                    .noteIds(noteIds)
+                                    .checkpoint(checkpoint)
+                                    .loadDocuments(doc -> loaded.add(doc.text()));
+            }
+
+            assertEquals(List.of(TEST_TITLES.get(1), TEST_TITLES.get(2)), loaded);
+        } finally {
+            Files.deleteIfExists(checkpointFile);
+        }
+    }
+
     @Test
     void testSingleDocWithAttachments() {
         Database db = getTempDb();
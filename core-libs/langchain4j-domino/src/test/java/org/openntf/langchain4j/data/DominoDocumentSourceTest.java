@@ -183,6 +183,25 @@ class DominoDocumentSourceTest extends AbstractNotesRuntimeTest {
                                          .build();
 
         assertEquals(htmlToText(html), getContent(docSrc), "Mixed Mime should extract Html Text content");
+
+        // Lazy Mime part selection
+        docSrc = DominoDataDocumentSource.builder()
+                                         .metadataDefinition(MetadataDefinition.EMPTY)
+                                         .dominoDocument(doc)
+                                         .lazyMime(true)
+                                         .fieldName("BodyMimeMixed")
+                                         .build();
+
+        assertEquals(plainText, getContent(docSrc), "Lazy Mime should extract Plain Text content");
+
+        docSrc = DominoDataDocumentSource.builder()
+                                         .metadataDefinition(MetadataDefinition.EMPTY)
+                                         .dominoDocument(doc)
+                                         .lazyMime(true)
+                                         .fieldName("BodyMimeHtml")
+                                         .build();
+
+        assertEquals(htmlToText(html), getContent(docSrc), "Lazy Mime should extract Html Text content");
     }
 
     @Test
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class FormulaItemScannerTest {
+
+    private static Set<String> scan(String formula) {
+        return FormulaItemScanner.referencedItems(formula)
+                                 .orElseThrow(() -> new AssertionError("Items should be derived for " + formula));
+    }
+
+    @Test
+    void testSimpleFormulas() {
+        assertEquals(Set.of("form"), scan("form"));
+        assertEquals(Set.of(), scan("@Created"));
+        assertEquals(Set.of(), scan("@RightBack(@NoteID;\"NT\")"));
+        assertEquals(Set.of("Subject", "Categories"), scan("@Trim(Subject : Categories)"));
+    }
+
+    @Test
+    void testLiteralsAndVariables() {
+        assertEquals(Set.of("Status"), scan("tmp := \"Draft\"; @If(Status = tmp; {Not Status}; \"Other\")"));
+        assertEquals(Set.of("Body"), scan("REM {Some comment with Items}; FIELD Body := Body"));
+        assertEquals(Set.of("$Ref"), scan("@Text($Ref)"));
+        assertEquals(Set.of(), scan("ENVIRONMENT MyVar"));
+    }
+
+    @Test
+    void testIndirectAccess() {
+        assertTrue(FormulaItemScanner.referencedItems("@GetField(\"Subject\")").isEmpty());
+        assertTrue(FormulaItemScanner.referencedItems("@Eval(Code)").isEmpty());
+        assertTrue(FormulaItemScanner.referencedItems("@Abstract([TEXTONLY]; 100; \"\"; \"Body\")").isEmpty());
+    }
+
+    @Test
+    void testImplicitItems() {
+        assertEquals(Set.of("$FILE"), scan("@AttachmentNames"));
+        assertEquals(Set.of("$FILE"), scan("@Sum(@AttachmentLengths)"));
+        assertEquals(Set.of("$FILE", "Subject"), scan("@If(@Attachments > 0; @AttachmentModifiedTimes; Subject)"));
+    }
+
+    @Test
+    void testMetadataDefinition() {
+        Optional<Set<String>> items = MetadataDefinition.DEFAULT.getReferencedItemNames();
+
+        assertEquals(Optional.of(Set.of("form")), items);
+    }
+}
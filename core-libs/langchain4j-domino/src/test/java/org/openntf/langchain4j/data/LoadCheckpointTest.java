@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LoadCheckpointTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setup() throws IOException {
+        file = Files.createTempFile("checkpoint", ".log");
+        Files.delete(file);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testResume() throws IOException {
+        try (LoadCheckpoint checkpoint = LoadCheckpoint.open(file)) {
+            checkpoint.markCompleted(LoadCheckpoint.noteIdKey(0x8F6));
+            checkpoint.markCompleted(LoadCheckpoint.unidKey("5c3a4f2e1b0d9a8c7b6e5f4a3b2c1d0e"));
+            checkpoint.markFailed(LoadCheckpoint.noteIdKey(0x8FA), "Something\nbroke");
+        }
+
+        try (LoadCheckpoint checkpoint = LoadCheckpoint.open(file)) {
+            assertTrue(checkpoint.isCompleted("N:8f6"));
+            assertTrue(checkpoint.isCompleted("U:5C3A4F2E1B0D9A8C7B6E5F4A3B2C1D0E"), "UNID keys are case insensitive");
+            assertFalse(checkpoint.isCompleted("N:8fa"));
+            assertEquals(Map.of("N:8fa", "Something broke"), checkpoint.getFailures());
+
+            // Retried successfully
+            checkpoint.markCompleted("N:8fa");
+        }
+
+        try (LoadCheckpoint checkpoint = LoadCheckpoint.open(file)) {
+            assertEquals(3, checkpoint.getCompletedCount());
+            assertTrue(checkpoint.getFailures().isEmpty(), "Completed items are no longer failed");
+        }
+    }
+
+    @Test
+    void testBatchedSync() throws IOException {
+        try (LoadCheckpoint checkpoint = LoadCheckpoint.open(file, 3, 60_000)) {
+            checkpoint.markCompleted("N:4");
+            checkpoint.markCompleted("N:8");
+            assertEquals(0L, Files.size(file), "Records should be buffered until the batch is full");
+
+            checkpoint.markCompleted("N:c");
+            assertEquals(3, Files.readAllLines(file).size(), "Full batch should be written");
+        }
+    }
+
+    @Test
+    void testPartialRecord() throws IOException {
+        Files.writeString(file, "C N:4\nC N:8\nC N:", StandardCharsets.UTF_8);
+
+        try (LoadCheckpoint checkpoint = LoadCheckpoint.open(file)) {
+            assertEquals(2, checkpoint.getCompletedCount(), "Partial record should be ignored");
+            checkpoint.markCompleted("N:c");
+        }
+
+        assertEquals("C N:4\nC N:8\nC N:c\n", Files.readString(file, StandardCharsets.UTF_8),
+                     "Partial record should be truncated before appending");
+
+        Files.writeString(file, "garbage\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        try (LoadCheckpoint checkpoint = LoadCheckpoint.open(file)) {
+            assertEquals(3, checkpoint.getCompletedCount(), "Unknown records should be ignored");
+        }
+    }
+}
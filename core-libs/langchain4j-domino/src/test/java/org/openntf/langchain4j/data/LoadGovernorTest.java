@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LoadGovernorTest {
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    private LoadGovernor governor(int initial) {
+        return LoadGovernor.builder()
+                           .latencyThreshold(Duration.ofMillis(100))
+                           .concurrency(1, 8)
+                           .initialConcurrency(initial)
+                           .build(clock::get);
+    }
+
+    private void fetch(LoadGovernor governor, long latency) throws InterruptedException {
+        governor.release(governor.acquire(), latency, 0);
+    }
+
+    @Test
+    void testMultiplicativeDecrease() throws InterruptedException {
+        LoadGovernor governor = governor(8);
+
+        fetch(governor, SLOW);
+        assertEquals(4, governor.getConcurrencyLimit(), "Slow fetch should halve the limit");
+
+        fetch(governor, SLOW);
+        assertEquals(4, governor.getConcurrencyLimit(), "Slow fetches within the same period are one event");
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        fetch(governor, SLOW);
+        assertEquals(2, governor.getConcurrencyLimit());
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            fetch(governor, SLOW);
+        }
+        assertEquals(1, governor.getConcurrencyLimit(), "Limit should not go below the minimum");
+    }
+
+    @Test
+    void testAdditiveIncrease() throws InterruptedException {
+        LoadGovernor governor = governor(1);
+
+        fetch(governor, FAST);
+        assertEquals(2, governor.getConcurrencyLimit(), "Fast fetch at limit 1 should add one");
+
+        fetch(governor, FAST);
+        assertEquals(2, governor.getConcurrencyLimit(), "Increase should be spread over a round of fetches");
+
+        for (int i = 0; i < 100; i++) {
+            fetch(governor, FAST);
+        }
+        assertEquals(8, governor.getConcurrencyLimit(), "Limit should not go above the maximum");
+    }
+
+    @Test
+    void testConcurrencyLimit() throws Exception {
+        LoadGovernor governor = governor(1);
+
+        LoadGovernor.Permit first = governor.acquire();
+        CompletableFuture<LoadGovernor.Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return governor.acquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(second.isDone(), "Second permit should wait for the first one");
+
+        governor.release(first, FAST, 0);
+        governor.release(second.get(5, TimeUnit.SECONDS), FAST, 0);
+
+        assertEquals(2L, governor.getNoteCount());
+        assertThrows(IllegalStateException.class, () -> governor.release(first, FAST, 0), "Permits are released once");
+    }
+
+    @Test
+    void testSlowTokenBucket() throws Exception {
+        // One note every two seconds
+        LoadGovernor.TokenBucket bucket = new LoadGovernor.TokenBucket(0.5, clock::get);
+
+        bucket.take(1);
+        assertEquals(0, bucket.available(), 0.001);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0.5, bucket.available(), 0.001);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, bucket.available(), 0.001, "Bucket should hold a whole token");
+
+        CompletableFuture<Void> taken = CompletableFuture.runAsync(() -> {
+            try {
+                bucket.take(1);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        taken.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testTokenBucket() throws InterruptedException {
+        LoadGovernor.TokenBucket bucket = new LoadGovernor.TokenBucket(10, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            bucket.take(1);
+        }
+        assertEquals(0, bucket.available(), 0.001, "Bucket starts with one second of budget");
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, bucket.available(), 0.001, "Bucket refills at the rate");
+
+        bucket.charge(5);
+        assertTrue(bucket.available() < 0, "Charges may take the bucket into debt");
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(10, bucket.available(), 0.001, "Bucket holds at most one second of budget");
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.Database.OpenDocumentMode;
+import com.hcl.domino.data.Document;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class PartialNoteFetcherTest {
+
+    // Items of a note, mapped to true if they are stored in the summary buffer
+    private record Note(Map<String, Boolean> items) {
+    }
+
+    private final List<String> opens = new ArrayList<>();
+
+    /**
+     * A database whose notes only answer hasItem(), recording how each note was opened.
+     */
+    private Database database(List<Note> notes) {
+        return (Database) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Database.class}, (proxy, method, args) -> {
+            if (!method.getName().equals("getDocumentById")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+
+            Note note = notes.get((Integer) args[0]);
+            boolean summaryOnly = args.length > 1 && ((Set<?>) args[1]).contains(OpenDocumentMode.SUMMARY_ONLY);
+            opens.add(summaryOnly ? "summary" : "full");
+
+            return Optional.of(document(note, summaryOnly));
+        });
+    }
+
+    private Document document(Note note, boolean summaryOnly) {
+        return (Document) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Document.class}, (proxy, method, args) -> {
+            if (!method.getName().equals("hasItem")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+
+            Boolean summary = note.items().get(((String) args[0]).toLowerCase(Locale.ENGLISH));
+            return summary != null && (summary || !summaryOnly);
+        });
+    }
+
+    @Test
+    void testOptionalItems() {
+        PartialNoteFetcher fetcher = PartialNoteFetcher.create(List.of("Subject", "Body"), List.of(), false);
+
+        Database database = database(List.of(new Note(Map.of("subject", true)),
+                                             new Note(Map.of("subject", true)),
+                                             new Note(Map.of("subject", true)),
+                                             new Note(Map.of("subject", true, "body", false)),
+                                             new Note(Map.of("subject", true))));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(fetcher.byNoteId(database, i).isPresent());
+        }
+
+        assertEquals(List.of("summary", "full",
+                             // Body is missing, notes are opened once
+                             "full", "full", "full",
+                             // A note had Body, the summary is tried again
+                             "summary", "full"),
+                     opens);
+    }
+
+    @Test
+    void testMissingSummaryItems() {
+        PartialNoteFetcher fetcher = PartialNoteFetcher.create(List.of("Subject", "Categories"), List.of(), false);
+
+        Database database = database(List.of(new Note(Map.of("subject", true, "categories", true)),
+                                             new Note(Map.of("subject", true)),
+                                             new Note(Map.of("subject", true))));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(fetcher.byNoteId(database, i).isPresent());
+        }
+
+        assertEquals(List.of("summary", "summary", "summary"), opens, "Known summary items should not cause a reopen");
+    }
+}
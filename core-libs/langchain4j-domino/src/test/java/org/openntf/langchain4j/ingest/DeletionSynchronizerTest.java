@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hcl.domino.data.Database;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.openntf.langchain4j.data.DominoDocumentLoader;
+import org.openntf.langchain4j.data.MetadataDefinition;
+import org.openntf.test.jnx.AbstractNotesRuntimeTest;
+
+class DeletionSynchronizerTest extends AbstractNotesRuntimeTest {
+
+    private static int countEmbeddings(InMemoryEmbeddingStore<TextSegment> store) {
+        return store.search(EmbeddingSearchRequest.builder()
+                                                  .queryEmbedding(FakeEmbeddingModel.embeddingOf("query"))
+                                                  .maxResults(100)
+                                                  .minScore(0.0)
+                                                  .build())
+                    .matches()
+                    .size();
+    }
+
+    @Test
+    void testDeletionPropagation() throws Exception {
+        Path dir = Files.createTempDirectory("deletionsync");
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(dir.resolve("index"))) {
+            withTempDb(db -> {
+                List<com.hcl.domino.data.Document> docs = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    var doc = db.createDocument().replaceItemValue("Title", "Document " + i);
+                    doc.save();
+                    docs.add(doc);
+                }
+
+                InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+
+                DominoIngestionPipeline.builder()
+                                       .loader(DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                                                   .fieldName("Title")
+                                                                   .database(db)
+                                                                   .noteIds(docs.stream().map(com.hcl.domino.data.Document::getNoteID).toList()))
+                                       .embeddingModel(new FakeEmbeddingModel())
+                                       .embeddingStore(store)
+                                       .embeddingIdIndex(index)
+                                       .build()
+                                       .run();
+
+                assertEquals(5, index.size(), "All documents should be indexed");
+                assertEquals(5, countEmbeddings(store));
+
+                String deletedUnid = docs.get(2).getUNID();
+                docs.get(2).delete();
+
+                DeletionSynchronizer synchronizer = DeletionSynchronizer.builder()
+                                                                        .embeddingStore(store)
+                                                                        .embeddingIdIndex(index)
+                                                                        .stateFile(dir.resolve("state.properties"))
+                                                                        .build();
+
+                DeletionSyncResult result = synchronizer.synchronize(db);
+                assertEquals(1, result.removedDocuments());
+                assertEquals(1, result.removedEmbeddings());
+                assertEquals(4, countEmbeddings(store), "Embeddings of the deleted document should be removed");
+                assertTrue(index.get(deletedUnid).isEmpty(), "Deleted document should be removed from the index");
+                assertEquals(4, index.size());
+
+                result = synchronizer.synchronize(db);
+                assertEquals(0, result.deletionStubs(), "Stubs should only be read since the last run");
+            });
+        } finally {
+            try (var files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
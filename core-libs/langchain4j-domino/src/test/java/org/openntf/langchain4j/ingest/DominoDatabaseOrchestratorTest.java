@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hcl.domino.DominoClientBuilder;
+import com.hcl.domino.data.Database;
+import dev.langchain4j.data.document.Document;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.openntf.langchain4j.data.DominoDocumentLoader;
+import org.openntf.langchain4j.data.MetadataDefinition;
+import org.openntf.test.jnx.AbstractNotesRuntimeTest;
+
+class DominoDatabaseOrchestratorTest extends AbstractNotesRuntimeTest {
+
+    private static void createDocuments(Database db, int count) {
+        for (int i = 0; i < count; i++) {
+            db.createDocument()
+              .replaceItemValue("Title", db.getTitle() + " document " + i)
+              .save();
+        }
+    }
+
+    @Test
+    void testLoadMultipleDatabases() throws Exception {
+        withTempDb(db1 -> withTempDb(db2 -> {
+            createDocuments(db1, 3);
+            createDocuments(db2, 5);
+
+            List<DatabaseLoadResult> results = new ArrayList<>();
+            List<Document> documents = new ArrayList<>();
+
+            results.addAll(DominoDatabaseOrchestrator.builder()
+                                                     .clientFactory(() -> DominoClientBuilder.newDominoClient().build())
+                                                     .database(null, db1.getAbsoluteFilePath())
+                                                     .database(null, db2.getAbsoluteFilePath())
+                                                     .loaderTemplate(() -> DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                                                                               .fieldName("Title"))
+                                                     .maxConcurrency(2)
+                                                     .maxConcurrencyPerServer(1)
+                                                     .build()
+                                                     .load(documents::add));
+
+            assertEquals(2, results.size(), "Expected a result per database");
+            assertTrue(results.stream().allMatch(DatabaseLoadResult::isSuccessful), "All databases should be loaded");
+            assertEquals(8, documents.size(), "Expected documents from both databases");
+
+            Map<String, Long> perDatabase = documents.stream()
+                                                     .collect(Collectors.groupingBy(doc -> doc.metadata().getString(DominoDatabaseOrchestrator.METADATA_DATABASE_PATH),
+                                                                                    Collectors.counting()));
+
+            assertEquals(3L, perDatabase.get(db1.getAbsoluteFilePath()), "Documents should be tagged with the source database");
+            assertEquals(5L, perDatabase.get(db2.getAbsoluteFilePath()), "Documents should be tagged with the source database");
+        }));
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import dev.langchain4j.data.document.DocumentSplitter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.openntf.langchain4j.store.Bm25Index;
+
+class DominoIngestionPipelineTest {
+
+    private static final int DOCUMENT_COUNT = 50;
+
+    private static Consumer<Consumer<Document>> documents(int count) {
+        return consumer -> {
+            for (int i = 0; i < count; i++) {
+                // About 25 tokens each
+                String text = "Document " + i + " " + "lorem ipsum ".repeat(8);
+                consumer.accept(Document.from(text, Metadata.metadata("unid", "UNID" + i)));
+            }
+        };
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> all(InMemoryEmbeddingStore<TextSegment> store) {
+        return store.search(EmbeddingSearchRequest.builder()
+                                                  .queryEmbedding(FakeEmbeddingModel.embeddingOf("query"))
+                                                  .maxResults(DOCUMENT_COUNT * 2)
+                                                  .minScore(0.0)
+                                                  .build())
+                    .matches();
+    }
+
+    @Test
+    void testBatching() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel();
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+
+        IngestionResult result = DominoIngestionPipeline.builder()
+                                                        .source(documents(DOCUMENT_COUNT))
+                                                        .embeddingModel(model)
+                                                        .embeddingStore(store)
+                                                        .maxBatchTokens(100)
+                                                        .maxBatchSize(10)
+                                                        .build()
+                                                        .run();
+
+        assertEquals(DOCUMENT_COUNT, result.documentCount());
+        assertEquals(DOCUMENT_COUNT, result.segmentCount());
+        assertEquals(model.getBatches().size(), result.batchCount());
+
+        for (List<TextSegment> batch : model.getBatches()) {
+            int tokens = batch.stream().mapToInt(segment -> (segment.text().length() + 3) / 4).sum();
+            assertTrue(tokens <= 100, "Batch should not exceed the token limit");
+        }
+        assertTrue(result.averageBatchSize() > 2.5, "Batches should be packed close to the token limit");
+
+        List<EmbeddingMatch<TextSegment>> matches = all(store);
+        assertEquals(DOCUMENT_COUNT, matches.size(), "All segments should be stored");
+        matches.forEach(match -> assertEquals(FakeEmbeddingModel.embeddingOf(match.embedded().text()), match.embedding(),
+                                              "Embeddings should be stored with their own segments"));
+    }
+
+    @Test
+    void testTokenLimit() {
+        // The model counts three characters per token and rejects requests over the limit
+        FakeEmbeddingModel model = new FakeEmbeddingModel().charsPerToken(3).maxTokens(200);
+
+        List<String> texts = new ArrayList<>();
+        IngestionResult result = DominoIngestionPipeline.builder()
+                                                        .source(consumer -> {
+                                                            documents(DOCUMENT_COUNT).accept(consumer);
+                                                            // A segment larger than a request
+                                                            consumer.accept(Document.from("word ".repeat(400)));
+                                                        })
+                                                        .embeddingModel(model)
+                                                        .embeddingStore(new InMemoryEmbeddingStore<>())
+                                                        .maxBatchTokens(200)
+                                                        .maxConcurrentRequests(1)
+                                                        .build()
+                                                        .run();
+
+        model.getBatches().forEach(batch -> batch.forEach(segment -> texts.add(segment.text())));
+
+        assertTrue(result.segmentCount() > DOCUMENT_COUNT + 1, "Oversized segment should be split");
+        assertEquals("word ".repeat(400), String.join("", texts.subList(DOCUMENT_COUNT, texts.size())),
+                     "Split pieces should keep the whole text");
+    }
+
+    @Test
+    void testDefaultsWithDenseModel() {
+        // Three characters per token, the default estimate of four overfills the first requests
+        FakeEmbeddingModel model = new FakeEmbeddingModel().charsPerToken(3).maxTokens(8000);
+
+        IngestionResult result = DominoIngestionPipeline.builder()
+                                                        .source(consumer -> {
+                                                            for (int i = 0; i < 200; i++) {
+                                                                consumer.accept(Document.from(i + " " + "word ".repeat(100)));
+                                                            }
+                                                        })
+                                                        .embeddingModel(model)
+                                                        .embeddingStore(new InMemoryEmbeddingStore<>())
+                                                        .build()
+                                                        .run();
+
+        assertTrue(model.getRejectedCalls() > 0, "The first requests should exceed the limit");
+        assertEquals(200, result.segmentCount(), "Rejected requests should be retried in halves");
+        assertEquals(200, model.getBatches().stream().mapToInt(List::size).sum(), "Every segment should be embedded once");
+    }
+
+    @Test
+    void testSegmentOverLimitAlone() {
+        // Four characters per token are estimated and the model counts two, so a segment filling the budget is rejected
+        FakeEmbeddingModel model = new FakeEmbeddingModel().charsPerToken(2).maxTokens(200);
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        String text = "word ".repeat(144);
+
+        IngestionResult result = DominoIngestionPipeline.builder()
+                                                        .source(consumer -> consumer.accept(Document.from(text, Metadata.metadata("unid", "UNID0"))))
+                                                        .embeddingModel(model)
+                                                        .embeddingStore(store)
+                                                        .maxBatchTokens(200)
+                                                        .build()
+                                                        .run();
+
+        assertTrue(model.getRejectedCalls() > 0, "The segment should be rejected on its own");
+        assertEquals(1, result.segmentCount(), "The segment should be embedded in parts and stored once");
+        assertEquals(0, result.failedCount());
+
+        List<EmbeddingMatch<TextSegment>> matches = all(store);
+        assertEquals(1, matches.size());
+        assertEquals(text, matches.get(0).embedded().text(), "The whole segment should be stored");
+    }
+
+    @Test
+    void testUnsplittableSegment() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel().charsPerToken(3).maxTokens(200);
+        List<String> failures = new CopyOnWriteArrayList<>();
+
+        IngestionResult result = DominoIngestionPipeline.builder()
+                                                        .source(consumer -> {
+                                                            documents(10).accept(consumer);
+                                                            consumer.accept(Document.from("word ".repeat(400), Metadata.metadata("unid", "LONG")));
+                                                        })
+                                                        .embeddingModel(model)
+                                                        .embeddingStore(new InMemoryEmbeddingStore<>())
+                                                        // Undercounts the long segment, so it's never split
+                                                        .tokenCountEstimator(text -> text.startsWith("word") ? 1 : (text.length() + 2) / 3)
+                                                        .maxBatchTokens(200)
+                                                        .failureListener((segment, e) -> failures.add(segment.metadata().getString("unid")))
+                                                        .build()
+                                                        .run();
+
+        assertEquals(10, result.segmentCount(), "Other segments should be stored");
+        assertEquals(1, result.failedCount());
+        assertEquals(List.of("LONG"), failures);
+    }
+
+    @Test
+    void testOverLimitDetection() {
+        assertTrue(DominoIngestionPipeline.isOverLimit(new IllegalArgumentException("Request has 9000 tokens, over the token limit of 8000")));
+        assertTrue(DominoIngestionPipeline.isOverLimit(new RuntimeException("Wrapped", new IllegalStateException(
+            "This model's maximum context length is 8192 tokens"))));
+        assertFalse(DominoIngestionPipeline.isOverLimit(new IllegalStateException("Rate limit reached, too many tokens per minute")));
+        assertFalse(DominoIngestionPipeline.isOverLimit(new IllegalStateException("Simulated failure")));
+    }
+
+    @Test
+    void testReingestion() throws IOException {
+        String unid = "5C3A4F2E1B0D9A8C7B6E5F4A3B2C1D0E";
+        DocumentSplitter lineSplitter = document -> Arrays.stream(document.text().split("\n"))
+                                                          .map(line -> TextSegment.from(line, document.metadata().copy()))
+                                                          .toList();
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        Path dir = Files.createTempDirectory("pipeline");
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(dir);
+             Bm25Index lexicalIndex = Bm25Index.builder().directory(dir.resolve("lexical")).build()) {
+            for (String text : List.of("first\nsecond\nthird", "first\nsecond, updated")) {
+                Document document = Document.from(text, Metadata.from(DominoIngestionPipeline.UNID_METADATA, unid));
+
+                IngestionResult result = DominoIngestionPipeline.builder()
+                                                                .source(consumer -> consumer.accept(document))
+                                                                .documentSplitter(lineSplitter)
+                                                                .embeddingModel(new FakeEmbeddingModel())
+                                                                .embeddingStore(store)
+                                                                .embeddingIdIndex(index)
+                                                                .lexicalIndex(lexicalIndex)
+                                                                .build()
+                                                                .run();
+
+                assertEquals(text.split("\n").length, all(store).size(), "Only the latest segments should be stored");
+                assertEquals(all(store).size(), index.get(unid).size());
+                assertEquals(all(store).size(), lexicalIndex.size(), "The lexical index should follow the store");
+                if (text.contains("updated")) {
+                    assertEquals(3, result.staleCount(), "Replaced and dropped segments should be stale");
+                }
+            }
+
+            assertEquals(List.of("first", "second, updated"),
+                         all(store).stream().map(match -> match.embedded().text()).sorted().toList());
+            assertEquals(List.of("second, updated"), lexicalIndex.search("second", 5).stream().map(match -> match.segment().text()).toList());
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSharedMetadata() throws IOException {
+        String unid = "5C3A4F2E1B0D9A8C7B6E5F4A3B2C1D0E";
+        // Copies the metadata and adds the index, as LangChain4j splitters do
+        DocumentSplitter lineSplitter = document -> {
+            String[] lines = document.text().split("\n");
+            List<TextSegment> segments = new ArrayList<>();
+            for (int i = 0; i < lines.length; i++) {
+                segments.add(TextSegment.from(lines[i], document.metadata().copy().put("index", String.valueOf(i))));
+            }
+            return segments;
+        };
+        Path dir = Files.createTempDirectory("pipeline");
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(dir)) {
+            // Not sharing by default
+            for (Boolean share : Arrays.asList(true, false, null)) {
+                InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+                Document document = Document.from("first\nsecond\nthird",
+                                                  Metadata.from(DominoIngestionPipeline.UNID_METADATA, unid).put("form", "Memo"));
+
+                DominoIngestionPipeline.Builder builder = DominoIngestionPipeline.builder()
+                                                                                 .source(consumer -> consumer.accept(document))
+                                                                                 .documentSplitter(lineSplitter)
+                                                                                 .embeddingModel(new FakeEmbeddingModel())
+                                                                                 .embeddingStore(store)
+                                                                                 .embeddingIdIndex(index);
+                if (share != null) {
+                    builder.shareMetadata(share);
+                }
+                builder.build().run();
+
+                List<Metadata> metadata = all(store).stream().map(match -> match.embedded().metadata()).toList();
+                assertEquals(3, metadata.size());
+                assertEquals(3, index.get(unid).size(), "Segments should be indexed by their numbers");
+
+                if (Boolean.TRUE.equals(share)) {
+                    assertTrue(metadata.stream().allMatch(m -> m == metadata.get(0)), "Segments should share one instance");
+                    assertFalse(metadata.get(0).containsKey("index"), "Shared metadata has no segment index");
+                    assertEquals("Memo", metadata.get(0).getString("form"));
+                } else {
+                    assertEquals(3, metadata.stream().distinct().count(), "Segments should have their own copies");
+                    assertEquals(Set.of("0", "1", "2"), metadata.stream().map(m -> m.getString("index")).collect(Collectors.toSet()));
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testBatchSizeLimit() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel();
+
+        DominoIngestionPipeline.builder()
+                               .source(documents(DOCUMENT_COUNT))
+                               .embeddingModel(model)
+                               .embeddingStore(new InMemoryEmbeddingStore<>())
+                               .maxBatchSize(4)
+                               .build()
+                               .run();
+
+        assertTrue(model.getBatches().stream().allMatch(batch -> batch.size() <= 4), "Batch should not exceed the size limit");
+    }
+
+    @Test
+    void testParallelModelCalls() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel(50);
+
+        DominoIngestionPipeline.builder()
+                               .source(documents(DOCUMENT_COUNT))
+                               .embeddingModel(model)
+                               .embeddingStore(new InMemoryEmbeddingStore<>())
+                               .maxBatchSize(2)
+                               .maxConcurrentRequests(3)
+                               .build()
+                               .run();
+
+        assertTrue(model.getMaxActiveCalls() > 1, "Model calls should run in parallel");
+        assertTrue(model.getMaxActiveCalls() <= 3, "Model calls should not exceed the concurrency limit");
+    }
+
+    @Test
+    void testFailure() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel().interceptor(batch -> {
+            if (batch.stream().anyMatch(segment -> segment.text().startsWith("Document 20 "))) {
+                throw new IllegalStateException("Simulated failure");
+            }
+        });
+
+        List<Document> produced = new ArrayList<>();
+        DominoIngestionPipeline pipeline = DominoIngestionPipeline.builder()
+                                                                  .source(consumer -> documents(10_000).accept(doc -> {
+                                                                      produced.add(doc);
+                                                                      consumer.accept(doc);
+                                                                  }))
+                                                                  .embeddingModel(model)
+                                                                  .embeddingStore(new InMemoryEmbeddingStore<>())
+                                                                  .maxBatchSize(5)
+                                                                  .queueCapacity(20)
+                                                                  .build();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, pipeline::run, "Failure should be thrown from run()");
+        assertEquals("Simulated failure", e.getMessage());
+        assertTrue(produced.size() < 10_000, "Source should be stopped after a failure");
+    }
+}
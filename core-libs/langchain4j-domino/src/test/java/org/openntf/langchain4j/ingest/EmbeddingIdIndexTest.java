@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openntf.langchain4j.ingest.EmbeddingIdIndex.Entry;
+
+class EmbeddingIdIndexTest {
+
+    private static final String UNID1 = "5C3A4F2E1B0D9A8C7B6E5F4A3B2C1D0E";
+    private static final String UNID2 = "0A1B2C3D4E5F60718293A4B5C6D7E8F9";
+    private static final String FIELDS = EmbeddingIdIndex.FIELDS_SOURCE;
+
+    private Path directory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("embeddingids");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static String unid(int i) {
+        return String.format("%032X", i);
+    }
+
+    private List<Path> logFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void testPersistence() throws IOException {
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            index.putAll(List.of(new Entry(UNID1, FIELDS, 0, "id1"),
+                                 new Entry(UNID1, FIELDS, 1, "id2"),
+                                 new Entry(UNID1, "manual.pdf", 0, "id3"),
+                                 new Entry(UNID2, FIELDS, 0, "id4")));
+        }
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertEquals(2, index.size());
+            assertEquals(List.of("id1", "id2", "id3"), index.get(UNID1));
+            assertEquals(List.of("id1", "id2"), index.get(UNID1, FIELDS));
+            assertEquals(Optional.of("id3"), index.get(UNID1.toLowerCase(), "manual.pdf", 0), "UNIDs are case insensitive");
+            assertEquals(Optional.empty(), index.get(UNID1, "manual.pdf", 1));
+
+            assertEquals(List.of("id1", "id2", "id3"), index.removeAll(List.of(UNID1)));
+        }
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertEquals(1, index.size(), "Removal should be persisted");
+            assertTrue(index.get(UNID1).isEmpty());
+        }
+    }
+
+    @Test
+    void testUpsert() throws IOException {
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            index.putAll(List.of(new Entry(UNID1, FIELDS, 0, "v1-0"),
+                                 new Entry(UNID1, FIELDS, 1, "v1-1"),
+                                 new Entry(UNID1, FIELDS, 2, "v1-2")));
+
+            // Updated document has two segments
+            List<String> stale = new ArrayList<>(index.putAll(List.of(new Entry(UNID1, FIELDS, 0, "v2-0"),
+                                                                      new Entry(UNID1, FIELDS, 1, "v2-1"))));
+            stale.addAll(index.truncate(UNID1, FIELDS, 2));
+
+            assertEquals(List.of("v1-0", "v1-1", "v1-2"), stale, "Exactly the old embeddings should be stale");
+            assertEquals(List.of("v2-0", "v2-1"), index.get(UNID1));
+        }
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertEquals(List.of("v2-0", "v2-1"), index.get(UNID1), "Truncation should be persisted");
+        }
+    }
+
+    @Test
+    void testTornWrite() throws IOException {
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            index.putAll(List.of(new Entry(UNID1, FIELDS, 0, "id1")));
+            index.putAll(List.of(new Entry(UNID2, FIELDS, 0, "id2")));
+        }
+
+        // Corrupt the last record
+        Path file = logFiles().get(0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            long position = 8;
+            long last = position;
+            while (true) {
+                header.clear();
+                channel.read(header, position);
+                int length = header.flip().getInt();
+                if (length == 0) {
+                    break;
+                }
+                last = position;
+                position += 4 + length + 4;
+            }
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7F }), last + 10);
+        }
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertEquals(List.of("id1"), index.get(UNID1));
+            assertTrue(index.get(UNID2).isEmpty(), "Corrupt record should be dropped");
+
+            index.putAll(List.of(new Entry(UNID2, FIELDS, 0, "id3")));
+        }
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertEquals(List.of("id3"), index.get(UNID2), "Records after a dropped record should be readable");
+        }
+    }
+
+    @Test
+    void testGrowthAndCompaction() throws IOException {
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            // Larger than the initial mapping
+            for (int i = 0; i < 5000; i++) {
+                index.putAll(List.of(new Entry(unid(i), FIELDS, 0, "embedding-" + i)));
+            }
+            for (int i = 0; i < 4990; i++) {
+                index.removeAll(List.of(unid(i)));
+            }
+
+            assertEquals(10, index.size());
+        }
+
+        assertEquals(1, logFiles().size(), "Old generations should be deleted");
+        assertTrue(Files.size(logFiles().get(0)) < 5000 * 40, "Log should be compacted");
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertEquals(10, index.size());
+            assertEquals(List.of("embedding-4995"), index.get(unid(4995)));
+        }
+    }
+
+    @Test
+    void testInterruptedCompaction() throws IOException {
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            index.putAll(List.of(new Entry(UNID1, FIELDS, 0, "id1")));
+        }
+
+        // A compaction that died before completing the next generation
+        Path partial = directory.resolve(logFiles().get(0).getFileName().toString().replace("-1.", "-2.") + ".tmp");
+        Files.write(partial, new byte[] {0x45, 0x4D, 0x42});
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertEquals(List.of("id1"), index.get(UNID1), "Partial generation should be ignored");
+
+            index.compact();
+            assertEquals(List.of("id1"), index.get(UNID1));
+        }
+
+        assertEquals(1, logFiles().size(), "Temporary file should be replaced");
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertEquals(List.of("id1"), index.get(UNID1));
+        }
+    }
+
+    @Test
+    void testInvalidUnid() throws IOException {
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(directory)) {
+            assertThrows(IllegalArgumentException.class, () -> index.get("not a unid"));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A local embedding model for tests. Vectors are derived from the text, so equal texts get equal embeddings.
+ * Records accepted batches, the number of concurrent calls and requests rejected for their size.
+ */
+class FakeEmbeddingModel implements EmbeddingModel {
+
+    static final int DIMENSION = 16;
+
+    private final long delayMillis;
+    private final List<List<TextSegment>> batches = new CopyOnWriteArrayList<>();
+    private final AtomicInteger activeCalls = new AtomicInteger();
+    private final AtomicInteger maxActiveCalls = new AtomicInteger();
+    private final AtomicInteger rejectedCalls = new AtomicInteger();
+
+    private Consumer<List<TextSegment>> interceptor = batch -> {
+    };
+
+    // Token usage is only reported when set
+    private int charsPerToken;
+    private int maxTokens = Integer.MAX_VALUE;
+
+    FakeEmbeddingModel() {
+        this(0);
+    }
+
+    FakeEmbeddingModel(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * @param interceptor called with each batch before embedding, e.g. to throw an exception
+     * @return this model
+     */
+    FakeEmbeddingModel interceptor(Consumer<List<TextSegment>> interceptor) {
+        this.interceptor = interceptor;
+        return this;
+    }
+
+    /**
+     * @param charsPerToken characters per token to report token usage with
+     * @return this model
+     */
+    FakeEmbeddingModel charsPerToken(int charsPerToken) {
+        this.charsPerToken = charsPerToken;
+        return this;
+    }
+
+    /**
+     * @param maxTokens maximum tokens in a request, larger requests fail
+     * @return this model
+     */
+    FakeEmbeddingModel maxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+        return this;
+    }
+
+    static Embedding embeddingOf(String text) {
+        float[] vector = new float[DIMENSION];
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            vector[i % DIMENSION] += (bytes[i] & 0xFF) / 255f;
+        }
+        vector[0] += 1;
+
+        Embedding embedding = Embedding.from(vector);
+        embedding.normalize();
+        return embedding;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        maxActiveCalls.accumulateAndGet(activeCalls.incrementAndGet(), Math::max);
+        try {
+            interceptor.accept(textSegments);
+
+            int tokens = charsPerToken == 0 ? 0 : textSegments.stream()
+                                                              .mapToInt(segment -> (segment.text().length() + charsPerToken - 1) / charsPerToken)
+                                                              .sum();
+            if (tokens > maxTokens) {
+                rejectedCalls.incrementAndGet();
+                throw new IllegalArgumentException("Request has " + tokens + " tokens, over the token limit of " + maxTokens);
+            }
+
+            batches.add(List.copyOf(textSegments));
+
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+
+            List<Embedding> embeddings = new ArrayList<>();
+            textSegments.forEach(segment -> embeddings.add(embeddingOf(segment.text())));
+
+            if (charsPerToken == 0) {
+                return Response.from(embeddings);
+            }
+            return Response.from(embeddings, new TokenUsage(tokens));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            activeCalls.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return DIMENSION;
+    }
+
+    List<List<TextSegment>> getBatches() {
+        return batches;
+    }
+
+    int getMaxActiveCalls() {
+        return maxActiveCalls.get();
+    }
+
+    int getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hcl.domino.DominoClientBuilder;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.openntf.langchain4j.data.DominoDocumentLoader;
+import org.openntf.langchain4j.data.MetadataDefinition;
+import org.openntf.test.jnx.AbstractNotesRuntimeTest;
+
+class IncrementalSyncServiceTest extends AbstractNotesRuntimeTest {
+
+    private static List<String> storedTexts(InMemoryEmbeddingStore<TextSegment> store) {
+        return store.search(EmbeddingSearchRequest.builder()
+                                                  .queryEmbedding(FakeEmbeddingModel.embeddingOf("query"))
+                                                  .maxResults(100)
+                                                  .minScore(0.0)
+                                                  .build())
+                    .matches()
+                    .stream()
+                    .map(match -> match.embedded().text())
+                    .sorted()
+                    .toList();
+    }
+
+    @Test
+    void testIncrementalSync() throws Exception {
+        Path dir = Files.createTempDirectory("incrementalsync");
+
+        try (EmbeddingIdIndex index = EmbeddingIdIndex.open(dir.resolve("index"))) {
+            withTempDb(db -> {
+                List<com.hcl.domino.data.Document> docs = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    var doc = db.createDocument().replaceItemValue("Title", "Document " + i);
+                    doc.save();
+                    docs.add(doc);
+                }
+
+                InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+                FakeEmbeddingModel model = new FakeEmbeddingModel();
+                DatabaseTarget target = new DatabaseTarget(db.getAbsoluteFilePath());
+
+                try (IncrementalSyncService service = IncrementalSyncService.builder()
+                                                                            .clientFactory(() -> DominoClientBuilder.newDominoClient().build())
+                                                                            .database(target)
+                                                                            .loaderTemplate(() -> DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+                                                                                                                      .fieldName("Title"))
+                                                                            .pipelineTemplate(() -> DominoIngestionPipeline.builder()
+                                                                                                                           .embeddingModel(model)
+                                                                                                                           .embeddingStore(store)
+                                                                                                                           .embeddingIdIndex(index))
+                                                                            .deletionSynchronizer(DeletionSynchronizer.builder()
+                                                                                                                      .embeddingStore(store)
+                                                                                                                      .embeddingIdIndex(index)
+                                                                                                                      .stateFile(dir.resolve("deletions.properties"))
+                                                                                                                      .build())
+                                                                            .stateFile(dir.resolve("sync.properties"))
+                                                                            .build()) {
+
+                    SyncResult result = service.syncNow(target).orElseThrow();
+                    assertTrue(result.isSuccessful(), "First sync should succeed");
+                    assertEquals(3, result.modifiedNotes(), "First sync should ingest the whole database");
+                    assertEquals(List.of("Document 0", "Document 1", "Document 2"), storedTexts(store));
+
+                    SyncResult unchanged = service.syncNow(target).orElseThrow();
+                    assertEquals(0, unchanged.modifiedNotes(), "Nothing changed since the last sync");
+                    assertNull(unchanged.ingestion());
+
+                    docs.get(1).replaceItemValue("Title", "Document 1 updated").save();
+                    db.createDocument().replaceItemValue("Title", "Document 3").save();
+                    docs.get(2).delete();
+
+                    SyncResult changed = service.syncNow(target).orElseThrow();
+                    assertTrue(changed.isSuccessful(), "Incremental sync should succeed");
+                    assertEquals(2, changed.modifiedNotes(), "Only modified and new notes should be loaded");
+                    assertEquals(1, changed.deletions().removedDocuments());
+                    assertEquals(List.of("Document 0", "Document 1 updated", "Document 3"), storedTexts(store));
+                }
+            });
+        } finally {
+            try (var files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import dev.langchain4j.data.document.Metadata;
+import org.junit.jupiter.api.Test;
+
+class MetadataInternerTest {
+
+    @Test
+    void testSharedValues() {
+        MetadataInterner interner = new MetadataInterner(100);
+
+        Metadata first = interner.intern(new Metadata().put("form", new String("Memo")).put("size", 10));
+        Metadata second = interner.intern(new Metadata().put("form", new String("Memo")).put("size", 20));
+
+        assertSame(first.getString("form"), second.getString("form"));
+        assertEquals(Integer.valueOf(20), second.getInteger("size"));
+        assertEquals(1, interner.size());
+    }
+
+    @Test
+    void testLimits() {
+        MetadataInterner interner = new MetadataInterner(1);
+
+        String longValue = "x".repeat(MetadataInterner.MAX_VALUE_LENGTH + 1);
+        assertNotSame(longValue, interner.intern(new String(longValue)));
+        assertEquals(0, interner.size());
+
+        String memo = interner.intern(new String("Memo"));
+        assertSame(memo, interner.intern(new String("Memo")));
+
+        // The pool is full, new values pass through
+        String reply = new String("Reply");
+        assertSame(reply, interner.intern(reply));
+        assertEquals(1, interner.size());
+    }
+
+    @Test
+    void testIndexStrings() {
+        assertSame(MetadataInterner.indexString(5), MetadataInterner.indexString(5));
+        assertEquals("5000", MetadataInterner.indexString(5000));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.output.TokenUsage;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TokenBudgetBatcherTest {
+
+    private static List<List<TextSegment>> batchAll(TokenBudgetBatcher batcher, List<TextSegment> segments) {
+        List<List<TextSegment>> batches = new ArrayList<>();
+        segments.forEach(segment -> batches.addAll(batcher.add(segment)));
+        batcher.flush().ifPresent(batches::add);
+        return batches;
+    }
+
+    @Test
+    void testPacking() {
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(100, 10, 1.0);
+
+        // 10, 60, 30, 50, 40 tokens at the default ratio
+        List<TextSegment> segments = List.of(
+            TextSegment.from("x".repeat(40)),
+            TextSegment.from("x".repeat(240)),
+            TextSegment.from("x".repeat(120)),
+            TextSegment.from("x".repeat(200)),
+            TextSegment.from("x".repeat(160))
+        );
+
+        List<List<TextSegment>> batches = batchAll(batcher, segments);
+
+        assertEquals(List.of(List.of(segments.get(0), segments.get(1), segments.get(2)),
+                             List.of(segments.get(3), segments.get(4))),
+                     batches);
+    }
+
+    @Test
+    void testSizeLimitAndSafetyFactor() {
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(100, 3, 0.5);
+
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            segments.add(TextSegment.from("x".repeat(40)));
+        }
+
+        List<List<TextSegment>> batches = batchAll(batcher, segments);
+
+        assertEquals(List.of(3, 3, 1), batches.stream().map(List::size).toList(), "Batches should be limited to 3 segments");
+
+        batcher = new TokenBudgetBatcher(100, 10, 0.5);
+        batches = batchAll(batcher, segments);
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 5), "Batches should be filled up to 50 tokens");
+    }
+
+    @Test
+    void testSplitOversized() {
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(10, 10, 1.0);
+        String text = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore.";
+        Metadata metadata = Metadata.metadata("unid", "ABCD");
+
+        List<List<TextSegment>> batches = batchAll(batcher, List.of(TextSegment.from(text, metadata)));
+
+        StringBuilder joined = new StringBuilder();
+        for (List<TextSegment> batch : batches) {
+            for (TextSegment piece : batch) {
+                assertTrue(batcher.estimateTokens(piece.text()) <= 10, "Piece should fit the budget: " + piece.text());
+                assertEquals("ABCD", piece.metadata().getString("unid"), "Metadata should be kept");
+                joined.append(piece.text());
+            }
+        }
+
+        assertTrue(batches.size() > 1, "Oversized segment should be split");
+        assertEquals(text, joined.toString(), "Pieces should cover the whole text");
+        assertTrue(batches.get(0).get(0).text().endsWith(" "), "Pieces should be split at whitespace");
+    }
+
+    @Test
+    void testLearning() {
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(1000, 10, 1.0);
+        List<TextSegment> batch = List.of(TextSegment.from("x".repeat(300)));
+
+        assertEquals(75, batcher.estimateTokens("x".repeat(300)));
+
+        // Denser than expected, adopted at once
+        batcher.learn(batch, new TokenUsage(150));
+        assertEquals(2.0, batcher.getCharsPerToken(), 0.001);
+        assertEquals(150, batcher.estimateTokens("x".repeat(300)));
+
+        // Sparser than expected, learned gradually
+        batcher.learn(batch, new TokenUsage(50));
+        assertTrue(batcher.getCharsPerToken() > 2.0 && batcher.getCharsPerToken() < 6.0);
+        for (int i = 0; i < 50; i++) {
+            batcher.learn(batch, new TokenUsage(50));
+        }
+        assertEquals(6.0, batcher.getCharsPerToken(), 0.01);
+
+        // No usage reported
+        batcher.learn(batch, null);
+        batcher.learn(batch, new TokenUsage());
+        assertEquals(6.0, batcher.getCharsPerToken(), 0.01);
+    }
+
+    @Test
+    void testPiecesNotSplitAgain() {
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(100, 10, 1.0);
+        TextSegment segment = TextSegment.from("x ".repeat(200));
+
+        List<TextSegment> pieces = batcher.split(segment);
+        assertEquals(1, pieces.size());
+
+        // The ratio drops before the piece is added, it's still sent as it was split
+        batcher.learn(pieces, new TokenUsage(400));
+        assertTrue(batcher.split(segment).size() > 1, "Segment should no longer fit");
+
+        List<List<TextSegment>> batches = new ArrayList<>(batcher.addPiece(pieces.get(0)));
+        batcher.flush().ifPresent(batches::add);
+        assertEquals(List.of(List.of(pieces.get(0))), batches);
+    }
+
+    @Test
+    void testRejected() {
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(100, 10, 1.0);
+
+        // 400 characters were over 100 tokens, so below 4 characters per token
+        batcher.rejected(List.of(TextSegment.from("x".repeat(400))));
+        assertTrue(batcher.getCharsPerToken() < 4.0);
+        assertTrue(batcher.estimateTokens("x".repeat(400)) > 100, "The rejected text should no longer fit");
+    }
+}
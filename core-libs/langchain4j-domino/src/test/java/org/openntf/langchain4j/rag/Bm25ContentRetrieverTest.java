@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.openntf.langchain4j.store.Bm25Index;
+import org.openntf.langchain4j.store.DominoEmbeddingStore;
+
+class Bm25ContentRetrieverTest {
+
+    // Words with a shared meaning get the same dimension, so the embedding search finds synonyms
+    private static final List<List<String>> CONCEPTS = List.of(
+        List.of("car", "automobile", "vehicle"),
+        List.of("insurance", "coverage"),
+        List.of("rental", "hire"),
+        List.of("policy"),
+        List.of("server", "domino")
+    );
+
+    private static final EmbeddingModel CONCEPT_MODEL = new EmbeddingModel() {
+
+        @Override
+        public Response<Embedding> embed(String text) {
+            float[] vector = new float[CONCEPTS.size() + 1];
+            vector[CONCEPTS.size()] = 0.01f;
+            for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+                for (int i = 0; i < CONCEPTS.size(); i++) {
+                    if (CONCEPTS.get(i).contains(word)) {
+                        vector[i]++;
+                    }
+                }
+            }
+            return Response.from(Embedding.from(vector));
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+            return Response.from(segments.stream().map(segment -> embed(segment.text()).content()).toList());
+        }
+    };
+
+    private static final List<String> TEXTS = List.of(
+        "Automobile coverage for company vehicles",
+        "Car rental policy for business travel",
+        "Car insurance claims are handled by the finance team",
+        "The Domino server is patched monthly"
+    );
+
+    private static List<String> texts(List<Content> contents) {
+        return contents.stream().map(content -> content.textSegment().text()).toList();
+    }
+
+    private static void withIndex(IndexConsumer consumer) throws IOException {
+        Path directory = Files.createTempDirectory("bm25");
+        try (Bm25Index index = Bm25Index.builder().directory(directory).build()) {
+            List<String> ids = new ArrayList<>();
+            List<TextSegment> segments = new ArrayList<>();
+            for (int i = 0; i < TEXTS.size(); i++) {
+                ids.add("id" + i);
+                segments.add(TextSegment.from(TEXTS.get(i), new Metadata().put("form", i == 3 ? "Memo" : "Policy")));
+            }
+            index.addAll(ids, segments);
+
+            DominoEmbeddingStore store = DominoEmbeddingStore.builder().build();
+            store.addAll(ids, CONCEPT_MODEL.embedAll(segments).content(), segments);
+            consumer.accept(index, store);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private interface IndexConsumer {
+
+        void accept(Bm25Index index, DominoEmbeddingStore store);
+    }
+
+    @Test
+    void testKeywordRetrieval() throws IOException {
+        withIndex((index, store) -> {
+            List<Content> contents = Bm25ContentRetriever.builder().index(index).maxResults(5).build()
+                                                         .retrieve(Query.from("car insurance"));
+
+            assertEquals(List.of(TEXTS.get(2), TEXTS.get(1)), texts(contents), "Synonyms are not found by keywords");
+            assertEquals("id2", contents.get(0).metadata().get(ContentMetadata.EMBEDDING_ID));
+        });
+    }
+
+    @Test
+    void testHybridRetrieval() throws IOException {
+        withIndex((index, store) -> {
+            Bm25ContentRetriever retriever = Bm25ContentRetriever.builder()
+                                                                 .index(index)
+                                                                 .embeddingStore(store)
+                                                                 .embeddingModel(CONCEPT_MODEL)
+                                                                 .filter(new IsEqualTo("form", "Policy"))
+                                                                 .maxResults(3)
+                                                                 .build();
+
+            List<Content> contents = retriever.retrieve(Query.from("car insurance"));
+
+            assertEquals(TEXTS.get(2), texts(contents).get(0), "The best match of both searches should rank first");
+            assertEquals(3, contents.size());
+            assertEquals(List.of(TEXTS.get(0), TEXTS.get(1)), texts(contents).subList(1, 3).stream().sorted().toList(),
+                         "Synonym matches should be added by the embedding search");
+            assertEquals(List.of(), retriever.retrieve(Query.from("   ")));
+        });
+    }
+}
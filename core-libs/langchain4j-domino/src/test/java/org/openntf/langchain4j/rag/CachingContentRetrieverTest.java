@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CachingContentRetrieverTest {
+
+    // Each query word counts in its own dimension, except the synonyms
+    private static final EmbeddingModel WORD_MODEL = new EmbeddingModel() {
+
+        @Override
+        public Response<Embedding> embed(String text) {
+            float[] vector = new float[8];
+            for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+                switch (word) {
+                    case "car", "automobile" -> vector[0]++;
+                    case "insurance", "coverage" -> vector[1]++;
+                    case "rental" -> vector[2]++;
+                    case "server" -> vector[3]++;
+                    default -> vector[7] += 0.01f;
+                }
+            }
+            return Response.from(Embedding.from(vector));
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+            return Response.from(segments.stream().map(segment -> embed(segment.text()).content()).toList());
+        }
+    };
+
+    private static final String UNID_A = "0123456789ABCDEF0123456789ABCDEF";
+    private static final String UNID_B = "FEDCBA9876543210FEDCBA9876543210";
+
+    /**
+     * Answers every query with one segment per UNID and counts the calls.
+     */
+    private static class CountingRetriever implements ContentRetriever {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final Map<String, String> unidsByWord;
+
+        CountingRetriever(Map<String, String> unidsByWord) {
+            this.unidsByWord = unidsByWord;
+        }
+
+        @Override
+        public List<Content> retrieve(Query query) {
+            calls.incrementAndGet();
+            String text = query.text().toLowerCase(Locale.ROOT);
+            return unidsByWord.entrySet()
+                              .stream()
+                              .filter(e -> text.contains(e.getKey()))
+                              .map(e -> Content.from(TextSegment.from("About " + e.getKey(),
+                                                                      new Metadata().put("unid", e.getValue()))))
+                              .toList();
+        }
+    }
+
+    @Test
+    void testExactMatch() {
+        CountingRetriever delegate = new CountingRetriever(Map.of("car", UNID_A));
+        CachingContentRetriever cache = CachingContentRetriever.builder().delegate(delegate).build();
+
+        List<Content> first = cache.retrieve(Query.from("Car insurance"));
+        List<Content> second = cache.retrieve(Query.from("  car   INSURANCE "));
+
+        assertEquals(1, delegate.calls.get(), "Normalized text should be answered from the cache");
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.retrieve(Query.from("car rental"));
+        assertEquals(2, delegate.calls.get(), "Without an embedding model, different text is a miss");
+        assertEquals(List.of(), cache.retrieve(Query.from(" ")));
+    }
+
+    @Test
+    void testSimilarityMatch() {
+        CountingRetriever delegate = new CountingRetriever(Map.of("car", UNID_A, "automobile", UNID_A));
+        CachingContentRetriever cache = CachingContentRetriever.builder()
+                                                               .delegate(delegate)
+                                                               .embeddingModel(WORD_MODEL)
+                                                               .similarityThreshold(0.99)
+                                                               .build();
+
+        List<Content> first = cache.retrieve(Query.from("car insurance"));
+        List<Content> similar = cache.retrieve(Query.from("automobile coverage"));
+        assertEquals(1, delegate.calls.get(), "A query with the same meaning should be answered from the cache");
+        assertSame(first, similar);
+
+        cache.retrieve(Query.from("car rental"));
+        assertEquals(2, delegate.calls.get(), "A query with another meaning should be a miss");
+    }
+
+    @Test
+    void testScope() {
+        CountingRetriever delegate = new CountingRetriever(Map.of("car", UNID_A));
+        AtomicInteger user = new AtomicInteger();
+        CachingContentRetriever cache = CachingContentRetriever.builder()
+                                                               .delegate(delegate)
+                                                               .embeddingModel(WORD_MODEL)
+                                                               .scope(() -> "user" + user.get())
+                                                               .build();
+
+        cache.retrieve(Query.from("car insurance"));
+        user.set(1);
+        cache.retrieve(Query.from("car insurance"));
+        assertEquals(2, delegate.calls.get(), "Answers should not be shared between scopes");
+        user.set(0);
+        cache.retrieve(Query.from("car insurance"));
+        assertEquals(2, delegate.calls.get());
+    }
+
+    @Test
+    void testExpiryAndEviction() {
+        CountingRetriever delegate = new CountingRetriever(Map.of("car", UNID_A));
+        AtomicLong now = new AtomicLong();
+        CachingContentRetriever cache = CachingContentRetriever.builder()
+                                                               .delegate(delegate)
+                                                               .ttl(Duration.ofSeconds(10))
+                                                               .maxEntries(2)
+                                                               .build(now::get);
+
+        cache.retrieve(Query.from("one"));
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        cache.retrieve(Query.from("one"));
+        assertEquals(1, delegate.calls.get());
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        cache.retrieve(Query.from("one"));
+        assertEquals(2, delegate.calls.get(), "Expired answers should be retrieved again");
+
+        cache.retrieve(Query.from("two"));
+        cache.retrieve(Query.from("one"));
+        cache.retrieve(Query.from("three"));
+        assertEquals(2, cache.size());
+        assertEquals(4, delegate.calls.get());
+
+        cache.retrieve(Query.from("one"));
+        assertEquals(4, delegate.calls.get(), "Recently used answer should be kept");
+        cache.retrieve(Query.from("two"));
+        assertEquals(5, delegate.calls.get(), "Least recently used answer should be evicted");
+    }
+
+    @Test
+    void testInvalidation() {
+        CountingRetriever delegate = new CountingRetriever(Map.of("car", UNID_A, "server", UNID_B));
+        CachingContentRetriever cache = CachingContentRetriever.builder().delegate(delegate).build();
+
+        cache.retrieve(Query.from("car"));
+        cache.retrieve(Query.from("car and server"));
+        cache.retrieve(Query.from("server"));
+        assertEquals(3, cache.size());
+
+        assertEquals(2, cache.invalidate(List.of(UNID_A.toLowerCase(Locale.ROOT))));
+        assertEquals(1, cache.size());
+
+        cache.retrieve(Query.from("server"));
+        cache.retrieve(Query.from("car"));
+        assertEquals(4, delegate.calls.get(), "Only answers referring to the modified note should be retrieved again");
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidationDuringRetrieval() {
+        AtomicInteger calls = new AtomicInteger();
+        CachingContentRetriever[] cache = new CachingContentRetriever[1];
+        ContentRetriever delegate = query -> {
+            calls.incrementAndGet();
+            // The note changes after it was loaded, before the answer is cached
+            cache[0].invalidate(List.of(UNID_A));
+            return List.of();
+        };
+        cache[0] = CachingContentRetriever.builder().delegate(delegate).build();
+
+        cache[0].retrieve(Query.from("car"));
+        cache[0].retrieve(Query.from("car"));
+        assertEquals(2, calls.get(), "An answer retrieved across an invalidation should not be cached");
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.Test;
+
+class CoalescingEmbeddingModelTest {
+
+    /**
+     * A local model with a fixed round-trip time, recording the batch sizes.
+     */
+    private static class SlowModel implements EmbeddingModel {
+
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final long delayMillis;
+        volatile RuntimeException failure;
+        volatile String rejectedText;
+        volatile Error error;
+
+        SlowModel(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        static float[] vectorOf(String text) {
+            return new float[]{text.length(), text.hashCode() % 1000, 1};
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+            batchSizes.add(segments.size());
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (error != null) {
+                throw error;
+            }
+            if (segments.stream().anyMatch(segment -> segment.text().equals(rejectedText))) {
+                throw new IllegalArgumentException("Rejected " + rejectedText);
+            }
+            return Response.from(segments.stream().map(segment -> Embedding.from(vectorOf(segment.text()))).toList());
+        }
+    }
+
+    private static List<float[]> embedConcurrently(EmbeddingModel model, int requests, IntFunction<String> textOf) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<float[]>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                String text = textOf.apply(i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return model.embed(text).content().vector();
+                }));
+            }
+            start.countDown();
+
+            List<float[]> vectors = new ArrayList<>();
+            for (Future<float[]> future : futures) {
+                vectors.add(future.get());
+            }
+            return vectors;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCoalescing() throws Exception {
+        SlowModel delegate = new SlowModel(30);
+        CoalescingEmbeddingModel model = CoalescingEmbeddingModel.builder()
+                                                                 .delegate(delegate)
+                                                                 .window(Duration.ofMillis(20))
+                                                                 .maxBatchSize(16)
+                                                                 .build();
+
+        List<float[]> vectors = embedConcurrently(model, 40, i -> "query " + i);
+
+        for (int i = 0; i < vectors.size(); i++) {
+            assertArrayEquals(SlowModel.vectorOf("query " + i), vectors.get(i), "Each request should get its own embedding");
+        }
+        assertEquals(40, delegate.batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(delegate.batchSizes.size() < 10, "Requests should be batched: " + delegate.batchSizes);
+        assertTrue(delegate.batchSizes.stream().allMatch(size -> size <= 16), "Batches should not exceed the maximum size");
+        assertEquals(40, model.getRequestCount());
+        assertEquals(delegate.batchSizes.size(), model.getModelCallCount());
+    }
+
+    @Test
+    void testDeduplication() throws Exception {
+        SlowModel delegate = new SlowModel(30);
+        CoalescingEmbeddingModel model = CoalescingEmbeddingModel.builder()
+                                                                 .delegate(delegate)
+                                                                 .window(Duration.ofMillis(20))
+                                                                 .build();
+
+        List<float[]> vectors = embedConcurrently(model, 20, i -> "popular query");
+
+        vectors.forEach(vector -> assertArrayEquals(SlowModel.vectorOf("popular query"), vector));
+        assertTrue(delegate.batchSizes.stream().allMatch(size -> size == 1), "Identical texts should be embedded once per batch");
+        assertEquals(20, model.getDeduplicatedCount() + delegate.batchSizes.size());
+    }
+
+    @Test
+    void testIdleRequestNotDelayed() {
+        SlowModel delegate = new SlowModel(0);
+        CoalescingEmbeddingModel model = CoalescingEmbeddingModel.builder()
+                                                                 .delegate(delegate)
+                                                                 .window(Duration.ofSeconds(5))
+                                                                 .build();
+
+        long start = System.nanoTime();
+        model.embed("single query");
+        model.embed(TextSegment.from("another query"));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos(), "Requests on an idle model should not wait");
+
+        model.embedAll(List.of(TextSegment.from("a"), TextSegment.from("b")));
+        assertEquals(List.of(1, 1, 2), delegate.batchSizes);
+    }
+
+    @Test
+    void testFailure() throws Exception {
+        SlowModel delegate = new SlowModel(0);
+        delegate.failure = new IllegalStateException("Model unavailable");
+        CoalescingEmbeddingModel model = CoalescingEmbeddingModel.builder().delegate(delegate).build();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> model.embed("query"));
+        assertEquals("Model unavailable", e.getMessage());
+
+        delegate.failure = null;
+        assertArrayEquals(SlowModel.vectorOf("query"), model.embed("query").content().vector(), "Failed texts should not stay in flight");
+    }
+
+    @Test
+    void testRejectedText() throws Exception {
+        SlowModel delegate = new SlowModel(30);
+        delegate.rejectedText = "query 3";
+        CoalescingEmbeddingModel model = CoalescingEmbeddingModel.builder()
+                                                                 .delegate(delegate)
+                                                                 .window(Duration.ofMillis(20))
+                                                                 .build();
+
+        List<Object> results = embedConcurrentlyAllowingFailures(model, 10);
+
+        for (int i = 0; i < results.size(); i++) {
+            if (i == 3) {
+                assertTrue(results.get(i) instanceof IllegalArgumentException, "The rejected text should fail");
+            } else {
+                assertArrayEquals(SlowModel.vectorOf("query " + i), (float[]) results.get(i), "Other texts should be embedded");
+            }
+        }
+    }
+
+    @Test
+    void testError() throws Exception {
+        SlowModel delegate = new SlowModel(30);
+        delegate.error = new LinkageError("Broken model");
+        CoalescingEmbeddingModel model = CoalescingEmbeddingModel.builder()
+                                                                 .delegate(delegate)
+                                                                 .window(Duration.ofMillis(20))
+                                                                 .build();
+
+        List<Object> results = embedConcurrentlyAllowingFailures(model, 10);
+
+        assertTrue(results.stream().allMatch(Throwable.class::isInstance), "Every request should fail rather than wait forever");
+    }
+
+    // Vectors, or the exception thrown for each request
+    private static List<Object> embedConcurrentlyAllowingFailures(EmbeddingModel model, int requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                String text = "query " + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        return model.embed(text).content().vector();
+                    } catch (RuntimeException | Error e) {
+                        return e;
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<Object> results = new ArrayList<>();
+            for (Future<Object> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.FTIndex;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.query.Query;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+import org.openntf.langchain4j.store.DominoEmbeddingStore;
+import org.openntf.test.jnx.AbstractNotesRuntimeTest;
+
+class DominoHybridContentRetrieverTest extends AbstractNotesRuntimeTest {
+
+    // Words with a shared meaning get the same dimension, so the embedding search finds synonyms
+    private static final List<List<String>> CONCEPTS = List.of(
+        List.of("car", "automobile", "vehicles"),
+        List.of("insurance", "coverage"),
+        List.of("rental"),
+        List.of("policy"),
+        List.of("server", "domino")
+    );
+
+    private static final EmbeddingModel CONCEPT_MODEL = new EmbeddingModel() {
+
+        @Override
+        public Response<Embedding> embed(String text) {
+            float[] vector = new float[CONCEPTS.size() + 1];
+            vector[CONCEPTS.size()] = 0.01f;
+            for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+                for (int i = 0; i < CONCEPTS.size(); i++) {
+                    if (CONCEPTS.get(i).contains(word)) {
+                        vector[i]++;
+                    }
+                }
+            }
+            return Response.from(Embedding.from(vector));
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+            return Response.from(segments.stream().map(segment -> embed(segment.text()).content()).toList());
+        }
+    };
+
+    private static final List<String> TITLES = List.of(
+        "Automobile coverage for company vehicles",
+        "Car rental policy for business travel",
+        "Car insurance claims are handled by the finance team",
+        "The Domino server is patched monthly"
+    );
+
+    // Full-text syntax error, while its words still embed as "car insurance"
+    private static final String BROKEN_QUERY = "car insurance AND";
+
+    private static List<String> titles(List<Content> contents) {
+        return contents.stream().map(content -> content.textSegment().text().strip()).toList();
+    }
+
+    // Creates a note per title and returns their embeddings in a store, tied to the notes by UNID
+    private static DominoEmbeddingStore populate(Database database) {
+        List<String> ids = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (String title : TITLES) {
+            var doc = database.createDocument()
+                              .replaceItemValue("Form", "Policy")
+                              .replaceItemValue("Title", title);
+            doc.save();
+            ids.add(doc.getUNID());
+            segments.add(TextSegment.from(title, new Metadata().put(DominoHybridContentRetriever.UNID_METADATA, doc.getUNID())));
+        }
+
+        DominoEmbeddingStore store = DominoEmbeddingStore.builder().build();
+        store.addAll(ids, CONCEPT_MODEL.embedAll(segments).content(), segments);
+        return store;
+    }
+
+    @Test
+    void testFullTextOnly() throws Exception {
+        withTempDb(database -> {
+            populate(database);
+            database.ftIndex(EnumSet.noneOf(FTIndex.class));
+
+            DominoHybridContentRetriever retriever = DominoHybridContentRetriever.builder()
+                                                                                 .database(database)
+                                                                                 .fieldName("Title")
+                                                                                 .build();
+
+            assertEquals(List.of(TITLES.get(2)), titles(retriever.retrieve(Query.from("insurance"))),
+                         "Synonyms are not found by the full-text index");
+            assertEquals(List.of(TITLES.get(1), TITLES.get(2)), titles(retriever.retrieve(Query.from("car"))).stream().sorted().toList());
+            assertEquals(List.of(), retriever.retrieve(Query.from("   ")));
+        });
+    }
+
+    @Test
+    void testFusion() throws Exception {
+        withTempDb(database -> {
+            DominoEmbeddingStore store = populate(database);
+            database.ftIndex(EnumSet.noneOf(FTIndex.class));
+
+            List<Content> contents = DominoHybridContentRetriever.builder()
+                                                                 .database(database)
+                                                                 .fieldName("Title")
+                                                                 .embeddingStore(store)
+                                                                 .embeddingModel(CONCEPT_MODEL)
+                                                                 .maxResults(2)
+                                                                 .build()
+                                                                 .retrieve(Query.from("car insurance"));
+
+            assertEquals(List.of(TITLES.get(2), TITLES.get(0)), titles(contents),
+                         "The best match of both searches should rank first, followed by the synonym match");
+            double first = (Double) contents.get(0).metadata().get(ContentMetadata.SCORE);
+            double second = (Double) contents.get(1).metadata().get(ContentMetadata.SCORE);
+            assertTrue(first > second, "Contents should carry their fused score");
+
+            List<Content> intersection = DominoHybridContentRetriever.builder()
+                                                                     .database(database)
+                                                                     .fieldName("Title")
+                                                                     .embeddingStore(store)
+                                                                     .embeddingModel(CONCEPT_MODEL)
+                                                                     .fusion(DominoHybridContentRetriever.Fusion.INTERSECTION)
+                                                                     .build()
+                                                                     .retrieve(Query.from("car insurance"));
+            assertEquals(List.of(TITLES.get(2)), titles(intersection), "Intersection should keep notes found by both searches");
+        });
+    }
+
+    @Test
+    void testFullTextFailure() throws Exception {
+        withTempDb(database -> {
+            DominoEmbeddingStore store = populate(database);
+            database.ftIndex(EnumSet.noneOf(FTIndex.class));
+
+            DominoHybridContentRetriever fullTextOnly = DominoHybridContentRetriever.builder()
+                                                                                    .database(database)
+                                                                                    .fieldName("Title")
+                                                                                    .build();
+            assertThrows(RuntimeException.class, () -> fullTextOnly.retrieve(Query.from(BROKEN_QUERY)),
+                         "Without an embedding store, full-text failures should be thrown");
+
+            List<Content> contents = DominoHybridContentRetriever.builder()
+                                                                 .database(database)
+                                                                 .fieldName("Title")
+                                                                 .embeddingStore(store)
+                                                                 .embeddingModel(CONCEPT_MODEL)
+                                                                 .fusion(DominoHybridContentRetriever.Fusion.INTERSECTION)
+                                                                 .maxResults(2)
+                                                                 .build()
+                                                                 .retrieve(Query.from(BROKEN_QUERY));
+            assertEquals(List.of(TITLES.get(2), TITLES.get(0)), titles(contents),
+                         "The embedding ranking should be used alone, without intersecting");
+        });
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.openntf.langchain4j.data.MetadataDefinition;
+
+class DqlFilterTranslatorTest {
+
+    private static final MetadataDefinition DEFINITION = MetadataDefinition.builder(MetadataDefinition.DEFAULT)
+                                                                            .addString("category", "Categories")
+                                                                            .addDouble("price")
+                                                                            .addString("title", "@ProperCase(Subject)")
+                                                                            .build();
+
+    private final DqlFilterTranslator translator = DqlFilterTranslator.create(DEFINITION);
+
+    @Test
+    void testComparisons() {
+        assertEquals(Optional.of("(form = 'Policy')"), translator.toDql(new IsEqualTo("form", "Policy")));
+        assertEquals(Optional.of("(price < 12.5)"), translator.toDql(new IsLessThan("price", 12.5)));
+        assertEquals(Optional.of("(@DocLength >= 1024)"), translator.toDql(new IsGreaterThanOrEqualTo("size", 1024)));
+        assertEquals(Optional.of("(@Created >= @dt('2024-05-01T10:00:00Z'))"),
+                     translator.toDql(new IsGreaterThanOrEqualTo("created", "2024-05-01T10:00:00Z")));
+        assertEquals(Optional.of("(@ModifiedInThisFile < @dt('2024-05-01'))"),
+                     translator.toDql(new IsLessThan("lastmodifiedinfile", "2024-05-01")));
+        assertEquals(Optional.of("(@DocumentUniqueID = '0123456789ABCDEF0123456789ABCDEF')"),
+                     translator.toDql(new IsEqualTo("unid", "0123456789ABCDEF0123456789ABCDEF")));
+        assertEquals(Optional.of("not (@DocLength = 1024)"), translator.toDql(new IsNotEqualTo("size", 1024)));
+    }
+
+    @Test
+    void testLists() {
+        assertEquals(Optional.of("(form in ('Memo', 'Reply'))"), translator.toDql(new IsIn("form", List.of("Memo", "Reply"))));
+        assertEquals(Optional.of("(@DocLength = 1 or @DocLength = 2)"), translator.toDql(new IsIn("size", List.of(1, 2))));
+        assertEquals(Optional.of("not (@DocLength = 1 or @DocLength = 2)"), translator.toDql(new IsNotIn("size", List.of(1, 2))));
+    }
+
+    @Test
+    void testLogical() {
+        Filter filter = new Or(new IsEqualTo("form", "Policy"),
+                               new Not(new And(new IsGreaterThan("size", 1024), new IsLessThan("created", "2024-05-01"))));
+
+        assertEquals(Optional.of("((form = 'Policy') or not ((@DocLength > 1024) and (@Created < @dt('2024-05-01'))))"),
+                     translator.toDql(filter));
+        assertEquals(Optional.of("((Categories = 'HR') and (price > 10))"),
+                     translator.toDql(new And(new IsEqualTo("category", "HR"), new IsGreaterThan("price", 10))));
+    }
+
+    @Test
+    void testPartialTranslation() {
+        // @Modified is not a DQL special value, so the date condition is checked after the search
+        Filter filter = new And(new IsEqualTo("form", "Policy"), new IsGreaterThan("lastmodified", "2024-05-01T10:00:00Z"));
+        assertEquals(Optional.of("(form = 'Policy')"), translator.toDql(filter));
+
+        // A superset can't be negated or joined with or
+        assertEquals(Optional.empty(), translator.toDql(new Not(filter)));
+
+        // Items match any of their values case-insensitively, so item terms select a superset too
+        assertEquals(Optional.empty(), translator.toDql(new IsNotEqualTo("form", "Memo")));
+        assertEquals(Optional.empty(), translator.toDql(new IsNotIn("form", List.of("Memo"))));
+        assertEquals(Optional.empty(), translator.toDql(new Not(new IsGreaterThan("price", 10))));
+        assertEquals(Optional.empty(), translator.toDql(new IsNotEqualTo("unid", "0123456789abcdef0123456789abcdef")));
+        assertEquals(Optional.empty(), translator.toDql(new Or(new IsEqualTo("form", "Policy"), new IsEqualTo("lastaccessed", "2024-05-01"))));
+
+        assertEquals(Optional.empty(), translator.toDql(new IsEqualTo("unknown", "x")), "Unknown keys can't be translated");
+        assertEquals(Optional.empty(), translator.toDql(new IsEqualTo("form", "Jim's")), "Quotes are not escaped");
+        assertEquals(Optional.empty(), translator.toDql(new IsEqualTo("form", 5)), "Value types must match the field");
+        assertEquals(Optional.empty(), translator.toDql(new IsGreaterThan("unid", "0")), "UNIDs are compared for equality only");
+        // 'a' > 'B' in Java but not in DQL, so text ranges would drop matching notes
+        assertEquals(Optional.empty(), translator.toDql(new IsGreaterThan("category", "B")), "Text is compared for equality only");
+        assertEquals(Optional.of("(form = 'Policy')"),
+                     translator.toDql(new And(new IsEqualTo("form", "Policy"), new IsLessThan("category", "B"))));
+        assertEquals(Optional.empty(), translator.toDql(new IsGreaterThan("created", "yesterday")));
+    }
+
+    @Test
+    void testFormulaTerms() {
+        assertEquals(Optional.empty(), translator.toDql(new IsEqualTo("title", "Hello")), "Formula terms should be off by default");
+
+        DqlFilterTranslator formulas = DqlFilterTranslator.create(DEFINITION).formulaTerms(true);
+
+        assertEquals(Optional.of("@formula('(@ProperCase(Subject)) = \"Say \\\"Hello\\\"\"')"),
+                     formulas.toDql(new IsEqualTo("title", "Say \"Hello\"")));
+        assertEquals(Optional.of("@formula('(@RightBack(@NoteID;\"NT\")) = \"8FA\" : \"8FE\"')"),
+                     formulas.toDql(new IsIn("noteid", List.of("8FA", "8FE"))));
+        assertEquals(Optional.empty(), formulas.toDql(new IsGreaterThan("lastmodified", "2024-05-01")), "Dates are not compared in formulas");
+        assertEquals(Optional.empty(), formulas.toDql(new IsGreaterThan("title", "B")), "Text is compared for equality only");
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.rag;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ReciprocalRankFusionTest {
+
+    @Test
+    void testFusion() {
+        List<String> fullText = List.of("a", "b", "c");
+        List<String> embeddings = List.of("c", "d", "a");
+
+        Map<String, Double> fused = ReciprocalRankFusion.fuse(List.of(fullText, embeddings), 60, false);
+
+        assertEquals(List.of("a", "c", "b", "d"), List.copyOf(fused.keySet()), "Keys found by both searches should rank first");
+        assertEquals(1.0 / 61 + 1.0 / 63, fused.get("a"), 1e-12);
+        assertEquals(1.0 / 62, fused.get("b"), 1e-12);
+    }
+
+    @Test
+    void testIntersection() {
+        List<Integer> fullText = List.of(1, 2, 3, 4);
+        List<Integer> embeddings = List.of(4, 5, 2, 4);
+
+        Map<Integer, Double> fused = ReciprocalRankFusion.fuse(List.of(fullText, embeddings), 60, true);
+
+        assertEquals(List.of(4, 2), List.copyOf(fused.keySet()), "Only keys found by both searches should be kept");
+        assertEquals(1.0 / 64 + 1.0 / 61, fused.get(4), 1e-12, "Repeated keys should count at their first rank");
+    }
+
+    @Test
+    void testSingleRanking() {
+        Map<Integer, Double> fused = ReciprocalRankFusion.fuse(List.of(List.of(7, 3, 9)), 60, false);
+
+        assertEquals(List.of(7, 3, 9), List.copyOf(fused.keySet()), "A single ranking should keep its order");
+        assertEquals(Map.of(), ReciprocalRankFusion.fuse(List.of(List.of(1), List.<Integer>of()), 60, true));
+        assertThrows(IllegalArgumentException.class, () -> ReciprocalRankFusion.fuse(List.of(List.of(1)), 0, false));
+    }
+}
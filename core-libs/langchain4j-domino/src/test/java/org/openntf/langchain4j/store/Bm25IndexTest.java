@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class Bm25IndexTest {
+
+    private static final String[] WORDS = {
+        "policy", "expense", "travel", "hotel", "domino", "server", "mail", "replica", "agent", "view",
+        "form", "field", "approval", "invoice", "budget", "meeting", "notes", "design", "index", "quarter",
+        "customer", "contract", "renewal", "support", "ticket", "release", "upgrade", "backup", "security", "audit"
+    };
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("bm25");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private Bm25Index open(int maxBufferedDocuments, int mergeFactor) {
+        return Bm25Index.builder()
+                        .directory(directory)
+                        .maxBufferedDocuments(maxBufferedDocuments)
+                        .mergeFactor(mergeFactor)
+                        .build();
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = 5 + random.nextInt(40);
+        for (int i = 0; i < length; i++) {
+            // Skewed, so some words are much more common than others
+            double skew = random.nextDouble();
+            text.append(WORDS[(int) (skew * skew * WORDS.length)]).append(i % 7 == 6 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    private static TextSegment segment(String text, String form) {
+        return TextSegment.from(text, new Metadata().put("form", form));
+    }
+
+    // Straightforward BM25 over all documents, for comparison
+    private static List<Bm25Index.Match> reference(Map<String, String> texts, String query, int k) {
+        Map<String, List<String>> tokens = new HashMap<>();
+        texts.forEach((id, text) -> tokens.put(id, LexicalTokenizer.tokenize(text)));
+        double averageLength = tokens.values().stream().mapToInt(List::size).average().orElse(1);
+
+        List<Bm25Index.Match> matches = new ArrayList<>();
+        for (Map.Entry<String, List<String>> doc : tokens.entrySet()) {
+            double score = 0;
+            for (String term : new LinkedHashSet<>(LexicalTokenizer.tokenize(query))) {
+                long docFreq = tokens.values().stream().filter(terms -> terms.contains(term)).count();
+                long frequency = doc.getValue().stream().filter(term::equals).count();
+                if (frequency == 0) {
+                    continue;
+                }
+                double idf = Math.log(1 + (tokens.size() - docFreq + 0.5) / (docFreq + 0.5));
+                score += idf * frequency * 2.2 / (frequency + 1.2 * (0.25 + 0.75 * doc.getValue().size() / averageLength));
+            }
+            if (score > 0) {
+                matches.add(new Bm25Index.Match(doc.getKey(), score, null));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Bm25Index.Match::score).reversed());
+        return matches.subList(0, Math.min(k, matches.size()));
+    }
+
+    private static void assertSameMatches(List<Bm25Index.Match> expected, List<Bm25Index.Match> actual, int k) {
+        assertEquals(Math.min(k, expected.size()), actual.size());
+
+        // The reference has an extra match, to see ties at the cut-off
+        for (int i = 0; i < actual.size(); i++) {
+            double score = expected.get(i).score();
+            assertEquals(score, actual.get(i).score(), 1e-4, "Score at rank " + i);
+
+            // Equal scores may come in any order
+            boolean tied = (i > 0 && Math.abs(score - expected.get(i - 1).score()) < 1e-4)
+                || (i + 1 < expected.size() && Math.abs(score - expected.get(i + 1).score()) < 1e-4);
+            if (!tied) {
+                assertEquals(expected.get(i).id(), actual.get(i).id(), "ID at rank " + i);
+            }
+        }
+    }
+
+    @Test
+    void testTokenizer() {
+        assertEquals(List.of("travel", "expenses", "2024", "müller", "x"), LexicalTokenizer.tokenize("Travel-Expenses (2024): Müller, x!"));
+        assertEquals(List.of(), LexicalTokenizer.tokenize("  ...  "));
+    }
+
+    @Test
+    void testRanking() {
+        try (Bm25Index index = open(100, 10)) {
+            index.add("a", segment("The travel expense policy covers hotels and flights.", "Policy"));
+            index.add("b", segment("Expense reports are due at the end of each month. Late expense reports are rejected.", "Memo"));
+            index.add("c", segment("The Domino server was upgraded over the weekend.", "Memo"));
+            index.add("d", segment("Policy updates are announced by mail.", "Memo"));
+
+            List<Bm25Index.Match> matches = index.search("expense policy", 10);
+            assertEquals(List.of("a", "b", "d"), matches.stream().map(Bm25Index.Match::id).toList(),
+                         "Documents with both terms should rank first");
+            assertEquals("The Domino server was upgraded over the weekend.", index.search("domino", 1).get(0).segment().text());
+            assertEquals(List.of(), index.search("nothing matches", 10));
+            assertEquals(List.of(), index.search("...", 10));
+
+            assertEquals(List.of("b", "d"), index.search("expense policy", 10, new IsEqualTo("form", "Memo"))
+                                                   .stream().map(Bm25Index.Match::id).toList());
+        }
+    }
+
+    @Test
+    void testScoresAcrossSegments() {
+        Random random = new Random(7);
+        Map<String, String> texts = new HashMap<>();
+
+        // A small buffer and merge factor, so there are buffered, flushed and merged segments
+        try (Bm25Index index = open(40, 3)) {
+            for (int i = 0; i < 500; i++) {
+                String text = randomText(random);
+                texts.put("id" + i, text);
+                index.add("id" + i, segment(text, "Memo"));
+            }
+
+            for (int q = 0; q < 20; q++) {
+                String query = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+                assertSameMatches(reference(texts, query, 11), index.search(query, 10), 10);
+            }
+        }
+
+        try (Bm25Index index = open(40, 3)) {
+            assertEquals(500, index.size());
+            for (int q = 0; q < 20; q++) {
+                String query = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+                assertSameMatches(reference(texts, query, 11), index.search(query, 10), 10);
+            }
+        }
+    }
+
+    @Test
+    void testReplaceAndRemove() {
+        try (Bm25Index index = open(5, 2)) {
+            for (int i = 0; i < 20; i++) {
+                index.add("id" + i, segment("document number " + i + " about budget", "Memo"));
+            }
+            index.add("id3", segment("replaced with an invoice", "Memo"));
+            index.removeAll(List.of("id4", "id5", "unknown"));
+
+            assertEquals(18, index.size());
+            assertEquals("id3", index.search("invoice", 5).get(0).id());
+            assertTrue(index.search("budget", 20).stream().noneMatch(match -> match.id().equals("id3") || match.id().equals("id4")));
+        }
+
+        try (Bm25Index index = open(5, 2)) {
+            assertEquals(18, index.size(), "Removals should be committed on close");
+            assertEquals(17, index.search("budget", 20).size());
+            assertEquals("replaced with an invoice", index.search("invoice", 5).get(0).segment().text());
+
+            index.removeAll();
+            assertEquals(0, index.size());
+            assertEquals(List.of(), index.search("budget", 20));
+        }
+
+        try (Bm25Index index = open(5, 2)) {
+            assertEquals(0, index.size());
+        }
+    }
+
+    @Test
+    void testMerges() throws IOException {
+        try (Bm25Index index = open(10, 4)) {
+            for (int i = 0; i < 1000; i++) {
+                index.add("id" + i, segment("segment " + i + " of the quarterly audit", "Memo"));
+            }
+            List<String> removed = new ArrayList<>();
+            for (int i = 0; i < 1000; i += 2) {
+                removed.add("id" + i);
+            }
+            index.removeAll(removed);
+            index.commit();
+
+            assertEquals(500, index.size());
+            assertEquals(500, index.search("audit", 1000).size());
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            long segmentFiles = files.filter(file -> file.getFileName().toString().startsWith("segment-")).count();
+            // 100 flushes with a merge factor of 4 leave at most 3 files per level
+            assertTrue(segmentFiles <= 12, "Segments should be merged, found " + segmentFiles);
+        }
+
+        try (Bm25Index index = open(10, 4)) {
+            assertEquals(500, index.size());
+            assertEquals("id501", index.search("501", 1).get(0).id());
+            assertEquals(List.of(), index.search("500", 1));
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class DominoEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+    private static final String[] FORMS = { "Memo", "Reply", "Task" };
+
+    private final Random random = new Random(1);
+
+    private Embedding randomEmbedding() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return Embedding.from(vector);
+    }
+
+    private static TextSegment segment(int i) {
+        Metadata metadata = new Metadata().put("form", FORMS[i % FORMS.length])
+                                          .put("size", i)
+                                          .put("created", String.format("2024-01-%02dT10:00:00Z", 1 + i % 28));
+        return TextSegment.from("Segment " + i, metadata);
+    }
+
+    private static List<String> exact(List<Embedding> embeddings, List<TextSegment> segments, Embedding query, Filter filter, int k) {
+        return IntStream.range(0, embeddings.size())
+                        .filter(i -> filter == null || filter.test(segments.get(i).metadata()))
+                        .boxed()
+                        .sorted(Comparator.comparingDouble(i -> -CosineSimilarity.between(embeddings.get(i), query)))
+                        .limit(k)
+                        .map(i -> "id" + i)
+                        .toList();
+    }
+
+    private static EmbeddingSearchRequest request(Embedding query, Filter filter, int k) {
+        return EmbeddingSearchRequest.builder().queryEmbedding(query).filter(filter).maxResults(k).build();
+    }
+
+    private DominoEmbeddingStore populate(int count, List<Embedding> embeddings, List<TextSegment> segments) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("id" + i);
+            embeddings.add(randomEmbedding());
+            segments.add(segment(i));
+        }
+
+        DominoEmbeddingStore store = DominoEmbeddingStore.builder().build();
+        store.addAll(ids, embeddings, segments);
+        return store;
+    }
+
+    @Test
+    void testRecall() {
+        List<Embedding> embeddings = new ArrayList<>();
+        DominoEmbeddingStore store = populate(5000, embeddings, new ArrayList<>());
+
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            Embedding query = randomEmbedding();
+            Set<String> expected = Set.copyOf(exact(embeddings, null, query, null, 10));
+            List<EmbeddingMatch<TextSegment>> matches = store.search(request(query, null, 10)).matches();
+
+            assertEquals(10, matches.size());
+            found += (int) matches.stream().filter(match -> expected.contains(match.embeddingId())).count();
+            for (int i = 1; i < matches.size(); i++) {
+                assertTrue(matches.get(i - 1).score() >= matches.get(i).score(), "Matches should be sorted by score");
+            }
+        }
+
+        double recall = found / (queries * 10.0);
+        assertTrue(recall >= 0.95, "Recall should be at least 95% but was " + recall);
+    }
+
+    @Test
+    void testFilters() {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        DominoEmbeddingStore store = populate(3000, embeddings, segments);
+
+        List<Filter> filters = List.of(
+            new IsEqualTo("form", "Memo"),
+            new IsIn("form", List.of("Reply", "Task")),
+            new And(new IsEqualTo("form", "Task"), new IsLessThan("size", 300L)),
+            new IsGreaterThanOrEqualTo("created", "2024-01-27"),
+            new Not(new IsEqualTo("form", "Memo")),
+            // Selective enough to be compared exactly
+            new IsIn("size", List.of(5, 500, 1500, 2999)),
+            new IsEqualTo("form", "Unknown")
+        );
+
+        for (Filter filter : filters) {
+            Embedding query = randomEmbedding();
+            List<String> expected = exact(embeddings, segments, query, filter, 5);
+            List<EmbeddingMatch<TextSegment>> matches = store.search(request(query, filter, 5)).matches();
+
+            assertTrue(matches.stream().allMatch(match -> filter.test(match.embedded().metadata())),
+                       "All matches should pass the filter " + filter);
+            assertEquals(expected.size(), matches.size());
+            long overlap = matches.stream().filter(match -> expected.contains(match.embeddingId())).count();
+            assertTrue(overlap >= expected.size() - 1, "Filtered search should find the nearest allowed segments");
+        }
+    }
+
+    @Test
+    void testRemoveAndReplace() {
+        List<Embedding> embeddings = new ArrayList<>();
+        DominoEmbeddingStore store = populate(500, embeddings, new ArrayList<>());
+
+        Embedding query = embeddings.get(7);
+        assertEquals("id7", store.search(request(query, null, 1)).matches().get(0).embeddingId());
+
+        store.removeAll(List.of("id7"));
+        assertEquals(499, store.size());
+        assertFalse(store.search(request(query, null, 10)).matches().stream().anyMatch(match -> match.embeddingId().equals("id7")),
+                    "Removed embeddings should not be found");
+
+        store.add("id8", query);
+        assertEquals(499, store.size(), "Adding an existing ID should replace it");
+        EmbeddingMatch<TextSegment> match = store.search(request(query, null, 1)).matches().get(0);
+        assertEquals("id8", match.embeddingId());
+        assertNull(match.embedded());
+
+        store.removeAll(new IsEqualTo("form", "Memo"));
+        assertTrue(store.search(request(randomEmbedding(), null, 50)).matches().stream()
+                        .noneMatch(m -> m.embedded() != null && "Memo".equals(m.embedded().metadata().getString("form"))),
+                   "Removal by filter should remove matching segments");
+
+        store.removeAll();
+        assertEquals(0, store.size());
+        assertTrue(store.search(request(query, null, 1)).matches().isEmpty());
+    }
+
+    @Test
+    void testCompaction() {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        DominoEmbeddingStore store = populate(400, embeddings, segments);
+
+        store.removeAll(IntStream.range(0, 90).mapToObj(i -> "id" + i).toList());
+        assertEquals(400, store.graphSize(), "Removed nodes should be kept below the threshold");
+
+        store.removeAll(List.of("id90", "id91", "id92", "id93", "id94", "id95", "id96", "id97", "id98", "id99"));
+        assertEquals(300, store.size());
+        assertEquals(300, store.graphSize(), "Removed nodes should be reclaimed past the threshold");
+
+        for (int i = 100; i < 110; i++) {
+            EmbeddingMatch<TextSegment> match = store.search(request(embeddings.get(i), null, 1)).matches().get(0);
+            assertEquals("id" + i, match.embeddingId());
+            assertEquals(embeddings.get(i), match.embedding());
+            assertEquals(segments.get(i), match.embedded());
+        }
+        Filter filter = new IsEqualTo("form", "Memo");
+        Embedding query = randomEmbedding();
+        List<String> expected = exact(embeddings, segments, query, filter, 5);
+        List<String> live = expected.stream().filter(id -> Integer.parseInt(id.substring(2)) >= 100).toList();
+        assertTrue(store.search(request(query, filter, 5)).matches().stream().map(EmbeddingMatch::embeddingId).toList()
+                        .containsAll(live), "Metadata should be indexed after compaction");
+
+        // Replacements count as removals
+        for (int i = 100; i < 200; i++) {
+            store.addAll(List.of("id" + i), List.of(embeddings.get(i)), List.of(segments.get(i)));
+        }
+        assertEquals(300, store.size());
+        assertTrue(store.graphSize() < 300 + 100, "Replaced nodes should be reclaimed");
+        store.add("new", randomEmbedding());
+        assertEquals("id150", store.search(request(embeddings.get(150), null, 1)).matches().get(0).embeddingId());
+    }
+
+    @Test
+    void testConcurrentSearches() throws Exception {
+        List<Embedding> embeddings = new ArrayList<>();
+        DominoEmbeddingStore store = populate(1000, embeddings, new ArrayList<>());
+        List<Embedding> more = IntStream.range(0, 1000).mapToObj(i -> randomEmbedding()).toList();
+        List<Embedding> queries = IntStream.range(0, 200).mapToObj(i -> randomEmbedding()).toList();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> more.forEach(embedding -> store.add(embedding, TextSegment.from("more"))));
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> queries.stream()
+                                                         .mapToInt(query -> store.search(request(query, new IsEqualTo("form", "Memo"), 5)).matches().size())
+                                                         .sum()));
+            }
+
+            writer.get(30, TimeUnit.SECONDS);
+            for (Future<Integer> reader : readers) {
+                assertEquals(queries.size() * 5, (int) reader.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2000, store.size());
+        Set<String> ids = store.search(request(more.get(3), null, 1)).matches().stream()
+                               .map(match -> match.embedded().text()).collect(Collectors.toSet());
+        assertEquals(Set.of("more"), ids);
+    }
+
+    @Test
+    void testVectorDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("vectors");
+        try {
+            Path missing = directory.resolve("missing");
+            DominoEmbeddingStore unwritable = DominoEmbeddingStore.builder().vectorDirectory(missing).build();
+            assertThrows(UncheckedIOException.class, () -> unwritable.add(randomEmbedding()),
+                         "Vectors should be written to the vector directory");
+
+            DominoEmbeddingStore store = DominoEmbeddingStore.builder().vectorDirectory(directory).build();
+            // More than the first mapping holds, so the file is mapped again as it grows
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                embeddings.add(randomEmbedding());
+                store.add("id" + i, embeddings.get(i));
+            }
+
+            for (int i : new int[] { 0, 63, 64, 199 }) {
+                EmbeddingMatch<TextSegment> match = store.search(request(embeddings.get(i), null, 1)).matches().get(0);
+                assertEquals("id" + i, match.embeddingId());
+                assertEquals(embeddings.get(i), match.embedding(), "Vectors should be read back from the file");
+            }
+
+            store.removeAll();
+            store.add("added", embeddings.get(0));
+            assertEquals("added", store.search(request(embeddings.get(0), null, 1)).matches().get(0).embeddingId());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSnapshot() throws IOException {
+        // More than a chunk, so vectors are both mapped and copied on restore
+        int count = VectorStorage.VECTORS_PER_CHUNK + 1000;
+        DominoEmbeddingStore store = DominoEmbeddingStore.builder().m(8).efConstruction(40).build();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("id" + i);
+            embeddings.add(randomEmbedding());
+            segments.add(segment(i));
+        }
+        store.addAll(ids, embeddings, segments);
+        store.removeAll(List.of("id1", "id2"));
+
+        Path directory = Files.createTempDirectory("snapshot");
+        try {
+            store.snapshot(directory);
+            store.snapshot(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(3, files.count(), "Old snapshot generations should be deleted");
+            }
+
+            DominoEmbeddingStore restored = DominoEmbeddingStore.builder().restoreFrom(directory).build();
+            assertEquals(count - 2, restored.size());
+
+            Filter filter = new IsEqualTo("form", "Reply");
+            for (int q = 0; q < 10; q++) {
+                Embedding query = randomEmbedding();
+                assertEquals(store.search(request(query, filter, 5)).matches().toString(),
+                             restored.search(request(query, filter, 5)).matches().toString(),
+                             "Restored store should return the same matches");
+            }
+
+            EmbeddingMatch<TextSegment> match = restored.search(request(embeddings.get(count - 1), null, 1)).matches().get(0);
+            assertEquals("id" + (count - 1), match.embeddingId());
+            assertEquals(embeddings.get(count - 1), match.embedding());
+            assertEquals(segments.get(count - 1), match.embedded());
+
+            // Restored stores accept changes
+            Embedding added = randomEmbedding();
+            restored.add("added", added);
+            restored.removeAll(List.of("id3"));
+            assertEquals("added", restored.search(request(added, null, 1)).matches().get(0).embeddingId());
+            assertEquals(count - 2, restored.size());
+
+            Path empty = directory.resolve("empty");
+            assertEquals(0, DominoEmbeddingStore.builder().restoreFrom(empty).build().size(),
+                         "Missing snapshots should give an empty store");
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
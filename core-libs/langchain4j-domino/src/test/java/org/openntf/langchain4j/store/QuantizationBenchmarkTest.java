@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Recall and latency of quantized search against exact search, on clustered vectors resembling text embeddings.
+ */
+class QuantizationBenchmarkTest {
+
+    private static final Logger log = Logger.getLogger(QuantizationBenchmarkTest.class.getName());
+
+    private static final int COUNT = 5000;
+    private static final int DIMENSION = 256;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+
+    private final Random random = new Random(1);
+    private final float[][] centroids = new float[40][DIMENSION];
+
+    QuantizationBenchmarkTest() {
+        for (float[] centroid : centroids) {
+            for (int i = 0; i < DIMENSION; i++) {
+                centroid[i] = (float) random.nextGaussian();
+            }
+        }
+    }
+
+    private Embedding embedding() {
+        float[] centroid = centroids[random.nextInt(centroids.length)];
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = centroid[i] + (float) random.nextGaussian() * 0.5f;
+        }
+        return Embedding.from(vector);
+    }
+
+    private static Set<String> exact(List<Embedding> embeddings, Embedding query) {
+        return IntStream.range(0, embeddings.size())
+                        .boxed()
+                        .sorted(Comparator.comparingDouble(i -> -CosineSimilarity.between(embeddings.get(i), query)))
+                        .limit(K)
+                        .map(i -> "id" + i)
+                        .collect(Collectors.toSet());
+    }
+
+    private static DominoEmbeddingStore store(Quantization quantization, int oversampling, List<Embedding> embeddings) {
+        DominoEmbeddingStore store = DominoEmbeddingStore.builder()
+                                                         .quantization(quantization)
+                                                         .oversampling(oversampling)
+                                                         .build();
+        store.addAll(IntStream.range(0, embeddings.size()).mapToObj(i -> "id" + i).toList(), embeddings, null);
+        return store;
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(DominoEmbeddingStore store, Embedding query) {
+        return store.search(EmbeddingSearchRequest.builder().queryEmbedding(query).maxResults(K).build()).matches();
+    }
+
+    @Test
+    void testRecall() {
+        List<Embedding> embeddings = IntStream.range(0, COUNT).mapToObj(i -> embedding()).toList();
+        List<Embedding> queries = IntStream.range(0, QUERIES).mapToObj(i -> embedding()).toList();
+        List<Set<String>> expected = queries.stream().map(query -> exact(embeddings, query)).toList();
+
+        StringBuilder report = new StringBuilder("quantization oversampling recall micros/query code-bytes\n");
+        for (Quantization quantization : Quantization.values()) {
+            for (int oversampling : IntStream.of(1, quantization.getDefaultOversampling()).distinct().toArray()) {
+                DominoEmbeddingStore store = store(quantization, oversampling, embeddings);
+
+                // Warm up
+                queries.forEach(query -> search(store, query));
+
+                int found = 0;
+                long start = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    Set<String> relevant = expected.get(q);
+                    found += (int) search(store, queries.get(q)).stream().filter(match -> relevant.contains(match.embeddingId())).count();
+                }
+                long micros = (System.nanoTime() - start) / 1000 / QUERIES;
+                double recall = found / (double) (QUERIES * K);
+
+                report.append(String.format("%-12s %12d %6.3f %13d %10d%n", quantization, oversampling, recall, micros, store.quantizedBytes()));
+                if (oversampling == quantization.getDefaultOversampling()) {
+                    assertTrue(recall >= 0.9, quantization + " recall should be at least 90% but was " + recall);
+                }
+                if (quantization != Quantization.NONE) {
+                    assertTrue(store.quantizedBytes() <= (long) COUNT * DIMENSION * Float.BYTES / 3, "Codes should be smaller than floats");
+                }
+            }
+        }
+
+        log.info(report::toString);
+    }
+
+    @Test
+    void testSnapshot() throws IOException {
+        List<Embedding> embeddings = IntStream.range(0, 1000).mapToObj(i -> embedding()).toList();
+        DominoEmbeddingStore store = store(Quantization.BINARY, 0, embeddings);
+
+        Path directory = Files.createTempDirectory("quantized");
+        try {
+            store.snapshot(directory);
+            DominoEmbeddingStore restored = DominoEmbeddingStore.builder().restoreFrom(directory).build();
+            assertEquals(store.quantizedBytes(), restored.quantizedBytes(), "Quantization should be restored");
+
+            List<Embedding> queries = new ArrayList<>(embeddings.subList(0, 10));
+            for (Embedding query : queries) {
+                assertEquals(search(store, query).toString(), search(restored, query).toString());
+            }
+
+            // The original store now maps its vectors
+            Embedding added = embedding();
+            store.add("added", added);
+            assertEquals("added", search(store, added).get(0).embeddingId());
+            assertEquals(added, search(store, added).get(0).embedding());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the similarity kernels, one dot product per operation. Not run by the build; to run it:
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java --add-modules jdk.incubator.vector \
+ *      -cp target/classes:target/test-classes:$(cat target/test-classpath.txt) \
+ *      org.openjdk.jmh.Main SimilarityKernelsBenchmark
+ * </pre>
+ *
+ * {@code kernels=scalar} measures {@link ScalarKernels}, {@code kernels=preferred} the kernels selected by
+ * {@link SimilarityKernels#get()}, printed during setup with their lane count. Vector API results depend on the CPU's
+ * preferred vector size, so report that output along with the numbers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SimilarityKernelsBenchmark {
+
+    @Param({ "scalar", "preferred" })
+    public String kernels;
+
+    @Param({ "384", "768", "1536", "3072" })
+    public int dimension;
+
+    private SimilarityKernels selected;
+    private float[] query;
+    private float[] vector;
+    private ByteBuffer buffer;
+    private byte[] codesA;
+    private byte[] codesB;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        selected = "scalar".equals(kernels) ? new ScalarKernels() : SimilarityKernels.get();
+        System.out.println("Kernels: " + selected);
+
+        Random random = new Random(1);
+        query = new float[dimension];
+        vector = new float[dimension];
+        buffer = ByteBuffer.allocateDirect(dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < dimension; i++) {
+            query[i] = (float) random.nextGaussian();
+            vector[i] = (float) random.nextGaussian();
+            buffer.putFloat(i * Float.BYTES, vector[i]);
+        }
+        codesA = new byte[dimension];
+        codesB = new byte[dimension];
+        random.nextBytes(codesA);
+        random.nextBytes(codesB);
+    }
+
+    @Benchmark
+    public float floatArrays() {
+        return selected.dot(query, vector);
+    }
+
+    @Benchmark
+    public float floatBuffer() {
+        return selected.dot(query, buffer, 0);
+    }
+
+    @Benchmark
+    public float floatBytes() {
+        return selected.dot(query, codesB, 0);
+    }
+
+    @Benchmark
+    public int bytes() {
+        return selected.dot(codesA, 0, codesB, 0, dimension);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares Vector API kernels with scalar kernels. Tests run with {@code --add-modules jdk.incubator.vector}, but are
+ * compiled without it, so they only reach the Vector API kernels through {@link SimilarityKernels#get()}.
+ */
+class SimilarityKernelsTest {
+
+    private static final int[] DIMENSIONS = { 3, 384, 385, 768, 1536, 3072 };
+
+    private final Random random = new Random(1);
+    private final SimilarityKernels scalar = new ScalarKernels();
+    private final SimilarityKernels simd = SimilarityKernels.get();
+
+    private float[] floats(int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    private byte[] bytes(int length) {
+        byte[] values = new byte[length];
+        random.nextBytes(values);
+        return values;
+    }
+
+    // Buffer holding the floats after a few bytes, to test offsets
+    private static ByteBuffer buffer(float[] values, int offset) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(offset + values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < values.length; i++) {
+            buffer.putFloat(offset + i * Float.BYTES, values[i]);
+        }
+        return buffer;
+    }
+
+    @Test
+    void testVectorApiSelected() {
+        assertEquals("VectorApiKernels", simd.getClass().getSimpleName());
+    }
+
+    @Test
+    void testKernelsAgree() {
+        for (int dimension : DIMENSIONS) {
+            float[] a = floats(dimension);
+            float[] b = floats(dimension);
+            ByteBuffer bufferA = buffer(a, 8);
+            ByteBuffer bufferB = buffer(b, 12);
+            byte[] bytesA = bytes(dimension + 5);
+            byte[] bytesB = bytes(dimension + 7);
+            double tolerance = 1e-4 * dimension;
+
+            assertEquals(scalar.dot(a, b), simd.dot(a, b), tolerance);
+            assertEquals(scalar.dot(a, bufferB, 12), simd.dot(a, bufferB, 12), tolerance);
+            assertEquals(scalar.dot(bufferA, 8, bufferB, 12, dimension), simd.dot(bufferA, 8, bufferB, 12, dimension), tolerance);
+            assertEquals(scalar.dot(a, bytesB, 7), simd.dot(a, bytesB, 7), tolerance * 128);
+            assertEquals(scalar.dot(bytesA, 5, bytesB, 7, dimension), simd.dot(bytesA, 5, bytesB, 7, dimension));
+        }
+    }
+
+    @Test
+    void testVectorSimilarity() {
+        float[] a = floats(384);
+        float[] b = floats(384);
+
+        assertEquals(simd.dot(a, b), VectorSimilarity.dot(a, b));
+        assertThrows(IllegalArgumentException.class, () -> VectorSimilarity.dot(a, floats(385)));
+    }
+}
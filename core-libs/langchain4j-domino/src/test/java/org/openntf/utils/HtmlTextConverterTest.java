@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+class HtmlTextConverterTest {
+
+    @Test
+    void testEmptyInput() {
+        assertEquals("", HtmlTextConverter.toText(null));
+        assertEquals("", HtmlTextConverter.toText(""));
+        assertEquals("", HtmlTextConverter.toText("<p> </p>"));
+    }
+
+    @Test
+    void testTagsAndWhitespace() {
+        assertEquals("Hello World", HtmlTextConverter.toText("<p>Hello\n\t <b>World</b></p>"));
+        assertEquals("one two", HtmlTextConverter.toText("<div>one</div><div>two</div>"));
+        assertEquals("line1 line2", HtmlTextConverter.toText("line1<br/>line2"));
+        assertEquals("link", HtmlTextConverter.toText("<a href=\"x>y\" title='a>b'>link</a>"));
+    }
+
+    @Test
+    void testSkippedContent() {
+        String html = "<html><head><title>Title</title><style>p { color: red; }</style></head>"
+            + "<body><script type=\"text/javascript\">if (a < b) { x = '</scr'; }</script>"
+            + "Body<!-- comment -->text</body></html>";
+
+        assertEquals("Bodytext", HtmlTextConverter.toText(html));
+        assertEquals("ok", HtmlTextConverter.toText("<SCRIPT>alert(1)</SCRIPT >ok"));
+    }
+
+    @Test
+    void testEntities() {
+        assertEquals("a & b < c > d \"e\"", HtmlTextConverter.toText("a &amp; b &lt; c &gt; d &quot;e&quot;"));
+        assertEquals("AB", HtmlTextConverter.toText("&#65;&#x42;"));
+        assertEquals("x y", HtmlTextConverter.toText("x&nbsp;&nbsp;y"));
+        assertEquals("&unknown; & &", HtmlTextConverter.toText("&unknown; & &AMP;"));
+        assertEquals("café", HtmlTextConverter.toText("caf&eacute;"));
+    }
+
+    @Test
+    void testLiteralMarkupCharacters() {
+        assertEquals("a < b", HtmlTextConverter.toText("a < b"));
+        assertEquals("cdata", HtmlTextConverter.toText("<![CDATA[cdata]]>"));
+    }
+
+    @Test
+    void testStreaming() throws IOException {
+        StringBuilder sb = new StringBuilder("prefix ");
+        HtmlTextConverter.toText(new StringReader("<p>streamed</p>"), sb);
+
+        assertEquals("prefix streamed", sb.toString());
+    }
+}
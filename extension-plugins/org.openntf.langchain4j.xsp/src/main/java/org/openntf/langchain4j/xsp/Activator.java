@@ -15,17 +15,42 @@
  */
 package org.openntf.langchain4j.xsp;
 
+import java.time.Duration;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 
 public class Activator implements BundleActivator {
 
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private LangChain4jRuntime runtime;
+    private ServiceRegistration<LangChain4jRuntime> registration;
+
     public void start(BundleContext context) throws Exception {
         System.out.println("Starting langchain4j-wrapper");
+
+        runtime = LangChain4jRuntime.fromSystemProperties();
+        LangChain4jRuntime.setInstance(runtime);
+        registration = context.registerService(LangChain4jRuntime.class, runtime, null);
+
+        if (Prewarmer.isEnabled()) {
+            runtime.prewarm(Prewarmer.fromSystemProperties());
+        }
     }
 
     public void stop(BundleContext context) throws Exception {
         System.out.println("Stopping langchain4j-wrapper");
+
+        if (registration != null) {
+            registration.unregister();
+            registration = null;
+        }
+        if (runtime != null) {
+            LangChain4jRuntime.setInstance(null);
+            runtime.shutdown(SHUTDOWN_TIMEOUT);
+            runtime = null;
+        }
     }
 
 }
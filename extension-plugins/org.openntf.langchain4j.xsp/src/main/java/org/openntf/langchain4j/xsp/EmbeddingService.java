@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.xsp;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import java.time.Duration;
+import org.openntf.langchain4j.rag.CoalescingEmbeddingModel;
+
+/**
+ * Application-scoped embedding service, registered as the {@code lc4jEmbeddings} managed bean.
+ * <p>
+ * The application sets its embedding model once, e.g. in a {@code beforePageLoad} event or an application listener.
+ * Concurrent requests of the application then share one {@link CoalescingEmbeddingModel}, which combines their query
+ * embeddings into batches and embeds identical queries once.
+ * <pre>
+ * lc4jEmbeddings.setModel(embeddingModel);
+ * var retriever = DominoHybridContentRetriever.builder()
+ *     .embeddingModel(lc4jEmbeddings.getModel())
+ *     ...
+ * </pre>
+ */
+public class EmbeddingService {
+
+    private long windowMillis = 5;
+    private int maxBatchSize = 32;
+
+    private volatile EmbeddingModel delegate;
+    private volatile CoalescingEmbeddingModel model;
+
+    public EmbeddingService() {
+    }
+
+    /**
+     * Sets the embedding model of the application. Setting the same model again keeps the current batches.
+     * @param embeddingModel the embedding model
+     */
+    public synchronized void setModel(EmbeddingModel embeddingModel) {
+        if (embeddingModel == null) {
+            throw new IllegalArgumentException("Embedding model must not be null");
+        }
+        if (embeddingModel == delegate || embeddingModel == model) {
+            return;
+        }
+
+        this.model = CoalescingEmbeddingModel.builder()
+                                             .delegate(embeddingModel)
+                                             .window(Duration.ofMillis(windowMillis))
+                                             .maxBatchSize(maxBatchSize)
+                                             .build();
+        this.delegate = embeddingModel;
+    }
+
+    /**
+     * @return the coalescing embedding model, to be passed to retrievers
+     * @throws IllegalStateException if no model has been set
+     */
+    public EmbeddingModel getModel() {
+        CoalescingEmbeddingModel current = model;
+        if (current == null) {
+            throw new IllegalStateException("No embedding model has been set for this application");
+        }
+        return current;
+    }
+
+    public boolean isConfigured() {
+        return model != null;
+    }
+
+    /**
+     * Embeds a query.
+     * @param text the query text
+     * @return the embedding vector
+     */
+    public float[] embed(String text) {
+        return getModel().embed(text)
+                         .content()
+                         .vector();
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Sets how long a batch waits for other requests while the model is busy. Applies to models set afterwards.
+     * @param windowMillis the window in milliseconds
+     */
+    public synchronized void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of queries in one model call. Applies to models set afterwards.
+     * @param maxBatchSize the maximum batch size
+     */
+    public synchronized void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return the number of query embeddings requested
+     */
+    public long getRequestCount() {
+        CoalescingEmbeddingModel current = model;
+        return current == null ? 0 : current.getRequestCount();
+    }
+
+    /**
+     * @return the number of calls made to the embedding model
+     */
+    public long getModelCallCount() {
+        CoalescingEmbeddingModel current = model;
+        return current == null ? 0 : current.getModelCallCount();
+    }
+}
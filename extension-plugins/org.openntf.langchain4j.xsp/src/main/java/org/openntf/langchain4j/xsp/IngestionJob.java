@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.xsp;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openntf.langchain4j.ingest.IngestionResult;
+
+/**
+ * A background job submitted to {@link IngestionJobs}. Getters are meant to be polled from the UI, e.g. by a partial
+ * refresh, while the job runs.
+ */
+public class IngestionJob {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private static final int MAX_ERRORS = 20;
+
+    private final String id;
+    private final String name;
+    private final String userName;
+    private final long expectedDocuments;
+    private final long submittedAt = System.currentTimeMillis();
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+
+    private volatile State state = State.QUEUED;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile boolean cancelRequested;
+    private volatile Future<?> future;
+    private volatile IngestionResult result;
+
+    IngestionJob(String id, String name, String userName, long expectedDocuments) {
+        this.id = id;
+        this.name = name;
+        this.userName = userName;
+        this.expectedDocuments = expectedDocuments;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the user who submitted the job, whose access the job runs with
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isDone() {
+        State current = state;
+        return current == State.COMPLETED || current == State.FAILED || current == State.CANCELLED;
+    }
+
+    /**
+     * @return the time the job was submitted, in epoch milliseconds
+     */
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    /**
+     * @return the number of documents processed so far
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return the expected number of documents, 0 if unknown
+     */
+    public long getExpected() {
+        return expectedDocuments;
+    }
+
+    /**
+     * @return the completed fraction between 0 and 1, or -1 if the expected number of documents is unknown
+     */
+    public double getProgress() {
+        if (state == State.COMPLETED) {
+            return 1;
+        }
+        if (expectedDocuments <= 0) {
+            return -1;
+        }
+        return Math.min(1, (double) processed.get() / expectedDocuments);
+    }
+
+    /**
+     * @return the run time in seconds, 0 if the job hasn't started
+     */
+    public double getElapsedSeconds() {
+        long start = startNanos;
+        if (start == 0) {
+            return 0;
+        }
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return (end - start) / 1e9;
+    }
+
+    /**
+     * @return documents processed per second
+     */
+    public double getThroughput() {
+        double elapsed = getElapsedSeconds();
+        return elapsed == 0 ? 0 : processed.get() / elapsed;
+    }
+
+    /**
+     * @return the estimated seconds to completion, or -1 if it can't be estimated yet
+     */
+    public long getEtaSeconds() {
+        if (isDone()) {
+            return 0;
+        }
+        double throughput = getThroughput();
+        if (expectedDocuments <= 0 || throughput == 0) {
+            return -1;
+        }
+        return Math.round(Math.max(0, expectedDocuments - processed.get()) / throughput);
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * @return the first error messages of the job
+     */
+    public List<String> getErrors() {
+        return List.copyOf(errors);
+    }
+
+    /**
+     * @return the pipeline result of a completed ingestion job, null otherwise
+     */
+    public IngestionResult getResult() {
+        return result;
+    }
+
+    /**
+     * Requests cancellation. A running job stops at the next document.
+     */
+    public void cancel() {
+        cancelRequested = true;
+        Future<?> current = future;
+        if (current != null) {
+            current.cancel(true);
+        }
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void documentProcessed() {
+        processed.incrementAndGet();
+    }
+
+    void error(String message) {
+        errorCount.incrementAndGet();
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(message);
+        }
+    }
+
+    void started() {
+        startNanos = System.nanoTime();
+        state = State.RUNNING;
+    }
+
+    void completed(IngestionResult result) {
+        this.result = result;
+        finish(State.COMPLETED);
+    }
+
+    void failed(Throwable t) {
+        error(String.valueOf(t.getMessage() == null ? t : t.getMessage()));
+        finish(State.FAILED);
+    }
+
+    void cancelled() {
+        finish(State.CANCELLED);
+    }
+
+    private void finish(State finalState) {
+        if (startNanos != 0) {
+            endNanos = System.nanoTime();
+        }
+        state = finalState;
+    }
+}
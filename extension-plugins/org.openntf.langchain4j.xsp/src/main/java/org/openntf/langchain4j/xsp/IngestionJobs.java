@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.xsp;
+
+import com.hcl.domino.DominoClient;
+import com.hcl.domino.DominoClientBuilder;
+import dev.langchain4j.data.document.Document;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.faces.context.FacesContext;
+import org.openntf.langchain4j.data.DominoDocumentLoader;
+import org.openntf.langchain4j.ingest.DominoIngestionPipeline;
+import org.openntf.langchain4j.ingest.IngestionResult;
+
+/**
+ * Runs document loading and ingestion in the background, registered as the {@code lc4jIngestion} managed bean.
+ * <p>
+ * Jobs run on the {@link LangChain4jRuntime} worker pool, so they don't tie up HTTP threads and aren't limited by
+ * request timeouts. Each submission returns a job ID to poll with {@link #getJob(String)}. Loaders are created on the
+ * worker thread, because Domino objects of the request can't be used on another thread, from a {@link DominoClient}
+ * running as the user who submitted the job. Jobs can only read what that user can read, as the request could, and
+ * can only be seen and cancelled by that user. Notes failing to load and segments the pipeline skips are listed as job
+ * errors, replacing any failure listener set on the loader or the pipeline.
+ * <pre>
+ * String jobId = lc4jIngestion.submitIngestion("Knowledge base", expectedNotes,
+ *     client -&gt; DominoDocumentLoader.create(MetadataDefinition.DEFAULT)
+ *                                    .fieldName("Body")
+ *                                    .database(client.openDatabase("", "kb.nsf"))
+ *                                    .noteIds(noteIds),
+ *     DominoIngestionPipeline.builder().embeddingModel(embeddingModel).embeddingStore(embeddingStore));
+ * </pre>
+ */
+public class IngestionJobs {
+
+    private static final Logger log = Logger.getLogger(IngestionJobs.class.getName());
+
+    private static final int MAX_FINISHED_JOBS = 100;
+    private static final String ANONYMOUS = "Anonymous";
+
+    // Metadata key holding the UNID, as in MetadataDefinition.DEFAULT
+    private static final String UNID_METADATA = "unid";
+
+    // Guarded by itself, in submission order
+    private final Map<String, IngestionJob> jobs = new LinkedHashMap<>();
+
+    public IngestionJobs() {
+    }
+
+    /**
+     * Submits an ingestion job. The pipeline builder gets the loader as its source and is run on a worker thread.
+     * @param name a display name
+     * @param expectedDocuments the expected number of documents for progress and ETA, 0 if unknown
+     * @param loaderFactory creates the loader on the worker thread, from a client running as the current user
+     * @param pipeline the configured pipeline builder, without a source
+     * @return the job ID
+     * @throws IllegalStateException if not called during an XPages request
+     */
+    public String submitIngestion(String name, long expectedDocuments, Function<DominoClient, DominoDocumentLoader> loaderFactory,
+                                  DominoIngestionPipeline.Builder pipeline) {
+        if (loaderFactory == null || pipeline == null) {
+            throw new IllegalArgumentException("Loader factory and pipeline must not be null");
+        }
+
+        return submit(name, expectedDocuments, (job, client) -> {
+            DominoDocumentLoader loader = reportingFailures(job, loaderFactory.apply(client));
+            return pipeline.source(consumer -> loader.loadDocuments(counting(job, consumer)))
+                           .failureListener((segment, e) -> job.error("Segment of " + segment.metadata().getString(UNID_METADATA)
+                                                                          + " skipped: " + e.getMessage()))
+                           .build()
+                           .run();
+        });
+    }
+
+    /**
+     * Submits a loading job passing each loaded document to the consumer on the worker thread.
+     * @param name a display name
+     * @param expectedDocuments the expected number of documents for progress and ETA, 0 if unknown
+     * @param loaderFactory creates the loader on the worker thread, from a client running as the current user
+     * @param consumer receives the documents, must not use Domino objects of the submitting request
+     * @return the job ID
+     * @throws IllegalStateException if not called during an XPages request
+     */
+    public String submitLoad(String name, long expectedDocuments, Function<DominoClient, DominoDocumentLoader> loaderFactory,
+                             Consumer<Document> consumer) {
+        if (loaderFactory == null || consumer == null) {
+            throw new IllegalArgumentException("Loader factory and consumer must not be null");
+        }
+
+        return submit(name, expectedDocuments, (job, client) -> {
+            reportingFailures(job, loaderFactory.apply(client))
+                .loadDocuments(counting(job, consumer));
+            return null;
+        });
+    }
+
+    /**
+     * @param id the job ID
+     * @return the job, or null if unknown, already dropped from the history or submitted by another user
+     * @throws IllegalStateException if not called during an XPages request
+     */
+    public IngestionJob getJob(String id) {
+        String userName = currentUserName();
+        synchronized (jobs) {
+            IngestionJob job = jobs.get(id);
+            return job != null && job.getUserName().equals(userName) ? job : null;
+        }
+    }
+
+    /**
+     * @return running jobs and recent finished jobs of the current user, in submission order
+     * @throws IllegalStateException if not called during an XPages request
+     */
+    public List<IngestionJob> getJobs() {
+        String userName = currentUserName();
+        List<IngestionJob> result = new ArrayList<>();
+        synchronized (jobs) {
+            for (IngestionJob job : jobs.values()) {
+                if (job.getUserName().equals(userName)) {
+                    result.add(job);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Requests cancellation of a job of the current user.
+     * @param id the job ID
+     * @return true if the job was found and not finished yet
+     * @throws IllegalStateException if not called during an XPages request
+     */
+    public boolean cancel(String id) {
+        IngestionJob job = getJob(id);
+        if (job == null || job.isDone()) {
+            return false;
+        }
+        job.cancel();
+        return true;
+    }
+
+    private String submit(String name, long expectedDocuments, BiFunction<IngestionJob, DominoClient, IngestionResult> task) {
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), name, currentUserName(), expectedDocuments);
+
+        synchronized (jobs) {
+            pruneFinishedJobs();
+            jobs.put(job.getId(), job);
+        }
+
+        try {
+            job.setFuture(LangChain4jRuntime.get().getWorkers().submit(() -> run(job, task)));
+        } catch (RejectedExecutionException e) {
+            log.log(Level.WARNING, "Unable to queue job " + name, e);
+            job.failed(new IllegalStateException("Too many queued jobs, try again later"));
+        }
+
+        return job.getId();
+    }
+
+    // The authenticated user of the request, captured on the HTTP thread when submitting
+    private static String currentUserName() {
+        FacesContext context = FacesContext.getCurrentInstance();
+        if (context == null) {
+            throw new IllegalStateException("Jobs must be submitted during an XPages request");
+        }
+
+        String userName = context.getExternalContext().getRemoteUser();
+        return userName == null || userName.isBlank() ? ANONYMOUS : userName;
+    }
+
+    private static void run(IngestionJob job, BiFunction<IngestionJob, DominoClient, IngestionResult> task) {
+        if (job.isCancelRequested()) {
+            job.cancelled();
+            return;
+        }
+
+        job.started();
+        try (DominoClient client = DominoClientBuilder.newDominoClient().asUser(job.getUserName()).build()) {
+            job.completed(task.apply(job, client));
+            log.log(Level.INFO, "Job " + job.getName() + " completed: " + job.getProcessed() + " documents in "
+                + Math.round(job.getElapsedSeconds()) + "s");
+        } catch (RuntimeException e) {
+            if (job.isCancelRequested() || e instanceof CancellationException) {
+                job.cancelled();
+                log.log(Level.INFO, "Job " + job.getName() + " cancelled after " + job.getProcessed() + " documents");
+            } else {
+                job.failed(e);
+                log.log(Level.WARNING, "Job " + job.getName() + " failed", e);
+            }
+        }
+    }
+
+    // Failing notes are skipped and listed on the job as they happen, instead of ending the job
+    private static DominoDocumentLoader reportingFailures(IngestionJob job, DominoDocumentLoader loader) {
+        return loader.failureListener((key, e) -> job.error(key + ": " + (e.getMessage() == null ? e : e.getMessage())));
+    }
+
+    private static Consumer<Document> counting(IngestionJob job, Consumer<Document> consumer) {
+        return document -> {
+            if (job.isCancelRequested()) {
+                throw new CancellationException("Job cancelled");
+            }
+            consumer.accept(document);
+            job.documentProcessed();
+        };
+    }
+
+    private void pruneFinishedJobs() {
+        int finished = 0;
+        for (IngestionJob job : jobs.values()) {
+            if (job.isDone()) {
+                finished++;
+            }
+        }
+
+        // Oldest first
+        for (Iterator<IngestionJob> it = jobs.values().iterator(); it.hasNext() && finished >= MAX_FINISHED_JOBS; ) {
+            if (it.next().isDone()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+}
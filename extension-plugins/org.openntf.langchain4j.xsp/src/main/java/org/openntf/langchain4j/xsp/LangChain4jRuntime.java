@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.xsp;
+
+import com.hcl.domino.DominoClient;
+import com.hcl.domino.DominoClientBuilder;
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.Formula;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openntf.langchain4j.ingest.DominoThreadFactory;
+
+/**
+ * Server-wide LangChain4j resources, shared by all XPages applications.
+ * <p>
+ * The {@link Activator} creates one instance when the plugin starts, registers it as an OSGi service and shuts it
+ * down when the plugin stops, so no thread outlives the plugin or an application reload. It owns:
+ * <ul>
+ *     <li>a bounded worker pool. Its threads are initialised for the Domino API and each has its own
+ *     {@link DominoClient}, opened databases and compiled formulas, available through {@link #getClient()},
+ *     {@link #getDatabase(String, String)} and {@link #getFormula(String)},</li>
+ *     <li>a scheduler for periodic tasks. Scheduled tasks should be short and hand longer work over to the worker pool,</li>
+ *     <li>a query-embedding cache shared by applications using the same model, see
+ *     {@link #cachedEmbeddingModel(String, EmbeddingModel)}.</li>
+ * </ul>
+ * Domino objects belong to the client and thread that created them, so databases and formulas are cached per worker
+ * thread rather than across threads.
+ * <p>
+ * The pool sizes are read from the {@code langchain4j.xsp.workers}, {@code langchain4j.xsp.queue} and
+ * {@code langchain4j.xsp.embeddingCache} system properties.
+ */
+public class LangChain4jRuntime {
+
+    private static final Logger log = Logger.getLogger(LangChain4jRuntime.class.getName());
+
+    private static final int MAX_FORMULAS_PER_THREAD = 256;
+
+    private static volatile LangChain4jRuntime instance;
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, Embedding> embeddingCache;
+
+    private final ThreadLocal<WorkerResources> workerResources = new ThreadLocal<>();
+
+    private volatile Prewarmer prewarmer;
+
+    LangChain4jRuntime(int workerCount, int queueSize, int embeddingCacheSize) {
+        if (workerCount < 1 || queueSize < 1 || embeddingCacheSize < 0) {
+            throw new IllegalArgumentException("Worker count and queue size must be positive, cache size must not be negative");
+        }
+
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                                              workerThreadFactory("langchain4j-xsp-worker"));
+        this.workers.allowCoreThreadTimeOut(true);
+
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new DominoThreadFactory("langchain4j-xsp-scheduler"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        this.embeddingCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Embedding> eldest) {
+                return size() > embeddingCacheSize;
+            }
+        };
+    }
+
+    static LangChain4jRuntime fromSystemProperties() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new LangChain4jRuntime(Integer.getInteger("langchain4j.xsp.workers", Math.max(2, processors / 2)),
+                                      Integer.getInteger("langchain4j.xsp.queue", 1000),
+                                      Integer.getInteger("langchain4j.xsp.embeddingCache", 10000));
+    }
+
+    /**
+     * @return the runtime of the started plugin
+     * @throws IllegalStateException if the plugin is not started
+     */
+    public static LangChain4jRuntime get() {
+        LangChain4jRuntime current = instance;
+        if (current == null) {
+            throw new IllegalStateException("LangChain4j runtime is not started");
+        }
+        return current;
+    }
+
+    static void setInstance(LangChain4jRuntime runtime) {
+        instance = runtime;
+    }
+
+    /**
+     * The shared worker pool. Tasks are rejected with a {@link java.util.concurrent.RejectedExecutionException} when
+     * the queue is full, rather than blocking the submitting request.
+     * @return the worker pool
+     */
+    public ExecutorService getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return the shared scheduler
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the Domino client of the current worker thread. It runs as the server ID and ignores the ACLs applying
+     * to users, so it's meant for work configured by the server administrator, e.g. pre-warming. Work submitted on
+     * behalf of a user should use a client running as that user, as {@link IngestionJobs} does.
+     * @return the Domino client of the current worker thread, running as the server ID
+     * @throws IllegalStateException if not called from a worker thread
+     */
+    public DominoClient getClient() {
+        return resources().client();
+    }
+
+    /**
+     * Opens a database with the client of the current worker thread, as the server ID (see {@link #getClient()}).
+     * Databases stay open until the thread ends.
+     * @param server the server name, empty for local databases
+     * @param path the database path
+     * @return the database
+     * @throws IllegalStateException if not called from a worker thread
+     */
+    public Database getDatabase(String server, String path) {
+        WorkerResources resources = resources();
+        return resources.databases.computeIfAbsent(server + "!!" + path, key -> resources.client().openDatabase(server, path));
+    }
+
+    /**
+     * Compiles a formula with the client of the current worker thread, or returns it from the thread's cache.
+     * @param formula the formula
+     * @return the compiled formula
+     * @throws IllegalStateException if not called from a worker thread
+     */
+    public Formula getFormula(String formula) {
+        WorkerResources resources = resources();
+        return resources.formulas.computeIfAbsent(formula, key -> resources.client().createFormula(key));
+    }
+
+    /**
+     * Wraps an embedding model so that single texts are looked up in the shared embedding cache before calling it.
+     * Applications configuring the same model should use the same key to share the cache.
+     * @param modelKey identifies the model and its settings, e.g. provider, model name and dimensions
+     * @param embeddingModel the embedding model
+     * @return the caching model
+     */
+    public EmbeddingModel cachedEmbeddingModel(String modelKey, EmbeddingModel embeddingModel) {
+        if (modelKey == null || embeddingModel == null) {
+            throw new IllegalArgumentException("Model key and embedding model must not be null");
+        }
+
+        return new EmbeddingModel() {
+            @Override
+            public Response<Embedding> embed(String text) {
+                String key = modelKey + '\u0000' + text;
+
+                Embedding embedding;
+                synchronized (embeddingCache) {
+                    embedding = embeddingCache.get(key);
+                }
+                if (embedding == null) {
+                    embedding = embeddingModel.embed(text).content();
+                    synchronized (embeddingCache) {
+                        embeddingCache.put(key, embedding);
+                    }
+                }
+                return Response.from(embedding);
+            }
+
+            @Override
+            public Response<Embedding> embed(TextSegment textSegment) {
+                return embed(textSegment.text());
+            }
+
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                return embeddingModel.embedAll(textSegments);
+            }
+
+            @Override
+            public int dimension() {
+                return embeddingModel.dimension();
+            }
+        };
+    }
+
+    /**
+     * Runs the pre-warm phases on a worker thread.
+     * @param prewarmer the pre-warmer
+     */
+    void prewarm(Prewarmer prewarmer) {
+        this.prewarmer = prewarmer;
+        workers.execute(prewarmer::run);
+    }
+
+    /**
+     * @return the duration of each finished pre-warm phase in milliseconds, empty if pre-warming is not enabled
+     */
+    public Map<String, Long> getPrewarmPhaseMillis() {
+        Prewarmer current = prewarmer;
+        return current == null ? Map.of() : current.getPhaseMillis();
+    }
+
+    /**
+     * Stops the scheduler and the worker pool, waiting for running tasks up to the timeout before interrupting them.
+     * @param timeout the time to wait for running tasks
+     * @return true if all tasks have finished
+     */
+    boolean shutdown(Duration timeout) {
+        scheduler.shutdown();
+        workers.shutdown();
+
+        boolean terminated;
+        try {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            terminated = scheduler.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                & workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+
+        if (!terminated) {
+            List<Runnable> pending = workers.shutdownNow();
+            scheduler.shutdownNow();
+            log.log(Level.WARNING, "Interrupted LangChain4j workers at shutdown, " + pending.size() + " queued tasks dropped");
+        }
+
+        synchronized (embeddingCache) {
+            embeddingCache.clear();
+        }
+        return terminated;
+    }
+
+    private WorkerResources resources() {
+        WorkerResources resources = workerResources.get();
+        if (resources == null) {
+            throw new IllegalStateException("Domino resources are only available on LangChain4j worker threads");
+        }
+        return resources;
+    }
+
+    private ThreadFactory workerThreadFactory(String namePrefix) {
+        DominoThreadFactory dominoThreads = new DominoThreadFactory(namePrefix);
+
+        // Resources are released before DominoThreadFactory terminates the thread for the Domino API
+        return runnable -> dominoThreads.newThread(() -> {
+            WorkerResources resources = new WorkerResources();
+            workerResources.set(resources);
+            try {
+                runnable.run();
+            } finally {
+                workerResources.remove();
+                resources.close();
+            }
+        });
+    }
+
+    /**
+     * Domino objects of one worker thread.
+     */
+    private static class WorkerResources {
+
+        private DominoClient client;
+        private final Map<String, Database> databases = new LinkedHashMap<>();
+        private final Map<String, Formula> formulas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Formula> eldest) {
+                return size() > MAX_FORMULAS_PER_THREAD;
+            }
+        };
+
+        DominoClient client() {
+            if (client == null) {
+                client = DominoClientBuilder.newDominoClient().asIDUser().build();
+            }
+            return client;
+        }
+
+        void close() {
+            formulas.clear();
+            databases.clear();
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (Exception e) {
+                    log.log(Level.WARNING, "Unable to close Domino client of a worker thread", e);
+                }
+                client = null;
+            }
+        }
+    }
+}
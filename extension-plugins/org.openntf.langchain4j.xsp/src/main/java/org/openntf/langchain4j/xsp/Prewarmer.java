@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2024-2025 Serdar Basegmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.langchain4j.xsp;
+
+import com.hcl.domino.DominoClient;
+import com.hcl.domino.DominoClientBuilder;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openntf.langchain4j.data.MetadataDefinition;
+
+/**
+ * Moves the one-time startup costs of the library off the first user request.
+ * <p>
+ * Enabled with the {@code langchain4j.xsp.prewarm} system property, the {@link Activator} runs it on a worker thread
+ * of the {@link LangChain4jRuntime} after the plugin starts. The phases are:
+ * <ol>
+ *     <li>{@code classes}: loads and initialises the heavy LangChain4j, parser, Jsoup and JNX classes and splits a
+ *     short text,</li>
+ *     <li>{@code formulas}: compiles the {@link MetadataDefinition#DEFAULT} formulas,</li>
+ *     <li>{@code databases}: opens the databases listed in the {@code langchain4j.xsp.prewarm.databases} system
+ *     property, as comma separated {@code server!!path} entries.</li>
+ * </ol>
+ * The time of each phase is logged and available from {@link #getPhaseMillis()}.
+ * <p>
+ * The formula and database phases use their own Domino client and close it afterwards: handles belong to the thread
+ * that opened them, and idle worker threads end with their handles after a minute, so there are no handles to keep for
+ * requests. These phases warm the code paths, the formula compiler and the server's database caches instead, and
+ * workers still compile formulas and open databases on first use.
+ */
+public class Prewarmer {
+
+    private static final Logger log = Logger.getLogger(Prewarmer.class.getName());
+
+    // Loaded by name, so optional parsers missing from the bundle are skipped
+    private static final List<String> CLASS_NAMES = List.of(
+        "com.hcl.domino.DominoClientBuilder",
+        "com.hcl.domino.DominoProcess",
+        "dev.langchain4j.data.document.DocumentLoader",
+        "dev.langchain4j.data.document.parser.TextDocumentParser",
+        "dev.langchain4j.data.document.parser.apache.poi.ApachePoiDocumentParser",
+        "dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser",
+        "dev.langchain4j.data.document.splitter.DocumentSplitters",
+        "dev.langchain4j.store.embedding.EmbeddingSearchRequest",
+        "dev.langchain4j.rag.content.Content",
+        "org.jsoup.Jsoup",
+        "org.openntf.langchain4j.data.DominoDocumentLoader",
+        "org.openntf.langchain4j.data.DominoDataDocumentSource",
+        "org.openntf.langchain4j.data.DominoAttachmentDocumentSource",
+        "org.openntf.langchain4j.ingest.DominoIngestionPipeline",
+        "org.openntf.langchain4j.store.DominoEmbeddingStore",
+        "org.openntf.langchain4j.rag.DominoHybridContentRetriever"
+    );
+
+    private final List<String> databases;
+    private final Map<String, Long> phaseMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    Prewarmer(List<String> databases) {
+        this.databases = List.copyOf(databases);
+    }
+
+    static Prewarmer fromSystemProperties() {
+        List<String> databases = new ArrayList<>();
+        for (String entry : System.getProperty("langchain4j.xsp.prewarm.databases", "").split(",")) {
+            if (!entry.isBlank()) {
+                databases.add(entry.strip());
+            }
+        }
+        return new Prewarmer(databases);
+    }
+
+    static boolean isEnabled() {
+        return Boolean.getBoolean("langchain4j.xsp.prewarm");
+    }
+
+    /**
+     * @return the duration of each finished phase in milliseconds, in execution order
+     */
+    public Map<String, Long> getPhaseMillis() {
+        synchronized (phaseMillis) {
+            return new LinkedHashMap<>(phaseMillis);
+        }
+    }
+
+    /**
+     * Runs all phases on the calling thread, which must be initialised for the Domino API, e.g. a worker thread of
+     * the {@link LangChain4jRuntime}. A failing phase is logged and doesn't stop the others.
+     */
+    void run() {
+        long start = System.nanoTime();
+
+        phase("classes", this::loadClasses);
+        phase("formulas", this::compileFormulas);
+        phase("databases", this::openDatabases);
+
+        log.log(Level.INFO, "LangChain4j pre-warm finished in " + (System.nanoTime() - start) / 1_000_000 + "ms: " + getPhaseMillis());
+    }
+
+    private void phase(String name, Runnable action) {
+        long start = System.nanoTime();
+        try {
+            action.run();
+        } catch (RuntimeException | LinkageError e) {
+            log.log(Level.WARNING, "LangChain4j pre-warm phase " + name + " failed", e);
+        }
+        phaseMillis.put(name, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void loadClasses() {
+        ClassLoader classLoader = Prewarmer.class.getClassLoader();
+        for (String className : CLASS_NAMES) {
+            try {
+                Class.forName(className, true, classLoader);
+            } catch (ClassNotFoundException e) {
+                log.log(Level.FINE, "Skipping pre-warm of missing class " + className);
+            }
+        }
+
+        // Runs the splitter code paths once
+        DocumentSplitters.recursive(200, 20)
+                         .split(Document.from("LangChain4j for Domino. ".repeat(50)));
+    }
+
+    private void compileFormulas() {
+        try (DominoClient client = DominoClientBuilder.newDominoClient().asIDUser().build()) {
+            MetadataDefinition.DEFAULT.forEachField(field -> client.createFormula(field.formula()));
+        }
+    }
+
+    private void openDatabases() {
+        if (databases.isEmpty()) {
+            return;
+        }
+
+        try (DominoClient client = DominoClientBuilder.newDominoClient().asIDUser().build()) {
+            for (String database : databases) {
+                int separator = database.indexOf("!!");
+                String server = separator < 0 ? "" : database.substring(0, separator);
+                String path = separator < 0 ? database : database.substring(separator + 2);
+                try {
+                    client.openDatabase(server, path);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Unable to open " + database + " for pre-warm: " + e.getMessage());
+                }
+            }
+        }
+    }
+}